@@ -0,0 +1,67 @@
+package com.mjc.school;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Triggers a backup or a restore on a running server through its admin endpoints, so that the data sources of the
+ * server are backed up while it keeps serving writes:
+ * <pre>
+ *     backup [name] [--server=http://localhost:8083]
+ *     restore name [--server=http://localhost:8083]
+ * </pre>
+ */
+public class BackupCli {
+    private static final String DEFAULT_SERVER = "http://localhost:8083";
+    private static final String SERVER_OPTION = "--server=";
+    private static final String USAGE =
+            "Usage: backup [name] [--server=url] | restore name [--server=url], the server defaults to " + DEFAULT_SERVER;
+
+    private BackupCli() {}
+
+    /**
+     * @return exit status of the command, 0 if the server accepted it
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) throws InterruptedException {
+        String server = DEFAULT_SERVER;
+        String command = null;
+        String name = null;
+        for (String arg : args) {
+            if (arg.startsWith(SERVER_OPTION)) {
+                server = arg.substring(SERVER_OPTION.length());
+            } else if (command == null) {
+                command = arg;
+            } else if (name == null) {
+                name = arg;
+            } else {
+                err.println(USAGE);
+                return 2;
+            }
+        }
+        if (!"backup".equals(command) && !("restore".equals(command) && name != null)) {
+            err.println(USAGE);
+            return 2;
+        }
+
+        String query = name == null ? "" : "?name=" + URLEncoder.encode(name, StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server + "/admin/" + command + query))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient()
+                    .send(request, HttpResponse.BodyHandlers.ofString());
+            boolean succeeded = response.statusCode() / 100 == 2;
+            (succeeded ? out : err).println(response.body());
+            return succeeded ? 0 : 1;
+        } catch (IOException e) {
+            err.println("The server at " + server + " is not reachable: " + e.getMessage());
+            return 1;
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package com.mjc.school;
 
+import com.mjc.school.service.impl.BackupServiceFactory;
 import com.mjc.school.service.impl.NewsServiceFactory;
+import com.mjc.school.servlet.BackupServlet;
+import com.mjc.school.servlet.NewsBatchServlet;
 import com.mjc.school.servlet.NewsItemServlet;
+import com.mjc.school.servlet.NewsSearchServlet;
 import com.mjc.school.servlet.NewsServlet;
+import com.mjc.school.servlet.RestoreServlet;
 import org.eclipse.jetty.ee10.servlet.ServletContextHandler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
@@ -11,7 +16,14 @@ import org.eclipse.jetty.server.handler.CrossOriginHandler;
 import java.util.Collections;
 
 public class Main {
+    /**
+     * Starts the server, or with arguments runs a {@link BackupCli} command against a running one
+     */
     public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            System.exit(BackupCli.run(args, System.out, System.err));
+        }
+
         Server server = new Server();
         ServerConnector connector = new ServerConnector(server);
         connector.setPort(8083);
@@ -26,6 +38,10 @@ public class Main {
 
         context.addServlet(new NewsServlet(NewsServiceFactory.newsService()), "/news");
         context.addServlet(new NewsItemServlet(NewsServiceFactory.newsService()), "/news/*");
+        context.addServlet(new NewsSearchServlet(NewsServiceFactory.newsService()), "/news/search");
+        context.addServlet(new NewsBatchServlet(NewsServiceFactory.newsService()), "/news/batch");
+        context.addServlet(new BackupServlet(BackupServiceFactory.backupService()), "/admin/backup");
+        context.addServlet(new RestoreServlet(BackupServiceFactory.backupService()), "/admin/restore");
 
         server.start();
     }
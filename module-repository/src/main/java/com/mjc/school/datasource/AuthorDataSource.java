@@ -6,7 +6,7 @@ class AuthorDataSource extends DataSourceImpl<AuthorModel> {
     private static final String DATA_FILE_NAME = "author.json";
 
     private AuthorDataSource() {
-        super(DATA_FILE_NAME, AuthorModel.class);
+        super(DATA_FILE_NAME, AuthorModel.class, new AuthorModelCodec());
     }
 
     private static class SingletonCreationHelper {
@@ -0,0 +1,19 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.AuthorModel;
+
+class AuthorJdbcDataSource extends JdbcDataSource<AuthorModel> {
+    private static final String DATA_FILE_NAME = "author.json";
+
+    private AuthorJdbcDataSource() {
+        super(DATA_FILE_NAME, AuthorModel.class, new AuthorModelCodec(), EntityIndexes.none());
+    }
+
+    private static class SingletonCreationHelper {
+        private static final DataSource<AuthorModel> INSTANCE = new AuthorJdbcDataSource();
+    }
+
+    public static DataSource<AuthorModel> getInstance() {
+        return SingletonCreationHelper.INSTANCE;
+    }
+}
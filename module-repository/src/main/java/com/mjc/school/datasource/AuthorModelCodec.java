@@ -0,0 +1,29 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.AuthorModel;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+class AuthorModelCodec implements EntityCodec<AuthorModel> {
+    @Override
+    public void write(AuthorModel entity, DataOutput out) throws IOException {
+        EntityCodec.writeLong(entity.getId(), out);
+        EntityCodec.writeString(entity.getName(), out);
+    }
+
+    @Override
+    public AuthorModel read(ByteBuffer in) {
+        return read(in, 0);
+    }
+
+    @Override
+    public AuthorModel read(ByteBuffer in, long version) {
+        return new AuthorModel(
+                EntityCodec.readLong(in),
+                EntityCodec.readString(in),
+                version
+        );
+    }
+}
@@ -0,0 +1,19 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.AuthorModel;
+
+class AuthorStripedDataSource extends StripedDataSource<AuthorModel> {
+    private static final String DATA_FILE_NAME = "author.json";
+
+    private AuthorStripedDataSource() {
+        super(DATA_FILE_NAME, AuthorModel.class);
+    }
+
+    private static class SingletonCreationHelper {
+        private static final DataSource<AuthorModel> INSTANCE = new AuthorStripedDataSource();
+    }
+
+    public static DataSource<AuthorModel> getInstance() {
+        return SingletonCreationHelper.INSTANCE;
+    }
+}
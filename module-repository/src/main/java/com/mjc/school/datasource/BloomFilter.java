@@ -0,0 +1,59 @@
+package com.mjc.school.datasource;
+
+/**
+ * Set of ids that answers "definitely not contained" or "maybe contained". It uses about ten bits per id, so that
+ * about one lookup of a missing id in a hundred is a false positive. The filter is filled once and read concurrently
+ * after it was published.
+ */
+final class BloomFilter {
+    private static final int BITS_PER_ID = 10;
+    private static final int HASH_COUNT = 7;
+
+    private final long[] words;
+    private final long bitCount;
+
+    /**
+     * @param expectedIds number of ids that will be added
+     */
+    BloomFilter(int expectedIds) {
+        long bits = Math.max(Long.SIZE, (long) expectedIds * BITS_PER_ID);
+        this.words = new long[(int) ((bits + Long.SIZE - 1) / Long.SIZE)];
+        this.bitCount = (long) this.words.length * Long.SIZE;
+    }
+
+    void add(long id) {
+        long hash = mix(id);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Long.remainderUnsigned(hash, this.bitCount);
+            this.words[(int) (bit >>> 6)] |= 1L << bit;
+            hash += step;
+        }
+    }
+
+    /**
+     * @return false if the id was never added, true if it probably was
+     */
+    boolean mightContain(long id) {
+        long hash = mix(id);
+        long step = mix(hash) | 1;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = Long.remainderUnsigned(hash, this.bitCount);
+            if ((this.words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+            hash += step;
+        }
+        return true;
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreads consecutive ids over all the bits
+     */
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,16 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.Model;
+
+/**
+ * A committed change of one entity, see {@link DataSource#changesAfter(long)}
+ *
+ * @param version number of the change, the changes of a data source are numbered consecutively from 1
+ * @param entity the saved entity, or the last version of the deleted one
+ */
+public record ChangeEvent<T extends Model>(long version, Type type, long id, T entity) {
+    public enum Type {
+        SAVE,
+        DELETE
+    }
+}
@@ -0,0 +1,119 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.ChangeEventsLostException;
+import com.mjc.school.model.Model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded ring buffer of the last changes of a data source.
+ * <p>
+ * The data source publishes changes under its write lock, so there is one writer at a time: it stores the events in
+ * their slots and then advances the volatile {@link #lastVersion}, which makes a whole batch visible at once. Readers
+ * never lock and never hold up the writer, each {@link ChangeStream} only keeps its own position. The writer
+ * overwrites the oldest slots without waiting for slow readers, a reader detects that from the version of the event
+ * in the slot and gets a {@link ChangeEventsLostException}.
+ */
+final class ChangeLog<T extends Model> {
+    private final AtomicReferenceArray<ChangeEvent<T>> slots;
+    private final int mask;
+    private volatile long lastVersion;
+
+    /**
+     * @param capacity number of buffered changes, rounded up to a power of two
+     */
+    ChangeLog(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, got " + capacity);
+        }
+        int powerOfTwo = Integer.highestOneBit(capacity);
+        int size = powerOfTwo == capacity ? capacity : powerOfTwo << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return this.slots.length();
+    }
+
+    long lastVersion() {
+        return this.lastVersion;
+    }
+
+    /**
+     * Called by the single writer: publishes one change per entity, in the given order
+     *
+     * @param entities the saved entities, or the last versions of the deleted ones
+     */
+    void publish(ChangeEvent.Type type, List<T> entities) {
+        long version = this.lastVersion;
+        for (T entity : entities) {
+            version++;
+            this.slots.lazySet(index(version), new ChangeEvent<>(version, type, entity.getId(), entity));
+        }
+        this.lastVersion = version;
+    }
+
+    /**
+     * @param version version of the last change the subscriber has seen, changes after it are returned
+     * @throws IllegalArgumentException if the version has not been published yet
+     * @throws ChangeEventsLostException if the changes after the version are no longer buffered
+     */
+    ChangeStream<T> streamAfter(long version) {
+        long published = this.lastVersion;
+        if (version < 0 || version > published) {
+            throw new IllegalArgumentException(
+                    "Version " + version + " is not between 0 and the last version " + published
+            );
+        }
+        if (published - version > capacity()) {
+            throw new ChangeEventsLostException(version);
+        }
+        return new Cursor(version);
+    }
+
+    private int index(long version) {
+        return (int) (version & this.mask);
+    }
+
+    private final class Cursor implements ChangeStream<T> {
+        private long position;
+
+        private Cursor(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public List<ChangeEvent<T>> poll(int maxEvents) {
+            long published = lastVersion;
+            if (published - this.position > capacity()) {
+                throw new ChangeEventsLostException(this.position);
+            }
+
+            long end = Math.min(published, this.position + Math.max(0, maxEvents));
+            List<ChangeEvent<T>> events = new ArrayList<>((int) (end - this.position));
+            for (long version = this.position + 1; version <= end; version++) {
+                ChangeEvent<T> event = slots.get(index(version));
+                // the writer may have wrapped around since lastVersion was read
+                if (event == null || event.version() != version) {
+                    throw new ChangeEventsLostException(this.position);
+                }
+                events.add(event);
+            }
+            this.position = end;
+            return events;
+        }
+
+        @Override
+        public long lastVersion() {
+            return this.position;
+        }
+
+        @Override
+        public long lag() {
+            return ChangeLog.this.lastVersion - this.position;
+        }
+    }
+}
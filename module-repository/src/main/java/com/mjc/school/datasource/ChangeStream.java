@@ -0,0 +1,31 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.ChangeEventsLostException;
+import com.mjc.school.model.Model;
+
+import java.util.List;
+
+/**
+ * Cursor of one subscriber over the changes of a data source. It is read by one thread at a time and never blocks the
+ * writers: a subscriber that falls too far behind gets a {@link ChangeEventsLostException} instead.
+ */
+public interface ChangeStream<T extends Model> {
+    /**
+     * Returns the next changes in version order, without waiting for new ones
+     *
+     * @param maxEvents maximum number of changes to return
+     * @return changes after {@link #lastVersion()}, empty if there are none yet
+     * @throws ChangeEventsLostException if some of the next changes were overwritten before they were read
+     */
+    List<ChangeEvent<T>> poll(int maxEvents) throws ChangeEventsLostException;
+
+    /**
+     * @return version of the last change returned, the version the stream was opened after if none was returned yet
+     */
+    long lastVersion();
+
+    /**
+     * @return number of committed changes not returned yet
+     */
+    long lag();
+}
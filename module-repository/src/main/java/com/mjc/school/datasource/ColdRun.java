@@ -0,0 +1,205 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.model.Model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Immutable, memory-mapped file of entities sorted by id, the cold tier of {@link TieredDataSource}. A record is
+ * {@code [long id][long version][int length][entity]}, the records are followed by an index of
+ * {@code [long id][long record offset]} pairs in id order and a footer {@code [long index offset][int count]}. An
+ * entity is found by a binary search of the mapped index, the {@link BloomFilter} of the run is kept on heap so that a
+ * run without the id is skipped without touching the file.
+ * <p>
+ * The file is mapped once and the channel closed right away: a reader still holding the run after it was deleted keeps
+ * reading the mapping, which stays valid until it is garbage collected.
+ */
+final class ColdRun<T extends Model> {
+    private static final int RECORD_HEADER_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = 2 * Long.BYTES;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final Path path;
+    private final EntityCodec<T> codec;
+    private final BloomFilter filter;
+    private final MappedByteBuffer buffer;
+    private final int indexOffset;
+    private final int count;
+
+    private ColdRun(Path path, EntityCodec<T> codec, BloomFilter filter) {
+        this.path = path;
+        this.codec = codec;
+        this.filter = filter;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new DataFileReadException(path.toString(), e);
+        }
+        this.indexOffset = (int) this.buffer.getLong(this.buffer.capacity() - FOOTER_SIZE);
+        this.count = this.buffer.getInt(this.buffer.capacity() - Integer.BYTES);
+    }
+
+    int count() {
+        return this.count;
+    }
+
+    boolean mightContain(long id) {
+        return this.filter.mightContain(id);
+    }
+
+    /**
+     * @return the entity with the id, null if it is not in the run
+     */
+    T read(long id) {
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = idAt(middle);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                ByteBuffer record = recordAt(middle);
+                long version = record.getLong(Long.BYTES);
+                return this.codec.read(record.position(RECORD_HEADER_SIZE), version);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param position position of the entity in id order
+     */
+    long idAt(int position) {
+        return this.buffer.getLong(this.indexOffset + position * INDEX_ENTRY_SIZE);
+    }
+
+    /**
+     * @param position position of the entity in id order
+     * @return independent view of the whole record of the entity
+     */
+    ByteBuffer recordAt(int position) {
+        int offset = (int) this.buffer.getLong(this.indexOffset + position * INDEX_ENTRY_SIZE + Long.BYTES);
+        int length = this.buffer.getInt(offset + 2 * Long.BYTES);
+        return this.buffer.slice(offset, RECORD_HEADER_SIZE + length);
+    }
+
+    void delete() {
+        try {
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.path.toString(), e);
+        }
+    }
+
+    /**
+     * Writes a new run, the entities must be added in strictly ascending id order
+     */
+    static final class Writer<T extends Model> {
+        private final Path path;
+        private final EntityCodec<T> codec;
+        private final DataOutputStream out;
+        private final BloomFilter filter;
+        private final ByteArrayOutputStream entityBytes = new ByteArrayOutputStream(256);
+        private long[] ids;
+        private long[] offsets;
+        private int count;
+        private long position;
+
+        /**
+         * @param expectedCount number of entities that will be added, sizes the Bloom filter
+         */
+        Writer(Path path, EntityCodec<T> codec, int expectedCount) {
+            this.path = path;
+            this.codec = codec;
+            this.filter = new BloomFilter(expectedCount);
+            this.ids = new long[Math.max(16, expectedCount)];
+            this.offsets = new long[this.ids.length];
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                        path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+                )));
+            } catch (IOException e) {
+                throw new DataFileWriteException(path.toString(), e);
+            }
+        }
+
+        void add(T entity) {
+            try {
+                this.entityBytes.reset();
+                this.codec.write(entity, new DataOutputStream(this.entityBytes));
+                addIndexEntry(entity.getId());
+                this.out.writeLong(entity.getId());
+                this.out.writeLong(entity.getVersion());
+                this.out.writeInt(this.entityBytes.size());
+                this.entityBytes.writeTo(this.out);
+                this.position += RECORD_HEADER_SIZE + this.entityBytes.size();
+            } catch (IOException e) {
+                throw new DataFileWriteException(this.path.toString(), e);
+            }
+        }
+
+        /**
+         * Copies a record of another run as it is, without decoding the entity
+         */
+        void addRecord(ByteBuffer record) {
+            try {
+                addIndexEntry(record.getLong(0));
+                byte[] bytes = new byte[record.remaining()];
+                record.get(0, bytes);
+                this.out.write(bytes);
+                this.position += bytes.length;
+            } catch (IOException e) {
+                throw new DataFileWriteException(this.path.toString(), e);
+            }
+        }
+
+        private void addIndexEntry(long id) {
+            if (this.count == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, this.count * 2);
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+            }
+            this.ids[this.count] = id;
+            this.offsets[this.count] = this.position;
+            this.count++;
+            this.filter.add(id);
+        }
+
+        /**
+         * Writes the index and closes the file
+         *
+         * @return the run, mapped for reading
+         */
+        ColdRun<T> finish() {
+            try (DataOutputStream output = this.out) {
+                long indexPosition = this.position;
+                for (int i = 0; i < this.count; i++) {
+                    output.writeLong(this.ids[i]);
+                    output.writeLong(this.offsets[i]);
+                }
+                output.writeLong(indexPosition);
+                output.writeInt(this.count);
+                if (indexPosition + (long) this.count * INDEX_ENTRY_SIZE + FOOTER_SIZE > Integer.MAX_VALUE) {
+                    throw new IOException("Run of " + this.count + " entities exceeds 2 GB");
+                }
+            } catch (IOException e) {
+                throw new DataFileWriteException(this.path.toString(), e);
+            }
+            return new ColdRun<>(this.path, this.codec, this.filter);
+        }
+    }
+}
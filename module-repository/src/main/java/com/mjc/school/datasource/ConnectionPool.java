@@ -0,0 +1,153 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DatabaseAccessException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size pool of JDBC connections, opened on first use and kept open until the pool is closed.
+ * <p>
+ * Each pooled connection caches the statements prepared on it by their SQL, so a statement is parsed once per
+ * connection rather than once per call. A connection is handed out to one caller at a time, which returns it by
+ * closing it; the transaction it left open is rolled back first.
+ */
+@Slf4j
+final class ConnectionPool implements AutoCloseable {
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idle = new LinkedBlockingQueue<>();
+    private final List<PooledConnection> opened = new ArrayList<>();
+    private volatile boolean closed;
+
+    ConnectionPool(String url, String user, String password, int size) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Waits for a free connection, or opens a new one while the pool is not full
+     */
+    PooledConnection borrow() {
+        try {
+            if (this.closed || !this.permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new DatabaseAccessException("getting a connection", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseAccessException("getting a connection", e);
+        }
+
+        PooledConnection connection = this.idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        try {
+            connection = new PooledConnection(DriverManager.getConnection(this.url, this.user, this.password));
+        } catch (SQLException e) {
+            this.permits.release();
+            throw new DatabaseAccessException("opening a connection", e);
+        }
+        synchronized (this.opened) {
+            this.opened.add(connection);
+        }
+        return connection;
+    }
+
+    private void release(PooledConnection connection) {
+        if (this.closed) {
+            discard(connection);
+            this.permits.release();
+            return;
+        }
+        try {
+            if (!connection.connection.getAutoCommit()) {
+                connection.connection.rollback();
+                connection.connection.setAutoCommit(true);
+            }
+            this.idle.add(connection);
+        } catch (SQLException e) {
+            log.warn("Dropping a broken connection to {}", this.url, e);
+            discard(connection);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        synchronized (this.opened) {
+            this.opened.remove(connection);
+        }
+        try {
+            connection.connection.close();
+        } catch (SQLException e) {
+            log.warn("Closing a connection to {} failed", this.url, e);
+        }
+    }
+
+    /**
+     * Closes all the connections, those still borrowed included
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        List<PooledConnection> connections;
+        synchronized (this.opened) {
+            connections = new ArrayList<>(this.opened);
+        }
+        connections.forEach(this::discard);
+        this.idle.clear();
+    }
+
+    final class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        Connection connection() {
+            return this.connection;
+        }
+
+        /**
+         * @return the cached statement of the SQL, with its parameters cleared
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = this.statements.get(sql);
+            if (statement == null) {
+                statement = this.connection.prepareStatement(sql);
+                this.statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Returns the connection to the pool
+         */
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.mjc.school.datasource;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mjc.school.exception.DataFileNotFoundException;
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.model.Model;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the entities of a data file one by one and hands each of them to a consumer as soon as it is parsed, so the
+ * file is never held in memory as a whole.
+ * <p>
+ * A file may hold a JSON array of entities or a sequence of JSON objects, one per line (NDJSON), and may be gzip
+ * compressed, which is recognized by its first bytes. An uncompressed {@code .ndjson} file larger than one chunk is
+ * split into chunks of whole lines that are parsed in parallel. The consumer still receives the entities in file
+ * order, and only a few chunks per thread are in memory at any time.
+ */
+final class DataFileReader<T extends Model> {
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+
+    private final ObjectReader reader;
+    private final int parallelism;
+    private final int chunkSize;
+
+    DataFileReader(Class<T> entityClass, int parallelism, int chunkSize) {
+        this.reader = new ObjectMapper().findAndRegisterModules().readerFor(entityClass);
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Streams a data file into the consumer. The file is taken from {@value DataSourceProperties#DATA_DIR} when it is
+     * configured, where an NDJSON or gzip compressed variant of it is also accepted, and from the classpath otherwise.
+     */
+    static <T extends Model> void load(
+            String dataFileName, Class<T> entityClass, DataSourceProperties properties, Consumer<T> consumer
+    ) {
+        DataFileReader<T> reader = new DataFileReader<>(entityClass, properties.loadParallelism(), DEFAULT_CHUNK_SIZE);
+        Optional<Path> directory = properties.dataDirectory();
+        if (directory.isEmpty()) {
+            reader.read(dataFileName, consumer);
+            return;
+        }
+
+        int extension = dataFileName.lastIndexOf('.');
+        String baseName = extension < 0 ? dataFileName : dataFileName.substring(0, extension);
+        Path file = Stream.of(dataFileName, baseName + ".ndjson", dataFileName + ".gz", baseName + ".ndjson.gz")
+                .map(directory.get()::resolve)
+                .filter(Files::exists)
+                .findFirst()
+                .orElseThrow(() -> new DataFileNotFoundException(directory.get().resolve(dataFileName).toString()));
+        reader.read(file, consumer);
+    }
+
+    /**
+     * Reads a data file from the classpath.
+     */
+    void read(String resourceName, Consumer<T> consumer) {
+        InputStream resource = DataFileReader.class.getClassLoader().getResourceAsStream(resourceName);
+        if (resource == null) {
+            throw new DataFileNotFoundException(resourceName);
+        }
+        try (InputStream in = resource) {
+            read(in, consumer);
+        } catch (IOException e) {
+            throw new DataFileReadException(resourceName, e);
+        }
+    }
+
+    void read(Path file, Consumer<T> consumer) {
+        if (!Files.exists(file)) {
+            throw new DataFileNotFoundException(file.toString());
+        }
+        try {
+            if (this.parallelism > 1
+                    && file.getFileName().toString().endsWith(".ndjson")
+                    && Files.size(file) > this.chunkSize) {
+                readChunksInParallel(file, consumer);
+            } else {
+                try (InputStream in = Files.newInputStream(file)) {
+                    read(in, consumer);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataFileReadException(file.toString(), e);
+        }
+    }
+
+    private void read(InputStream source, Consumer<T> consumer) throws IOException {
+        InputStream in = new BufferedInputStream(source, BUFFER_SIZE);
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        if (magic == GZIP_MAGIC) {
+            in = new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+        }
+
+        try (JsonParser parser = this.reader.createParser(in)) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                return;
+            }
+            if (first == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    consumer.accept(this.reader.readValue(parser));
+                }
+                return;
+            }
+            try (MappingIterator<T> items = this.reader.readValues(parser)) {
+                while (items.hasNextValue()) {
+                    consumer.accept(items.nextValue());
+                }
+            }
+        }
+    }
+
+    private void readChunksInParallel(Path file, Consumer<T> consumer) throws IOException {
+        long size = Files.size(file);
+        ExecutorService executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "data-file-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<List<T>>> inFlight = new ArrayDeque<>();
+        try {
+            for (long start = 0; start < size; start += this.chunkSize) {
+                long chunkStart = start;
+                long chunkEnd = Math.min(size, start + this.chunkSize);
+                inFlight.addLast(executor.submit(() -> readChunk(file, chunkStart, chunkEnd)));
+                if (inFlight.size() >= this.parallelism * CHUNKS_IN_FLIGHT_PER_THREAD) {
+                    inFlight.removeFirst().get().forEach(consumer);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.removeFirst().get().forEach(consumer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof UncheckedIOException cause
+                    ? cause.getCause()
+                    : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the lines that start within {@code [start, end)}. A line that started in the previous chunk belongs to
+     * that chunk even if it ends in this one.
+     */
+    private List<T> readChunk(Path file, long start, long end) {
+        List<T> items = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            LineScanner lines = new LineScanner(channel, Math.max(0, start - 1));
+            long lineStart = start;
+            if (start > 0) {
+                lines.next();
+                lineStart = lines.position();
+            }
+            while (lineStart < end && lines.next()) {
+                if (!lines.isBlank()) {
+                    items.add(this.reader.readValue(lines.bytes(), 0, lines.length()));
+                }
+                lineStart = lines.position();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return items;
+    }
+
+    private static final class LineScanner {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private byte[] line = new byte[1024];
+        private int length;
+        private long position;
+
+        private LineScanner(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.position = position;
+            channel.position(position);
+            this.buffer.flip();
+        }
+
+        /**
+         * Reads the next line without its line feed.
+         *
+         * @return false if the end of the file was reached before any byte of a line
+         */
+        private boolean next() throws IOException {
+            this.length = 0;
+            boolean any = false;
+            while (true) {
+                if (!this.buffer.hasRemaining()) {
+                    this.buffer.clear();
+                    int read = this.channel.read(this.buffer);
+                    this.buffer.flip();
+                    if (read <= 0) {
+                        return any;
+                    }
+                }
+                any = true;
+                byte b = this.buffer.get();
+                this.position++;
+                if (b == '\n') {
+                    return true;
+                }
+                if (this.length == this.line.length) {
+                    this.line = Arrays.copyOf(this.line, this.line.length * 2);
+                }
+                this.line[this.length++] = b;
+            }
+        }
+
+        private boolean isBlank() {
+            for (int i = 0; i < this.length; i++) {
+                if (!Character.isWhitespace(this.line[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private byte[] bytes() {
+            return this.line;
+        }
+
+        private int length() {
+            return this.length;
+        }
+
+        /**
+         * @return position of the byte after the last line read
+         */
+        private long position() {
+            return this.position;
+        }
+    }
+}
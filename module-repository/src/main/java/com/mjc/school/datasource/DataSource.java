@@ -1,11 +1,28 @@
 package com.mjc.school.datasource;
 
+import com.mjc.school.exception.ChangeEventsLostException;
 import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.EntityVersionConflictException;
 import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.exception.UnsupportedCapabilityException;
+import com.mjc.school.exception.VersionNotRetainedException;
 import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+import lombok.Getter;
 
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
 
 public interface DataSource <T extends Model> {
     T findById(Long id) throws KeyNullReferenceException, EntityNotFoundException;
@@ -18,8 +35,267 @@ public interface DataSource <T extends Model> {
      */
     List<T> findAll(long offset, long limit);
 
+    /**
+     * Same as {@link #findAll(long, long)}, the returned page and its total count are taken from one consistent
+     * state of the dataset
+     */
+    Page<T> findPage(long offset, long limit);
+
+    /**
+     * Same as {@link #findPage(long, long)} without a limit, the entities are read lazily while the stream is consumed
+     * instead of being collected into a list first
+     *
+     * @param offset number of entities to skip
+     */
+    PageStream<T> streamPage(long offset);
+
+    /**
+     * Keyset paging: the entities with an id greater than the given one, in ascending id order. Unlike an offset, the
+     * last id of a page stays a valid starting point when entities are added or deleted in between, and the next page
+     * is found in O(log n + limit).
+     *
+     * @param lastId last id of the previous page, 0 for the first page
+     * @param limit maximum number of entities to return, -1 means no limit
+     */
+    List<T> findAfter(long lastId, long limit);
+
+    /**
+     * Same as {@link #findPage(long, long)} for the entities whose secondary key has the given value, in the order they
+     * got that value. The secondary key of news is the author id.
+     *
+     * @throws UnsupportedOperationException if the entities of the data source have no secondary key
+     */
+    Page<T> findPageBySecondaryKey(long key, long offset, long limit);
+
+    /**
+     * Same as {@link #findPage(long, long)} for the entities whose timestamp is within the given range, ordered by that
+     * timestamp and then by id. Entities without a value of the timestamp are left out. The timestamps of news are
+     * "createDate" and "lastUpdateDate".
+     *
+     * @param from inclusive lower bound, null means no lower bound
+     * @param to exclusive upper bound, null means no upper bound
+     * @param descending whether the page is taken from the latest timestamp backwards
+     * @throws UnsupportedOperationException if the timestamp is not indexed by the data source
+     */
+    Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    );
+
+    /**
+     * Saves the entity with the next version: version 1 for a new entity, the version of the stored entity plus one
+     * otherwise. The version of the given entity is ignored.
+     *
+     * @return the saved entity with its id and version
+     */
     T save(T value) throws EntityNullReferenceException;
+
+    /**
+     * Saves the entity only if the stored entity with its id still has the expected version, i.e. nobody has saved it
+     * since the caller read it. The check and the save are one atomic step, which only excludes writers of the same
+     * entity: no lock on the whole data source is taken beyond what a plain {@link #save(Model)} takes.
+     *
+     * @return the saved entity with the next version
+     * @throws EntityNotFoundException if there is no entity with the id
+     * @throws EntityVersionConflictException if the stored entity has another version
+     */
+    T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException;
+
+    /**
+     * Saves the entities with a single acquisition of the write lock, ids of the new ones are assigned in the given
+     * order. The entities are checked before anything is written, so a null element leaves the dataset unchanged.
+     *
+     * @return the saved entities in the given order
+     */
+    List<T> saveAll(Collection<T> values) throws EntityNullReferenceException;
+
     boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException;
+
+    /**
+     * Deletes the entities with a single acquisition of the write lock. If any of the ids is not found nothing is
+     * deleted, an id given more than once is deleted once.
+     */
+    boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException;
+
     long count();
     boolean existsById(Long id) throws KeyNullReferenceException;
+
+    /**
+     * Callers that depend on an optional feature check it here before they use it, the methods of a feature the data
+     * source does not support throw {@link UnsupportedCapabilityException}
+     *
+     * @return the optional features the data source supports
+     */
+    default Set<Capability> capabilities() {
+        return EnumSet.noneOf(Capability.class);
+    }
+
+    /**
+     * Tombstones are kept for a configured time after the deletion and reclaimed in the background after that.
+     *
+     * @return the tombstone of the deleted entity with the id, empty if it exists, was never deleted or its tombstone
+     * was reclaimed
+     * @throws UnsupportedCapabilityException if the data source does not keep tombstones
+     */
+    default Optional<Tombstone> findTombstone(Long id) throws KeyNullReferenceException {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.TOMBSTONES);
+    }
+
+    /**
+     * @return version of the last committed change, 0 if nothing has changed since the data source was loaded
+     * @throws UnsupportedCapabilityException if the data source does not publish its changes
+     */
+    default long changeVersion() {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.CHANGES);
+    }
+
+    /**
+     * Subscribes to the changes committed after the given version, in the order they were committed. A subscriber that
+     * has to start from the current dataset takes {@link #changeVersion()} first and reads the dataset after that;
+     * changes it then receives may already be part of what it read, applying them again is harmless.
+     *
+     * @param version version of the last change the subscriber has seen
+     * @throws IllegalArgumentException if the version is negative or has not been committed yet
+     * @throws ChangeEventsLostException if the changes after the version are no longer buffered
+     * @throws UnsupportedCapabilityException if the data source does not publish its changes
+     */
+    default ChangeStream<T> changesAfter(long version) {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.CHANGES);
+    }
+
+    /**
+     * @return the version of the dataset, see {@link #changeVersion()}, that was current at the time
+     * @throws VersionNotRetainedException if the versions of that time are no longer kept
+     * @throws UnsupportedCapabilityException if the data source keeps no history of its entities
+     */
+    default long versionAt(Instant time) throws VersionNotRetainedException {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.HISTORY);
+    }
+
+    /**
+     * Same as {@link #findById(Long)} as of an earlier version of the dataset, see {@link #changeVersion()}. Writers
+     * are not held up by the read.
+     *
+     * @throws EntityNotFoundException if the entity did not exist at the version
+     * @throws VersionNotRetainedException if the version is older than the retained history
+     * @throws IllegalArgumentException if the version is negative or has not been committed yet
+     * @throws UnsupportedCapabilityException if the data source keeps no history of its entities
+     */
+    default T findById(Long id, long version)
+            throws KeyNullReferenceException, EntityNotFoundException, VersionNotRetainedException {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.HISTORY);
+    }
+
+    /**
+     * Same as {@link #findById(Long, long)} for a page of the entities in the order of {@link #findAll(long, long)}
+     */
+    default List<T> findAll(long offset, long limit, long version) throws VersionNotRetainedException {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.HISTORY);
+    }
+
+    /**
+     * Aggregation over a key column of the entities, e.g. the author id of news
+     *
+     * @return number of entities per value of the key, the entities without one are not counted
+     * @throws UnsupportedOperationException if the entities have no such column
+     * @throws UnsupportedCapabilityException if the data source does not scan columns
+     */
+    default Map<Long, Long> countByKey(String key) {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.COLUMN_SCANS);
+    }
+
+    /**
+     * Histogram of a timestamp column of the entities by day
+     *
+     * @param from first day to count, null for no lower bound
+     * @param to day after the last day to count, null for no upper bound
+     * @return number of entities per day in ascending order, the days without entities are left out
+     * @throws UnsupportedOperationException if the entities have no such column
+     * @throws UnsupportedCapabilityException if the data source does not scan columns
+     */
+    default SortedMap<LocalDate, Long> countByDay(String timestamp, LocalDate from, LocalDate to) {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.COLUMN_SCANS);
+    }
+
+    /**
+     * Case-insensitive scan of a text column of the entities for a substring, in the order of {@link #findAll()}
+     *
+     * @param limit maximum number of entities to return, -1 means all of them
+     * @return page of the entities containing the value and the number of all of them
+     * @throws UnsupportedOperationException if the entities have no such column
+     * @throws UnsupportedCapabilityException if the data source does not scan columns
+     */
+    default Page<T> findContaining(String text, String value, long offset, long limit) {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.COLUMN_SCANS);
+    }
+
+    /**
+     * Online backup: writes the entities of one version of the dataset to a binary file, see {@link #restore(Path)}.
+     * Writers are not held up while the file is written, their changes after that version are not part of it.
+     *
+     * @return number of entities written
+     * @throws UnsupportedCapabilityException if the data source cannot be backed up this way
+     */
+    default long backup(Path file) {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.BACKUP);
+    }
+
+    /**
+     * Replaces all the entities with the ones of a file written by {@link #backup(Path)}, versions included. The file
+     * is read and indexed before writers are held up, the replacement itself is one step.
+     *
+     * @return number of entities restored
+     * @throws com.mjc.school.exception.DataFileNotFoundException if there is no such file
+     * @throws UnsupportedCapabilityException if the data source cannot be restored this way
+     */
+    default long restore(Path file) {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.BACKUP);
+    }
+
+    /**
+     * @return sizes and hit counters of the heap and disk tiers
+     * @throws UnsupportedCapabilityException if the data source keeps all its entities in one tier
+     */
+    default TierStatistics tierStatistics() {
+        throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.TIERS);
+    }
+
+    /**
+     * Optional features of a data source, see {@link #capabilities()}
+     */
+    @Getter
+    enum Capability {
+        /**
+         * {@link #changeVersion()} and {@link #changesAfter(long)}
+         */
+        CHANGES("publishing its changes"),
+        /**
+         * {@link #findTombstone(Long)}
+         */
+        TOMBSTONES("tombstones"),
+        /**
+         * {@link #versionAt(Instant)} and the reads as of a version
+         */
+        HISTORY("reads of earlier versions"),
+        /**
+         * {@link #backup(Path)} and {@link #restore(Path)}
+         */
+        BACKUP("backups"),
+        /**
+         * {@link #countByKey(String)}, {@link #countByDay(String, LocalDate, LocalDate)} and
+         * {@link #findContaining(String, String, long, long)}
+         */
+        COLUMN_SCANS("column scans"),
+        /**
+         * {@link #tierStatistics()}
+         */
+        TIERS("tiers");
+
+        private final String description;
+
+        Capability(String description) {
+            this.description = description;
+        }
+    }
 }
@@ -1,20 +1,63 @@
 package com.mjc.school.datasource;
 
+import com.mjc.school.exception.DataSourceConfigurationException;
 import com.mjc.school.exception.UnsupportedEntityClassException;
 import com.mjc.school.model.AuthorModel;
 import com.mjc.school.model.Model;
 import com.mjc.school.model.NewsModel;
 
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives the data source of an entity class. The backend of each entity type is chosen with the
+ * {@code datasource.<entity>.backend} property, see {@link DataSourceProperties.Backend}. The writes of the data
+ * sources take the locks of their ids, so that they are serialized with the commits of {@link Transaction}s.
+ * <p>
+ * The same backend is always given as the same data source, so that whoever keeps state per data source, like a
+ * repository, keeps it once per backend.
+ */
 public class DataSourceFactory {
+    private static final Map<DataSource<?>, DataSource<?>> dataSources = new ConcurrentHashMap<>();
 
     private DataSourceFactory() {}
 
     @SuppressWarnings("unchecked")
     public static <T extends Model> DataSource<T> getDataSource(Class<T> entityClass) {
+        return (DataSource<T>) dataSources.computeIfAbsent(getBackend(entityClass), TransactionalDataSource::new);
+    }
+
+    /**
+     * @return directory of the online backups of the data sources, see {@link DataSource#backup(Path)}
+     */
+    public static Path getBackupDirectory() {
+        return DataSourceProperties.load().backupDirectory();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Model> DataSource<T> getBackend(Class<T> entityClass) {
+        DataSourceProperties properties = DataSourceProperties.load();
         if (entityClass == AuthorModel.class) {
-            return (DataSource<T>) AuthorDataSource.getInstance();
+            return (DataSource<T>) switch (properties.backend("author")) {
+                case MEMORY -> AuthorDataSource.getInstance();
+                case STRIPED -> AuthorStripedDataSource.getInstance();
+                case JDBC -> AuthorJdbcDataSource.getInstance();
+                case SEGMENT -> throw new DataSourceConfigurationException(
+                        String.format(DataSourceProperties.BACKEND_TEMPLATE, "author"), "segment"
+                );
+                case TIERED -> throw new DataSourceConfigurationException(
+                        String.format(DataSourceProperties.BACKEND_TEMPLATE, "author"), "tiered"
+                );
+            };
         } else if (entityClass == NewsModel.class) {
-            return (DataSource<T>) NewsDataSource.getInstance();
+            return (DataSource<T>) switch (properties.backend("news")) {
+                case MEMORY -> NewsDataSource.getInstance();
+                case SEGMENT -> NewsSegmentDataSource.getInstance();
+                case STRIPED -> NewsStripedDataSource.getInstance();
+                case JDBC -> NewsJdbcDataSource.getInstance();
+                case TIERED -> NewsTieredDataSource.getInstance();
+            };
         }
 
         throw new UnsupportedEntityClassException(entityClass);
@@ -1,60 +1,275 @@
 package com.mjc.school.datasource;
 
-import com.fasterxml.jackson.databind.JavaType;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mjc.school.exception.*;
 import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+import lombok.extern.slf4j.Slf4j;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Readers take the current {@link State} with a single volatile read and never lock. Writers are serialized by
+ * {@link #writeLock}, build the next state from the current one and publish it, so every read sees one consistent
+ * version of the dataset. Entities are immutable, the stored instances are handed to the callers as they are.
+ * <p>
+ * The state also holds the {@link EntityIndexes} of the entities, which are updated in the same step as the entities.
+ * <p>
+ * When {@value DataSourceProperties#WAL_DIR} is configured every mutation is also appended to a {@link WriteAheadLog},
+ * which is replayed on top of the data file at startup.
+ * <p>
+ * Ids of new entities come from an {@link IdAllocator} under the write lock, so they increase in the order of the
+ * commits. Its reservations are logged too, so a generated id is not reused after a restart.
+ * <p>
+ * Every committed change is published to the {@link ChangeLog} together with the new state, so subscribers see the
+ * changes in the order of the versions of the dataset. The changes replayed from the write-ahead log at startup are
+ * not published, the versions start from 0 with every start.
+ * <p>
+ * When {@value DataSourceProperties#SNAPSHOT_DIR} is configured the data source starts from its {@link SnapshotFile}
+ * if there is one, the data file is only read when there is no snapshot yet. Writing a snapshot rotates the
+ * write-ahead log and drops the part of it the snapshot covers.
+ * <p>
+ * A deleted entity leaves a {@link Tombstone} with the version of the deletion, so an entity saved again with the same
+ * id continues its versions. When {@value DataSourceProperties#COMPACTION_INTERVAL_MS} is not 0 a background compactor
+ * reclaims the tombstones older than {@value DataSourceProperties#TOMBSTONE_RETENTION_MS} and rebuilds the stores left
+ * sparse by deletions, so writers only ever leave holes behind. Tombstones are not part of a snapshot, the ones of the
+ * deletions replayed from the write-ahead log are dated at the replay.
+ * <p>
+ * When {@value DataSourceProperties#HISTORY_RETENTION_TEMPLATE} of the entity type is not 0 the entities replaced or
+ * deleted by the changes are kept in a {@link VersionHistory} for that time, so the dataset can be read as of an
+ * earlier version. Expired versions are dropped by the writers and the compactor.
+ * <p>
+ * Scans and aggregations read the {@link EntityColumns} of a state instead of its entities. The columns are built on
+ * the first scan after a state is published and kept until a scan finds a newer state, so the writers never build
+ * them and a scan after a write pays for one pass over the entities.
+ */
+@Slf4j
 class DataSourceImpl<T extends Model> implements DataSource<T> {
+    private static final int MIN_COMPACTION_HOLES = 64;
+    private static final int MAX_MISSED_COMPACTIONS = 3;
+
     private final Class<T> entityClass;
-    private final Map<Long, T> values = new LinkedHashMap<>();
-    private final ReadWriteLock entityLock = new ReentrantReadWriteLock();
-    private final AtomicLong nextId = new AtomicLong(1L);
+    private volatile State<T> state;
+    private final Lock writeLock = new ReentrantLock();
+    private final IdAllocator ids;
+    private final ChangeLog<T> changes;
+    private final VersionHistory<T> history;
+    private final EntityColumns<T> columnDefinition;
+    private final Lock columnsLock = new ReentrantLock();
+    private volatile ScannedState<T> scannedState;
+    private final EntityCodec<T> codec;
+    private final WriteAheadLog<T> writeAheadLog;
+    private final Path snapshotFile;
+    private final Lock snapshotLock = new ReentrantLock();
+    private final ScheduledExecutorService snapshotWriter;
+    private final long compactionIntervalMillis;
+    private final double compactionCpuBudget;
+    private final long tombstoneRetentionMillis;
+    private final Lock compactionLock = new ReentrantLock();
+    private final ScheduledExecutorService compactor;
+    private int missedCompactions;
 
-    protected DataSourceImpl(String dataFileName, Class<T> entityClass) {
-        this.entityClass = entityClass;
-        List<T> items = readDataFromFile(dataFileName, entityClass);
-        indexItems(items);
+    protected DataSourceImpl(String dataFileName, Class<T> entityClass, EntityCodec<T> codec) {
+        this(dataFileName, entityClass, codec, EntityIndexes.none(), DataSourceProperties.load());
     }
 
-    private void indexItems(List<T> items) {
-        entityLock.writeLock().lock();
-        try {
-            for (T item: items) {
-                this.values.put(item.getId(), item);
-                if (item.getId() >= nextId.get()) {
-                    setNextId(item.getId() + 1);
-                }
-            }
-        } finally {
-            entityLock.writeLock().unlock();
+    /**
+     * @param indexes definition of the indexed fields of the entities, see {@link EntityIndexes#none()}
+     */
+    protected DataSourceImpl(
+            String dataFileName, Class<T> entityClass, EntityCodec<T> codec, EntityIndexes<T> indexes
+    ) {
+        this(dataFileName, entityClass, codec, indexes, EntityColumns.none(), DataSourceProperties.load());
+    }
+
+    /**
+     * @param columns definition of the columns the entities are scanned by, see {@link EntityColumns#none()}
+     */
+    protected DataSourceImpl(
+            String dataFileName,
+            Class<T> entityClass,
+            EntityCodec<T> codec,
+            EntityIndexes<T> indexes,
+            EntityColumns<T> columns
+    ) {
+        this(dataFileName, entityClass, codec, indexes, columns, DataSourceProperties.load());
+    }
+
+    DataSourceImpl(String dataFileName, Class<T> entityClass, EntityCodec<T> codec, DataSourceProperties properties) {
+        this(dataFileName, entityClass, codec, EntityIndexes.none(), properties);
+    }
+
+    DataSourceImpl(
+            String dataFileName,
+            Class<T> entityClass,
+            EntityCodec<T> codec,
+            EntityIndexes<T> indexes,
+            DataSourceProperties properties
+    ) {
+        this(dataFileName, entityClass, codec, indexes, EntityColumns.none(), properties);
+    }
+
+    DataSourceImpl(
+            String dataFileName,
+            Class<T> entityClass,
+            EntityCodec<T> codec,
+            EntityIndexes<T> indexes,
+            EntityColumns<T> columns,
+            DataSourceProperties properties
+    ) {
+        this.entityClass = entityClass;
+        this.codec = codec;
+        this.columnDefinition = columns;
+        this.ids = new IdAllocator(properties.idBlockSize());
+        this.changes = new ChangeLog<>(properties.changesCapacity());
+        String baseName = baseName(dataFileName);
+        long historyRetentionMillis = properties.historyRetentionMillis(baseName);
+        this.history = historyRetentionMillis > 0
+                ? new VersionHistory<>(historyRetentionMillis, properties.historyMaxVersions(), 0)
+                : null;
+        this.compactionIntervalMillis = properties.compactionIntervalMillis();
+        this.compactionCpuBudget = properties.compactionCpuBudget();
+        this.tombstoneRetentionMillis = this.compactionIntervalMillis > 0 ? properties.tombstoneRetentionMillis() : 0;
+
+        this.snapshotFile = properties.snapshotDirectory()
+                .map(directory -> directory.resolve(baseName + ".snapshot"))
+                .orElse(null);
+        LongTrieStore.Builder<T> builder = LongTrieStore.builder();
+        boolean snapshotLoaded = this.snapshotFile != null
+                && SnapshotFile.read(this.snapshotFile, entityClass, codec, item -> indexItem(builder, item));
+        if (!snapshotLoaded) {
+            DataFileReader.load(dataFileName, entityClass, properties, item -> indexItem(builder, item));
         }
+        LongTrieStore<T> values = builder.build();
+        this.state = new State<>(values, indexes.rebuild(values.values()), LongTrieStore.empty());
+
+        this.writeAheadLog = properties.walDirectory()
+                .map(directory -> openLog(directory.resolve(baseName + ".wal"), properties))
+                .orElse(null);
+        if (this.writeAheadLog != null) {
+            this.ids.onReservation(this.writeAheadLog::appendReserve);
+        }
+        if (this.history != null) {
+            this.history.addValues(0, this.state.values);
+        }
+        this.snapshotWriter = startSnapshotWriter(properties.snapshotIntervalMillis(), baseName);
+        this.compactor = startCompactor(baseName);
+    }
+
+    private void indexItem(LongTrieStore.Builder<T> builder, T item) {
+        builder.put(item.getId(), item);
+        ids.observe(item.getId());
     }
 
-    private List<T> readDataFromFile(String dataFileName, Class<T> entityClass) {
-        ClassLoader classLoader = AuthorDataSource.class.getClassLoader();
+    private WriteAheadLog<T> openLog(Path file, DataSourceProperties properties) {
+        WriteAheadLog<T> openedLog = new WriteAheadLog<>(
+                file, this.entityClass, properties.walFsyncPolicy(), properties.walFsyncIntervalMillis()
+        );
+        openedLog.replay(new WriteAheadLog.Replayer<>() {
+            @Override
+            public void put(T entity) {
+                state = state.put(entity);
+                ids.observe(entity.getId());
+            }
+
+            @Override
+            public void reserve(long highWaterMark) {
+                ids.observe(highWaterMark - 1);
+            }
+
+            @Override
+            public void delete(long id) {
+                state = remove(state, id);
+            }
+        });
+        return openedLog;
+    }
 
-        try (InputStream is = classLoader.getResourceAsStream(dataFileName)) {
-            if (is == null) {
-                throw new DataFileNotFoundException(dataFileName);
+    private ScheduledExecutorService startSnapshotWriter(long intervalMillis, String baseName) {
+        if (this.snapshotFile == null || intervalMillis <= 0) {
+            return null;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer-" + baseName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot();
+            } catch (RuntimeException e) {
+                log.error("Writing the snapshot of {} failed", baseName, e);
             }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return executor;
+    }
 
-            ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
-            JavaType mapperType = mapper.getTypeFactory().constructCollectionType(List.class, entityClass);
-            return mapper.readValue(is, mapperType);
-        } catch (IOException e) {
-            throw new DataFileReadException(dataFileName, e);
+    private ScheduledExecutorService startCompactor(String baseName) {
+        if (this.compactionIntervalMillis <= 0) {
+            return null;
         }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "compactor-" + baseName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.schedule(
+                () -> compactInBackground(executor, baseName), this.compactionIntervalMillis, TimeUnit.MILLISECONDS
+        );
+        return executor;
+    }
+
+    /**
+     * Runs a compaction and schedules the next one, later than the interval if this one used more than its share of
+     * the processor time
+     */
+    private void compactInBackground(ScheduledExecutorService executor, String baseName) {
+        long started = cpuTimeNanos();
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            log.error("Compaction of {} failed", baseName, e);
+        }
+        long spentMillis = TimeUnit.NANOSECONDS.toMillis(cpuTimeNanos() - started);
+        long delayMillis = Math.max(
+                this.compactionIntervalMillis, (long) (spentMillis / this.compactionCpuBudget) - spentMillis
+        );
+        try {
+            executor.schedule(() -> compactInBackground(executor, baseName), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private static long cpuTimeNanos() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static String baseName(String dataFileName) {
+        int extension = dataFileName.lastIndexOf('.');
+        return extension < 0 ? dataFileName : dataFileName.substring(0, extension);
     }
 
     @Override
@@ -63,46 +278,66 @@ class DataSourceImpl<T extends Model> implements DataSource<T> {
             throw new KeyNullReferenceException();
         }
 
-        entityLock.readLock().lock();
-        try {
-            T entity = this.values.get(id);
-            if (entity == null) {
-                throw new EntityNotFoundException(id, entityClass);
-            }
-            return cloneEntity(entity);
-        } finally {
-            entityLock.readLock().unlock();
+        T entity = this.state.values.get(id);
+        if (entity == null) {
+            throw new EntityNotFoundException(id, entityClass);
         }
+        return entity;
     }
 
     @Override
     public List<T> findAll() {
-        entityLock.readLock().lock();
-        try {
-            return this.values.values().stream()
-                    .map(this::cloneEntity)
-                    .toList();
-        } finally {
-            entityLock.readLock().unlock();
-        }
+        return this.state.values.values();
     }
 
     @Override
     public List<T> findAll(long offset, long limit) {
-        if (offset < this.values.size()) {
-            entityLock.readLock().lock();
-            try {
-                return this.values.values().stream()
-                        .skip(offset)
-                        .limit(limit == -1 ? values.size() : limit)
-                        .map(this::cloneEntity)
-                        .toList();
-            } finally {
-                entityLock.readLock().unlock();
-            }
-        } else {
-            return Collections.emptyList();
+        return this.state.values.values(offset, limit);
+    }
+
+    @Override
+    public Page<T> findPage(long offset, long limit) {
+        LongTrieStore<T> snapshot = this.state.values;
+        return new Page<>(snapshot.values(offset, limit), snapshot.size());
+    }
+
+    @Override
+    public PageStream<T> streamPage(long offset) {
+        LongTrieStore<T> snapshot = this.state.values;
+        return new PageStream<>(snapshot.stream(offset), snapshot.size());
+    }
+
+    @Override
+    public List<T> findAfter(long lastId, long limit) {
+        State<T> snapshot = this.state;
+        return snapshot.lookUp(snapshot.indexes.idsAfter(lastId, limit));
+    }
+
+    @Override
+    public Page<T> findPageBySecondaryKey(long key, long offset, long limit) {
+        State<T> snapshot = this.state;
+        if (!snapshot.indexes.hasSecondaryKey()) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no secondary key");
+        }
+
+        SecondaryIndex index = snapshot.indexes.secondaryIndex();
+        return new Page<>(snapshot.lookUp(index.ids(key, offset, limit)), index.count(key));
+    }
+
+    @Override
+    public Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        State<T> snapshot = this.state;
+        SortedIndex index = snapshot.indexes.sortedIndex(timestamp);
+        if (index == null) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no index of " + timestamp);
         }
+
+        long fromKey = from == null ? Long.MIN_VALUE : SortedIndex.timeKey(from);
+        long toKey = to == null ? Long.MAX_VALUE : SortedIndex.timeKey(to);
+        List<Long> ids = index.ids(fromKey, toKey, descending, offset, limit);
+        return new Page<>(snapshot.lookUp(ids), index.count(fromKey, toKey));
     }
 
     @Override
@@ -111,22 +346,113 @@ class DataSourceImpl<T extends Model> implements DataSource<T> {
             throw new EntityNullReferenceException();
         }
 
-        if (value.getId() == null || value.getId() == 0) {
-            value.setId(getNextId());
-        } else if (value.getId() >= this.nextId.get()) {
-            setNextId(value.getId() + 1);
+        boolean generateId = value.getId() == null || value.getId() == 0;
+        T entityToSave;
+        long logPosition;
+        writeLock.lock();
+        try {
+            long id = generateId ? this.ids.next() : value.getId();
+            if (!generateId) {
+                this.ids.observe(id);
+            }
+            entityToSave = Versions.nextAfter(this.state.versionOf(id), generateId ? value.withId(id) : value);
+            logPosition = this.writeAheadLog == null ? 0 : this.writeAheadLog.appendPut(entityToSave);
+            long committedAtMillis = remember(id, this.state.values.get(id));
+            this.state = this.state.put(entityToSave);
+            rememberValues(1);
+            this.changes.publish(ChangeEvent.Type.SAVE, List.of(entityToSave));
+            expireHistory(committedAtMillis);
+        } finally {
+            writeLock.unlock();
         }
+        awaitDurable(logPosition);
 
-        T entityToSave = cloneEntity(value);
+        return entityToSave;
+    }
 
-        entityLock.writeLock().lock();
+    /**
+     * The version is checked once without the lock, so a caller that is already behind fails without waiting for the
+     * writers, and once more under the write lock every save takes anyway. That lock is not dropped for a
+     * compare-and-set on the state alone: the write-ahead log, the change log and the history need the saves in one
+     * order. A backend whose writers of different entities do not wait for each other is {@link StripedDataSource}.
+     */
+    @Override
+    public T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+        if (value.getId() == null) {
+            throw new KeyNullReferenceException();
+        }
+        long id = value.getId();
+        Versions.check(this.state.values.get(id), value, expectedVersion);
+
+        T entityToSave;
+        long logPosition;
+        writeLock.lock();
         try {
-            this.values.put(entityToSave.getId(), entityToSave);
+            T previous = this.state.values.get(id);
+            Versions.check(previous, value, expectedVersion);
+            entityToSave = Versions.next(previous, value);
+            logPosition = this.writeAheadLog == null ? 0 : this.writeAheadLog.appendPut(entityToSave);
+            long committedAtMillis = remember(id, previous);
+            this.state = this.state.put(entityToSave);
+            rememberValues(1);
+            this.changes.publish(ChangeEvent.Type.SAVE, List.of(entityToSave));
+            expireHistory(committedAtMillis);
         } finally {
-            entityLock.writeLock().unlock();
+            writeLock.unlock();
         }
+        awaitDurable(logPosition);
 
-        return value;
+        return entityToSave;
+    }
+
+    /**
+     * The new entities get consecutive ids in their order. All the entities are published in one version of the
+     * dataset and logged as one record of the write-ahead log, so after a crash either all or none of them are replayed.
+     */
+    @Override
+    public List<T> saveAll(Collection<T> values) throws EntityNullReferenceException {
+        if (values == null || values.stream().anyMatch(Objects::isNull)) {
+            throw new EntityNullReferenceException();
+        }
+
+        List<T> entitiesToSave = new ArrayList<>(values.size());
+        long logPosition;
+        writeLock.lock();
+        try {
+            State<T> next = this.state;
+            List<T> replaced = new ArrayList<>(values.size());
+            for (T value : values) {
+                T entity = value;
+                if (value.getId() == null || value.getId() == 0) {
+                    entity = value.withId(this.ids.next());
+                } else {
+                    this.ids.observe(value.getId());
+                }
+                entity = Versions.nextAfter(next.versionOf(entity.getId()), entity);
+                entitiesToSave.add(entity);
+                replaced.add(next.values.get(entity.getId()));
+                next = next.put(entity);
+            }
+            logPosition = this.writeAheadLog == null ? 0 : this.writeAheadLog.appendBatch(entitiesToSave, List.of());
+            long committedAtMillis = System.currentTimeMillis();
+            for (int i = 0; i < entitiesToSave.size(); i++) {
+                remember(i + 1, entitiesToSave.get(i).getId(), replaced.get(i), committedAtMillis);
+            }
+            this.state = next;
+            rememberValues(entitiesToSave.size());
+            this.changes.publish(ChangeEvent.Type.SAVE, entitiesToSave);
+            expireHistory(committedAtMillis);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(logPosition);
+
+        return entitiesToSave;
     }
 
     @Override
@@ -135,26 +461,71 @@ class DataSourceImpl<T extends Model> implements DataSource<T> {
             throw new KeyNullReferenceException();
         }
 
-        entityLock.writeLock().lock();
+        long logPosition;
+        writeLock.lock();
         try {
-            if (this.values.containsKey(id)) {
-                return this.values.remove(id) != null;
-            } else {
+            State<T> current = this.state;
+            T previous = current.values.get(id);
+            if (previous == null) {
                 throw new EntityNotFoundException(id, entityClass);
             }
+            logPosition = this.writeAheadLog == null ? 0 : this.writeAheadLog.appendDelete(id);
+            long committedAtMillis = remember(id, previous);
+            this.state = remove(current, id);
+            rememberValues(1);
+            this.changes.publish(ChangeEvent.Type.DELETE, List.of(previous));
+            expireHistory(committedAtMillis);
         } finally {
-            entityLock.writeLock().unlock();
+            writeLock.unlock();
         }
+        awaitDurable(logPosition);
+
+        return true;
     }
 
+    /**
+     * Same as {@link #saveAll(Collection)}, the deletions are published and logged together.
+     */
     @Override
-    public long count() {
-        entityLock.readLock().lock();
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new KeyNullReferenceException();
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        List<T> deleted = new ArrayList<>(distinctIds.size());
+        long logPosition;
+        writeLock.lock();
         try {
-            return this.values.size();
+            State<T> next = this.state;
+            for (Long id : distinctIds) {
+                T previous = next.values.get(id);
+                if (previous == null) {
+                    throw new EntityNotFoundException(id, entityClass);
+                }
+                deleted.add(previous);
+                next = remove(next, id);
+            }
+            logPosition = this.writeAheadLog == null ? 0 : this.writeAheadLog.appendBatch(List.of(), distinctIds);
+            long committedAtMillis = System.currentTimeMillis();
+            for (int i = 0; i < deleted.size(); i++) {
+                remember(i + 1, deleted.get(i).getId(), deleted.get(i), committedAtMillis);
+            }
+            this.state = next;
+            rememberValues(deleted.size());
+            this.changes.publish(ChangeEvent.Type.DELETE, deleted);
+            expireHistory(committedAtMillis);
         } finally {
-            entityLock.readLock().unlock();
+            writeLock.unlock();
         }
+        awaitDurable(logPosition);
+
+        return true;
+    }
+
+    @Override
+    public long count() {
+        return this.state.values.size();
     }
 
     @Override
@@ -162,18 +533,485 @@ class DataSourceImpl<T extends Model> implements DataSource<T> {
         if (id == null) {
             throw new KeyNullReferenceException();
         }
-        return this.values.containsKey(id);
+        return this.state.values.containsKey(id);
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        Set<Capability> capabilities = EnumSet.of(Capability.CHANGES, Capability.TOMBSTONES, Capability.BACKUP);
+        if (this.history != null) {
+            capabilities.add(Capability.HISTORY);
+        }
+        if (this.columnDefinition.hasColumns()) {
+            capabilities.add(Capability.COLUMN_SCANS);
+        }
+        return capabilities;
+    }
+
+    @Override
+    public Optional<Tombstone> findTombstone(Long id) throws KeyNullReferenceException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        return Optional.ofNullable(this.state.tombstones.get(id));
+    }
+
+    @Override
+    public long changeVersion() {
+        return this.changes.lastVersion();
+    }
+
+    @Override
+    public ChangeStream<T> changesAfter(long version) {
+        return this.changes.streamAfter(version);
+    }
+
+    @Override
+    public long versionAt(Instant time) throws VersionNotRetainedException {
+        if (this.history == null) {
+            throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.HISTORY);
+        }
+        return this.history.versionAt(time, this.changes.lastVersion());
+    }
+
+    @Override
+    public T findById(Long id, long version)
+            throws KeyNullReferenceException, EntityNotFoundException, VersionNotRetainedException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        VersionHistory<T> versions = history(version);
+        T entity = versions.find(id, version, this.state.values.get(id));
+        if (entity == null) {
+            throw new EntityNotFoundException(id, entityClass);
+        }
+        return entity;
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit, long version) throws VersionNotRetainedException {
+        return history(version).valuesAt(version).values(offset, limit);
+    }
+
+    /**
+     * The version is checked against the last published one before the state is read, so the state is at least as
+     * new as the version
+     */
+    private VersionHistory<T> history(long version) {
+        if (this.history == null) {
+            throw new UnsupportedCapabilityException(getClass().getSimpleName(), Capability.HISTORY);
+        }
+        long lastVersion = this.changes.lastVersion();
+        if (version < 0 || version > lastVersion) {
+            throw new IllegalArgumentException(
+                    "Version " + version + " is not between 0 and the last version " + lastVersion
+            );
+        }
+        return this.history;
+    }
+
+    @Override
+    public Map<Long, Long> countByKey(String key) {
+        if (!this.columnDefinition.hasKey(key)) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no key column " + key);
+        }
+        return scannedState().columns().countByKey(key);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> countByDay(String timestamp, LocalDate from, LocalDate to) {
+        if (!this.columnDefinition.hasTimestamp(timestamp)) {
+            throw new UnsupportedOperationException(
+                    entityClass.getSimpleName() + " has no timestamp column " + timestamp
+            );
+        }
+        return scannedState().columns().countByDay(timestamp, from, to);
+    }
+
+    @Override
+    public Page<T> findContaining(String text, String value, long offset, long limit) {
+        if (!this.columnDefinition.hasText(text)) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no text column " + text);
+        }
+        ScannedState<T> scanned = scannedState();
+        int[] rows = scanned.columns().rowsContaining(text, value);
+        long start = Math.min(Math.max(offset, 0), rows.length);
+        long end = limit < 0 ? rows.length : Math.min(rows.length, start + limit);
+        List<T> items = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            items.add(scanned.state().values.get(scanned.columns().id(rows[(int) i])));
+        }
+        return new Page<>(items, rows.length);
+    }
+
+    /**
+     * @return the current state with its columns, built by one scanning thread while the others wait for it
+     */
+    private ScannedState<T> scannedState() {
+        ScannedState<T> scanned = this.scannedState;
+        if (scanned != null && scanned.state() == this.state) {
+            return scanned;
+        }
+        columnsLock.lock();
+        try {
+            State<T> current = this.state;
+            scanned = this.scannedState;
+            if (scanned == null || scanned.state() != current) {
+                scanned = new ScannedState<>(current, this.columnDefinition.rebuild(current.values.values()));
+                this.scannedState = scanned;
+            }
+            return scanned;
+        } finally {
+            columnsLock.unlock();
+        }
+    }
+
+    /**
+     * The state is taken with a single volatile read like any other read, the file is written from it without locking.
+     */
+    @Override
+    public long backup(Path file) {
+        LongTrieStore<T> snapshot = this.state.values;
+        SnapshotFile.write(file, this.entityClass, snapshot.values(), this.codec);
+        return snapshot.size();
+    }
+
+    /**
+     * The file is read and indexed before the write lock is taken. Under the lock only the differences to the current
+     * state are logged and published: the entities that are not in the file are deleted, the ones that differ from the
+     * current ones are saved with the versions of the file.
+     */
+    @Override
+    public long restore(Path file) {
+        LongTrieStore.Builder<T> builder = LongTrieStore.builder();
+        if (!SnapshotFile.read(file, this.entityClass, this.codec, item -> indexItem(builder, item))) {
+            throw new DataFileNotFoundException(file.toString());
+        }
+        LongTrieStore<T> values = builder.build();
+        EntityIndexes<T> indexes = this.state.indexes.rebuild(values.values());
+
+        long logPosition;
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            List<T> saved = new ArrayList<>();
+            List<T> replaced = new ArrayList<>();
+            for (T entity : values.values()) {
+                T previous = current.values.get(entity.getId());
+                if (previous == null || previous.getVersion() != entity.getVersion() || !previous.equals(entity)) {
+                    saved.add(entity);
+                    replaced.add(previous);
+                }
+            }
+            List<T> deleted = current.values.values().stream()
+                    .filter(entity -> !values.containsKey(entity.getId()))
+                    .toList();
+            List<Long> deletedIds = deleted.stream().map(Model::getId).toList();
+
+            logPosition = this.writeAheadLog == null ? 0 : this.writeAheadLog.appendBatch(saved, deletedIds);
+            long committedAtMillis = System.currentTimeMillis();
+            for (int i = 0; i < deleted.size(); i++) {
+                remember(i + 1, deleted.get(i).getId(), deleted.get(i), committedAtMillis);
+            }
+            for (int i = 0; i < saved.size(); i++) {
+                remember(deleted.size() + i + 1, saved.get(i).getId(), replaced.get(i), committedAtMillis);
+            }
+            Long deletedAtMillis = this.tombstoneRetentionMillis > 0 ? committedAtMillis : null;
+            this.state = current.replace(values, indexes, deleted, deletedAtMillis);
+            rememberValues(deleted.size() + saved.size());
+            // one version per change, the deletions first as they were remembered
+            this.changes.publish(ChangeEvent.Type.DELETE, deleted);
+            this.changes.publish(ChangeEvent.Type.SAVE, saved);
+            expireHistory(committedAtMillis);
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(logPosition);
+
+        return values.size();
+    }
+
+    /**
+     * Writes the current version of the dataset to the snapshot file and drops the write-ahead log records it covers.
+     * Writers are blocked only while the version is taken and the log is rotated, not while the file is written.
+     */
+    void writeSnapshot() {
+        if (this.snapshotFile == null) {
+            return;
+        }
+
+        snapshotLock.lock();
+        try {
+            LongTrieStore<T> snapshot;
+            long sealedSegment = -1;
+            writeLock.lock();
+            try {
+                snapshot = this.state.values;
+                if (this.writeAheadLog != null) {
+                    sealedSegment = this.writeAheadLog.rotate();
+                    // the snapshot does not hold the high-water mark, the new segment starts with it
+                    this.writeAheadLog.appendReserve(this.ids.highWaterMark());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+
+            SnapshotFile.write(this.snapshotFile, this.entityClass, snapshot.values(), this.codec);
+            if (this.writeAheadLog != null) {
+                this.writeAheadLog.deleteSealedSegments(sealedSegment);
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Reclaims the expired tombstones and rebuilds the stores of the entities and tombstones once they have more holes
+     * than live entries. A store is rebuilt from one version without the write lock and published only if no writer
+     * changed the dataset in the meantime. After {@value #MAX_MISSED_COMPACTIONS} misses in a row it is rebuilt under
+     * the write lock instead. Readers are never blocked, a reader keeps the version it took.
+     */
+    void compact() {
+        compactionLock.lock();
+        try {
+            reclaimTombstones();
+            rebuildSparseStores();
+            if (this.history != null) {
+                writeLock.lock();
+                try {
+                    this.history.expire(System.currentTimeMillis());
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        } finally {
+            compactionLock.unlock();
+        }
     }
 
-    private Long getNextId() {
-        return this.nextId.incrementAndGet();
+    /**
+     * The tombstones are in the order of the deletions, so only the expired ones at the front are read
+     */
+    private void reclaimTombstones() {
+        long expiredBefore = System.currentTimeMillis() - this.tombstoneRetentionMillis;
+        List<Tombstone> expired = this.state.tombstones.stream(0)
+                .takeWhile(tombstone -> tombstone.deletedAtMillis() <= expiredBefore)
+                .toList();
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            LongTrieStore<Tombstone> tombstones = current.tombstones;
+            for (Tombstone tombstone : expired) {
+                // an entity saved and deleted again in the meantime has a newer tombstone
+                if (tombstones.get(tombstone.id()) == tombstone) {
+                    tombstones = tombstones.removeLeavingHole(tombstone.id());
+                }
+            }
+            this.state = new State<>(current.values, current.indexes, tombstones);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
-    private void setNextId(Long value) {
-        this.nextId.set(value);
+    private void rebuildSparseStores() {
+        State<T> snapshot = this.state;
+        if (!isSparse(snapshot.values) && !isSparse(snapshot.tombstones)) {
+            return;
+        }
+        State<T> rebuilt = snapshot.compacted();
+
+        writeLock.lock();
+        try {
+            if (this.state == snapshot) {
+                this.state = rebuilt;
+                this.missedCompactions = 0;
+            } else if (++this.missedCompactions >= MAX_MISSED_COMPACTIONS) {
+                this.state = this.state.compacted();
+                this.missedCompactions = 0;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static boolean isSparse(LongTrieStore<?> store) {
+        return store.holes() > Math.max(MIN_COMPACTION_HOLES, store.size());
+    }
+
+    /**
+     * Stops the periodic snapshots and compactions, flushes and closes the write-ahead log, if there is one.
+     */
+    void close() {
+        if (this.snapshotWriter != null) {
+            this.snapshotWriter.shutdown();
+        }
+        if (this.compactor != null) {
+            this.compactor.shutdown();
+        }
+        snapshotLock.lock();
+        try {
+            if (this.writeAheadLog != null) {
+                this.writeAheadLog.close();
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
     }
 
-    private T cloneEntity(T entity) {
-        return entity.copy();
+    /**
+     * Called under the write lock before the new state is published: remembers the entity replaced by a change of the
+     * batch that is published next
+     *
+     * @param position position of the change in the batch, from 1
+     * @param previous the entity before the change, null if there was none
+     */
+    private void remember(int position, long id, T previous, long committedAtMillis) {
+        if (this.history != null) {
+            this.history.add(this.changes.lastVersion() + position, committedAtMillis, id, previous);
+        }
+    }
+
+    /**
+     * Called under the write lock after the state of a batch is set and before the batch is published: remembers the
+     * store of the new state for the reads as of the version after the batch
+     *
+     * @param changeCount number of changes of the batch
+     */
+    private void rememberValues(int changeCount) {
+        if (this.history != null && changeCount > 0) {
+            this.history.addValues(this.changes.lastVersion() + changeCount, this.state.values);
+        }
+    }
+
+    /**
+     * Same as {@link #remember(int, long, Model, long)} for a batch of one change
+     *
+     * @return time of the change
+     */
+    private long remember(long id, T previous) {
+        long committedAtMillis = System.currentTimeMillis();
+        remember(1, id, previous, committedAtMillis);
+        return committedAtMillis;
+    }
+
+    /**
+     * Called under the write lock after the batch is published
+     */
+    private void expireHistory(long nowMillis) {
+        if (this.history != null) {
+            this.history.expire(nowMillis);
+        }
+    }
+
+    /**
+     * Called after the write lock is released, so that writers waiting for the disk at the same time share a flush.
+     */
+    private void awaitDurable(long logPosition) {
+        if (this.writeAheadLog != null) {
+            this.writeAheadLog.awaitDurable(logPosition);
+        }
+    }
+
+    /**
+     * Called under the write lock or while the write-ahead log is replayed. With a compactor the store is left with a
+     * hole and a tombstone is kept, without one the store is rebuilt by the writer once it is too sparse.
+     *
+     * @return a state without the entity, or the given state if there was no entity with the id
+     */
+    private State<T> remove(State<T> current, long id) {
+        Long deletedAtMillis = this.tombstoneRetentionMillis > 0 ? System.currentTimeMillis() : null;
+        return current.remove(id, deletedAtMillis, this.compactionIntervalMillis > 0);
+    }
+
+    /**
+     * A state together with the columns built from its entities
+     */
+    private record ScannedState<T extends Model>(State<T> state, EntityColumns<T> columns) {}
+
+    /**
+     * One version of the dataset: the entities, their indexes and the tombstones of the deleted ones.
+     */
+    private record State<T extends Model>(
+            LongTrieStore<T> values, EntityIndexes<T> indexes, LongTrieStore<Tombstone> tombstones
+    ) {
+        private State<T> put(T entity) {
+            long id = entity.getId();
+            return new State<>(
+                    this.values.put(id, entity),
+                    this.indexes.put(this.values.get(id), entity),
+                    this.tombstones.removeLeavingHole(id)
+            );
+        }
+
+        /**
+         * @param deletedAtMillis time of the deletion, null if no tombstone is kept
+         * @param leaveHole whether the store of the entities is left to the compactor
+         */
+        private State<T> remove(long id, Long deletedAtMillis, boolean leaveHole) {
+            T previous = this.values.get(id);
+            if (previous == null) {
+                return this;
+            }
+            return new State<>(
+                    leaveHole ? this.values.removeLeavingHole(id) : this.values.remove(id),
+                    this.indexes.remove(previous),
+                    deletedAtMillis == null
+                            ? this.tombstones
+                            : this.tombstones.put(id, new Tombstone(id, previous.getVersion() + 1, deletedAtMillis))
+            );
+        }
+
+        /**
+         * @param deleted the entities of this state that are not among the values
+         * @param deletedAtMillis time of the deletion, null if no tombstone is kept
+         * @return a state with the values in place of the current ones
+         */
+        private State<T> replace(
+                LongTrieStore<T> values, EntityIndexes<T> indexes, List<T> deleted, Long deletedAtMillis
+        ) {
+            LongTrieStore<Tombstone> nextTombstones = this.tombstones;
+            if (nextTombstones.size() > 0) {
+                for (T entity : values.values()) {
+                    nextTombstones = nextTombstones.removeLeavingHole(entity.getId());
+                }
+            }
+            if (deletedAtMillis != null) {
+                for (T entity : deleted) {
+                    nextTombstones = nextTombstones.put(
+                            entity.getId(), new Tombstone(entity.getId(), entity.getVersion() + 1, deletedAtMillis)
+                    );
+                }
+            }
+            return new State<>(values, indexes, nextTombstones);
+        }
+
+        /**
+         * @return version of the entity with the id, of its tombstone if it was deleted, null if there is neither
+         */
+        private Long versionOf(long id) {
+            T entity = this.values.get(id);
+            if (entity != null) {
+                return entity.getVersion();
+            }
+            Tombstone tombstone = this.tombstones.get(id);
+            return tombstone == null ? null : tombstone.version();
+        }
+
+        private State<T> compacted() {
+            return new State<>(this.values.compacted(), this.indexes, this.tombstones.compacted());
+        }
+
+        private List<T> lookUp(List<Long> ids) {
+            List<T> items = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                items.add(this.values.get(id));
+            }
+            return items;
+        }
     }
 }
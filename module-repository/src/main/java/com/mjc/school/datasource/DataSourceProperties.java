@@ -0,0 +1,389 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.DataSourceConfigurationException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Settings of the data sources. They are read from the optional {@value #PROPERTIES_FILE_NAME} classpath resource,
+ * a JVM system property with the same name overrides the value from the file.
+ */
+final class DataSourceProperties {
+    static final String PROPERTIES_FILE_NAME = "datasource.properties";
+
+    static final String DATA_DIR = "datasource.data.dir";
+    static final String LOAD_PARALLELISM = "datasource.load.parallelism";
+    static final String WAL_DIR = "datasource.wal.dir";
+    static final String WAL_FSYNC = "datasource.wal.fsync";
+    static final String WAL_FSYNC_INTERVAL_MS = "datasource.wal.fsync-interval-ms";
+    static final String SNAPSHOT_DIR = "datasource.snapshot.dir";
+    static final String SNAPSHOT_INTERVAL_MS = "datasource.snapshot.interval-ms";
+    static final String BACKUP_DIR = "datasource.backup.dir";
+
+    static final String BACKEND_TEMPLATE = "datasource.%s.backend";
+    static final String SEGMENT_DIR = "datasource.segment.dir";
+    static final String SEGMENT_SIZE_MB = "datasource.segment.size-mb";
+    static final String SEGMENT_COMPACTION_INTERVAL_MS = "datasource.segment.compaction-interval-ms";
+    static final String SEGMENT_COMPACTION_DEAD_RATIO = "datasource.segment.compaction-dead-ratio";
+    static final String STRIPED_STRIPES = "datasource.striped.stripes";
+    static final String ID_BLOCK_SIZE = "datasource.id.block-size";
+    static final String CHANGES_CAPACITY = "datasource.changes.capacity";
+    static final String JDBC_URL = "datasource.jdbc.url";
+    static final String JDBC_USER = "datasource.jdbc.user";
+    static final String JDBC_PASSWORD = "datasource.jdbc.password";
+    static final String JDBC_POOL_SIZE = "datasource.jdbc.pool-size";
+    static final String COMPACTION_INTERVAL_MS = "datasource.compaction.interval-ms";
+    static final String COMPACTION_CPU_BUDGET = "datasource.compaction.cpu-budget";
+    static final String TOMBSTONE_RETENTION_MS = "datasource.tombstone.retention-ms";
+    static final String HISTORY_RETENTION_TEMPLATE = "datasource.%s.history.retention-ms";
+    static final String HISTORY_MAX_VERSIONS = "datasource.history.max-versions";
+    static final String TIERED_DIR = "datasource.tiered.dir";
+    static final String TIERED_HOT_MAX_ENTRIES = "datasource.tiered.hot-max-entries";
+    static final String TIERED_IDLE_MS = "datasource.tiered.idle-ms";
+    static final String TIERED_DEMOTION_INTERVAL_MS = "datasource.tiered.demotion-interval-ms";
+
+    private static final String DEFAULT_WAL_FSYNC = "batch";
+    private static final long DEFAULT_WAL_FSYNC_INTERVAL_MS = 100;
+    private static final String DEFAULT_BACKUP_DIR = "backup";
+    private static final long DEFAULT_SEGMENT_SIZE_MB = 64;
+    private static final long DEFAULT_SEGMENT_COMPACTION_INTERVAL_MS = 10_000;
+    private static final double DEFAULT_SEGMENT_COMPACTION_DEAD_RATIO = 0.5;
+    private static final int DEFAULT_STRIPES_PER_PROCESSOR = 4;
+    private static final int MAX_STRIPES = 1 << 16;
+    private static final long DEFAULT_ID_BLOCK_SIZE = 64;
+    private static final long DEFAULT_CHANGES_CAPACITY = 4096;
+    private static final long MAX_CHANGES_CAPACITY = 1 << 30;
+    private static final String DEFAULT_JDBC_USER = "sa";
+    private static final long DEFAULT_JDBC_POOL_SIZE = 8;
+    private static final long MAX_JDBC_POOL_SIZE = 1024;
+    private static final long DEFAULT_COMPACTION_INTERVAL_MS = 5_000;
+    private static final double DEFAULT_COMPACTION_CPU_BUDGET = 0.05;
+    private static final long DEFAULT_TOMBSTONE_RETENTION_MS = 600_000;
+    private static final long DEFAULT_HISTORY_MAX_VERSIONS = 100_000;
+    private static final long DEFAULT_TIERED_HOT_MAX_ENTRIES = 10_000;
+    private static final long DEFAULT_TIERED_IDLE_MS = 60_000;
+    private static final long DEFAULT_TIERED_DEMOTION_INTERVAL_MS = 1_000;
+
+    /**
+     * Storage behind the data source of an entity type.
+     */
+    enum Backend {
+        /** Entities on heap, see {@link DataSourceImpl}. */
+        MEMORY,
+        /** Entities in memory-mapped segment files, see {@link SegmentDataSource}. */
+        SEGMENT,
+        /** Entities on heap in independently locked stripes, see {@link StripedDataSource}. */
+        STRIPED,
+        /** Entities in a table of an embedded database, see {@link JdbcDataSource}. */
+        JDBC,
+        /** Entities on heap while they are used, idle ones in memory-mapped files, see {@link TieredDataSource}. */
+        TIERED
+    }
+
+    private final Properties properties;
+
+    DataSourceProperties(Properties properties) {
+        this.properties = properties;
+    }
+
+    static DataSourceProperties load() {
+        Properties properties = new Properties();
+        try (InputStream is = DataSourceProperties.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE_NAME)) {
+            if (is != null) {
+                properties.load(is);
+            }
+        } catch (IOException e) {
+            throw new DataFileReadException(PROPERTIES_FILE_NAME, e);
+        }
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("datasource.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new DataSourceProperties(properties);
+    }
+
+    /**
+     * @return directory of the data files, empty if they are read from the classpath
+     */
+    Optional<Path> dataDirectory() {
+        return getString(DATA_DIR).map(Path::of);
+    }
+
+    /**
+     * @return number of threads parsing a large NDJSON data file, all available processors by default
+     */
+    int loadParallelism() {
+        return (int) getLong(LOAD_PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return directory of the write-ahead logs, empty if the data sources are not durable
+     */
+    Optional<Path> walDirectory() {
+        return getString(WAL_DIR).map(Path::of);
+    }
+
+    WriteAheadLog.FsyncPolicy walFsyncPolicy() {
+        String value = getString(WAL_FSYNC).orElse(DEFAULT_WAL_FSYNC);
+        try {
+            return WriteAheadLog.FsyncPolicy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new DataSourceConfigurationException(WAL_FSYNC, value);
+        }
+    }
+
+    long walFsyncIntervalMillis() {
+        return getLong(WAL_FSYNC_INTERVAL_MS, DEFAULT_WAL_FSYNC_INTERVAL_MS);
+    }
+
+    /**
+     * @return directory of the binary snapshots, empty if the data sources start from the JSON data files
+     */
+    Optional<Path> snapshotDirectory() {
+        return getString(SNAPSHOT_DIR).map(Path::of);
+    }
+
+    /**
+     * @return interval between snapshots written in the background, 0 if they are not written periodically
+     */
+    long snapshotIntervalMillis() {
+        return getLong(SNAPSHOT_INTERVAL_MS, 0);
+    }
+
+    Path backupDirectory() {
+        return Path.of(getString(BACKUP_DIR).orElse(DEFAULT_BACKUP_DIR));
+    }
+
+    /**
+     * @param entityName lower-case entity name, e.g. {@code news}
+     */
+    Backend backend(String entityName) {
+        String name = String.format(BACKEND_TEMPLATE, entityName);
+        String value = getString(name).orElse(Backend.MEMORY.name());
+        try {
+            return Backend.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new DataSourceConfigurationException(name, value);
+        }
+    }
+
+    Path segmentDirectory() {
+        return getString(SEGMENT_DIR)
+                .map(Path::of)
+                .orElseThrow(() -> new DataSourceConfigurationException(SEGMENT_DIR, ""));
+    }
+
+    int segmentSizeBytes() {
+        long megabytes = getLong(SEGMENT_SIZE_MB, DEFAULT_SEGMENT_SIZE_MB);
+        if (megabytes <= 0 || megabytes > 1024) {
+            throw new DataSourceConfigurationException(SEGMENT_SIZE_MB, String.valueOf(megabytes));
+        }
+        return (int) (megabytes * 1024 * 1024);
+    }
+
+    /**
+     * @return interval between background compactions of the segment files, 0 if they are not compacted periodically
+     */
+    long segmentCompactionIntervalMillis() {
+        return getLong(SEGMENT_COMPACTION_INTERVAL_MS, DEFAULT_SEGMENT_COMPACTION_INTERVAL_MS);
+    }
+
+    /**
+     * @return share of dead bytes above which a sealed segment file is rewritten
+     */
+    double segmentCompactionDeadRatio() {
+        return getDouble(SEGMENT_COMPACTION_DEAD_RATIO, DEFAULT_SEGMENT_COMPACTION_DEAD_RATIO);
+    }
+
+    /**
+     * @return number of stripes of the striped backend, a power of two. By default four per available processor.
+     */
+    int stripeCount() {
+        long stripes = getLong(
+                STRIPED_STRIPES, (long) DEFAULT_STRIPES_PER_PROCESSOR * Runtime.getRuntime().availableProcessors()
+        );
+        if (stripes <= 0 || stripes > MAX_STRIPES) {
+            throw new DataSourceConfigurationException(STRIPED_STRIPES, String.valueOf(stripes));
+        }
+        int powerOfTwo = Integer.highestOneBit((int) stripes);
+        return powerOfTwo == stripes ? powerOfTwo : powerOfTwo << 1;
+    }
+
+    /**
+     * @return number of ids the in-memory backend reserves at once, see {@link IdAllocator}
+     */
+    int idBlockSize() {
+        long blockSize = getLong(ID_BLOCK_SIZE, DEFAULT_ID_BLOCK_SIZE);
+        if (blockSize <= 0 || blockSize > Integer.MAX_VALUE) {
+            throw new DataSourceConfigurationException(ID_BLOCK_SIZE, String.valueOf(blockSize));
+        }
+        return (int) blockSize;
+    }
+
+    /**
+     * @return JDBC URL of the database of the jdbc backend, e.g. {@code jdbc:h2:file:./data/school}
+     */
+    String jdbcUrl() {
+        return getString(JDBC_URL).orElseThrow(() -> new DataSourceConfigurationException(JDBC_URL, ""));
+    }
+
+    String jdbcUser() {
+        return getString(JDBC_USER).orElse(DEFAULT_JDBC_USER);
+    }
+
+    String jdbcPassword() {
+        return getString(JDBC_PASSWORD).orElse("");
+    }
+
+    /**
+     * @return maximum number of open connections of each data source of the jdbc backend
+     */
+    int jdbcPoolSize() {
+        long size = getLong(JDBC_POOL_SIZE, DEFAULT_JDBC_POOL_SIZE);
+        if (size <= 0 || size > MAX_JDBC_POOL_SIZE) {
+            throw new DataSourceConfigurationException(JDBC_POOL_SIZE, String.valueOf(size));
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return interval between the background compactions of the memory backend, 0 if the stores are compacted by the
+     * writers and no tombstones are kept
+     */
+    long compactionIntervalMillis() {
+        return getLong(COMPACTION_INTERVAL_MS, DEFAULT_COMPACTION_INTERVAL_MS);
+    }
+
+    /**
+     * @return share of the time of one processor the compactor of the memory backend may spend, see
+     * {@link DataSourceImpl#compact()}
+     */
+    double compactionCpuBudget() {
+        double budget = getDouble(COMPACTION_CPU_BUDGET, DEFAULT_COMPACTION_CPU_BUDGET);
+        if (!(budget > 0 && budget <= 1)) {
+            throw new DataSourceConfigurationException(COMPACTION_CPU_BUDGET, String.valueOf(budget));
+        }
+        return budget;
+    }
+
+    /**
+     * @return time a tombstone of a deleted entity is kept, 0 if no tombstones are kept
+     */
+    long tombstoneRetentionMillis() {
+        long millis = getLong(TOMBSTONE_RETENTION_MS, DEFAULT_TOMBSTONE_RETENTION_MS);
+        if (millis < 0) {
+            throw new DataSourceConfigurationException(TOMBSTONE_RETENTION_MS, String.valueOf(millis));
+        }
+        return millis;
+    }
+
+    /**
+     * @param entityName lower-case entity name, e.g. {@code news}
+     * @return time the replaced versions of the entities are kept for reads as of an earlier version, 0 if the memory
+     * backend of the entity type keeps no history
+     */
+    long historyRetentionMillis(String entityName) {
+        String name = String.format(HISTORY_RETENTION_TEMPLATE, entityName);
+        long millis = getLong(name, 0);
+        if (millis < 0) {
+            throw new DataSourceConfigurationException(name, String.valueOf(millis));
+        }
+        return millis;
+    }
+
+    /**
+     * @return maximum number of replaced versions kept by a data source, the oldest ones are dropped first even when
+     * they are within the retention time
+     */
+    int historyMaxVersions() {
+        long versions = getLong(HISTORY_MAX_VERSIONS, DEFAULT_HISTORY_MAX_VERSIONS);
+        if (versions <= 0 || versions > Integer.MAX_VALUE) {
+            throw new DataSourceConfigurationException(HISTORY_MAX_VERSIONS, String.valueOf(versions));
+        }
+        return (int) versions;
+    }
+
+    /**
+     * @return directory of the cold tier files of the tiered backend, empty if a temporary directory is used
+     */
+    Optional<Path> tieredDirectory() {
+        return getString(TIERED_DIR).map(Path::of);
+    }
+
+    /**
+     * @return number of entities the tiered backend keeps on heap before the least recently used ones are demoted
+     */
+    int tieredHotMaxEntries() {
+        long entries = getLong(TIERED_HOT_MAX_ENTRIES, DEFAULT_TIERED_HOT_MAX_ENTRIES);
+        if (entries <= 0 || entries > Integer.MAX_VALUE) {
+            throw new DataSourceConfigurationException(TIERED_HOT_MAX_ENTRIES, String.valueOf(entries));
+        }
+        return (int) entries;
+    }
+
+    /**
+     * @return time after its last read or write after which an entity of the tiered backend is demoted
+     */
+    long tieredIdleMillis() {
+        long millis = getLong(TIERED_IDLE_MS, DEFAULT_TIERED_IDLE_MS);
+        if (millis < 0) {
+            throw new DataSourceConfigurationException(TIERED_IDLE_MS, String.valueOf(millis));
+        }
+        return millis;
+    }
+
+    /**
+     * @return interval between the background demotions of the tiered backend, 0 if entities are only demoted when
+     * the heap tier is over its size
+     */
+    long tieredDemotionIntervalMillis() {
+        return getLong(TIERED_DEMOTION_INTERVAL_MS, DEFAULT_TIERED_DEMOTION_INTERVAL_MS);
+    }
+
+    /**
+     * @return number of the last changes of the memory backend buffered for subscribers, see {@link ChangeLog}
+     */
+    int changesCapacity() {
+        long capacity = getLong(CHANGES_CAPACITY, DEFAULT_CHANGES_CAPACITY);
+        if (capacity <= 0 || capacity > MAX_CHANGES_CAPACITY) {
+            throw new DataSourceConfigurationException(CHANGES_CAPACITY, String.valueOf(capacity));
+        }
+        return (int) capacity;
+    }
+
+    Optional<String> getString(String name) {
+        String value = this.properties.getProperty(name);
+        return value == null || value.isBlank() ? Optional.empty() : Optional.of(value.trim());
+    }
+
+    long getLong(String name, long defaultValue) {
+        Optional<String> value = getString(name);
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.get());
+        } catch (NumberFormatException e) {
+            throw new DataSourceConfigurationException(name, value.get());
+        }
+    }
+
+    double getDouble(String name, double defaultValue) {
+        Optional<String> value = getString(name);
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.get());
+        } catch (NumberFormatException e) {
+            throw new DataSourceConfigurationException(name, value.get());
+        }
+    }
+}
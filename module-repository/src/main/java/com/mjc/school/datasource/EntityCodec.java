@@ -0,0 +1,88 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.Model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary form of an entity in a {@link SnapshotFile}. Fields are written one after another without names, so a codec
+ * has to read them back in the same order. The helpers below encode nullable values with a leading marker.
+ * <p>
+ * Entities are read from a buffer holding a whole block of the snapshot, or a record of a memory-mapped segment,
+ * rather than from a stream, which keeps decoding free of per-byte calls.
+ */
+interface EntityCodec<T extends Model> {
+    void write(T entity, DataOutput out) throws IOException;
+
+    T read(ByteBuffer in);
+
+    /**
+     * Reads an entity whose version is stored next to it rather than by the codec. A codec overrides this to build the
+     * entity with its version at once instead of copying it.
+     */
+    default T read(ByteBuffer in, long version) {
+        T entity = read(in);
+        return version == entity.getVersion() ? entity : entity.withVersion(version);
+    }
+
+    static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (!in.hasArray()) {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    static void writeLong(Long value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    static Long readLong(ByteBuffer in) {
+        return in.get() != 0 ? in.getLong() : null;
+    }
+
+    /**
+     * Writes the date/time as UTC epoch seconds plus nanoseconds.
+     */
+    static void writeDateTime(LocalDateTime value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    static LocalDateTime readDateTime(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
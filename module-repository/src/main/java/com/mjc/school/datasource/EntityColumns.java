@@ -0,0 +1,376 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.Model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Columnar copy of one version of the entities for scans and aggregations: one primitive array per column, with the
+ * value of the n-th entity at index n, instead of one object per entity. A scan reads only the arrays of the columns
+ * it needs, in a loop over consecutive memory.
+ * <ul>
+ *     <li>the ids and the key columns, e.g. an author id, are {@code long[]}</li>
+ *     <li>timestamp columns are {@code long[]} of the epoch seconds of the local date-time taken at UTC, so that a day
+ *     is a range of 86400 seconds</li>
+ *     <li>text columns are the lower-cased UTF-8 bytes of all the values packed into one {@code byte[]}, with the
+ *     offset of every value in an {@code int[]}</li>
+ * </ul>
+ * A missing key or timestamp is stored as {@link Long#MIN_VALUE} and left out of the aggregations, a missing text is
+ * empty.
+ * <p>
+ * An instance without entities, created by {@link #none()} and the {@code with...} methods, defines the columns, the
+ * same way as {@link EntityIndexes}. The columns are immutable, an instance is rebuilt from a version of the entities.
+ */
+final class EntityColumns<T extends Model> {
+    private static final long MISSING = Long.MIN_VALUE;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final long MAX_DENSE_KEYS = 1 << 20;
+
+    private final Map<String, Function<T, Long>> keys;
+    private final Map<String, Function<T, LocalDateTime>> timestamps;
+    private final Map<String, Function<T, String>> texts;
+    private final long[] ids;
+    private final Map<String, long[]> keyColumns;
+    private final Map<String, long[]> timestampColumns;
+    private final Map<String, TextColumn> textColumns;
+
+    private EntityColumns(
+            Map<String, Function<T, Long>> keys,
+            Map<String, Function<T, LocalDateTime>> timestamps,
+            Map<String, Function<T, String>> texts,
+            long[] ids,
+            Map<String, long[]> keyColumns,
+            Map<String, long[]> timestampColumns,
+            Map<String, TextColumn> textColumns
+    ) {
+        this.keys = keys;
+        this.timestamps = timestamps;
+        this.texts = texts;
+        this.ids = ids;
+        this.keyColumns = keyColumns;
+        this.timestampColumns = timestampColumns;
+        this.textColumns = textColumns;
+    }
+
+    /**
+     * @return definition of the id column only
+     */
+    static <T extends Model> EntityColumns<T> none() {
+        return new EntityColumns<>(Map.of(), Map.of(), Map.of(), new long[0], Map.of(), Map.of(), Map.of());
+    }
+
+    EntityColumns<T> withKey(String name, Function<T, Long> key) {
+        return new EntityColumns<>(with(this.keys, name, key), this.timestamps, this.texts,
+                new long[0], Map.of(), Map.of(), Map.of());
+    }
+
+    EntityColumns<T> withTimestamp(String name, Function<T, LocalDateTime> timestamp) {
+        return new EntityColumns<>(this.keys, with(this.timestamps, name, timestamp), this.texts,
+                new long[0], Map.of(), Map.of(), Map.of());
+    }
+
+    EntityColumns<T> withText(String name, Function<T, String> text) {
+        return new EntityColumns<>(this.keys, this.timestamps, with(this.texts, name, text),
+                new long[0], Map.of(), Map.of(), Map.of());
+    }
+
+    private static <F> Map<String, F> with(Map<String, F> columns, String name, F column) {
+        Map<String, F> extended = new LinkedHashMap<>(columns);
+        extended.put(name, column);
+        return Map.copyOf(extended);
+    }
+
+    /**
+     * @return columns of the same definition holding the given entities in their iteration order
+     */
+    EntityColumns<T> rebuild(Collection<T> entities) {
+        int size = entities.size();
+        long[] idColumn = new long[size];
+        Map<String, long[]> keyValues = new HashMap<>();
+        this.keys.keySet().forEach(name -> keyValues.put(name, new long[size]));
+        Map<String, long[]> timestampValues = new HashMap<>();
+        this.timestamps.keySet().forEach(name -> timestampValues.put(name, new long[size]));
+        Map<String, TextColumn.Builder> textBuilders = new HashMap<>();
+        this.texts.keySet().forEach(name -> textBuilders.put(name, new TextColumn.Builder(size)));
+
+        int row = 0;
+        for (T entity : entities) {
+            idColumn[row] = entity.getId();
+            for (Map.Entry<String, Function<T, Long>> key : this.keys.entrySet()) {
+                Long value = key.getValue().apply(entity);
+                keyValues.get(key.getKey())[row] = value == null ? MISSING : value;
+            }
+            for (Map.Entry<String, Function<T, LocalDateTime>> timestamp : this.timestamps.entrySet()) {
+                LocalDateTime value = timestamp.getValue().apply(entity);
+                timestampValues.get(timestamp.getKey())[row] =
+                        value == null ? MISSING : value.toEpochSecond(ZoneOffset.UTC);
+            }
+            for (Map.Entry<String, Function<T, String>> text : this.texts.entrySet()) {
+                textBuilders.get(text.getKey()).add(text.getValue().apply(entity));
+            }
+            row++;
+        }
+
+        Map<String, TextColumn> textValues = new HashMap<>();
+        textBuilders.forEach((name, builder) -> textValues.put(name, builder.build()));
+        return new EntityColumns<>(this.keys, this.timestamps, this.texts,
+                idColumn, Map.copyOf(keyValues), Map.copyOf(timestampValues), Map.copyOf(textValues));
+    }
+
+    int size() {
+        return this.ids.length;
+    }
+
+    long id(int row) {
+        return this.ids[row];
+    }
+
+    /**
+     * @return whether the definition has any column besides the id
+     */
+    boolean hasColumns() {
+        return !this.keys.isEmpty() || !this.timestamps.isEmpty() || !this.texts.isEmpty();
+    }
+
+    boolean hasKey(String name) {
+        return this.keys.containsKey(name);
+    }
+
+    boolean hasTimestamp(String name) {
+        return this.timestamps.containsKey(name);
+    }
+
+    boolean hasText(String name) {
+        return this.texts.containsKey(name);
+    }
+
+    /**
+     * @return number of entities per value of the key, the entities without one are not counted
+     */
+    Map<Long, Long> countByKey(String name) {
+        long[] values = this.keyColumns.get(name);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long value : values) {
+            if (value != MISSING) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        if (min > max) {
+            return counts;
+        }
+
+        if (max - min >= 0 && max - min < MAX_DENSE_KEYS) {
+            // keys like ids of authors are close to each other, they are counted in an array indexed by the key
+            long[] dense = new long[(int) (max - min + 1)];
+            for (long value : values) {
+                if (value != MISSING) {
+                    dense[(int) (value - min)]++;
+                }
+            }
+            for (int i = 0; i < dense.length; i++) {
+                if (dense[i] != 0) {
+                    counts.put(min + i, dense[i]);
+                }
+            }
+            return counts;
+        }
+
+        LongCounter counter = new LongCounter();
+        for (long value : values) {
+            if (value != MISSING) {
+                counter.increment(value);
+            }
+        }
+        return counter.toMap(counts);
+    }
+
+    /**
+     * @param from first day to count, null for no lower bound
+     * @param to day after the last day to count, null for no upper bound
+     * @return number of entities per day of the timestamp, ordered by day, the days without entities are left out
+     */
+    SortedMap<LocalDate, Long> countByDay(String name, LocalDate from, LocalDate to) {
+        long[] values = this.timestampColumns.get(name);
+        long lower = from == null ? MISSING + 1 : from.toEpochDay() * SECONDS_PER_DAY;
+        long upper = to == null ? Long.MAX_VALUE : to.toEpochDay() * SECONDS_PER_DAY;
+        LongCounter counter = new LongCounter();
+        for (long value : values) {
+            if (value >= lower && value < upper) {
+                counter.increment(Math.floorDiv(value, SECONDS_PER_DAY));
+            }
+        }
+
+        SortedMap<LocalDate, Long> days = new TreeMap<>();
+        counter.toMap(new HashMap<>()).forEach((day, count) -> days.put(LocalDate.ofEpochDay(day), count));
+        return days;
+    }
+
+    /**
+     * Case-insensitive substring search in one pass over the packed bytes of the column. The bytes are searched as one
+     * array with the Boyer-Moore-Horspool skips, a match is then checked not to cross the end of its value.
+     *
+     * @return rows of the entities whose text contains the given text, in ascending order
+     */
+    int[] rowsContaining(String name, String text) {
+        TextColumn column = this.textColumns.get(name);
+        byte[] needle = TextColumn.encode(text);
+        if (needle.length == 0) {
+            int[] all = new int[size()];
+            Arrays.setAll(all, row -> row);
+            return all;
+        }
+
+        int[] skips = new int[256];
+        Arrays.fill(skips, needle.length);
+        for (int i = 0; i < needle.length - 1; i++) {
+            skips[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+
+        byte[] bytes = column.bytes();
+        int[] offsets = column.offsets();
+        int[] rows = new int[16];
+        int found = 0;
+        int lastStart = offsets[size()] - needle.length;
+        byte last = needle[needle.length - 1];
+        int row = 0;
+        int position = 0;
+        while (position <= lastStart) {
+            byte tail = bytes[position + needle.length - 1];
+            if (tail == last && matchesAt(bytes, position, needle)) {
+                while (offsets[row + 1] <= position) {
+                    row++;
+                }
+                int rowEnd = offsets[row + 1];
+                if (position + needle.length <= rowEnd) {
+                    if (found == rows.length) {
+                        rows = Arrays.copyOf(rows, found * 2);
+                    }
+                    rows[found++] = row;
+                    // one match is enough, the search goes on with the next value
+                    position = rowEnd;
+                    continue;
+                }
+            }
+            position += skips[tail & 0xFF];
+        }
+        return Arrays.copyOf(rows, found);
+    }
+
+    private static boolean matchesAt(byte[] bytes, int position, byte[] needle) {
+        for (int i = 0; i < needle.length - 1; i++) {
+            if (bytes[position + i] != needle[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param offsets start of the value of every row in the bytes, followed by the end of the last one
+     */
+    private record TextColumn(byte[] bytes, int[] offsets) {
+        private static byte[] encode(String text) {
+            return text == null ? new byte[0] : text.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static final class Builder {
+            private final int[] offsets;
+            private byte[] bytes = new byte[1024];
+            private int length;
+            private int rows;
+
+            private Builder(int size) {
+                this.offsets = new int[size + 1];
+            }
+
+            private void add(String text) {
+                byte[] value = encode(text);
+                if (this.length + value.length > this.bytes.length) {
+                    long capacity = Math.max((long) this.bytes.length * 2, (long) this.length + value.length);
+                    if (capacity > Integer.MAX_VALUE - 8) {
+                        throw new IllegalStateException("A text column cannot hold more than 2 GB");
+                    }
+                    this.bytes = Arrays.copyOf(this.bytes, (int) capacity);
+                }
+                System.arraycopy(value, 0, this.bytes, this.length, value.length);
+                this.length += value.length;
+                this.offsets[++this.rows] = this.length;
+            }
+
+            private TextColumn build() {
+                return new TextColumn(Arrays.copyOf(this.bytes, this.length), this.offsets);
+            }
+        }
+    }
+
+    /**
+     * Open addressing map from long keys to counts, so that counting does not box a value per entity
+     */
+    private static final class LongCounter {
+        private long[] keys = new long[16];
+        private long[] counts = new long[16];
+        private int size;
+
+        private void increment(long key) {
+            int slot = slotOf(key);
+            if (this.counts[slot] == 0) {
+                this.keys[slot] = key;
+                this.size++;
+            }
+            this.counts[slot]++;
+            if (this.size * 2 > this.keys.length) {
+                grow();
+            }
+        }
+
+        /**
+         * @return the slot of the key, or the empty slot it would take
+         */
+        private int slotOf(long key) {
+            int mask = this.keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (this.counts[slot] != 0 && this.keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = this.keys;
+            long[] oldCounts = this.counts;
+            this.keys = new long[oldKeys.length * 2];
+            this.counts = new long[oldCounts.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) {
+                    int slot = slotOf(oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private <M extends Map<Long, Long>> M toMap(M map) {
+            for (int i = 0; i < this.keys.length; i++) {
+                if (this.counts[i] != 0) {
+                    map.put(this.keys[i], this.counts[i]);
+                }
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.Model;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * One version of all the indexes a data source keeps of its entities: the ids in ascending order for keyset paging, the
+ * {@link SecondaryIndex} of an optional secondary key and a {@link SortedIndex} per indexed timestamp. Entities without
+ * a value of an indexed field are not in the index of that field.
+ * <p>
+ * An instance without entities, created by {@link #none()} and the {@code with...} methods, defines which fields are
+ * indexed. Every update returns a new version, so a data source publishes it together with the version of the
+ * entities it was derived from.
+ */
+final class EntityIndexes<T extends Model> {
+    private final Function<T, Long> secondaryKey;
+    private final Map<String, Function<T, LocalDateTime>> timestamps;
+    private final SortedIndex idIndex;
+    private final SecondaryIndex secondaryIndex;
+    private final Map<String, SortedIndex> sortedIndexes;
+
+    private EntityIndexes(
+            Function<T, Long> secondaryKey,
+            Map<String, Function<T, LocalDateTime>> timestamps,
+            SortedIndex idIndex,
+            SecondaryIndex secondaryIndex,
+            Map<String, SortedIndex> sortedIndexes
+    ) {
+        this.secondaryKey = secondaryKey;
+        this.timestamps = timestamps;
+        this.idIndex = idIndex;
+        this.secondaryIndex = secondaryIndex;
+        this.sortedIndexes = sortedIndexes;
+    }
+
+    /**
+     * @return definition indexing the ids only
+     */
+    static <T extends Model> EntityIndexes<T> none() {
+        return new EntityIndexes<>(null, Map.of(), SortedIndex.empty(), SecondaryIndex.empty(), Map.of());
+    }
+
+    EntityIndexes<T> withSecondaryKey(Function<T, Long> key) {
+        return new EntityIndexes<>(
+                key, this.timestamps, SortedIndex.empty(), SecondaryIndex.empty(), emptySortedIndexes(this.timestamps)
+        );
+    }
+
+    /**
+     * @param name name of the timestamp in queries, e.g. the name of the entity property
+     */
+    EntityIndexes<T> withTimestamp(String name, Function<T, LocalDateTime> timestamp) {
+        Map<String, Function<T, LocalDateTime>> extended = new LinkedHashMap<>(this.timestamps);
+        extended.put(name, timestamp);
+        return new EntityIndexes<>(
+                this.secondaryKey,
+                Map.copyOf(extended),
+                SortedIndex.empty(),
+                SecondaryIndex.empty(),
+                emptySortedIndexes(extended)
+        );
+    }
+
+    /**
+     * @return indexes of the same fields holding only the given entities, each id must occur once
+     */
+    EntityIndexes<T> rebuild(Collection<T> entities) {
+        SortedIndex.Builder idBuilder = SortedIndex.builder();
+        SecondaryIndex.Builder secondaryBuilder = SecondaryIndex.builder();
+        Map<String, SortedIndex.Builder> sortedBuilders = new LinkedHashMap<>();
+        this.timestamps.keySet().forEach(name -> sortedBuilders.put(name, SortedIndex.builder()));
+
+        for (T entity : entities) {
+            idBuilder.add(entity.getId(), entity.getId());
+            if (this.secondaryKey != null) {
+                secondaryBuilder.add(entity.getId(), this.secondaryKey.apply(entity));
+            }
+            this.timestamps.forEach((name, timestamp) -> {
+                LocalDateTime value = timestamp.apply(entity);
+                if (value != null) {
+                    sortedBuilders.get(name).add(SortedIndex.timeKey(value), entity.getId());
+                }
+            });
+        }
+
+        Map<String, SortedIndex> sorted = new LinkedHashMap<>();
+        sortedBuilders.forEach((name, builder) -> sorted.put(name, builder.build()));
+        return new EntityIndexes<>(
+                this.secondaryKey, this.timestamps, idBuilder.build(), secondaryBuilder.build(), Map.copyOf(sorted)
+        );
+    }
+
+    boolean hasSecondaryKey() {
+        return this.secondaryKey != null;
+    }
+
+    /**
+     * @return whether replacing the previous version of an entity with the given one changes any index
+     */
+    boolean changes(T previous, T entity) {
+        if (previous == null) {
+            return true;
+        }
+        if (this.secondaryKey != null
+                && !Objects.equals(this.secondaryKey.apply(previous), this.secondaryKey.apply(entity))) {
+            return true;
+        }
+        for (Function<T, LocalDateTime> timestamp : this.timestamps.values()) {
+            if (!Objects.equals(timestamp.apply(previous), timestamp.apply(entity))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param previous previous version of the entity, null if it is new
+     * @return indexes in which the entity is listed with its current field values
+     */
+    EntityIndexes<T> put(T previous, T entity) {
+        if (!changes(previous, entity)) {
+            return this;
+        }
+
+        long id = entity.getId();
+        SortedIndex ids = previous == null ? this.idIndex.insert(id, id) : this.idIndex;
+        SecondaryIndex secondary = this.secondaryIndex;
+        if (this.secondaryKey != null) {
+            Long previousKey = previous == null ? null : this.secondaryKey.apply(previous);
+            secondary = secondary.update(id, previousKey, this.secondaryKey.apply(entity));
+        }
+
+        Map<String, SortedIndex> sorted = new LinkedHashMap<>(this.sortedIndexes);
+        this.timestamps.forEach((name, timestamp) -> {
+            LocalDateTime previousValue = previous == null ? null : timestamp.apply(previous);
+            LocalDateTime value = timestamp.apply(entity);
+            if (!Objects.equals(previousValue, value)) {
+                SortedIndex index = sorted.get(name);
+                if (previousValue != null) {
+                    index = index.remove(SortedIndex.timeKey(previousValue), id);
+                }
+                if (value != null) {
+                    index = index.insert(SortedIndex.timeKey(value), id);
+                }
+                sorted.put(name, index);
+            }
+        });
+        return new EntityIndexes<>(this.secondaryKey, this.timestamps, ids, secondary, Map.copyOf(sorted));
+    }
+
+    /**
+     * @return indexes without the entity
+     */
+    EntityIndexes<T> remove(T previous) {
+        long id = previous.getId();
+        SecondaryIndex secondary = this.secondaryKey == null
+                ? this.secondaryIndex
+                : this.secondaryIndex.remove(id, this.secondaryKey.apply(previous));
+
+        Map<String, SortedIndex> sorted = new LinkedHashMap<>(this.sortedIndexes);
+        this.timestamps.forEach((name, timestamp) -> {
+            LocalDateTime value = timestamp.apply(previous);
+            if (value != null) {
+                sorted.put(name, sorted.get(name).remove(SortedIndex.timeKey(value), id));
+            }
+        });
+        return new EntityIndexes<>(
+                this.secondaryKey, this.timestamps, this.idIndex.remove(id, id), secondary, Map.copyOf(sorted)
+        );
+    }
+
+    /**
+     * @return names of the indexed timestamps, in no particular order
+     */
+    Set<String> timestampNames() {
+        return this.timestamps.keySet();
+    }
+
+    /**
+     * @return secondary key of the entity, null if it has none or no secondary key is indexed
+     */
+    Long secondaryKeyOf(T entity) {
+        return this.secondaryKey == null ? null : this.secondaryKey.apply(entity);
+    }
+
+    /**
+     * @return value of the timestamp of the entity, null if it has none or the timestamp is not indexed
+     */
+    LocalDateTime timestampOf(String timestamp, T entity) {
+        Function<T, LocalDateTime> field = this.timestamps.get(timestamp);
+        return field == null ? null : field.apply(entity);
+    }
+
+    /**
+     * @param limit maximum number of ids to return, -1 means no limit
+     * @return ids greater than the given one in ascending order
+     */
+    List<Long> idsAfter(long lastId, long limit) {
+        if (lastId == Long.MAX_VALUE) {
+            return List.of();
+        }
+        return this.idIndex.ids(lastId + 1, Long.MAX_VALUE, false, 0, limit);
+    }
+
+    SecondaryIndex secondaryIndex() {
+        return this.secondaryIndex;
+    }
+
+    /**
+     * @return index of the timestamp, null if the timestamp is not indexed
+     */
+    SortedIndex sortedIndex(String timestamp) {
+        return this.sortedIndexes.get(timestamp);
+    }
+
+    private static <T> Map<String, SortedIndex> emptySortedIndexes(Map<String, T> timestamps) {
+        Map<String, SortedIndex> sorted = new LinkedHashMap<>();
+        timestamps.keySet().forEach(name -> sorted.put(name, SortedIndex.empty()));
+        return Map.copyOf(sorted);
+    }
+}
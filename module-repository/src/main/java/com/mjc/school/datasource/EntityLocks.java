@@ -0,0 +1,82 @@
+package com.mjc.school.datasource;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table of locks shared by all the data sources, an entity is locked by the stripe its data source and id hash to.
+ * Writers of different entities rarely share a stripe and do not wait for each other, readers never lock.
+ * <p>
+ * Every stripe also counts the writes made under it. The count only grows, so unlike the version of an entity, which
+ * starts again from 1 when a deleted entity is saved again without a tombstone, it tells that an entity may have been
+ * changed since it was read.
+ */
+final class EntityLocks {
+    private static final int STRIPE_COUNT = 1024;
+    private static final EntityLocks INSTANCE = new EntityLocks();
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPE_COUNT];
+    private final AtomicLongArray writes = new AtomicLongArray(STRIPE_COUNT);
+
+    private EntityLocks() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    static EntityLocks getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param source data source as it was created by a backend, not a {@link TransactionalDataSource} around it
+     */
+    static int stripeIndex(DataSource<?> source, long id) {
+        long hash = (System.identityHashCode(source) * 0x9E3779B97F4A7C15L) ^ (id * 0xBF58476D1CE4E5B9L);
+        return (int) (hash ^ (hash >>> 32)) & (STRIPE_COUNT - 1);
+    }
+
+    static BitSet newStripeSet() {
+        return new BitSet(STRIPE_COUNT);
+    }
+
+    /**
+     * @return all the stripes, for a writer that changes every entity of a data source
+     */
+    static BitSet allStripes() {
+        BitSet stripes = newStripeSet();
+        stripes.set(0, STRIPE_COUNT);
+        return stripes;
+    }
+
+    /**
+     * Locks the stripes once each, in ascending order so that two writers cannot deadlock. The locks are reentrant, a
+     * thread that already holds some of the stripes may lock them again.
+     */
+    void lock(BitSet stripes) {
+        stripes.stream().forEach(index -> this.locks[index].lock());
+    }
+
+    void unlock(BitSet stripes) {
+        stripes.stream().forEach(index -> this.locks[index].unlock());
+    }
+
+    /**
+     * Counts a write under each of the stripes and unlocks them. Called once the write is applied, so a reader that
+     * read the count before the entity either sees the write or a greater count later.
+     */
+    void unlockWritten(BitSet stripes) {
+        stripes.stream().forEach(index -> {
+            this.writes.incrementAndGet(index);
+            this.locks[index].unlock();
+        });
+    }
+
+    /**
+     * @return number of writes made under the stripe so far
+     */
+    long writeCount(int stripe) {
+        return this.writes.get(stripe);
+    }
+}
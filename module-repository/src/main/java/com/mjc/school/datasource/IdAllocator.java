@@ -0,0 +1,64 @@
+package com.mjc.school.datasource;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Hands out ids for new entities in the order the data source commits them: it is only called under the write lock of
+ * the data source, so an entity saved later always gets a greater id than one saved earlier.
+ * <p>
+ * Ids are reserved in blocks. The high-water mark, the first id not reserved yet, moves one block at a time and every
+ * move is reported to a listener, which lets a durable data source log the high-water mark once per block instead of
+ * once per id, so that ids are not reused after a restart even if the entities holding them were deleted.
+ * <p>
+ * An id supplied by a caller or loaded from a file is only {@linkplain #observe(long) observed}: the next generated id
+ * is greater than it.
+ */
+final class IdAllocator {
+    private final int blockSize;
+    private long next = 1L;
+    private long highWaterMark = 1L;
+    private LongConsumer reservationListener = highWaterMark -> { };
+
+    /**
+     * @param blockSize number of ids reserved at once
+     */
+    IdAllocator(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, got " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @param listener called with the new high-water mark after every reservation
+     */
+    void onReservation(LongConsumer listener) {
+        this.reservationListener = listener;
+    }
+
+    long next() {
+        if (this.next == this.highWaterMark) {
+            this.highWaterMark += this.blockSize;
+            this.reservationListener.accept(this.highWaterMark);
+        }
+        return this.next++;
+    }
+
+    /**
+     * Moves the next id past an id that was not generated here, e.g. a caller-supplied or a loaded one. The id itself
+     * is logged with its entity, so the high-water mark follows without a reservation.
+     */
+    void observe(long id) {
+        if (id >= this.next) {
+            this.next = id + 1;
+            this.highWaterMark = Math.max(this.highWaterMark, this.next);
+        }
+    }
+
+    /**
+     * @return first id that has not been reserved yet
+     */
+    long highWaterMark() {
+        return this.highWaterMark;
+    }
+}
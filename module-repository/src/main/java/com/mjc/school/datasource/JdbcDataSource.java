@@ -0,0 +1,805 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.exception.DatabaseAccessException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Data source that keeps the entities in a table of an embedded database, H2 in file mode by default, so the dataset
+ * may be larger than the heap. Nothing is loaded into memory at startup, every call runs its own statements on a
+ * connection of the {@link ConnectionPool}.
+ * <p>
+ * A row holds the id, the entity encoded by its {@link EntityCodec}, its version, an order number and one column per
+ * indexed field
+ * of the {@link EntityIndexes}, so that paging, the secondary key and the timestamp ranges are answered by SQL. The
+ * order number is given to an id when it is first saved and kept by its later versions, like the sequence of
+ * {@link SegmentDataSource}; pages of all the entities are in that order. A secondary key gets a new order number
+ * whenever it changes, which keeps the entities of a key in the order they got it. Timestamps are stored as
+ * {@link SortedIndex#timeKey(LocalDateTime)}.
+ * <p>
+ * A missing table is created under a temporary name, filled from the data file and renamed, so an interrupted load
+ * starts over at the next start. Generated ids come from a database sequence and are never reused. An id supplied by a
+ * caller is not seen by the sequence; a generated id that is already taken makes the write start over with new ids.
+ * <p>
+ * Versions are kept by the database: a save increments the version of the row and
+ * {@link #compareAndSave(long, Model)} is a single update conditional on the version, so it takes no lock beyond the
+ * row lock of the update itself.
+ */
+@Slf4j
+class JdbcDataSource<T extends Model> implements DataSource<T> {
+    private static final String DUPLICATE_KEY_STATE = "23505";
+    private static final int MAX_WRITE_ATTEMPTS = 16;
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    private final Class<T> entityClass;
+    private final EntityCodec<T> codec;
+    private final EntityIndexes<T> indexes;
+    private final List<String> timestamps;
+    private final String table;
+    private final ConnectionPool pool;
+
+    private final String selectColumns;
+    private final String insertSql;
+    private final String updateSql;
+    private final String compareAndUpdateSql;
+
+    protected JdbcDataSource(
+            String dataFileName, Class<T> entityClass, EntityCodec<T> codec, EntityIndexes<T> indexes
+    ) {
+        this(dataFileName, entityClass, codec, indexes, DataSourceProperties.load());
+    }
+
+    JdbcDataSource(
+            String dataFileName,
+            Class<T> entityClass,
+            EntityCodec<T> codec,
+            EntityIndexes<T> indexes,
+            DataSourceProperties properties
+    ) {
+        this.entityClass = entityClass;
+        this.codec = codec;
+        this.indexes = indexes;
+        this.timestamps = indexes.timestampNames().stream().sorted().toList();
+        this.table = identifier(dataFileName.substring(0, dataFileName.lastIndexOf('.')));
+        this.pool = new ConnectionPool(
+                properties.jdbcUrl(), properties.jdbcUser(), properties.jdbcPassword(), properties.jdbcPoolSize()
+        );
+
+        this.selectColumns = "SELECT PAYLOAD, VERSION FROM " + this.table;
+        String timestampColumns = this.timestamps.stream()
+                .map(name -> ", " + timestampColumn(name))
+                .collect(Collectors.joining());
+        String timestampParameters = ", ?".repeat(this.timestamps.size());
+        if (indexes.hasSecondaryKey()) {
+            this.insertSql = "INSERT INTO " + this.table + " (ID, SEQ, VERSION, PAYLOAD, KEY_VALUE, KEY_SEQ"
+                    + timestampColumns + ") VALUES (?, NEXT VALUE FOR " + this.table + "_ORDER, 1, ?, ?, NEXT VALUE FOR "
+                    + this.table + "_ORDER" + timestampParameters + ")";
+            this.updateSql = "UPDATE " + this.table + " SET KEY_SEQ = CASE WHEN KEY_VALUE IS NOT DISTINCT FROM ?"
+                    + " THEN KEY_SEQ ELSE NEXT VALUE FOR " + this.table + "_ORDER END, KEY_VALUE = ?, PAYLOAD = ?,"
+                    + " VERSION = VERSION + 1" + assignments() + " WHERE ID = ?";
+        } else {
+            this.insertSql = "INSERT INTO " + this.table + " (ID, SEQ, VERSION, PAYLOAD" + timestampColumns
+                    + ") VALUES (?, NEXT VALUE FOR " + this.table + "_ORDER, 1, ?" + timestampParameters + ")";
+            this.updateSql = "UPDATE " + this.table + " SET PAYLOAD = ?, VERSION = VERSION + 1" + assignments()
+                    + " WHERE ID = ?";
+        }
+        this.compareAndUpdateSql = this.updateSql + " AND VERSION = ?";
+
+        try {
+            createTable(dataFileName, properties);
+        } catch (RuntimeException e) {
+            this.pool.close();
+            throw e;
+        }
+    }
+
+    private String assignments() {
+        return this.timestamps.stream()
+                .map(name -> ", " + timestampColumn(name) + " = ?")
+                .collect(Collectors.joining());
+    }
+
+    private static String identifier(String name) {
+        if (!name.matches("[A-Za-z][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("'" + name + "' cannot be used as an SQL identifier");
+        }
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    private static String timestampColumn(String timestamp) {
+        return "TS_" + identifier(timestamp);
+    }
+
+    private void createTable(String dataFileName, DataSourceProperties properties) {
+        execute("creating the table " + this.table, connection -> {
+            if (!tableExists(connection, this.table)) {
+                String loadingTable = this.table + "_LOADING";
+                try (Statement statement = connection.connection().createStatement()) {
+                    statement.execute("DROP TABLE IF EXISTS " + loadingTable);
+                    statement.execute("CREATE TABLE " + loadingTable + " (" + columnDefinitions() + ")");
+                }
+                load(connection, loadingTable, dataFileName, properties);
+                try (Statement statement = connection.connection().createStatement()) {
+                    statement.execute("ALTER TABLE " + loadingTable + " RENAME TO " + this.table);
+                }
+            }
+
+            try (Statement statement = connection.connection().createStatement()) {
+                // tables created before entities had versions get the column with version 0 for every row
+                statement.execute("ALTER TABLE " + this.table + " ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0"
+                        + " NOT NULL");
+                statement.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + this.table + "_BY_SEQ ON "
+                        + this.table + " (SEQ)");
+                if (this.indexes.hasSecondaryKey()) {
+                    statement.execute("CREATE INDEX IF NOT EXISTS " + this.table + "_BY_KEY ON "
+                            + this.table + " (KEY_VALUE, KEY_SEQ)");
+                }
+                for (String timestamp : this.timestamps) {
+                    String column = timestampColumn(timestamp);
+                    statement.execute("CREATE INDEX IF NOT EXISTS " + this.table + "_BY_" + column + " ON "
+                            + this.table + " (" + column + ", ID)");
+                }
+                // the sequences start after what is in the table, which matters only when they are created
+                statement.execute("CREATE SEQUENCE IF NOT EXISTS " + this.table + "_ID START WITH "
+                        + (maxOf(connection, "ID") + 1));
+                statement.execute("CREATE SEQUENCE IF NOT EXISTS " + this.table + "_ORDER START WITH "
+                        + (Math.max(maxOf(connection, "SEQ"), maxOf(connection, "KEY_SEQ")) + 1));
+            }
+            return null;
+        });
+    }
+
+    private String columnDefinitions() {
+        StringBuilder columns = new StringBuilder(
+                "ID BIGINT PRIMARY KEY, SEQ BIGINT NOT NULL, VERSION BIGINT DEFAULT 0 NOT NULL, PAYLOAD VARBINARY NOT NULL"
+        );
+        if (this.indexes.hasSecondaryKey()) {
+            columns.append(", KEY_VALUE BIGINT, KEY_SEQ BIGINT");
+        }
+        this.timestamps.forEach(name -> columns.append(", ").append(timestampColumn(name)).append(" BIGINT"));
+        return columns.toString();
+    }
+
+    private static boolean tableExists(ConnectionPool.PooledConnection connection, String table) throws SQLException {
+        try (ResultSet tables = connection.connection().getMetaData().getTables(null, null, table, null)) {
+            return tables.next();
+        }
+    }
+
+    private long maxOf(ConnectionPool.PooledConnection connection, String column) throws SQLException {
+        if (column.equals("KEY_SEQ") && !this.indexes.hasSecondaryKey()) {
+            return 0;
+        }
+        try (Statement statement = connection.connection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT MAX(" + column + ") FROM " + this.table)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    /**
+     * Streams the data file into the table in batches of one transaction, the order number of a row is its position
+     * in the file
+     */
+    private void load(
+            ConnectionPool.PooledConnection connection,
+            String loadingTable,
+            String dataFileName,
+            DataSourceProperties properties
+    ) throws SQLException {
+        String sql = "INSERT INTO " + loadingTable + " (" + columnNames() + ") VALUES (?, ?, ?"
+                + (this.indexes.hasSecondaryKey() ? ", ?, ?" : "") + ", ?".repeat(this.timestamps.size()) + ")";
+        Connection jdbc = connection.connection();
+        jdbc.setAutoCommit(false);
+        try (PreparedStatement insert = jdbc.prepareStatement(sql)) {
+            long[] loaded = {0};
+            DataFileReader.load(dataFileName, this.entityClass, properties, entity -> {
+                try {
+                    long order = ++loaded[0];
+                    insert.setLong(1, entity.getId());
+                    insert.setLong(2, order);
+                    insert.setBytes(3, encode(entity));
+                    int index = 4;
+                    if (this.indexes.hasSecondaryKey()) {
+                        setNullableLong(insert, index++, this.indexes.secondaryKeyOf(entity));
+                        insert.setLong(index++, order);
+                    }
+                    bindTimestamps(insert, index, entity);
+                    insert.addBatch();
+                    if (order % LOAD_BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                } catch (SQLException e) {
+                    throw new DatabaseAccessException("loading " + dataFileName, e);
+                }
+            });
+            insert.executeBatch();
+            jdbc.commit();
+            log.info("Loaded {} rows of {} into the database", loaded[0], dataFileName);
+        } finally {
+            jdbc.setAutoCommit(true);
+        }
+    }
+
+    private String columnNames() {
+        return "ID, SEQ, PAYLOAD" + (this.indexes.hasSecondaryKey() ? ", KEY_VALUE, KEY_SEQ" : "")
+                + this.timestamps.stream().map(name -> ", " + timestampColumn(name)).collect(Collectors.joining());
+    }
+
+    @Override
+    public T findById(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        T entity = execute("reading " + this.table, connection -> {
+            PreparedStatement select = connection.prepare(this.selectColumns + " WHERE ID = ?");
+            select.setLong(1, id);
+            List<T> found = readEntities(select);
+            return found.isEmpty() ? null : found.get(0);
+        });
+        if (entity == null) {
+            throw new EntityNotFoundException(id, entityClass);
+        }
+        return entity;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return findAll(0, -1);
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit) {
+        return execute("reading " + this.table, connection -> readPage(connection, offset, limit));
+    }
+
+    /**
+     * The page and the count are read in one repeatable-read transaction.
+     */
+    @Override
+    public Page<T> findPage(long offset, long limit) {
+        return executeConsistently("reading " + this.table, connection ->
+                new Page<>(readPage(connection, offset, limit), count(connection, "", List.of()))
+        );
+    }
+
+    private List<T> readPage(ConnectionPool.PooledConnection connection, long offset, long limit) throws SQLException {
+        PreparedStatement select = connection.prepare(paged(this.selectColumns + " ORDER BY SEQ", limit));
+        bindPage(select, 1, offset, limit);
+        return readEntities(select);
+    }
+
+    /**
+     * Reads the entities in chunks of {@value #STREAM_CHUNK_SIZE} rows, each chunk continues after the order number
+     * of the previous one and is read with a connection taken only for that chunk, so an abandoned stream holds no
+     * connection. Entities changed while the stream is consumed are seen as they are when their chunk is read.
+     */
+    @Override
+    public PageStream<T> streamPage(long offset) {
+        long totalCount = count();
+        Iterator<T> iterator = new Iterator<>() {
+            private List<Row<T>> chunk = List.of();
+            private int position;
+            private long lastSeq = -1;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (position == chunk.size() && !exhausted) {
+                    chunk = readChunk(lastSeq < 0 ? offset : 0, lastSeq);
+                    position = 0;
+                    exhausted = chunk.size() < STREAM_CHUNK_SIZE;
+                    if (!chunk.isEmpty()) {
+                        lastSeq = chunk.get(chunk.size() - 1).seq();
+                    }
+                }
+                return position < chunk.size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.get(position++).entity();
+            }
+        };
+        Stream<T> items = StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false
+        );
+        return new PageStream<>(items, totalCount);
+    }
+
+    private List<Row<T>> readChunk(long offset, long afterSeq) {
+        return execute("reading " + this.table, connection -> {
+            PreparedStatement select = connection.prepare(
+                    "SELECT SEQ, PAYLOAD, VERSION FROM " + this.table + " WHERE SEQ > ? ORDER BY SEQ OFFSET ? ROWS"
+                            + " FETCH NEXT " + STREAM_CHUNK_SIZE + " ROWS ONLY"
+            );
+            select.setLong(1, afterSeq);
+            select.setLong(2, offset);
+            List<Row<T>> rows = new ArrayList<>(STREAM_CHUNK_SIZE);
+            try (ResultSet result = select.executeQuery()) {
+                while (result.next()) {
+                    rows.add(new Row<>(result.getLong(1), decode(result.getBytes(2), result.getLong(3))));
+                }
+            }
+            return rows;
+        });
+    }
+
+    @Override
+    public List<T> findAfter(long lastId, long limit) {
+        return execute("reading " + this.table, connection -> {
+            PreparedStatement select = connection.prepare(
+                    paged(this.selectColumns + " WHERE ID > ? ORDER BY ID", limit)
+            );
+            select.setLong(1, lastId);
+            bindPage(select, 2, 0, limit);
+            return readEntities(select);
+        });
+    }
+
+    @Override
+    public Page<T> findPageBySecondaryKey(long key, long offset, long limit) {
+        if (!this.indexes.hasSecondaryKey()) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no secondary key");
+        }
+
+        return executeConsistently("reading " + this.table, connection -> {
+            PreparedStatement select = connection.prepare(
+                    paged(this.selectColumns + " WHERE KEY_VALUE = ? ORDER BY KEY_SEQ, ID", limit)
+            );
+            select.setLong(1, key);
+            bindPage(select, 2, offset, limit);
+            return new Page<>(readEntities(select), count(connection, " WHERE KEY_VALUE = ?", List.of(key)));
+        });
+    }
+
+    @Override
+    public Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        if (!this.timestamps.contains(timestamp)) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no index of " + timestamp);
+        }
+
+        String column = timestampColumn(timestamp);
+        String direction = descending ? " DESC" : "";
+        long fromKey = from == null ? Long.MIN_VALUE : SortedIndex.timeKey(from);
+        long toKey = to == null ? Long.MAX_VALUE : SortedIndex.timeKey(to);
+        String range = " WHERE " + column + " >= ? AND " + column + " < ?";
+        return executeConsistently("reading " + this.table, connection -> {
+            PreparedStatement select = connection.prepare(paged(
+                    this.selectColumns + range + " ORDER BY " + column + direction + ", ID" + direction, limit
+            ));
+            select.setLong(1, fromKey);
+            select.setLong(2, toKey);
+            bindPage(select, 3, offset, limit);
+            return new Page<>(readEntities(select), count(connection, range, List.of(fromKey, toKey)));
+        });
+    }
+
+    @Override
+    public T save(T value) throws EntityNullReferenceException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+        return write(List.of(value)).get(0);
+    }
+
+    /**
+     * The entities are written with JDBC batches in one transaction, so either all or none of them are saved.
+     */
+    @Override
+    public List<T> saveAll(Collection<T> values) throws EntityNullReferenceException {
+        if (values == null || values.stream().anyMatch(Objects::isNull)) {
+            throw new EntityNullReferenceException();
+        }
+        if (values.isEmpty()) {
+            return List.of();
+        }
+        return write(values);
+    }
+
+    private List<T> write(Collection<T> values) {
+        return executeInTransaction("writing " + this.table, connection -> {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    List<T> saved = write(connection, values);
+                    connection.connection().commit();
+                    return saved;
+                } catch (SQLException e) {
+                    connection.connection().rollback();
+                    if (!isDuplicateKey(e) || attempt == MAX_WRITE_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.debug("Writing {} collided with an id written in the meantime, attempt {}", this.table, attempt);
+                }
+            }
+        });
+    }
+
+    /**
+     * Updates the rows of the entities with an id and inserts those without a row, then inserts the new entities with
+     * ids from the sequence
+     */
+    private List<T> write(ConnectionPool.PooledConnection connection, Collection<T> values) throws SQLException {
+        List<T> existing = new ArrayList<>();
+        int newCount = 0;
+        for (T value : values) {
+            if (value.getId() == null || value.getId() == 0) {
+                newCount++;
+            } else {
+                existing.add(value);
+            }
+        }
+
+        List<T> missing = new ArrayList<>();
+        Map<Long, Long> versions = new HashMap<>();
+        if (!existing.isEmpty()) {
+            PreparedStatement update = connection.prepare(this.updateSql);
+            for (T entity : existing) {
+                bindUpdate(update, entity);
+                update.addBatch();
+            }
+            int[] updated = update.executeBatch();
+            for (int i = 0; i < updated.length; i++) {
+                if (updated[i] == 0) {
+                    missing.add(existing.get(i));
+                }
+            }
+            // the updated rows stay locked by this transaction, so their versions are those set by the updates
+            PreparedStatement select = connection.prepare(
+                    "SELECT ID, VERSION FROM " + this.table + " WHERE ID = ANY(?)"
+            );
+            select.setArray(1, connection.connection().createArrayOf(
+                    "BIGINT", existing.stream().map(Model::getId).toArray()
+            ));
+            try (ResultSet result = select.executeQuery()) {
+                while (result.next()) {
+                    versions.put(result.getLong(1), result.getLong(2));
+                }
+            }
+        }
+
+        List<Long> ids = nextIds(connection, newCount);
+        List<T> saved = new ArrayList<>(values.size());
+        List<T> inserted = new ArrayList<>(missing);
+        int nextId = 0;
+        for (T value : values) {
+            if (value.getId() == null || value.getId() == 0) {
+                T entity = Versions.nextAfter(null, value.withId(ids.get(nextId++)));
+                saved.add(entity);
+                inserted.add(entity);
+            } else {
+                Long version = versions.get(value.getId());
+                // a missing row is inserted below with version 1
+                saved.add(version == null ? Versions.nextAfter(null, value) : value.withVersion(version));
+            }
+        }
+
+        if (!inserted.isEmpty()) {
+            PreparedStatement insert = connection.prepare(this.insertSql);
+            for (T entity : inserted) {
+                bindInsert(insert, entity);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        return saved;
+    }
+
+    /**
+     * A single update conditional on the version, the version of the row is only read when nothing was updated, to
+     * tell a missing entity from a conflict.
+     */
+    @Override
+    public T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+        if (value.getId() == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        Long storedVersion = execute("writing " + this.table, connection -> {
+            PreparedStatement update = connection.prepare(this.compareAndUpdateSql);
+            update.setLong(bindUpdate(update, value), expectedVersion);
+            if (update.executeUpdate() == 1) {
+                return expectedVersion;
+            }
+            PreparedStatement select = connection.prepare("SELECT VERSION FROM " + this.table + " WHERE ID = ?");
+            select.setLong(1, value.getId());
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? result.getLong(1) : null;
+            }
+        });
+        Versions.checkVersion(storedVersion, value, expectedVersion);
+        return Versions.nextAfter(expectedVersion, value);
+    }
+
+    private List<Long> nextIds(ConnectionPool.PooledConnection connection, int count) throws SQLException {
+        if (count == 0) {
+            return List.of();
+        }
+        PreparedStatement select = connection.prepare(
+                "SELECT NEXT VALUE FOR " + this.table + "_ID FROM SYSTEM_RANGE(1, ?)"
+        );
+        select.setInt(1, count);
+        List<Long> ids = new ArrayList<>(count);
+        try (ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+                ids.add(result.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && DUPLICATE_KEY_STATE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        int deleted = execute("deleting from " + this.table, connection -> {
+            PreparedStatement delete = connection.prepare("DELETE FROM " + this.table + " WHERE ID = ?");
+            delete.setLong(1, id);
+            return delete.executeUpdate();
+        });
+        if (deleted == 0) {
+            throw new EntityNotFoundException(id, entityClass);
+        }
+        return true;
+    }
+
+    /**
+     * The rows are deleted with one JDBC batch in one transaction, which is rolled back if any of the ids is not found.
+     */
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new KeyNullReferenceException();
+        }
+        if (ids.isEmpty()) {
+            return true;
+        }
+
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Long missingId = executeInTransaction("deleting from " + this.table, connection -> {
+            PreparedStatement delete = connection.prepare("DELETE FROM " + this.table + " WHERE ID = ?");
+            for (Long id : distinctIds) {
+                delete.setLong(1, id);
+                delete.addBatch();
+            }
+            int[] deleted = delete.executeBatch();
+            for (int i = 0; i < deleted.length; i++) {
+                if (deleted[i] == 0) {
+                    connection.connection().rollback();
+                    return distinctIds.get(i);
+                }
+            }
+            connection.connection().commit();
+            return null;
+        });
+        if (missingId != null) {
+            throw new EntityNotFoundException(missingId, entityClass);
+        }
+        return true;
+    }
+
+    @Override
+    public long count() {
+        return execute("counting " + this.table, connection -> count(connection, "", List.of()));
+    }
+
+    private long count(ConnectionPool.PooledConnection connection, String condition, List<Long> parameters)
+            throws SQLException {
+        PreparedStatement select = connection.prepare("SELECT COUNT(*) FROM " + this.table + condition);
+        for (int i = 0; i < parameters.size(); i++) {
+            select.setLong(i + 1, parameters.get(i));
+        }
+        try (ResultSet result = select.executeQuery()) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) throws KeyNullReferenceException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        return execute("reading " + this.table, connection -> {
+            PreparedStatement select = connection.prepare("SELECT 1 FROM " + this.table + " WHERE ID = ?");
+            select.setLong(1, id);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next();
+            }
+        });
+    }
+
+    /**
+     * Closes the connections of the pool
+     */
+    void close() {
+        this.pool.close();
+    }
+
+    /**
+     * @param limit maximum number of rows, -1 means no limit
+     * @return the query with an offset parameter and, if there is a limit, a limit parameter
+     */
+    private static String paged(String query, long limit) {
+        return query + " OFFSET ? ROWS" + (limit < 0 ? "" : " FETCH NEXT ? ROWS ONLY");
+    }
+
+    private static void bindPage(PreparedStatement statement, int index, long offset, long limit) throws SQLException {
+        statement.setLong(index, Math.max(0, offset));
+        if (limit >= 0) {
+            statement.setLong(index + 1, limit);
+        }
+    }
+
+    private List<T> readEntities(PreparedStatement select) throws SQLException {
+        List<T> entities = new ArrayList<>();
+        try (ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+                entities.add(decode(result.getBytes(1), result.getLong(2)));
+            }
+        }
+        return entities;
+    }
+
+    private void bindInsert(PreparedStatement insert, T entity) throws SQLException {
+        insert.setLong(1, entity.getId());
+        insert.setBytes(2, encode(entity));
+        int index = 3;
+        if (this.indexes.hasSecondaryKey()) {
+            setNullableLong(insert, index++, this.indexes.secondaryKeyOf(entity));
+        }
+        bindTimestamps(insert, index, entity);
+    }
+
+    /**
+     * @return index of the next parameter
+     */
+    private int bindUpdate(PreparedStatement update, T entity) throws SQLException {
+        int index = 1;
+        if (this.indexes.hasSecondaryKey()) {
+            Long key = this.indexes.secondaryKeyOf(entity);
+            setNullableLong(update, index++, key);
+            setNullableLong(update, index++, key);
+        }
+        update.setBytes(index++, encode(entity));
+        index = bindTimestamps(update, index, entity);
+        update.setLong(index, entity.getId());
+        return index + 1;
+    }
+
+    /**
+     * @return index of the next parameter
+     */
+    private int bindTimestamps(PreparedStatement statement, int index, T entity) throws SQLException {
+        for (String timestamp : this.timestamps) {
+            LocalDateTime value = this.indexes.timestampOf(timestamp, entity);
+            setNullableLong(statement, index++, value == null ? null : SortedIndex.timeKey(value));
+        }
+        return index;
+    }
+
+    private static void setNullableLong(PreparedStatement statement, int index, Long value) throws SQLException {
+        if (value == null) {
+            statement.setNull(index, Types.BIGINT);
+        } else {
+            statement.setLong(index, value);
+        }
+    }
+
+    private byte[] encode(T entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            this.codec.write(entity, out);
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.table, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private T decode(byte[] payload, long version) {
+        return this.codec.read(ByteBuffer.wrap(payload), version);
+    }
+
+    private <R> R execute(String operation, SqlFunction<R> function) {
+        try (ConnectionPool.PooledConnection connection = this.pool.borrow()) {
+            return function.apply(connection);
+        } catch (SQLException e) {
+            throw new DatabaseAccessException(operation, e);
+        }
+    }
+
+    /**
+     * Runs the function with auto-commit off, the function commits. Whatever it leaves uncommitted is rolled back when
+     * the connection is returned to the pool.
+     */
+    private <R> R executeInTransaction(String operation, SqlFunction<R> function) {
+        return execute(operation, connection -> {
+            connection.connection().setAutoCommit(false);
+            return function.apply(connection);
+        });
+    }
+
+    /**
+     * Runs the function in a repeatable-read transaction, so all its queries see the same version of the table
+     */
+    private <R> R executeConsistently(String operation, SqlFunction<R> function) {
+        return execute(operation, connection -> {
+            Connection jdbc = connection.connection();
+            jdbc.setAutoCommit(false);
+            jdbc.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                R result = function.apply(connection);
+                jdbc.commit();
+                return result;
+            } finally {
+                jdbc.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<R> {
+        R apply(ConnectionPool.PooledConnection connection) throws SQLException;
+    }
+
+    private record Row<T>(long seq, T entity) {
+    }
+}
@@ -0,0 +1,333 @@
+package com.mjc.school.datasource;
+
+/**
+ * Persistent map from primitive {@code long} keys to {@code int} values, laid out as a compressed hash-array mapped
+ * prefix trie (CHAMP). An update copies the nodes on the path to the changed entry and shares the rest, so every
+ * version stays valid and can be read from any thread without locking once it has been safely published.
+ * <p>
+ * Keys are spread with a bijective 64-bit mix, two distinct keys therefore always differ somewhere in their hash and
+ * the trie needs no collision nodes.
+ */
+final class LongIntTrie {
+    private static final int BITS = 5;
+    private static final int BRANCH_MASK = (1 << BITS) - 1;
+    private static final long[] NO_KEYS = new long[0];
+    private static final int[] NO_VALUES = new int[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    static final LongIntTrie EMPTY = new LongIntTrie(new Node(null, 0, 0, NO_KEYS, NO_VALUES, NO_NODES), 0);
+
+    private final Node root;
+    private final int size;
+
+    private LongIntTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the value mapped to the key, or {@code missing} if there is none
+     */
+    int get(long key, int missing) {
+        long hash = hash(key);
+        Node node = this.root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bitAt(hash, shift);
+            if ((node.dataMap & bit) != 0) {
+                int index = Integer.bitCount(node.dataMap & (bit - 1));
+                return node.keys[index] == key ? node.values[index] : missing;
+            }
+            if ((node.nodeMap & bit) == 0) {
+                return missing;
+            }
+            node = node.nodes[Integer.bitCount(node.nodeMap & (bit - 1))];
+        }
+    }
+
+    LongIntTrie put(long key, int value) {
+        return put(null, key, value);
+    }
+
+    LongIntTrie remove(long key) {
+        return remove(null, key);
+    }
+
+    /**
+     * Visits every entry in no particular order.
+     */
+    void forEach(EntryConsumer consumer) {
+        forEach(this.root, consumer);
+    }
+
+    /**
+     * Starts a batch of updates that may edit nodes created within the batch in place instead of copying them.
+     */
+    static Transient newTransient() {
+        return new Transient();
+    }
+
+    private LongIntTrie put(Object owner, long key, int value) {
+        Change change = new Change();
+        Node newRoot = this.root.put(owner, key, hash(key), value, 0, change);
+        if (newRoot == this.root && !change.added) {
+            return this;
+        }
+        return new LongIntTrie(newRoot, change.added ? this.size + 1 : this.size);
+    }
+
+    private LongIntTrie remove(Object owner, long key) {
+        Change change = new Change();
+        Node newRoot = this.root.remove(owner, key, hash(key), 0, change);
+        if (!change.removed) {
+            return this;
+        }
+        return new LongIntTrie(newRoot, this.size - 1);
+    }
+
+    private static void forEach(Node node, EntryConsumer consumer) {
+        for (int i = 0; i < node.keys.length; i++) {
+            consumer.accept(node.keys[i], node.values[i]);
+        }
+        for (Node child : node.nodes) {
+            forEach(child, consumer);
+        }
+    }
+
+    private static long hash(long key) {
+        long hash = key;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static int bitAt(long hash, int shift) {
+        return 1 << ((int) (hash >>> shift) & BRANCH_MASK);
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+    /**
+     * Batch of updates applied to a trie that is not yet shared with readers. Nodes created by the batch carry it as
+     * their owner and are edited in place on later updates of the same batch.
+     */
+    static final class Transient {
+        private LongIntTrie trie = EMPTY;
+
+        private Transient() {}
+
+        void put(long key, int value) {
+            this.trie = this.trie.put(this, key, value);
+        }
+
+        int get(long key, int missing) {
+            return this.trie.get(key, missing);
+        }
+
+        LongIntTrie toPersistent() {
+            LongIntTrie result = this.trie;
+            this.trie = null;
+            return result;
+        }
+    }
+
+    private static final class Change {
+        private boolean added;
+        private boolean removed;
+    }
+
+    private static final class Node {
+        private final Object owner;
+        private final int dataMap;
+        private final int nodeMap;
+        private final long[] keys;
+        private final int[] values;
+        private final Node[] nodes;
+
+        private Node(Object owner, int dataMap, int nodeMap, long[] keys, int[] values, Node[] nodes) {
+            this.owner = owner;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.nodes = nodes;
+        }
+
+        private boolean isEditableBy(Object editor) {
+            return editor != null && this.owner == editor;
+        }
+
+        private Node put(Object editor, long key, long hash, int value, int shift, Change change) {
+            int bit = bitAt(hash, shift);
+
+            if ((this.dataMap & bit) != 0) {
+                int index = Integer.bitCount(this.dataMap & (bit - 1));
+                long currentKey = this.keys[index];
+                if (currentKey == key) {
+                    if (this.values[index] == value) {
+                        return this;
+                    }
+                    return withValue(editor, index, value);
+                }
+
+                Node child = merge(
+                        editor,
+                        currentKey, hash(currentKey), this.values[index],
+                        key, hash, value,
+                        shift + BITS
+                );
+                change.added = true;
+                return withInlineMovedToNode(editor, bit, child);
+            }
+
+            if ((this.nodeMap & bit) != 0) {
+                int index = Integer.bitCount(this.nodeMap & (bit - 1));
+                Node child = this.nodes[index];
+                Node newChild = child.put(editor, key, hash, value, shift + BITS, change);
+                return newChild == child ? this : withNode(editor, index, newChild);
+            }
+
+            change.added = true;
+            return withInlineAdded(editor, bit, key, value);
+        }
+
+        private Node remove(Object editor, long key, long hash, int shift, Change change) {
+            int bit = bitAt(hash, shift);
+
+            if ((this.dataMap & bit) != 0) {
+                int index = Integer.bitCount(this.dataMap & (bit - 1));
+                if (this.keys[index] != key) {
+                    return this;
+                }
+                change.removed = true;
+                return withInlineRemoved(editor, bit, index);
+            }
+
+            if ((this.nodeMap & bit) != 0) {
+                int index = Integer.bitCount(this.nodeMap & (bit - 1));
+                Node child = this.nodes[index];
+                Node newChild = child.remove(editor, key, hash, shift + BITS, change);
+                if (!change.removed) {
+                    return this;
+                }
+                if (newChild.nodeMap == 0 && newChild.keys.length == 1) {
+                    return withNodeMovedToInline(editor, bit, index, newChild.keys[0], newChild.values[0]);
+                }
+                return withNode(editor, index, newChild);
+            }
+
+            return this;
+        }
+
+        private static Node merge(
+                Object editor,
+                long firstKey, long firstHash, int firstValue,
+                long secondKey, long secondHash, int secondValue,
+                int shift
+        ) {
+            int firstBit = bitAt(firstHash, shift);
+            int secondBit = bitAt(secondHash, shift);
+
+            if (firstBit == secondBit) {
+                Node child = merge(editor, firstKey, firstHash, firstValue, secondKey, secondHash, secondValue, shift + BITS);
+                return new Node(editor, 0, firstBit, NO_KEYS, NO_VALUES, new Node[]{child});
+            }
+
+            boolean firstGoesFirst = Integer.compareUnsigned(firstBit, secondBit) < 0;
+            return new Node(
+                    editor,
+                    firstBit | secondBit,
+                    0,
+                    firstGoesFirst ? new long[]{firstKey, secondKey} : new long[]{secondKey, firstKey},
+                    firstGoesFirst ? new int[]{firstValue, secondValue} : new int[]{secondValue, firstValue},
+                    NO_NODES
+            );
+        }
+
+        private Node withValue(Object editor, int index, int value) {
+            if (isEditableBy(editor)) {
+                this.values[index] = value;
+                return this;
+            }
+            int[] newValues = this.values.clone();
+            newValues[index] = value;
+            return new Node(editor, this.dataMap, this.nodeMap, this.keys, newValues, this.nodes);
+        }
+
+        private Node withNode(Object editor, int index, Node node) {
+            if (isEditableBy(editor)) {
+                this.nodes[index] = node;
+                return this;
+            }
+            Node[] newNodes = this.nodes.clone();
+            newNodes[index] = node;
+            return new Node(editor, this.dataMap, this.nodeMap, this.keys, this.values, newNodes);
+        }
+
+        private Node withInlineAdded(Object editor, int bit, long key, int value) {
+            int index = Integer.bitCount(this.dataMap & (bit - 1));
+            long[] newKeys = new long[this.keys.length + 1];
+            int[] newValues = new int[this.values.length + 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, index);
+            System.arraycopy(this.values, 0, newValues, 0, index);
+            newKeys[index] = key;
+            newValues[index] = value;
+            System.arraycopy(this.keys, index, newKeys, index + 1, this.keys.length - index);
+            System.arraycopy(this.values, index, newValues, index + 1, this.values.length - index);
+            return new Node(editor, this.dataMap | bit, this.nodeMap, newKeys, newValues, this.nodes);
+        }
+
+        private Node withInlineRemoved(Object editor, int bit, int index) {
+            long[] newKeys = new long[this.keys.length - 1];
+            int[] newValues = new int[this.values.length - 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, index);
+            System.arraycopy(this.values, 0, newValues, 0, index);
+            System.arraycopy(this.keys, index + 1, newKeys, index, newKeys.length - index);
+            System.arraycopy(this.values, index + 1, newValues, index, newValues.length - index);
+            return new Node(editor, this.dataMap ^ bit, this.nodeMap, newKeys, newValues, this.nodes);
+        }
+
+        private Node withInlineMovedToNode(Object editor, int bit, Node child) {
+            int dataIndex = Integer.bitCount(this.dataMap & (bit - 1));
+            int nodeIndex = Integer.bitCount(this.nodeMap & (bit - 1));
+
+            long[] newKeys = new long[this.keys.length - 1];
+            int[] newValues = new int[this.values.length - 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, dataIndex);
+            System.arraycopy(this.values, 0, newValues, 0, dataIndex);
+            System.arraycopy(this.keys, dataIndex + 1, newKeys, dataIndex, newKeys.length - dataIndex);
+            System.arraycopy(this.values, dataIndex + 1, newValues, dataIndex, newValues.length - dataIndex);
+
+            Node[] newNodes = new Node[this.nodes.length + 1];
+            System.arraycopy(this.nodes, 0, newNodes, 0, nodeIndex);
+            newNodes[nodeIndex] = child;
+            System.arraycopy(this.nodes, nodeIndex, newNodes, nodeIndex + 1, this.nodes.length - nodeIndex);
+
+            return new Node(editor, this.dataMap ^ bit, this.nodeMap | bit, newKeys, newValues, newNodes);
+        }
+
+        private Node withNodeMovedToInline(Object editor, int bit, int nodeIndex, long key, int value) {
+            Node[] newNodes = new Node[this.nodes.length - 1];
+            System.arraycopy(this.nodes, 0, newNodes, 0, nodeIndex);
+            System.arraycopy(this.nodes, nodeIndex + 1, newNodes, nodeIndex, newNodes.length - nodeIndex);
+
+            int dataIndex = Integer.bitCount(this.dataMap & (bit - 1));
+            long[] newKeys = new long[this.keys.length + 1];
+            int[] newValues = new int[this.values.length + 1];
+            System.arraycopy(this.keys, 0, newKeys, 0, dataIndex);
+            System.arraycopy(this.values, 0, newValues, 0, dataIndex);
+            newKeys[dataIndex] = key;
+            newValues[dataIndex] = value;
+            System.arraycopy(this.keys, dataIndex, newKeys, dataIndex + 1, this.keys.length - dataIndex);
+            System.arraycopy(this.values, dataIndex, newValues, dataIndex + 1, this.values.length - dataIndex);
+
+            return new Node(editor, this.dataMap | bit, this.nodeMap ^ bit, newKeys, newValues, newNodes);
+        }
+    }
+}
@@ -6,7 +6,7 @@ class NewsDataSource extends DataSourceImpl<NewsModel> implements DataSource<New
     private static final String DATA_FILE_NAME = "news.json";
 
     private NewsDataSource() {
-        super(DATA_FILE_NAME, NewsModel.class);
+        super(DATA_FILE_NAME, NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), NewsIndexes.columns());
     }
 
     private static class SingletonCreationHelper {
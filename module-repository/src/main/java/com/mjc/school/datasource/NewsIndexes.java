@@ -0,0 +1,36 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+
+/**
+ * Indexed fields and scanned columns of news, shared by all the news data sources.
+ */
+final class NewsIndexes {
+    static final String CREATE_DATE = "createDate";
+    static final String LAST_UPDATE_DATE = "lastUpdateDate";
+    static final String AUTHOR_ID = "authorId";
+    static final String TITLE = "title";
+
+    private NewsIndexes() {}
+
+    /**
+     * News are indexed by author and by both of their timestamps.
+     */
+    static EntityIndexes<NewsModel> definition() {
+        return EntityIndexes.<NewsModel>none()
+                .withSecondaryKey(NewsModel::getAuthorId)
+                .withTimestamp(CREATE_DATE, NewsModel::getCreateDate)
+                .withTimestamp(LAST_UPDATE_DATE, NewsModel::getLastUpdateDate);
+    }
+
+    /**
+     * News are scanned by author, by both of their timestamps and by title.
+     */
+    static EntityColumns<NewsModel> columns() {
+        return EntityColumns.<NewsModel>none()
+                .withKey(AUTHOR_ID, NewsModel::getAuthorId)
+                .withTimestamp(CREATE_DATE, NewsModel::getCreateDate)
+                .withTimestamp(LAST_UPDATE_DATE, NewsModel::getLastUpdateDate)
+                .withText(TITLE, NewsModel::getTitle);
+    }
+}
@@ -0,0 +1,19 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+
+class NewsJdbcDataSource extends JdbcDataSource<NewsModel> {
+    private static final String DATA_FILE_NAME = "news.json";
+
+    private NewsJdbcDataSource() {
+        super(DATA_FILE_NAME, NewsModel.class, new NewsModelCodec(), NewsIndexes.definition());
+    }
+
+    private static class SingletonCreationHelper {
+        private static final DataSource<NewsModel> INSTANCE = new NewsJdbcDataSource();
+    }
+
+    public static DataSource<NewsModel> getInstance() {
+        return SingletonCreationHelper.INSTANCE;
+    }
+}
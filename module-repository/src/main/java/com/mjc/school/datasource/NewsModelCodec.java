@@ -0,0 +1,37 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+class NewsModelCodec implements EntityCodec<NewsModel> {
+    @Override
+    public void write(NewsModel entity, DataOutput out) throws IOException {
+        EntityCodec.writeLong(entity.getId(), out);
+        EntityCodec.writeString(entity.getTitle(), out);
+        EntityCodec.writeString(entity.getContent(), out);
+        EntityCodec.writeDateTime(entity.getCreateDate(), out);
+        EntityCodec.writeDateTime(entity.getLastUpdateDate(), out);
+        EntityCodec.writeLong(entity.getAuthorId(), out);
+    }
+
+    @Override
+    public NewsModel read(ByteBuffer in) {
+        return read(in, 0);
+    }
+
+    @Override
+    public NewsModel read(ByteBuffer in, long version) {
+        return new NewsModel(
+                EntityCodec.readLong(in),
+                EntityCodec.readString(in),
+                EntityCodec.readString(in),
+                EntityCodec.readDateTime(in),
+                EntityCodec.readDateTime(in),
+                EntityCodec.readLong(in),
+                version
+        );
+    }
+}
@@ -0,0 +1,19 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+
+class NewsSegmentDataSource extends SegmentDataSource<NewsModel> {
+    private static final String DATA_FILE_NAME = "news.json";
+
+    private NewsSegmentDataSource() {
+        super(DATA_FILE_NAME, NewsModel.class, new NewsModelCodec(), NewsIndexes.definition());
+    }
+
+    private static class SingletonCreationHelper {
+        private static final DataSource<NewsModel> INSTANCE = new NewsSegmentDataSource();
+    }
+
+    public static DataSource<NewsModel> getInstance() {
+        return SingletonCreationHelper.INSTANCE;
+    }
+}
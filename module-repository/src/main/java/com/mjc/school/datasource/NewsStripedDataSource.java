@@ -0,0 +1,19 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+
+class NewsStripedDataSource extends StripedDataSource<NewsModel> {
+    private static final String DATA_FILE_NAME = "news.json";
+
+    private NewsStripedDataSource() {
+        super(DATA_FILE_NAME, NewsModel.class, NewsIndexes.definition());
+    }
+
+    private static class SingletonCreationHelper {
+        private static final DataSource<NewsModel> INSTANCE = new NewsStripedDataSource();
+    }
+
+    public static DataSource<NewsModel> getInstance() {
+        return SingletonCreationHelper.INSTANCE;
+    }
+}
@@ -0,0 +1,19 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+
+class NewsTieredDataSource extends TieredDataSource<NewsModel> {
+    private static final String DATA_FILE_NAME = "news.json";
+
+    private NewsTieredDataSource() {
+        super(DATA_FILE_NAME, NewsModel.class, new NewsModelCodec(), NewsIndexes.definition());
+    }
+
+    private static class SingletonCreationHelper {
+        private static final DataSource<NewsModel> INSTANCE = new NewsTieredDataSource();
+    }
+
+    public static DataSource<NewsModel> getInstance() {
+        return SingletonCreationHelper.INSTANCE;
+    }
+}
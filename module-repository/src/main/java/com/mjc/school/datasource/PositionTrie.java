@@ -0,0 +1,269 @@
+package com.mjc.school.datasource;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Persistent array of values indexed by position, where a position may be empty. It is a 32-way trie whose inner
+ * nodes keep the number of non-empty positions under each child, which makes finding the n-th non-empty position an
+ * O(log n) descent. Updates copy the path from the root to the changed leaf and share everything else.
+ */
+final class PositionTrie<V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int BRANCH_MASK = WIDTH - 1;
+
+    private static final PositionTrie<?> EMPTY = new PositionTrie<>(new Node(new Object[WIDTH], null, 0), 0, 0);
+
+    private final Node root;
+    private final int shift;
+    private final int end;
+
+    private PositionTrie(Node root, int shift, int end) {
+        this.root = root;
+        this.shift = shift;
+        this.end = end;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PositionTrie<V> empty() {
+        return (PositionTrie<V>) EMPTY;
+    }
+
+    /**
+     * Builds a trie whose positions {@code 0..values.length - 1} hold the given values, nulls are empty positions.
+     */
+    static <V> PositionTrie<V> of(Object[] values) {
+        if (values.length == 0) {
+            return empty();
+        }
+
+        Node[] level = new Node[(values.length + BRANCH_MASK) >>> BITS];
+        for (int i = 0; i < level.length; i++) {
+            Object[] slots = new Object[WIDTH];
+            int from = i << BITS;
+            int length = Math.min(WIDTH, values.length - from);
+            System.arraycopy(values, from, slots, 0, length);
+            int live = 0;
+            for (int j = 0; j < length; j++) {
+                if (slots[j] != null) {
+                    live++;
+                }
+            }
+            level[i] = new Node(slots, null, live);
+        }
+
+        int shift = 0;
+        while (level.length > 1) {
+            Node[] parents = new Node[(level.length + BRANCH_MASK) >>> BITS];
+            for (int i = 0; i < parents.length; i++) {
+                Object[] slots = new Object[WIDTH];
+                int[] counts = new int[WIDTH];
+                int live = 0;
+                for (int j = 0; j < WIDTH && (i << BITS) + j < level.length; j++) {
+                    Node child = level[(i << BITS) + j];
+                    slots[j] = child;
+                    counts[j] = child.live;
+                    live += child.live;
+                }
+                parents[i] = new Node(slots, counts, live);
+            }
+            level = parents;
+            shift += BITS;
+        }
+        return new PositionTrie<>(level[0], shift, values.length);
+    }
+
+    /**
+     * @return number of non-empty positions
+     */
+    int size() {
+        return this.root.live;
+    }
+
+    /**
+     * @return first position that has never been used
+     */
+    int end() {
+        return this.end;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int position) {
+        if (position < 0 || position >= this.end) {
+            return null;
+        }
+        return (V) leafFor(position).slots[position & BRANCH_MASK];
+    }
+
+    /**
+     * @return a trie with the value stored at {@link #end()}
+     */
+    PositionTrie<V> append(V value) {
+        Node newRoot = this.root;
+        int newShift = this.shift;
+        if (this.end == capacity(this.shift)) {
+            Object[] slots = new Object[WIDTH];
+            int[] counts = new int[WIDTH];
+            slots[0] = this.root;
+            counts[0] = this.root.live;
+            newRoot = new Node(slots, counts, this.root.live);
+            newShift += BITS;
+        }
+        return new PositionTrie<V>(newRoot, newShift, this.end + 1).set(this.end, value);
+    }
+
+    /**
+     * @param value new value of the position, null empties it
+     */
+    PositionTrie<V> set(int position, V value) {
+        if (position < 0 || position >= this.end) {
+            throw new IndexOutOfBoundsException(position);
+        }
+        Node newRoot = set(this.root, this.shift, position, value);
+        return newRoot == this.root ? this : new PositionTrie<>(newRoot, this.shift, this.end);
+    }
+
+    /**
+     * @param rank zero-based index among non-empty positions, must be less than {@link #size()}
+     * @return the position holding the non-empty value with that rank
+     */
+    int positionOf(int rank) {
+        Node node = this.root;
+        int position = 0;
+        int remaining = rank;
+        for (int level = this.shift; level > 0; level -= BITS) {
+            int child = 0;
+            while (node.counts[child] <= remaining) {
+                remaining -= node.counts[child];
+                child++;
+            }
+            position |= child << level;
+            node = (Node) node.slots[child];
+        }
+
+        for (int slot = 0; ; slot++) {
+            if (node.slots[slot] != null && remaining-- == 0) {
+                return position | slot;
+            }
+        }
+    }
+
+    /**
+     * Adds up to {@code count} non-empty values to the target list, starting from the given position.
+     */
+    @SuppressWarnings("unchecked")
+    void collect(int fromPosition, int count, List<? super V> target) {
+        int added = 0;
+        int position = fromPosition;
+        while (added < count && position < this.end) {
+            Object[] slots = leafFor(position).slots;
+            for (int slot = position & BRANCH_MASK; slot < WIDTH && added < count && position < this.end; slot++) {
+                if (slots[slot] != null) {
+                    target.add((V) slots[slot]);
+                    added++;
+                }
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Iterates over the non-empty values of this version from the given position on, a leaf at a time.
+     */
+    Iterator<V> iterator(int fromPosition) {
+        return new Iterator<>() {
+            private int position = fromPosition;
+            private Object[] slots;
+            private V next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public V next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                V value = this.next;
+                this.next = advance();
+                return value;
+            }
+
+            @SuppressWarnings("unchecked")
+            private V advance() {
+                while (this.position < end) {
+                    if (this.slots == null || (this.position & BRANCH_MASK) == 0) {
+                        this.slots = leafFor(this.position).slots;
+                    }
+                    Object value = this.slots[this.position & BRANCH_MASK];
+                    this.position++;
+                    if (value != null) {
+                        return (V) value;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private Node leafFor(int position) {
+        Node node = this.root;
+        for (int level = this.shift; level > 0; level -= BITS) {
+            node = (Node) node.slots[(position >>> level) & BRANCH_MASK];
+        }
+        return node;
+    }
+
+    private static Node set(Node node, int level, int position, Object value) {
+        int index = (position >>> level) & BRANCH_MASK;
+
+        if (level == 0) {
+            Object current = node.slots[index];
+            if (current == value) {
+                return node;
+            }
+            Object[] slots = node.slots.clone();
+            slots[index] = value;
+            int delta = (value == null ? 0 : 1) - (current == null ? 0 : 1);
+            return new Node(slots, null, node.live + delta);
+        }
+
+        Node child = (Node) node.slots[index];
+        if (child == null) {
+            child = level == BITS
+                    ? new Node(new Object[WIDTH], null, 0)
+                    : new Node(new Object[WIDTH], new int[WIDTH], 0);
+        }
+        Node newChild = set(child, level - BITS, position, value);
+        if (newChild == child && node.slots[index] != null) {
+            return node;
+        }
+
+        Object[] slots = node.slots.clone();
+        int[] counts = node.counts.clone();
+        int delta = newChild.live - counts[index];
+        slots[index] = newChild;
+        counts[index] = newChild.live;
+        return new Node(slots, counts, node.live + delta);
+    }
+
+    private static int capacity(int shift) {
+        return shift + BITS >= Integer.SIZE - 1 ? Integer.MAX_VALUE : 1 << (shift + BITS);
+    }
+
+    private static final class Node {
+        private final Object[] slots;
+        private final int[] counts;
+        private final int live;
+
+        private Node(Object[] slots, int[] counts, int live) {
+            this.slots = slots;
+            this.counts = counts;
+            this.live = live;
+        }
+    }
+}
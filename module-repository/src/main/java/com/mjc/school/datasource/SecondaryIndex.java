@@ -0,0 +1,101 @@
+package com.mjc.school.datasource;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable index from a secondary key of the entities, e.g. the author of a news, to the ids of the entities having
+ * that key. The ids of a key are kept in the order they got the key, so a page of k of them is read in O(log n + k)
+ * without looking at the entities of other keys.
+ * <p>
+ * Like {@link LongTrieStore}, every update returns a new version, which a data source publishes together with the
+ * version of the entities it describes.
+ */
+final class SecondaryIndex {
+    private static final SecondaryIndex EMPTY = new SecondaryIndex(LongTrieStore.empty());
+
+    private final LongTrieStore<LongTrieStore<Long>> idsByKey;
+
+    private SecondaryIndex(LongTrieStore<LongTrieStore<Long>> idsByKey) {
+        this.idsByKey = idsByKey;
+    }
+
+    static SecondaryIndex empty() {
+        return EMPTY;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param previousKey key of the previous version of the entity, null if it had none or did not exist
+     * @param key key of the new version of the entity, null if it has none
+     * @return an index in which the id is listed under the new key only
+     */
+    SecondaryIndex update(long id, Long previousKey, Long key) {
+        if (Objects.equals(previousKey, key)) {
+            return this;
+        }
+
+        LongTrieStore<LongTrieStore<Long>> next = this.idsByKey;
+        if (previousKey != null) {
+            LongTrieStore<Long> ids = next.get(previousKey);
+            if (ids != null) {
+                ids = ids.remove(id);
+                next = ids.size() == 0 ? next.remove(previousKey) : next.put(previousKey, ids);
+            }
+        }
+        if (key != null) {
+            LongTrieStore<Long> ids = next.get(key);
+            next = next.put(key, (ids == null ? LongTrieStore.<Long>empty() : ids).put(id, id));
+        }
+        return new SecondaryIndex(next);
+    }
+
+    /**
+     * @return an index without the id, which was listed under the key
+     */
+    SecondaryIndex remove(long id, Long key) {
+        return update(id, key, null);
+    }
+
+    /**
+     * @param offset number of ids to skip
+     * @param limit maximum number of ids to return, -1 means no limit
+     */
+    List<Long> ids(long key, long offset, long limit) {
+        LongTrieStore<Long> ids = this.idsByKey.get(key);
+        return ids == null ? List.of() : ids.values(offset, limit);
+    }
+
+    int count(long key) {
+        LongTrieStore<Long> ids = this.idsByKey.get(key);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     * Collects the keys of a dataset that is loaded at once, without producing intermediate versions. Every id must be
+     * added only once.
+     */
+    static final class Builder {
+        private final Map<Long, LongTrieStore.Builder<Long>> idsByKey = new LinkedHashMap<>();
+
+        private Builder() {}
+
+        Builder add(long id, Long key) {
+            if (key != null) {
+                this.idsByKey.computeIfAbsent(key, k -> LongTrieStore.builder()).put(id, id);
+            }
+            return this;
+        }
+
+        SecondaryIndex build() {
+            LongTrieStore.Builder<LongTrieStore<Long>> builder = LongTrieStore.builder();
+            this.idsByKey.forEach((key, ids) -> builder.put(key, ids.build()));
+            return new SecondaryIndex(builder.build());
+        }
+    }
+}
@@ -0,0 +1,782 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Data source that keeps the entities in append-only, memory-mapped segment files. The heap only holds the index from
+ * id to record location, entities are decoded from the mapped file on every read.
+ * <p>
+ * A record is {@code [int payload length][int CRC32 of the payload][payload]}, the payload is
+ * {@code [byte type][long id][long sequence][entity][long version]}. Records written before entities had versions have
+ * no version at the end and a type of their own, their entities are read with version 0.
+ * <p>
+ * Saving an entity appends a new record and deleting one appends a tombstone, the previous record becomes dead. The
+ * sequence number is given to an id when it is first saved and is kept by its later versions, it restores the
+ * insertion order of the index when the segments are scanned at startup.
+ * <p>
+ * Like {@link DataSourceImpl}, readers take the current {@link State} with a single volatile read and writers are
+ * serialized by {@link #writeLock}. The {@link EntityIndexes} of the entities are part of the state and are rebuilt
+ * from the segments at startup. Sealed segments whose share of dead bytes is above a threshold are compacted: their
+ * live records are copied to the active segment and the file is deleted. A reader still holding an older state keeps
+ * reading the mapping of the deleted file, which stays valid until the mapping is garbage collected.
+ */
+@Slf4j
+class SegmentDataSource<T extends Model> implements DataSource<T> {
+    private static final byte UNVERSIONED_PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte PUT = 3;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int ENTITY_OFFSET = HEADER_SIZE + 1 + 2 * Long.BYTES;
+
+    private final Class<T> entityClass;
+    private final EntityCodec<T> codec;
+    private final Path directory;
+    private final String baseName;
+    private final int segmentSize;
+    private final double compactionDeadRatio;
+    private final Lock writeLock = new ReentrantLock();
+    private final AtomicLong nextId = new AtomicLong(1L);
+    private final ScheduledExecutorService compactor;
+
+    private volatile State<T> state;
+    private Segment activeSegment;
+    private long nextSequence;
+
+    /**
+     * @param indexes definition of the indexed fields of the entities, see {@link EntityIndexes#none()}
+     */
+    protected SegmentDataSource(
+            String dataFileName, Class<T> entityClass, EntityCodec<T> codec, EntityIndexes<T> indexes
+    ) {
+        this(dataFileName, entityClass, codec, indexes, DataSourceProperties.load());
+    }
+
+    SegmentDataSource(
+            String dataFileName, Class<T> entityClass, EntityCodec<T> codec, DataSourceProperties properties
+    ) {
+        this(dataFileName, entityClass, codec, EntityIndexes.none(), properties);
+    }
+
+    SegmentDataSource(
+            String dataFileName,
+            Class<T> entityClass,
+            EntityCodec<T> codec,
+            EntityIndexes<T> indexes,
+            DataSourceProperties properties
+    ) {
+        this.entityClass = entityClass;
+        this.codec = codec;
+        this.directory = properties.segmentDirectory();
+        this.baseName = dataFileName.substring(0, dataFileName.lastIndexOf('.'));
+        this.segmentSize = properties.segmentSizeBytes();
+        this.compactionDeadRatio = properties.segmentCompactionDeadRatio();
+
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.directory.toString(), e);
+        }
+
+        NavigableMap<Integer, Segment> segments = openSegments();
+        if (segments.isEmpty()) {
+            this.activeSegment = Segment.create(segmentPath(1), 1, this.segmentSize);
+            this.state = new State<>(LongTrieStore.empty(), new TreeMap<>(Map.of(1, this.activeSegment)), indexes);
+            seed(dataFileName, properties);
+        } else {
+            this.activeSegment = segments.lastEntry().getValue();
+            State<T> recovered = new State<>(recoverIndex(segments), segments, indexes);
+            this.state = new State<>(recovered.locations, segments, indexes.rebuild(recovered.entities(this.codec)));
+        }
+
+        long intervalMillis = properties.segmentCompactionIntervalMillis();
+        if (intervalMillis > 0) {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "segment-compactor-" + this.baseName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    compact();
+                } catch (RuntimeException e) {
+                    log.error("Compaction of the {} segments failed", this.baseName, e);
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    @Override
+    public T findById(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        State<T> current = this.state;
+        Long location = current.locations.get(id);
+        if (location == null) {
+            throw new EntityNotFoundException(id, this.entityClass);
+        }
+        return current.decode(location, this.codec);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return findAll(0, -1);
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit) {
+        return findPage(offset, limit).items();
+    }
+
+    @Override
+    public Page<T> findPage(long offset, long limit) {
+        State<T> current = this.state;
+        List<T> items = current.locations.values(offset, limit).stream()
+                .map(location -> current.decode(location, this.codec))
+                .toList();
+        return new Page<>(items, current.locations.size());
+    }
+
+    /**
+     * The entities are decoded from the segments of one version of the index as the stream is consumed, a segment
+     * compacted in the meantime is still read through its mapping.
+     */
+    @Override
+    public PageStream<T> streamPage(long offset) {
+        State<T> current = this.state;
+        return new PageStream<>(
+                current.locations.stream(offset).map(location -> current.decode(location, this.codec)),
+                current.locations.size()
+        );
+    }
+
+    @Override
+    public List<T> findAfter(long lastId, long limit) {
+        State<T> current = this.state;
+        return current.lookUp(current.indexes.idsAfter(lastId, limit), this.codec);
+    }
+
+    @Override
+    public Page<T> findPageBySecondaryKey(long key, long offset, long limit) {
+        State<T> current = this.state;
+        if (!current.indexes.hasSecondaryKey()) {
+            throw new UnsupportedOperationException(this.entityClass.getSimpleName() + " has no secondary key");
+        }
+
+        SecondaryIndex index = current.indexes.secondaryIndex();
+        return new Page<>(current.lookUp(index.ids(key, offset, limit), this.codec), index.count(key));
+    }
+
+    @Override
+    public Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        State<T> current = this.state;
+        SortedIndex index = current.indexes.sortedIndex(timestamp);
+        if (index == null) {
+            throw new UnsupportedOperationException(
+                    this.entityClass.getSimpleName() + " has no index of " + timestamp
+            );
+        }
+
+        long fromKey = from == null ? Long.MIN_VALUE : SortedIndex.timeKey(from);
+        long toKey = to == null ? Long.MAX_VALUE : SortedIndex.timeKey(to);
+        List<Long> ids = index.ids(fromKey, toKey, descending, offset, limit);
+        return new Page<>(current.lookUp(ids, this.codec), index.count(fromKey, toKey));
+    }
+
+    @Override
+    public T save(T value) throws EntityNullReferenceException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        T entityToSave = withAssignedId(value);
+        writeLock.lock();
+        try {
+            entityToSave = nextVersion(this.state, entityToSave);
+            this.state = append(this.state, entityToSave);
+        } finally {
+            writeLock.unlock();
+        }
+        return entityToSave;
+    }
+
+    /**
+     * The version is read from the end of the current record of the entity, without decoding it. It is checked once
+     * without the lock and once more under the write lock every save takes anyway.
+     */
+    @Override
+    public T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+        if (value.getId() == null) {
+            throw new KeyNullReferenceException();
+        }
+        Versions.checkVersion(this.state.versionOf(value.getId()), value, expectedVersion);
+
+        T entityToSave;
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            Versions.checkVersion(current.versionOf(value.getId()), value, expectedVersion);
+            entityToSave = nextVersion(current, value);
+            this.state = append(current, entityToSave);
+        } finally {
+            writeLock.unlock();
+        }
+        return entityToSave;
+    }
+
+    /**
+     * Readers see either none or all of the entities, but the records are appended one by one: a crash in the middle
+     * of a batch leaves the entities written so far in the segments.
+     */
+    @Override
+    public List<T> saveAll(Collection<T> values) throws EntityNullReferenceException {
+        if (values == null || values.stream().anyMatch(Objects::isNull)) {
+            throw new EntityNullReferenceException();
+        }
+
+        List<T> entitiesToSave = new ArrayList<>(values.size());
+        for (T value : values) {
+            entitiesToSave.add(withAssignedId(value));
+        }
+        writeLock.lock();
+        try {
+            State<T> next = this.state;
+            for (int i = 0; i < entitiesToSave.size(); i++) {
+                T entity = nextVersion(next, entitiesToSave.get(i));
+                entitiesToSave.set(i, entity);
+                next = append(next, entity);
+            }
+            this.state = next;
+        } finally {
+            writeLock.unlock();
+        }
+        return entitiesToSave;
+    }
+
+    @Override
+    public boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            if (!current.locations.containsKey(id)) {
+                throw new EntityNotFoundException(id, this.entityClass);
+            }
+            this.state = appendTombstone(current, id);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * As with {@link #saveAll(Collection)}, the deletion is atomic for readers but not for a crash.
+     */
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new KeyNullReferenceException();
+        }
+
+        writeLock.lock();
+        try {
+            State<T> next = this.state;
+            for (Long id : new LinkedHashSet<>(ids)) {
+                if (!next.locations.containsKey(id)) {
+                    throw new EntityNotFoundException(id, this.entityClass);
+                }
+            }
+            for (Long id : new LinkedHashSet<>(ids)) {
+                next = appendTombstone(next, id);
+            }
+            this.state = next;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private T withAssignedId(T value) {
+        if (value.getId() == null || value.getId() == 0) {
+            return value.withId(this.nextId.getAndIncrement());
+        }
+        this.nextId.accumulateAndGet(value.getId() + 1, Math::max);
+        return value;
+    }
+
+    private T nextVersion(State<T> current, T entity) {
+        return Versions.nextAfter(current.versionOf(entity.getId()), entity);
+    }
+
+    /**
+     * Appends a record of the entity, must be called under the write lock
+     *
+     * @return state in which the entity is at the appended record
+     */
+    private State<T> append(State<T> current, T entity) {
+        Long previous = current.locations.get(entity.getId());
+        long sequence = previous == null ? this.nextSequence++ : current.sequenceAt(previous);
+        byte[] record = encode(PUT, entity.getId(), sequence, entity);
+
+        NavigableMap<Integer, Segment> segments = current.segments;
+        if (!this.activeSegment.hasRoomFor(record.length)) {
+            segments = rollSegment(segments);
+        }
+        long location = this.activeSegment.append(record);
+        EntityIndexes<T> indexes = current.indexes.put(
+                previous == null ? null : current.decode(previous, this.codec), entity
+        );
+        if (previous != null) {
+            current.markDead(previous);
+        }
+        return new State<>(current.locations.put(entity.getId(), location), segments, indexes);
+    }
+
+    /**
+     * Appends a tombstone of an existing entity, must be called under the write lock
+     *
+     * @return state without the entity
+     */
+    private State<T> appendTombstone(State<T> current, long id) {
+        Long previous = current.locations.get(id);
+        byte[] tombstone = encode(DELETE, id, current.sequenceAt(previous), null);
+
+        NavigableMap<Integer, Segment> segments = current.segments;
+        if (!this.activeSegment.hasRoomFor(tombstone.length)) {
+            segments = rollSegment(segments);
+        }
+        this.activeSegment.append(tombstone);
+        this.activeSegment.deadBytes += tombstone.length;
+        EntityIndexes<T> indexes = current.indexes.remove(current.decode(previous, this.codec));
+        current.markDead(previous);
+        return new State<>(current.locations.remove(id), segments, indexes);
+    }
+
+    @Override
+    public long count() {
+        return this.state.locations.size();
+    }
+
+    @Override
+    public boolean existsById(Long id) throws KeyNullReferenceException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        return this.state.locations.containsKey(id);
+    }
+
+    /**
+     * Rewrites every sealed segment whose share of dead bytes is above the configured ratio. A segment is compacted
+     * under the write lock, readers are not blocked.
+     */
+    void compact() {
+        List<Segment> candidates = new ArrayList<>();
+        writeLock.lock();
+        try {
+            for (Segment segment : this.state.segments.values()) {
+                if (segment != this.activeSegment
+                        && segment.deadBytes > segment.writePosition * this.compactionDeadRatio) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        for (Segment segment : candidates) {
+            writeLock.lock();
+            try {
+                compact(segment);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops the compactor and flushes the segment files.
+     */
+    void close() {
+        if (this.compactor != null) {
+            this.compactor.shutdown();
+        }
+        writeLock.lock();
+        try {
+            this.state.segments.values().forEach(Segment::close);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void compact(Segment segment) {
+        State<T> current = this.state;
+        if (!current.segments.containsKey(segment.number)) {
+            return;
+        }
+        boolean olderSegmentExists = current.segments.firstKey() < segment.number;
+
+        LongTrieStore<Long> locations = current.locations;
+        NavigableMap<Integer, Segment> segments = current.segments;
+        int offset = 0;
+        while (offset < segment.writePosition) {
+            ByteBuffer record = segment.recordAt(offset);
+            int recordSize = record.remaining();
+            byte type = record.get(HEADER_SIZE);
+            long id = record.getLong(HEADER_SIZE + 1);
+            long location = location(segment.number, offset);
+
+            boolean live = type != DELETE && Long.valueOf(location).equals(locations.get(id));
+            // a tombstone is still needed while an older segment may hold a version of the deleted entity
+            boolean neededTombstone = type == DELETE && olderSegmentExists && !locations.containsKey(id);
+            if (live || neededTombstone) {
+                byte[] bytes = new byte[recordSize];
+                record.get(bytes);
+                if (!this.activeSegment.hasRoomFor(bytes.length)) {
+                    segments = rollSegment(segments);
+                }
+                long newLocation = this.activeSegment.append(bytes);
+                if (live) {
+                    locations = locations.put(id, newLocation);
+                } else {
+                    this.activeSegment.deadBytes += bytes.length;
+                }
+            }
+            offset += recordSize;
+        }
+
+        NavigableMap<Integer, Segment> remaining = new TreeMap<>(segments);
+        remaining.remove(segment.number);
+        this.state = new State<>(locations, Collections.unmodifiableNavigableMap(remaining), current.indexes);
+        segment.close();
+        segment.delete();
+    }
+
+    private NavigableMap<Integer, Segment> rollSegment(NavigableMap<Integer, Segment> segments) {
+        this.activeSegment.flush();
+        int number = this.activeSegment.number + 1;
+        this.activeSegment = Segment.create(segmentPath(number), number, this.segmentSize);
+        NavigableMap<Integer, Segment> result = new TreeMap<>(segments);
+        result.put(number, this.activeSegment);
+        return Collections.unmodifiableNavigableMap(result);
+    }
+
+    private void seed(String dataFileName, DataSourceProperties properties) {
+        DataFileReader.load(dataFileName, this.entityClass, properties, entity -> {
+            if (entity == null) {
+                throw new DataFileReadException(dataFileName, new EntityNullReferenceException());
+            }
+            // appended as read, so the entities of the data file keep version 0 as in the other backends
+            this.state = append(this.state, withAssignedId(entity));
+        });
+    }
+
+    private NavigableMap<Integer, Segment> openSegments() {
+        NavigableMap<Integer, Segment> segments = new TreeMap<>();
+        String prefix = this.baseName + "-";
+        try (Stream<Path> files = Files.list(this.directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(".seg"))
+                    .forEach(name -> {
+                        int number = Integer.parseInt(name.substring(prefix.length(), name.length() - 4));
+                        segments.put(number, Segment.open(this.directory.resolve(name), number, this.segmentSize));
+                    });
+        } catch (IOException e) {
+            throw new DataFileReadException(this.directory.toString(), e);
+        }
+        return Collections.unmodifiableNavigableMap(segments);
+    }
+
+    /**
+     * Scans all the segments from the oldest record to the newest, the last record of an id decides whether it is
+     * live and where. Live ids are then ordered by their sequence numbers.
+     */
+    private LongTrieStore<Long> recoverIndex(NavigableMap<Integer, Segment> segments) {
+        Map<Long, Long> latest = new HashMap<>();
+        // total bytes per segment at first, live bytes are subtracted below
+        Map<Integer, Long> segmentBytes = new HashMap<>();
+        for (Segment segment : segments.values()) {
+            int offset = 0;
+            ByteBuffer record;
+            while ((record = segment.validRecordAt(offset)) != null) {
+                long id = record.getLong(HEADER_SIZE + 1);
+                if (record.get(HEADER_SIZE) != DELETE) {
+                    latest.put(id, location(segment.number, offset));
+                } else {
+                    latest.remove(id);
+                }
+                offset += record.remaining();
+            }
+            segment.writePosition = offset;
+            segmentBytes.put(segment.number, (long) offset);
+        }
+
+        long[] ids = new long[latest.size()];
+        long[] locations = new long[latest.size()];
+        long[] sequences = new long[latest.size()];
+        Integer[] order = new Integer[latest.size()];
+        State<T> scanned = new State<>(LongTrieStore.empty(), segments, EntityIndexes.none());
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : latest.entrySet()) {
+            ids[i] = entry.getKey();
+            locations[i] = entry.getValue();
+            sequences[i] = scanned.sequenceAt(entry.getValue());
+            order[i] = i;
+            int liveBytes = scanned.recordAt(entry.getValue()).remaining();
+            segmentBytes.merge(segmentNumber(entry.getValue()), (long) -liveBytes, Long::sum);
+            i++;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(sequences[a], sequences[b]));
+
+        LongTrieStore.Builder<Long> builder = LongTrieStore.builder();
+        for (int index : order) {
+            builder.put(ids[index], locations[index]);
+            this.nextId.accumulateAndGet(ids[index] + 1, Math::max);
+        }
+        this.nextSequence = sequences.length == 0 ? 0 : sequences[order[order.length - 1]] + 1;
+        segmentBytes.forEach((number, dead) -> segments.get(number).deadBytes = dead);
+        return builder.build();
+    }
+
+    private byte[] encode(byte type, long id, long sequence, T entity) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeByte(type);
+            out.writeLong(id);
+            out.writeLong(sequence);
+            if (entity != null) {
+                this.codec.write(entity, out);
+                out.writeLong(entity.getVersion());
+            }
+
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), HEADER_SIZE, record.capacity() - HEADER_SIZE);
+            record.putInt(0, record.capacity() - HEADER_SIZE);
+            record.putInt(Integer.BYTES, (int) crc.getValue());
+            return record.array();
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.activeSegment.path.toString(), e);
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return this.directory.resolve(String.format("%s-%06d.seg", this.baseName, number));
+    }
+
+    private static long location(int segmentNumber, int offset) {
+        return ((long) segmentNumber << Integer.SIZE) | offset;
+    }
+
+    private static int segmentNumber(long location) {
+        return (int) (location >>> Integer.SIZE);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Version of the data source: locations of the live entities in insertion order, the segments they are in and the
+     * indexes of the entities.
+     */
+    private record State<T extends Model>(
+            LongTrieStore<Long> locations, NavigableMap<Integer, Segment> segments, EntityIndexes<T> indexes
+    ) {
+        T decode(long location, EntityCodec<T> codec) {
+            ByteBuffer record = recordAt(location);
+            return codec.read(record.position(ENTITY_OFFSET), versionAt(record));
+        }
+
+        /**
+         * @return version of the live entity with the id, null if there is none
+         */
+        Long versionOf(long id) {
+            Long location = this.locations.get(id);
+            return location == null ? null : versionAt(recordAt(location));
+        }
+
+        private static long versionAt(ByteBuffer record) {
+            return record.get(HEADER_SIZE) == UNVERSIONED_PUT ? 0 : record.getLong(record.limit() - Long.BYTES);
+        }
+
+        List<T> entities(EntityCodec<T> codec) {
+            List<Long> live = this.locations.values();
+            List<T> items = new ArrayList<>(live.size());
+            for (Long location : live) {
+                items.add(decode(location, codec));
+            }
+            return items;
+        }
+
+        List<T> lookUp(List<Long> ids, EntityCodec<T> codec) {
+            List<T> items = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                items.add(decode(this.locations.get(id), codec));
+            }
+            return items;
+        }
+
+        long sequenceAt(long location) {
+            return recordAt(location).getLong(HEADER_SIZE + 1 + Long.BYTES);
+        }
+
+        void markDead(long location) {
+            Segment segment = this.segments.get(segmentNumber(location));
+            segment.deadBytes += segment.recordAt(offset(location)).remaining();
+        }
+
+        private ByteBuffer recordAt(long location) {
+            return this.segments.get(segmentNumber(location)).recordAt(offset(location));
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final int number;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long deadBytes;
+
+        private Segment(Path path, int number, int size) throws IOException {
+            this.path = path;
+            this.number = number;
+            this.channel = FileChannel.open(
+                    path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+            );
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, this.channel.size()));
+        }
+
+        static Segment create(Path path, int number, int size) {
+            try {
+                return new Segment(path, number, size);
+            } catch (IOException e) {
+                throw new DataFileWriteException(path.toString(), e);
+            }
+        }
+
+        static Segment open(Path path, int number, int size) {
+            try {
+                return new Segment(path, number, size);
+            } catch (IOException e) {
+                throw new DataFileReadException(path.toString(), e);
+            }
+        }
+
+        boolean hasRoomFor(int recordSize) {
+            if (recordSize > this.buffer.capacity()) {
+                IOException cause = new IOException("Record of " + recordSize + " bytes exceeds the segment size");
+                throw new DataFileWriteException(this.path.toString(), cause);
+            }
+            return this.writePosition + recordSize <= this.buffer.capacity();
+        }
+
+        long append(byte[] record) {
+            this.buffer.put(this.writePosition, record);
+            long location = location(this.number, this.writePosition);
+            this.writePosition += record.length;
+            return location;
+        }
+
+        /**
+         * @return independent view of the record at the offset, from its header to its last byte
+         */
+        ByteBuffer recordAt(int offset) {
+            int payloadSize = this.buffer.getInt(offset);
+            return this.buffer.slice(offset, HEADER_SIZE + payloadSize);
+        }
+
+        /**
+         * @return the record at the offset, or null where the written part of the segment ends
+         */
+        ByteBuffer validRecordAt(int offset) {
+            if (offset + HEADER_SIZE > this.buffer.capacity()) {
+                return null;
+            }
+            int payloadSize = this.buffer.getInt(offset);
+            if (payloadSize < 1 + 2 * Long.BYTES || offset + HEADER_SIZE + payloadSize > this.buffer.capacity()) {
+                return null;
+            }
+            ByteBuffer record = this.buffer.slice(offset, HEADER_SIZE + payloadSize);
+            CRC32 crc = new CRC32();
+            crc.update(record.slice(HEADER_SIZE, payloadSize));
+            return record.getInt(Integer.BYTES) == (int) crc.getValue() ? record : null;
+        }
+
+        void flush() {
+            this.buffer.force();
+        }
+
+        void close() {
+            try {
+                flush();
+                this.channel.close();
+            } catch (IOException e) {
+                throw new DataFileWriteException(this.path.toString(), e);
+            }
+        }
+
+        void delete() {
+            try {
+                Files.delete(this.path);
+            } catch (IOException e) {
+                throw new DataFileWriteException(this.path.toString(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.model.Model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Binary image of all the entities of a data source.
+ * <p>
+ * The file starts with a header {@code [int magic][short format version][string entity type][long entity count]},
+ * followed by blocks {@code [int entities in block][int byte length][entities][int CRC32 of the entities]}. A block
+ * with zero entities ends the file. Each entity is written as {@code [long version]} followed by the entity encoded by
+ * an {@link EntityCodec}. Snapshots of format version 1 have no entity versions, their entities are read with version
+ * 0.
+ * <p>
+ * A snapshot is written to a temporary file which replaces the previous snapshot only after it is flushed to disk,
+ * so a crash while writing leaves the previous snapshot in place.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x4E445353;
+    private static final short FORMAT_VERSION = 2;
+    private static final short UNVERSIONED_FORMAT_VERSION = 1;
+    private static final int ENTITIES_PER_BLOCK = 4096;
+    private static final int MAX_BLOCK_SIZE = 256 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SnapshotFile() {}
+
+    static <T extends Model> void write(
+            Path file, Class<T> entityClass, Collection<T> entities, EntityCodec<T> codec
+    ) {
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+                out.writeUTF(entityClass.getSimpleName());
+                out.writeLong(entities.size());
+
+                ByteArrayOutputStream block = new ByteArrayOutputStream(BUFFER_SIZE);
+                DataOutputStream blockOut = new DataOutputStream(block);
+                int inBlock = 0;
+                for (T entity : entities) {
+                    blockOut.writeLong(entity.getVersion());
+                    codec.write(entity, blockOut);
+                    if (++inBlock == ENTITIES_PER_BLOCK) {
+                        writeBlock(out, inBlock, block);
+                        inBlock = 0;
+                    }
+                }
+                if (inBlock > 0) {
+                    writeBlock(out, inBlock, block);
+                }
+                writeBlock(out, 0, block);
+
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new DataFileWriteException(file.toString(), e);
+        }
+    }
+
+    /**
+     * Passes the entities of the snapshot to the consumer in the order they were written.
+     *
+     * @return false if there is no snapshot file
+     */
+    static <T extends Model> boolean read(
+            Path file, Class<T> entityClass, EntityCodec<T> codec, Consumer<T> consumer
+    ) {
+        if (!Files.exists(file)) {
+            return false;
+        }
+
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            DataInputStream in = new DataInputStream(stream);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+            short version = in.readShort();
+            if (version != FORMAT_VERSION && version != UNVERSIONED_FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format version " + version);
+            }
+            boolean versioned = version == FORMAT_VERSION;
+            String entityType = in.readUTF();
+            if (!entityType.equals(entityClass.getSimpleName())) {
+                throw new IOException(
+                        "Snapshot of " + entityType + " cannot be read as " + entityClass.getSimpleName()
+                );
+            }
+            long expectedCount = in.readLong();
+
+            long count = 0;
+            while (true) {
+                int inBlock = in.readInt();
+                int length = in.readInt();
+                if (inBlock < 0 || length < 0 || length > MAX_BLOCK_SIZE) {
+                    throw new IOException("Damaged block header after " + count + " entities");
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if (in.readInt() != (int) crc.getValue()) {
+                    throw new IOException("Checksum mismatch in the block after " + count + " entities");
+                }
+                if (inBlock == 0) {
+                    break;
+                }
+
+                ByteBuffer block = ByteBuffer.wrap(bytes);
+                for (int i = 0; i < inBlock; i++) {
+                    consumer.accept(versioned ? codec.read(block, block.getLong()) : codec.read(block));
+                }
+                count += inBlock;
+            }
+
+            if (count != expectedCount) {
+                throw new IOException("Snapshot holds " + count + " entities instead of " + expectedCount);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new DataFileReadException(file.toString(), e);
+        }
+    }
+
+    private static void writeBlock(DataOutputStream out, int inBlock, ByteArrayOutputStream block) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(block.toByteArray());
+        out.writeInt(inBlock);
+        out.writeInt(block.size());
+        block.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        block.reset();
+    }
+}
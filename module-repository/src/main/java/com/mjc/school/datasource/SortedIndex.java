@@ -0,0 +1,293 @@
+package com.mjc.school.datasource;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable index of entity ids sorted by a timestamp, equal timestamps are sorted by id.
+ * <p>
+ * The entries are kept in a persistent AVL tree whose nodes know the size of their subtree. An update copies the path
+ * to the changed node only and returns a new version, every version can be read without locking. The number of
+ * entries before a timestamp and the n-th entry are found in O(log n), so a page of k entries within a range, in
+ * either direction, is read in O(log n + k).
+ * <p>
+ * A timestamp is indexed as nanoseconds since the epoch in UTC, which covers the years 1677 to 2262. Timestamps
+ * outside of that are clamped to its ends.
+ */
+final class SortedIndex {
+    private static final SortedIndex EMPTY = new SortedIndex(null);
+
+    private final Node root;
+
+    private SortedIndex(Node root) {
+        this.root = root;
+    }
+
+    static SortedIndex empty() {
+        return EMPTY;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static long timeKey(LocalDateTime timestamp) {
+        long seconds = timestamp.toEpochSecond(ZoneOffset.UTC);
+        try {
+            return Math.addExact(Math.multiplyExact(seconds, 1_000_000_000L), timestamp.getNano());
+        } catch (ArithmeticException e) {
+            return seconds < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    int size() {
+        return size(this.root);
+    }
+
+    SortedIndex insert(long time, long id) {
+        Node newRoot = insert(this.root, time, id);
+        return newRoot == this.root ? this : new SortedIndex(newRoot);
+    }
+
+    /**
+     * @return an index without the entry, or this index if there was no such entry
+     */
+    SortedIndex remove(long time, long id) {
+        Node newRoot = remove(this.root, time, id);
+        return newRoot == this.root ? this : new SortedIndex(newRoot);
+    }
+
+    /**
+     * @return number of entries with {@code from <= time < to}
+     */
+    int count(long from, long to) {
+        return Math.max(0, rank(to) - rank(from));
+    }
+
+    /**
+     * @param from inclusive lower bound of the timestamps
+     * @param to exclusive upper bound of the timestamps
+     * @param descending whether the entries are returned from the latest timestamp to the earliest one
+     * @param offset number of entries to skip in the requested direction
+     * @param limit maximum number of entries to return, -1 means no limit
+     */
+    List<Long> ids(long from, long to, boolean descending, long offset, long limit) {
+        int first = rank(from);
+        int end = Math.max(first, rank(to));
+        long available = Math.max(0, end - first - offset);
+        int count = (int) (limit < 0 ? available : Math.min(limit, available));
+        if (count == 0) {
+            return List.of();
+        }
+
+        List<Long> result = new ArrayList<>(count);
+        if (descending) {
+            collect(this.root, end - offset - count, count, result);
+            Collections.reverse(result);
+        } else {
+            collect(this.root, first + offset, count, result);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of entries with a timestamp before the given one
+     */
+    private int rank(long time) {
+        int rank = 0;
+        Node node = this.root;
+        while (node != null) {
+            if (time <= node.time) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Adds {@code count} ids of the subtree in ascending order, starting with the one at position {@code skip}.
+     *
+     * @return number of ids added
+     */
+    private static int collect(Node node, long skip, int count, List<Long> result) {
+        if (node == null || count == 0) {
+            return 0;
+        }
+
+        int leftSize = size(node.left);
+        int added = 0;
+        if (skip < leftSize) {
+            added += collect(node.left, skip, count, result);
+        }
+        if (added < count && skip <= leftSize) {
+            result.add(node.id);
+            added++;
+        }
+        if (added < count) {
+            added += collect(node.right, Math.max(0, skip - leftSize - 1), count - added, result);
+        }
+        return added;
+    }
+
+    private static int compare(long time, long id, Node node) {
+        int byTime = Long.compare(time, node.time);
+        return byTime != 0 ? byTime : Long.compare(id, node.id);
+    }
+
+    private static Node insert(Node node, long time, long id) {
+        if (node == null) {
+            return new Node(time, id, null, null);
+        }
+
+        int comparison = compare(time, id, node);
+        if (comparison == 0) {
+            return node;
+        }
+        if (comparison < 0) {
+            Node left = insert(node.left, time, id);
+            return left == node.left ? node : balance(node.with(left, node.right));
+        }
+        Node right = insert(node.right, time, id);
+        return right == node.right ? node : balance(node.with(node.left, right));
+    }
+
+    private static Node remove(Node node, long time, long id) {
+        if (node == null) {
+            return null;
+        }
+
+        int comparison = compare(time, id, node);
+        if (comparison < 0) {
+            Node left = remove(node.left, time, id);
+            return left == node.left ? node : balance(node.with(left, node.right));
+        }
+        if (comparison > 0) {
+            Node right = remove(node.right, time, id);
+            return right == node.right ? node : balance(node.with(node.left, right));
+        }
+
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        Node right = remove(node.right, successor.time, successor.id);
+        return balance(new Node(successor.time, successor.id, node.left, right));
+    }
+
+    private static Node balance(Node node) {
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            Node left = node.left;
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.with(left, node.right));
+        }
+        if (balance < -1) {
+            Node right = node.right;
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.with(node.left, right));
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        return left.with(left.left, node.with(left.right, node.right));
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        return right.with(node.with(node.left, right.left), right.right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static final class Node {
+        private final long time;
+        private final long id;
+        private final Node left;
+        private final Node right;
+        private final int height;
+        private final int size;
+
+        private Node(long time, long id, Node left, Node right) {
+            this.time = time;
+            this.id = id;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        private Node with(Node left, Node right) {
+            return new Node(this.time, this.id, left, right);
+        }
+    }
+
+    /**
+     * Collects the entries of a dataset that is loaded at once and builds a balanced tree of them in one pass.
+     */
+    static final class Builder {
+        private long[] times = new long[16];
+        private long[] ids = new long[16];
+        private int size;
+
+        private Builder() {}
+
+        Builder add(long time, long id) {
+            if (this.size == this.times.length) {
+                this.times = Arrays.copyOf(this.times, this.size * 2);
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            }
+            this.times[this.size] = time;
+            this.ids[this.size] = id;
+            this.size++;
+            return this;
+        }
+
+        SortedIndex build() {
+            Integer[] order = new Integer[this.size];
+            for (int i = 0; i < this.size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byTime = Long.compare(this.times[a], this.times[b]);
+                return byTime != 0 ? byTime : Long.compare(this.ids[a], this.ids[b]);
+            });
+            return new SortedIndex(build(order, 0, this.size));
+        }
+
+        private Node build(Integer[] order, int from, int to) {
+            if (from >= to) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            return new Node(
+                    this.times[order[middle]], this.ids[order[middle]],
+                    build(order, from, middle), build(order, middle + 1, to)
+            );
+        }
+    }
+}
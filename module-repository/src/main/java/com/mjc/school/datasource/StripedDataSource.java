@@ -0,0 +1,443 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Data source whose entities are partitioned by id across independently locked stripes, so writers of ids in different
+ * stripes do not wait for each other. Each stripe is an immutable {@link LongTrieStore} published through a volatile
+ * field, readers never lock.
+ * <p>
+ * The insertion order used for paging is kept apart from the stripes in an order index of ids, which is only changed
+ * when an id is added or deleted. The order index and the {@link EntityIndexes} are persistent too, a writer replaces
+ * their roots with a compare-and-set and repeats its change on the new root if another writer was first. No writer
+ * waits for another one of a different stripe then, not even when both change an indexed timestamp such as the last
+ * update date of a news. The changes of one id are made under the lock of its stripe and the changes of different ids
+ * commute, so the order in which the writers win does not matter.
+ * <p>
+ * Unlike {@link DataSourceImpl} there is no single version of the whole dataset: a page is assembled from the order
+ * index and the current stripes, so it may already miss an entity deleted while the page was read, and the count of
+ * {@link #findPage(long, long)} is the size of the order index the page was taken from.
+ */
+class StripedDataSource<T extends Model> implements DataSource<T> {
+    private final Class<T> entityClass;
+    private final Stripe<T>[] stripes;
+    private final int stripeMask;
+    private final AtomicLong nextId = new AtomicLong(1L);
+    private final AtomicReference<LongTrieStore<Long>> order = new AtomicReference<>();
+    private final AtomicReference<EntityIndexes<T>> indexes = new AtomicReference<>();
+
+    protected StripedDataSource(String dataFileName, Class<T> entityClass) {
+        this(dataFileName, entityClass, EntityIndexes.none(), DataSourceProperties.load());
+    }
+
+    /**
+     * @param indexes definition of the indexed fields of the entities, see {@link EntityIndexes#none()}
+     */
+    protected StripedDataSource(String dataFileName, Class<T> entityClass, EntityIndexes<T> indexes) {
+        this(dataFileName, entityClass, indexes, DataSourceProperties.load());
+    }
+
+    StripedDataSource(String dataFileName, Class<T> entityClass, DataSourceProperties properties) {
+        this(dataFileName, entityClass, EntityIndexes.none(), properties);
+    }
+
+    @SuppressWarnings("unchecked")
+    StripedDataSource(
+            String dataFileName, Class<T> entityClass, EntityIndexes<T> indexes, DataSourceProperties properties
+    ) {
+        this.entityClass = entityClass;
+        int stripeCount = properties.stripeCount();
+        this.stripeMask = stripeCount - 1;
+
+        List<LongTrieStore.Builder<T>> builders = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            builders.add(LongTrieStore.builder());
+        }
+        LongTrieStore.Builder<Long> orderBuilder = LongTrieStore.builder();
+        DataFileReader.load(dataFileName, entityClass, properties, item -> {
+            builders.get(stripeIndex(item.getId())).put(item.getId(), item);
+            orderBuilder.put(item.getId(), item.getId());
+            this.nextId.accumulateAndGet(item.getId() + 1, Math::max);
+        });
+
+        @SuppressWarnings("unchecked")
+        Stripe<T>[] loaded = (Stripe<T>[]) new Stripe<?>[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            loaded[i] = new Stripe<>(builders.get(i).build());
+        }
+        this.stripes = loaded;
+        this.order.set(orderBuilder.build());
+
+        this.indexes.set(indexes.rebuild(collect(this.order.get().values())));
+    }
+
+    private int stripeIndex(long id) {
+        int hash = Long.hashCode(id);
+        return (hash ^ (hash >>> 16)) & this.stripeMask;
+    }
+
+    private Stripe<T> stripe(long id) {
+        return this.stripes[stripeIndex(id)];
+    }
+
+    @Override
+    public T findById(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        T entity = stripe(id).values.get(id);
+        if (entity == null) {
+            throw new EntityNotFoundException(id, entityClass);
+        }
+        return entity;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return collect(this.order.get().values());
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit) {
+        return collect(this.order.get().values(offset, limit));
+    }
+
+    @Override
+    public Page<T> findPage(long offset, long limit) {
+        LongTrieStore<Long> snapshot = this.order.get();
+        return new Page<>(collect(snapshot.values(offset, limit)), snapshot.size());
+    }
+
+    /**
+     * The ids are read lazily from one version of the order index and looked up in the stripes as the stream is
+     * consumed, so an entity deleted in the meantime is left out and one updated in the meantime is returned in its
+     * new version.
+     */
+    @Override
+    public PageStream<T> streamPage(long offset) {
+        LongTrieStore<Long> snapshot = this.order.get();
+        Stream<T> items = snapshot.stream(offset)
+                .map(id -> stripe(id).values.get(id))
+                .filter(Objects::nonNull);
+        return new PageStream<>(items, snapshot.size());
+    }
+
+    /**
+     * An entity deleted after the ids were read is left out, so a page may be shorter than the limit although more
+     * entities follow.
+     */
+    @Override
+    public List<T> findAfter(long lastId, long limit) {
+        return collect(this.indexes.get().idsAfter(lastId, limit));
+    }
+
+    /**
+     * The entities are looked up in the stripes after the ids were read from the secondary index, so an entity whose
+     * key was changed in the meantime is left out of the page, but still counted.
+     */
+    @Override
+    public Page<T> findPageBySecondaryKey(long key, long offset, long limit) {
+        EntityIndexes<T> snapshot = this.indexes.get();
+        if (!snapshot.hasSecondaryKey()) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no secondary key");
+        }
+
+        SecondaryIndex index = snapshot.secondaryIndex();
+        List<T> items = new ArrayList<>();
+        for (T entity : collect(index.ids(key, offset, limit))) {
+            if (Objects.equals(snapshot.secondaryKeyOf(entity), key)) {
+                items.add(entity);
+            }
+        }
+        return new Page<>(items, index.count(key));
+    }
+
+    /**
+     * As with {@link #findPageBySecondaryKey(long, long, long)}, an entity whose timestamp was moved out of the range
+     * after the ids were read is left out of the page, but still counted.
+     */
+    @Override
+    public Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        EntityIndexes<T> snapshot = this.indexes.get();
+        SortedIndex index = snapshot.sortedIndex(timestamp);
+        if (index == null) {
+            throw new UnsupportedOperationException(entityClass.getSimpleName() + " has no index of " + timestamp);
+        }
+
+        long fromKey = from == null ? Long.MIN_VALUE : SortedIndex.timeKey(from);
+        long toKey = to == null ? Long.MAX_VALUE : SortedIndex.timeKey(to);
+        List<T> items = new ArrayList<>();
+        for (T entity : collect(index.ids(fromKey, toKey, descending, offset, limit))) {
+            LocalDateTime value = snapshot.timestampOf(timestamp, entity);
+            if (value != null && SortedIndex.timeKey(value) >= fromKey && SortedIndex.timeKey(value) < toKey) {
+                items.add(entity);
+            }
+        }
+        return new Page<>(items, index.count(fromKey, toKey));
+    }
+
+    /**
+     * Looks the ids up in their stripes, an id deleted after the order index was read is skipped.
+     */
+    private List<T> collect(List<Long> ids) {
+        List<T> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = stripe(id).values.get(id);
+            if (entity != null) {
+                items.add(entity);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public T save(T value) throws EntityNullReferenceException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        T entityToSave = value;
+        if (value.getId() == null || value.getId() == 0) {
+            entityToSave = value.withId(this.nextId.getAndIncrement());
+        } else {
+            this.nextId.accumulateAndGet(value.getId() + 1, Math::max);
+        }
+
+        long id = entityToSave.getId();
+        Stripe<T> stripe = stripe(id);
+        stripe.lock.lock();
+        try {
+            T previous = stripe.values.get(id);
+            entityToSave = Versions.next(previous, entityToSave);
+            put(stripe, previous, entityToSave);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        return entityToSave;
+    }
+
+    /**
+     * Takes the lock of the stripe of the entity only, the same as {@link #save(Model)}
+     */
+    @Override
+    public T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+        if (value.getId() == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        long id = value.getId();
+        Stripe<T> stripe = stripe(id);
+        Versions.check(stripe.values.get(id), value, expectedVersion);
+        T entityToSave;
+        stripe.lock.lock();
+        try {
+            T previous = stripe.values.get(id);
+            Versions.check(previous, value, expectedVersion);
+            entityToSave = Versions.next(previous, value);
+            put(stripe, previous, entityToSave);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        return entityToSave;
+    }
+
+    /**
+     * Called under the lock of the stripe
+     */
+    private void put(Stripe<T> stripe, T previous, T entity) {
+        stripe.values = stripe.values.put(entity.getId(), entity);
+        index(previous, entity);
+    }
+
+    /**
+     * Called under the lock of the stripe of the entity, after the stripe is changed
+     *
+     * @param previous previous version of the entity, null if it is new
+     */
+    private void index(T previous, T entity) {
+        long id = entity.getId();
+        if (previous == null) {
+            this.order.updateAndGet(order -> order.put(id, id));
+        }
+        // an update that changes no index leaves the root alone, a compare-and-set would contend for nothing
+        if (this.indexes.get().changes(previous, entity)) {
+            this.indexes.updateAndGet(indexes -> indexes.put(previous, entity));
+        }
+    }
+
+    /**
+     * Called under the lock of the stripe of the entity, after the stripe is changed
+     */
+    private void unindex(T previous) {
+        long id = previous.getId();
+        this.order.updateAndGet(order -> order.remove(id));
+        this.indexes.updateAndGet(indexes -> indexes.remove(previous));
+    }
+
+    /**
+     * The stripes of all the entities are locked in ascending order. The entities are indexed one by one, readers may
+     * see a part of the batch while it is being written.
+     */
+    @Override
+    public List<T> saveAll(Collection<T> values) throws EntityNullReferenceException {
+        if (values == null || values.stream().anyMatch(Objects::isNull)) {
+            throw new EntityNullReferenceException();
+        }
+
+        long newCount = values.stream().filter(value -> value.getId() == null || value.getId() == 0).count();
+        long blockId = this.nextId.getAndAdd(newCount);
+        List<T> entitiesToSave = new ArrayList<>(values.size());
+        for (T value : values) {
+            if (value.getId() == null || value.getId() == 0) {
+                entitiesToSave.add(value.withId(blockId++));
+            } else {
+                this.nextId.accumulateAndGet(value.getId() + 1, Math::max);
+                entitiesToSave.add(value);
+            }
+        }
+
+        List<Stripe<T>> locked = lockStripes(entitiesToSave.stream().map(Model::getId).toList());
+        try {
+            List<T> previousVersions = new ArrayList<>(entitiesToSave.size());
+            for (int i = 0; i < entitiesToSave.size(); i++) {
+                Stripe<T> stripe = stripe(entitiesToSave.get(i).getId());
+                T previous = stripe.values.get(entitiesToSave.get(i).getId());
+                T entity = Versions.next(previous, entitiesToSave.get(i));
+                entitiesToSave.set(i, entity);
+                previousVersions.add(previous);
+                stripe.values = stripe.values.put(entity.getId(), entity);
+            }
+            for (int i = 0; i < entitiesToSave.size(); i++) {
+                index(previousVersions.get(i), entitiesToSave.get(i));
+            }
+        } finally {
+            locked.forEach(stripe -> stripe.lock.unlock());
+        }
+
+        return entitiesToSave;
+    }
+
+    @Override
+    public boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        Stripe<T> stripe = stripe(id);
+        stripe.lock.lock();
+        try {
+            LongTrieStore<T> current = stripe.values;
+            LongTrieStore<T> next = current.remove(id);
+            if (next == current) {
+                throw new EntityNotFoundException(id, entityClass);
+            }
+            T previous = current.get(id);
+            stripe.values = next;
+            unindex(previous);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Locks the stripes as {@link #saveAll(Collection)} does and checks all the ids before deleting any of them.
+     */
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new KeyNullReferenceException();
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        List<Stripe<T>> locked = lockStripes(distinctIds);
+        try {
+            List<T> previousVersions = new ArrayList<>(distinctIds.size());
+            for (Long id : distinctIds) {
+                T previous = stripe(id).values.get(id);
+                if (previous == null) {
+                    throw new EntityNotFoundException(id, entityClass);
+                }
+                previousVersions.add(previous);
+            }
+            for (Long id : distinctIds) {
+                Stripe<T> stripe = stripe(id);
+                stripe.values = stripe.values.remove(id);
+            }
+            previousVersions.forEach(this::unindex);
+        } finally {
+            locked.forEach(stripe -> stripe.lock.unlock());
+        }
+
+        return true;
+    }
+
+    /**
+     * Locks the stripes of the ids once each, in ascending stripe order so that two batches cannot deadlock
+     *
+     * @return the locked stripes
+     */
+    private List<Stripe<T>> lockStripes(Collection<Long> ids) {
+        BitSet stripeIndexes = new BitSet(this.stripes.length);
+        ids.forEach(id -> stripeIndexes.set(stripeIndex(id)));
+        List<Stripe<T>> locked = new ArrayList<>(stripeIndexes.cardinality());
+        stripeIndexes.stream().forEach(index -> {
+            this.stripes[index].lock.lock();
+            locked.add(this.stripes[index]);
+        });
+        return locked;
+    }
+
+    @Override
+    public long count() {
+        return this.order.get().size();
+    }
+
+    @Override
+    public boolean existsById(Long id) throws KeyNullReferenceException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        return stripe(id).values.containsKey(id);
+    }
+
+    private static final class Stripe<T> {
+        private final Lock lock = new ReentrantLock();
+        private volatile LongTrieStore<T> values;
+
+        private Stripe(LongTrieStore<T> values) {
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.mjc.school.datasource;
+
+/**
+ * Counters of a data source that keeps recently used entities on heap and the others on disk, counted since the data
+ * source was created
+ *
+ * @param hotEntries number of entities on heap
+ * @param coldRuns number of files of the cold tier
+ * @param coldRecords number of records in the files of the cold tier, including versions replaced by later ones
+ * @param hotHits number of reads answered from the heap
+ * @param coldHits number of reads answered from the files
+ * @param promotions number of entities read from the files and kept on heap again
+ * @param demotions number of entities dropped from the heap
+ * @param bloomSkips number of files not read because their Bloom filter ruled the id out
+ */
+public record TierStatistics(
+        long hotEntries,
+        long coldRuns,
+        long coldRecords,
+        long hotHits,
+        long coldHits,
+        long promotions,
+        long demotions,
+        long bloomSkips
+) {
+    /**
+     * @return share of the reads answered from the heap, 0 if nothing was read yet
+     */
+    public double hotHitRate() {
+        long reads = this.hotHits + this.coldHits;
+        return reads == 0 ? 0 : (double) this.hotHits / reads;
+    }
+}
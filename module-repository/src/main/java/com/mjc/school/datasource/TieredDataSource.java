@@ -0,0 +1,749 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Data source that keeps the recently read or written entities on heap and the others in {@link ColdRun} files. The
+ * ids and the {@link EntityIndexes} stay on heap, so {@link #existsById(Long)}, {@link #count()} and the index lookups
+ * never touch the files; only the entities themselves move between the tiers.
+ * <p>
+ * The entities of the data file are written to the first run at startup, the heap tier starts empty. Saved entities go
+ * to the heap tier. A background sweeper demotes the entities that were not used for longer than the idle time and,
+ * while the heap tier holds more entities than its limit, the least recently used ones. Entities changed since they
+ * were last demoted are written to a new run first, the others are just dropped. Reading a demoted entity by its id
+ * promotes it again, scans and pages read the runs without promoting. Runs are searched newest first and skipped when
+ * their Bloom filter rules the id out. When there are more than {@value #MAX_RUNS} runs the sweeper merges them into
+ * one, leaving out replaced versions and deleted entities.
+ * <p>
+ * Readers take the current {@link State} with a single volatile read and writers are serialized by {@link #writeLock},
+ * as in {@link DataSourceImpl}. The files are a cache of the heap, not a log: they are deleted at startup and when the
+ * data source is closed, so changes are kept in memory only.
+ */
+@Slf4j
+class TieredDataSource<T extends Model> implements DataSource<T> {
+    private static final int MAX_RUNS = 8;
+
+    private final Class<T> entityClass;
+    private final EntityCodec<T> codec;
+    private final Path directory;
+    private final boolean temporaryDirectory;
+    private final String baseName;
+    private final int hotMaxEntries;
+    private final long idleNanos;
+    private final Lock writeLock = new ReentrantLock();
+    private final Lock sweepLock = new ReentrantLock();
+    private final AtomicLong nextId = new AtomicLong(1L);
+    private final AtomicBoolean sweepRequested = new AtomicBoolean();
+    private final ConcurrentHashMap<Long, Hot<T>> hot = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder hotHits = new LongAdder();
+    private final LongAdder coldHits = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder bloomSkips = new LongAdder();
+
+    private volatile State<T> state;
+    /**
+     * Newest first, replaced as a whole by the sweeper only
+     */
+    private volatile List<ColdRun<T>> runs;
+    private int nextRunNumber = 1;
+
+    /**
+     * @param indexes definition of the indexed fields of the entities, see {@link EntityIndexes#none()}
+     */
+    protected TieredDataSource(
+            String dataFileName, Class<T> entityClass, EntityCodec<T> codec, EntityIndexes<T> indexes
+    ) {
+        this(dataFileName, entityClass, codec, indexes, DataSourceProperties.load());
+    }
+
+    TieredDataSource(
+            String dataFileName,
+            Class<T> entityClass,
+            EntityCodec<T> codec,
+            EntityIndexes<T> indexes,
+            DataSourceProperties properties
+    ) {
+        this.entityClass = entityClass;
+        this.codec = codec;
+        this.baseName = dataFileName.substring(0, dataFileName.lastIndexOf('.'));
+        this.hotMaxEntries = properties.tieredHotMaxEntries();
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(properties.tieredIdleMillis());
+        this.temporaryDirectory = properties.tieredDirectory().isEmpty();
+        this.directory = properties.tieredDirectory().orElseGet(this::createTemporaryDirectory);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.directory.toString(), e);
+        }
+        deleteRunFiles();
+
+        List<T> loaded = new ArrayList<>();
+        LongTrieStore.Builder<Long> orderBuilder = LongTrieStore.builder();
+        DataFileReader.load(dataFileName, entityClass, properties, item -> {
+            if (item == null) {
+                throw new DataFileReadException(dataFileName, new EntityNullReferenceException());
+            }
+            loaded.add(item);
+            orderBuilder.put(item.getId(), item.getId());
+            this.nextId.accumulateAndGet(item.getId() + 1, Math::max);
+        });
+        LongTrieStore<Long> order = orderBuilder.build();
+        this.state = new State<>(order, indexes.rebuild(lookUpLoaded(order, loaded)));
+        this.runs = loaded.isEmpty() ? List.of() : List.of(writeRun(loaded));
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tiered-sweeper-" + this.baseName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = properties.tieredDemotionIntervalMillis();
+        if (intervalMillis > 0) {
+            this.sweeper.scheduleWithFixedDelay(
+                    this::sweepInBackground, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    @Override
+    public T findById(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        if (!this.state.order.containsKey(id)) {
+            throw new EntityNotFoundException(id, this.entityClass);
+        }
+
+        Hot<T> entry = this.hot.get(id);
+        if (entry != null) {
+            this.hotHits.increment();
+            entry.touch();
+            return entry.entity;
+        }
+        // read inside the mapping function, so that a version demoted in the meantime is read from its new run
+        entry = this.hot.computeIfAbsent(id, key -> {
+            T entity = readCold(key);
+            if (entity == null) {
+                return null;
+            }
+            this.coldHits.increment();
+            this.promotions.increment();
+            return new Hot<>(entity, false);
+        });
+        if (entry == null) {
+            throw new EntityNotFoundException(id, this.entityClass);
+        }
+        requestSweepIfOverLimit();
+        return entry.entity;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return collect(this.state.order.values());
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit) {
+        return collect(this.state.order.values(offset, limit));
+    }
+
+    @Override
+    public Page<T> findPage(long offset, long limit) {
+        LongTrieStore<Long> snapshot = this.state.order;
+        return new Page<>(collect(snapshot.values(offset, limit)), snapshot.size());
+    }
+
+    /**
+     * The entities are looked up as the stream is consumed, so an entity deleted in the meantime is left out and one
+     * updated in the meantime is returned in its new version.
+     */
+    @Override
+    public PageStream<T> streamPage(long offset) {
+        LongTrieStore<Long> snapshot = this.state.order;
+        Stream<T> items = snapshot.stream(offset)
+                .map(this::lookUp)
+                .filter(Objects::nonNull);
+        return new PageStream<>(items, snapshot.size());
+    }
+
+    @Override
+    public List<T> findAfter(long lastId, long limit) {
+        return collect(this.state.indexes.idsAfter(lastId, limit));
+    }
+
+    /**
+     * The entities are looked up after the ids were read from the secondary index, so an entity whose key was changed
+     * in the meantime is left out of the page, but still counted.
+     */
+    @Override
+    public Page<T> findPageBySecondaryKey(long key, long offset, long limit) {
+        EntityIndexes<T> snapshot = this.state.indexes;
+        if (!snapshot.hasSecondaryKey()) {
+            throw new UnsupportedOperationException(this.entityClass.getSimpleName() + " has no secondary key");
+        }
+
+        SecondaryIndex index = snapshot.secondaryIndex();
+        List<T> items = new ArrayList<>();
+        for (T entity : collect(index.ids(key, offset, limit))) {
+            if (Objects.equals(snapshot.secondaryKeyOf(entity), key)) {
+                items.add(entity);
+            }
+        }
+        return new Page<>(items, index.count(key));
+    }
+
+    /**
+     * As with {@link #findPageBySecondaryKey(long, long, long)}, an entity whose timestamp was moved out of the range
+     * after the ids were read is left out of the page, but still counted.
+     */
+    @Override
+    public Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        EntityIndexes<T> snapshot = this.state.indexes;
+        SortedIndex index = snapshot.sortedIndex(timestamp);
+        if (index == null) {
+            throw new UnsupportedOperationException(
+                    this.entityClass.getSimpleName() + " has no index of " + timestamp
+            );
+        }
+
+        long fromKey = from == null ? Long.MIN_VALUE : SortedIndex.timeKey(from);
+        long toKey = to == null ? Long.MAX_VALUE : SortedIndex.timeKey(to);
+        List<T> items = new ArrayList<>();
+        for (T entity : collect(index.ids(fromKey, toKey, descending, offset, limit))) {
+            LocalDateTime value = snapshot.timestampOf(timestamp, entity);
+            if (value != null && SortedIndex.timeKey(value) >= fromKey && SortedIndex.timeKey(value) < toKey) {
+                items.add(entity);
+            }
+        }
+        return new Page<>(items, index.count(fromKey, toKey));
+    }
+
+    /**
+     * Looks the ids up without promoting the entities found in the runs, an id deleted in the meantime is skipped
+     */
+    private List<T> collect(List<Long> ids) {
+        List<T> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = lookUp(id);
+            if (entity != null) {
+                items.add(entity);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return the entity from the heap or from the runs without promoting it, null if it is in neither
+     */
+    private T lookUp(long id) {
+        Hot<T> entry = this.hot.get(id);
+        if (entry != null) {
+            this.hotHits.increment();
+            return entry.entity;
+        }
+        T entity = readCold(id);
+        if (entity != null) {
+            this.coldHits.increment();
+        }
+        return entity;
+    }
+
+    private T readCold(long id) {
+        for (ColdRun<T> run : this.runs) {
+            if (!run.mightContain(id)) {
+                this.bloomSkips.increment();
+                continue;
+            }
+            T entity = run.read(id);
+            if (entity != null) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the current version of the entity in the given state, null if there is none
+     */
+    private T latest(State<T> current, long id) {
+        if (!current.order.containsKey(id)) {
+            return null;
+        }
+        Hot<T> entry = this.hot.get(id);
+        // a version removed from the heap in the meantime was written to a run before
+        return entry != null ? entry.entity : readCold(id);
+    }
+
+    @Override
+    public T save(T value) throws EntityNullReferenceException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        T entityToSave = withAssignedId(value);
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            T previous = latest(current, entityToSave.getId());
+            entityToSave = Versions.next(previous, entityToSave);
+            this.state = put(current, previous, entityToSave);
+        } finally {
+            writeLock.unlock();
+        }
+        requestSweepIfOverLimit();
+        return entityToSave;
+    }
+
+    /**
+     * The version is checked once without the lock and once more under the write lock every save takes anyway.
+     */
+    @Override
+    public T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException {
+        if (value == null) {
+            throw new EntityNullReferenceException();
+        }
+        if (value.getId() == null) {
+            throw new KeyNullReferenceException();
+        }
+        Versions.check(latest(this.state, value.getId()), value, expectedVersion);
+
+        T entityToSave;
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            T previous = latest(current, value.getId());
+            Versions.check(previous, value, expectedVersion);
+            entityToSave = Versions.next(previous, value);
+            this.state = put(current, previous, entityToSave);
+        } finally {
+            writeLock.unlock();
+        }
+        requestSweepIfOverLimit();
+        return entityToSave;
+    }
+
+    /**
+     * The entities are put on heap one by one and the state with their ids and indexes is published once, so readers
+     * may see the new version of an updated entity before the rest of the batch.
+     */
+    @Override
+    public List<T> saveAll(Collection<T> values) throws EntityNullReferenceException {
+        if (values == null || values.stream().anyMatch(Objects::isNull)) {
+            throw new EntityNullReferenceException();
+        }
+
+        List<T> entitiesToSave = new ArrayList<>(values.size());
+        for (T value : values) {
+            entitiesToSave.add(withAssignedId(value));
+        }
+        writeLock.lock();
+        try {
+            State<T> next = this.state;
+            for (int i = 0; i < entitiesToSave.size(); i++) {
+                T previous = latest(next, entitiesToSave.get(i).getId());
+                T entity = Versions.next(previous, entitiesToSave.get(i));
+                entitiesToSave.set(i, entity);
+                next = put(next, previous, entity);
+            }
+            this.state = next;
+        } finally {
+            writeLock.unlock();
+        }
+        requestSweepIfOverLimit();
+        return entitiesToSave;
+    }
+
+    @Override
+    public boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            T previous = latest(current, id);
+            if (previous == null) {
+                throw new EntityNotFoundException(id, this.entityClass);
+            }
+            this.state = new State<>(current.order.remove(id), current.indexes.remove(previous));
+            this.hot.remove(id);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Checks all the ids before deleting any of them. The versions left in the runs are dropped when they are merged.
+     */
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        if (ids == null || ids.stream().anyMatch(Objects::isNull)) {
+            throw new KeyNullReferenceException();
+        }
+
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        writeLock.lock();
+        try {
+            State<T> current = this.state;
+            List<T> previousVersions = new ArrayList<>(distinctIds.size());
+            for (Long id : distinctIds) {
+                T previous = latest(current, id);
+                if (previous == null) {
+                    throw new EntityNotFoundException(id, this.entityClass);
+                }
+                previousVersions.add(previous);
+            }
+            LongTrieStore<Long> order = current.order;
+            EntityIndexes<T> indexes = current.indexes;
+            for (T previous : previousVersions) {
+                order = order.remove(previous.getId());
+                indexes = indexes.remove(previous);
+            }
+            this.state = new State<>(order, indexes);
+            distinctIds.forEach(this.hot::remove);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        return this.state.order.size();
+    }
+
+    @Override
+    public boolean existsById(Long id) throws KeyNullReferenceException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        return this.state.order.containsKey(id);
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return EnumSet.of(Capability.TIERS);
+    }
+
+    @Override
+    public TierStatistics tierStatistics() {
+        List<ColdRun<T>> currentRuns = this.runs;
+        return new TierStatistics(
+                this.hot.size(),
+                currentRuns.size(),
+                currentRuns.stream().mapToLong(ColdRun::count).sum(),
+                this.hotHits.sum(),
+                this.coldHits.sum(),
+                this.promotions.sum(),
+                this.demotions.sum(),
+                this.bloomSkips.sum()
+        );
+    }
+
+    /**
+     * Puts the entity on heap, must be called under the write lock
+     *
+     * @return state in which the entity is indexed
+     */
+    private State<T> put(State<T> current, T previous, T entity) {
+        long id = entity.getId();
+        this.hot.put(id, new Hot<>(entity, true));
+        LongTrieStore<Long> order = previous == null ? current.order.put(id, id) : current.order;
+        EntityIndexes<T> indexes = previous == null || current.indexes.changes(previous, entity)
+                ? current.indexes.put(previous, entity)
+                : current.indexes;
+        return new State<>(order, indexes);
+    }
+
+    private T withAssignedId(T value) {
+        if (value.getId() == null || value.getId() == 0) {
+            return value.withId(this.nextId.getAndIncrement());
+        }
+        this.nextId.accumulateAndGet(value.getId() + 1, Math::max);
+        return value;
+    }
+
+    private void requestSweepIfOverLimit() {
+        if (this.hot.size() > this.hotMaxEntries && this.sweepRequested.compareAndSet(false, true)) {
+            try {
+                this.sweeper.execute(this::sweepInBackground);
+            } catch (RejectedExecutionException e) {
+                // closed, nothing to demote any more
+            }
+        }
+    }
+
+    private void sweepInBackground() {
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            log.error("Demotion of the idle {} failed", this.baseName, e);
+        }
+    }
+
+    /**
+     * Demotes the idle entities and the least recently used ones above the limit of the heap tier, then merges the
+     * runs if there are too many. Writers and readers are not blocked.
+     */
+    void sweep() {
+        sweepLock.lock();
+        try {
+            this.sweepRequested.set(false);
+            demote();
+            if (this.runs.size() > MAX_RUNS) {
+                merge();
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Tiers of {}: {}", this.baseName, tierStatistics());
+        }
+    }
+
+    /**
+     * Called under the sweep lock. A changed entity is written to a new run, which is published before the entity is
+     * removed from the heap, so a reader that misses it on heap finds it in the run. An entity saved again in the
+     * meantime is not removed.
+     */
+    private void demote() {
+        long now = System.nanoTime();
+        List<Map.Entry<Long, Hot<T>>> candidates = new ArrayList<>();
+        List<Map.Entry<Long, Hot<T>>> active = new ArrayList<>();
+        for (Map.Entry<Long, Hot<T>> entry : this.hot.entrySet()) {
+            if (now - entry.getValue().lastAccess >= this.idleNanos) {
+                candidates.add(Map.entry(entry.getKey(), entry.getValue()));
+            } else {
+                active.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+        int excess = active.size() - this.hotMaxEntries;
+        if (excess > 0) {
+            active.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+            candidates.addAll(active.subList(0, excess));
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        List<T> changed = new ArrayList<>();
+        for (Map.Entry<Long, Hot<T>> candidate : candidates) {
+            if (candidate.getValue().dirty) {
+                changed.add(candidate.getValue().entity);
+            }
+        }
+        if (!changed.isEmpty()) {
+            List<ColdRun<T>> next = new ArrayList<>(this.runs.size() + 1);
+            next.add(writeRun(changed));
+            next.addAll(this.runs);
+            this.runs = List.copyOf(next);
+        }
+        for (Map.Entry<Long, Hot<T>> candidate : candidates) {
+            if (this.hot.remove(candidate.getKey(), candidate.getValue())) {
+                this.demotions.increment();
+            }
+        }
+    }
+
+    /**
+     * Called under the sweep lock. The runs are read in id order at once, of the records of an id only the one of the
+     * newest run is copied, and only if the id was not deleted. A reader still holding the replaced runs keeps reading
+     * them through their mappings.
+     */
+    private void merge() {
+        List<ColdRun<T>> merged = this.runs;
+        LongTrieStore<Long> live = this.state.order;
+        PriorityQueue<Cursor<T>> cursors = new PriorityQueue<>(
+                Comparator.<Cursor<T>>comparingLong(Cursor::id).thenComparingInt(cursor -> cursor.age)
+        );
+        int expectedCount = 0;
+        for (int age = 0; age < merged.size(); age++) {
+            ColdRun<T> run = merged.get(age);
+            expectedCount += run.count();
+            if (run.count() > 0) {
+                cursors.add(new Cursor<>(run, age));
+            }
+        }
+
+        ColdRun.Writer<T> writer = new ColdRun.Writer<>(
+                nextRunPath(), this.codec, Math.min(expectedCount, live.size())
+        );
+        Long lastId = null;
+        while (!cursors.isEmpty()) {
+            Cursor<T> cursor = cursors.poll();
+            long id = cursor.id();
+            if (!Objects.equals(lastId, id) && live.containsKey(id)) {
+                writer.addRecord(cursor.run.recordAt(cursor.position));
+            }
+            lastId = id;
+            if (++cursor.position < cursor.run.count()) {
+                cursors.add(cursor);
+            }
+        }
+        ColdRun<T> result = writer.finish();
+
+        if (result.count() == 0) {
+            this.runs = List.of();
+            result.delete();
+        } else {
+            this.runs = List.of(result);
+        }
+        merged.forEach(ColdRun::delete);
+    }
+
+    private ColdRun<T> writeRun(List<T> entities) {
+        List<T> sorted = new ArrayList<>(entities);
+        sorted.sort(Comparator.comparingLong(Model::getId));
+        ColdRun.Writer<T> writer = new ColdRun.Writer<>(nextRunPath(), this.codec, sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            // the sort is stable, of the versions of an id the last one given is kept
+            if (i + 1 == sorted.size() || !sorted.get(i + 1).getId().equals(sorted.get(i).getId())) {
+                writer.add(sorted.get(i));
+            }
+        }
+        return writer.finish();
+    }
+
+    private Path nextRunPath() {
+        return this.directory.resolve(String.format("%s-%06d.run", this.baseName, this.nextRunNumber++));
+    }
+
+    /**
+     * @return the entities of the data file in the order of the id index, the last one of an id given more than once
+     */
+    private static <T extends Model> List<T> lookUpLoaded(LongTrieStore<Long> order, List<T> loaded) {
+        if (order.size() == loaded.size()) {
+            return loaded;
+        }
+        Map<Long, T> byId = new HashMap<>();
+        loaded.forEach(entity -> byId.put(entity.getId(), entity));
+        return order.values().stream().map(byId::get).toList();
+    }
+
+    private Path createTemporaryDirectory() {
+        try {
+            return Files.createTempDirectory("tiered-" + this.baseName);
+        } catch (IOException e) {
+            throw new DataFileWriteException(System.getProperty("java.io.tmpdir"), e);
+        }
+    }
+
+    private void deleteRunFiles() {
+        String prefix = this.baseName + "-";
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && name.endsWith(".run")) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.directory.toString(), e);
+        }
+    }
+
+    /**
+     * Stops the sweeper and deletes the run files, and the directory if it was a temporary one
+     */
+    void close() {
+        this.sweeper.shutdown();
+        sweepLock.lock();
+        try {
+            this.runs.forEach(ColdRun::delete);
+            this.runs = List.of();
+            if (this.temporaryDirectory) {
+                Files.deleteIfExists(this.directory);
+            }
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.directory.toString(), e);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * Version of the data source: ids of the live entities in insertion order and the indexes of the entities
+     */
+    private record State<T extends Model>(LongTrieStore<Long> order, EntityIndexes<T> indexes) {
+    }
+
+    /**
+     * Entity on heap
+     */
+    private static final class Hot<T> {
+        private final T entity;
+        /**
+         * Whether the entity was saved since it was last read from a run, i.e. has to be written before it is dropped
+         */
+        private final boolean dirty;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Hot(T entity, boolean dirty) {
+            this.entity = entity;
+            this.dirty = dirty;
+        }
+
+        void touch() {
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    private static final class Cursor<T extends Model> {
+        private final ColdRun<T> run;
+        private final int age;
+        private int position;
+
+        private Cursor(ColdRun<T> run, int age) {
+            this.run = run;
+            this.age = age;
+        }
+
+        long id() {
+            return this.run.idAt(this.position);
+        }
+    }
+}
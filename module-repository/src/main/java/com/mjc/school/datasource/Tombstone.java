@@ -0,0 +1,12 @@
+package com.mjc.school.datasource;
+
+/**
+ * Record of a deleted entity, see {@link DataSource#findTombstone(Long)}
+ *
+ * @param id id of the deleted entity
+ * @param version version the deletion got, the version of the last saved entity plus one. An entity saved again with
+ * the same id continues from it.
+ * @param deletedAtMillis time of the deletion in milliseconds since the epoch
+ */
+public record Tombstone(long id, long version, long deletedAtMillis) {
+}
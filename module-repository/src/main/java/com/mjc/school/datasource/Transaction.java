@@ -0,0 +1,266 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.exception.TransactionConflictException;
+import com.mjc.school.model.Model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Reads and writes of entities of one or more data sources that are committed together, e.g. a check that an author
+ * exists and the save of a news of that author.
+ * <p>
+ * Reads are repeatable: the first read of an entity is remembered and answers all the following reads of it, changes
+ * of the transaction itself included. Writes are buffered until {@link #commit()}, which locks the entities the
+ * transaction has read or written, checks that none of them has been changed since it was first read and applies the
+ * writes while still holding the locks. A change is found by the write count of the lock stripe of the entity, not
+ * only by its version: an entity deleted and saved again with the same id may get its old version back when its data
+ * source keeps no tombstones. The first of two transactions changing the same entity to commit wins, the
+ * other one fails with a {@link TransactionConflictException} and may be repeated from the start. Saving an entity
+ * reads it first, so a save conflicts with any change made after the transaction first saw the entity.
+ * <p>
+ * Only writers that take the same locks are detected, i.e. the data sources given by {@link DataSourceFactory} or
+ * transactions. The writes to different data sources are applied one data source after the other, a reader may see
+ * the changes of one of them before the changes of the other. A transaction is used by one thread and committed once.
+ */
+public final class Transaction {
+    private static final long ABSENT = -1;
+
+    private final EntityLocks locks = EntityLocks.getInstance();
+    private final Map<Key, Optional<Model>> snapshot = new HashMap<>();
+    private final Map<Key, Read> reads = new HashMap<>();
+    private final Map<Key, Write> writes = new LinkedHashMap<>();
+    private final Map<DataSource<Model>, List<Write>> inserts = new LinkedHashMap<>();
+    private final List<Runnable> commitActions = new ArrayList<>();
+    private boolean finished;
+
+    private Transaction() {}
+
+    public static Transaction begin() {
+        return new Transaction();
+    }
+
+    /**
+     * @return the entity as the transaction sees it, empty if it does not exist or the transaction has deleted it
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Model> Optional<T> find(DataSource<T> source, Long id) throws KeyNullReferenceException {
+        checkActive();
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        Key key = key(source, id);
+        Write write = this.writes.get(key);
+        return (Optional<T>) (write != null ? Optional.ofNullable(write.value) : read(key));
+    }
+
+    public <T extends Model> boolean exists(DataSource<T> source, Long id) throws KeyNullReferenceException {
+        return find(source, id).isPresent();
+    }
+
+    /**
+     * Saves the entity when the transaction commits, with the next version of the entity stored at that time. A new
+     * entity without an id gets its id when the transaction commits.
+     *
+     * @return the saved entity with its id and version once the transaction has been committed
+     */
+    public <T extends Model> Supplier<T> save(DataSource<T> source, T entity) throws EntityNullReferenceException {
+        checkActive();
+        if (entity == null) {
+            throw new EntityNullReferenceException();
+        }
+        Write write = new Write(entity);
+        if (entity.getId() == null) {
+            this.inserts.computeIfAbsent(modelSource(source), s -> new ArrayList<>()).add(write);
+        } else {
+            Key key = key(source, entity.getId());
+            if (!this.writes.containsKey(key)) {
+                read(key);
+            }
+            this.writes.put(key, write);
+        }
+        return write.result();
+    }
+
+    /**
+     * Deletes the entity when the transaction commits
+     *
+     * @return false if the entity does not exist as the transaction sees it, nothing is deleted then
+     */
+    public <T extends Model> boolean delete(DataSource<T> source, Long id) throws KeyNullReferenceException {
+        if (find(source, id).isEmpty()) {
+            return false;
+        }
+        this.writes.put(key(source, id), new Write(null));
+        return true;
+    }
+
+    /**
+     * Runs the action after the transaction has been committed and its locks released, e.g. to refresh an index kept
+     * next to a data source. Actions run in the order they were added, none runs if the commit fails.
+     */
+    public void afterCommit(Runnable action) {
+        checkActive();
+        this.commitActions.add(action);
+    }
+
+    /**
+     * @throws TransactionConflictException if an entity the transaction has read has been changed since, nothing is
+     * written then
+     */
+    public void commit() throws TransactionConflictException {
+        checkActive();
+        this.finished = true;
+
+        BitSet stripes = EntityLocks.newStripeSet();
+        this.reads.keySet().forEach(key -> stripes.set(key.stripe()));
+        BitSet written = EntityLocks.newStripeSet();
+        this.writes.keySet().forEach(key -> written.set(key.stripe()));
+        this.locks.lock(stripes);
+        boolean validated = false;
+        try {
+            validate();
+            validated = true;
+            apply();
+        } finally {
+            if (validated) {
+                this.locks.unlockWritten(written);
+                stripes.andNot(written);
+            }
+            this.locks.unlock(stripes);
+        }
+
+        this.commitActions.forEach(Runnable::run);
+    }
+
+    private void validate() throws TransactionConflictException {
+        for (Map.Entry<Key, Read> entry : this.reads.entrySet()) {
+            Key key = entry.getKey();
+            Read read = entry.getValue();
+            if (this.locks.writeCount(key.stripe()) != read.writeCount() || version(current(key)) != read.version()) {
+                throw new TransactionConflictException(key.id(), key.source().getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Saves the changed and new entities of each data source with one {@link DataSource#saveAll(java.util.Collection)}
+     * and deletes with one {@link DataSource#deleteAllById(java.util.Collection)}
+     */
+    private void apply() {
+        Map<DataSource<Model>, List<Write>> saves = new LinkedHashMap<>();
+        Map<DataSource<Model>, List<Long>> deletes = new LinkedHashMap<>();
+        this.writes.forEach((key, write) -> {
+            if (write.value == null) {
+                deletes.computeIfAbsent(key.source(), s -> new ArrayList<>()).add(key.id());
+            } else {
+                saves.computeIfAbsent(key.source(), s -> new ArrayList<>()).add(write);
+            }
+        });
+        this.inserts.forEach((source, writes) -> saves.computeIfAbsent(source, s -> new ArrayList<>()).addAll(writes));
+
+        try {
+            for (Map.Entry<DataSource<Model>, List<Long>> entry : deletes.entrySet()) {
+                entry.getKey().deleteAllById(entry.getValue());
+            }
+            for (Map.Entry<DataSource<Model>, List<Write>> entry : saves.entrySet()) {
+                List<Write> writes = entry.getValue();
+                List<Model> saved = entry.getKey().saveAll(writes.stream().map(write -> write.value).toList());
+                for (int i = 0; i < writes.size(); i++) {
+                    writes.get(i).saved = saved.get(i);
+                }
+            }
+        } catch (KeyNullReferenceException | EntityNullReferenceException e) {
+            throw new IllegalStateException("Null ids and entities are rejected before the commit", e);
+        } catch (EntityNotFoundException e) {
+            throw new IllegalStateException("Entity was deleted without taking the lock of its id", e);
+        }
+    }
+
+    private Optional<Model> read(Key key) {
+        Optional<Model> entity = this.snapshot.get(key);
+        if (entity == null) {
+            // the count first, a write applied after it is counted after it too
+            long writeCount = this.locks.writeCount(key.stripe());
+            entity = current(key);
+            this.snapshot.put(key, entity);
+            this.reads.put(key, new Read(version(entity), writeCount));
+        }
+        return entity;
+    }
+
+    private static Optional<Model> current(Key key) {
+        try {
+            return Optional.of(key.source().findById(key.id()));
+        } catch (EntityNotFoundException e) {
+            return Optional.empty();
+        } catch (KeyNullReferenceException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long version(Optional<Model> entity) {
+        return entity.map(Model::getVersion).orElse(ABSENT);
+    }
+
+    private void checkActive() {
+        if (this.finished) {
+            throw new IllegalStateException("The transaction has already been committed");
+        }
+    }
+
+    private static Key key(DataSource<?> source, long id) {
+        return new Key(modelSource(source), id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataSource<Model> modelSource(DataSource<?> source) {
+        return TransactionalDataSource.unwrap((DataSource<Model>) source);
+    }
+
+    /**
+     * @param source data source of the backend, so that an entity is the same key whichever way it is reached
+     */
+    private record Key(DataSource<Model> source, long id) {
+        private int stripe() {
+            return EntityLocks.stripeIndex(this.source, this.id);
+        }
+    }
+
+    /**
+     * @param version version of the entity when it was first read, {@value #ABSENT} if it did not exist
+     * @param writeCount write count of the lock stripe of the entity taken just before that read
+     */
+    private record Read(long version, long writeCount) {}
+
+    private static final class Write {
+        private final Model value;
+        private Model saved;
+
+        /**
+         * @param value entity to save, null to delete
+         */
+        private Write(Model value) {
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T extends Model> Supplier<T> result() {
+            return () -> {
+                if (this.saved == null) {
+                    throw new IllegalStateException("The transaction has not been committed");
+                }
+                return (T) this.saved;
+            };
+        }
+    }
+}
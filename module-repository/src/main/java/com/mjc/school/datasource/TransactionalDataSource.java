@@ -0,0 +1,257 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.exception.VersionNotRetainedException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * Data source that takes the {@link EntityLocks} of the ids it writes before passing the write on, so that a
+ * {@link Transaction} validating and applying its changes under the same locks is not interleaved with it, and counts
+ * the write when it releases them. Reads are passed on without locking.
+ * <p>
+ * A new entity without an id is saved without a lock: nobody can have read an id that is not assigned yet.
+ */
+final class TransactionalDataSource<T extends Model> implements DataSource<T> {
+    private final DataSource<T> source;
+    private final EntityLocks locks = EntityLocks.getInstance();
+
+    TransactionalDataSource(DataSource<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the data source of the backend, the entities of which are locked
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Model> DataSource<T> unwrap(DataSource<T> source) {
+        return source instanceof TransactionalDataSource<?> transactional
+                ? (DataSource<T>) transactional.source
+                : source;
+    }
+
+    @Override
+    public T findById(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        return this.source.findById(id);
+    }
+
+    @Override
+    public List<T> findAll() {
+        return this.source.findAll();
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit) {
+        return this.source.findAll(offset, limit);
+    }
+
+    @Override
+    public Page<T> findPage(long offset, long limit) {
+        return this.source.findPage(offset, limit);
+    }
+
+    @Override
+    public PageStream<T> streamPage(long offset) {
+        return this.source.streamPage(offset);
+    }
+
+    @Override
+    public List<T> findAfter(long lastId, long limit) {
+        return this.source.findAfter(lastId, limit);
+    }
+
+    @Override
+    public Page<T> findPageBySecondaryKey(long key, long offset, long limit) {
+        return this.source.findPageBySecondaryKey(key, offset, limit);
+    }
+
+    @Override
+    public Page<T> findPageByTimestamp(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        return this.source.findPageByTimestamp(timestamp, from, to, descending, offset, limit);
+    }
+
+    @Override
+    public T save(T value) throws EntityNullReferenceException {
+        if (value == null || value.getId() == null) {
+            return this.source.save(value);
+        }
+        BitSet stripes = lock(List.of(value.getId()));
+        try {
+            return this.source.save(value);
+        } finally {
+            this.locks.unlockWritten(stripes);
+        }
+    }
+
+    @Override
+    public T compareAndSave(long expectedVersion, T value)
+            throws EntityNullReferenceException, KeyNullReferenceException, EntityNotFoundException,
+            EntityVersionConflictException {
+        if (value == null || value.getId() == null) {
+            return this.source.compareAndSave(expectedVersion, value);
+        }
+        BitSet stripes = lock(List.of(value.getId()));
+        try {
+            return this.source.compareAndSave(expectedVersion, value);
+        } finally {
+            this.locks.unlockWritten(stripes);
+        }
+    }
+
+    @Override
+    public List<T> saveAll(Collection<T> values) throws EntityNullReferenceException {
+        if (values == null) {
+            return this.source.saveAll(null);
+        }
+        BitSet stripes = lock(values.stream().filter(Objects::nonNull).map(Model::getId).toList());
+        try {
+            return this.source.saveAll(values);
+        } finally {
+            this.locks.unlockWritten(stripes);
+        }
+    }
+
+    @Override
+    public boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
+        if (id == null) {
+            return this.source.delete(null);
+        }
+        BitSet stripes = lock(List.of(id));
+        try {
+            return this.source.delete(id);
+        } finally {
+            this.locks.unlockWritten(stripes);
+        }
+    }
+
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        if (ids == null) {
+            return this.source.deleteAllById(null);
+        }
+        BitSet stripes = lock(ids);
+        try {
+            return this.source.deleteAllById(ids);
+        } finally {
+            this.locks.unlockWritten(stripes);
+        }
+    }
+
+    /**
+     * @param ids ids to lock, null elements are skipped and left to the data source to reject
+     */
+    private BitSet lock(Collection<Long> ids) {
+        BitSet stripes = EntityLocks.newStripeSet();
+        for (Long id : ids) {
+            if (id != null) {
+                stripes.set(EntityLocks.stripeIndex(this.source, id));
+            }
+        }
+        this.locks.lock(stripes);
+        return stripes;
+    }
+
+    @Override
+    public long count() {
+        return this.source.count();
+    }
+
+    @Override
+    public boolean existsById(Long id) throws KeyNullReferenceException {
+        return this.source.existsById(id);
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return this.source.capabilities();
+    }
+
+    @Override
+    public Optional<Tombstone> findTombstone(Long id) throws KeyNullReferenceException {
+        return this.source.findTombstone(id);
+    }
+
+    @Override
+    public long changeVersion() {
+        return this.source.changeVersion();
+    }
+
+    @Override
+    public ChangeStream<T> changesAfter(long version) {
+        return this.source.changesAfter(version);
+    }
+
+    @Override
+    public long versionAt(Instant time) throws VersionNotRetainedException {
+        return this.source.versionAt(time);
+    }
+
+    @Override
+    public T findById(Long id, long version)
+            throws KeyNullReferenceException, EntityNotFoundException, VersionNotRetainedException {
+        return this.source.findById(id, version);
+    }
+
+    @Override
+    public List<T> findAll(long offset, long limit, long version) throws VersionNotRetainedException {
+        return this.source.findAll(offset, limit, version);
+    }
+
+    @Override
+    public Map<Long, Long> countByKey(String key) {
+        return this.source.countByKey(key);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> countByDay(String timestamp, LocalDate from, LocalDate to) {
+        return this.source.countByDay(timestamp, from, to);
+    }
+
+    @Override
+    public Page<T> findContaining(String text, String value, long offset, long limit) {
+        return this.source.findContaining(text, value, offset, limit);
+    }
+
+    @Override
+    public long backup(Path file) {
+        return this.source.backup(file);
+    }
+
+    /**
+     * A restore may change any entity, it takes all the locks
+     */
+    @Override
+    public long restore(Path file) {
+        BitSet stripes = EntityLocks.allStripes();
+        this.locks.lock(stripes);
+        try {
+            return this.source.restore(file);
+        } finally {
+            this.locks.unlockWritten(stripes);
+        }
+    }
+
+    @Override
+    public TierStatistics tierStatistics() {
+        return this.source.tierStatistics();
+    }
+}
@@ -0,0 +1,196 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.VersionNotRetainedException;
+import com.mjc.school.model.Model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Entities replaced or deleted by the changes of a data source, kept for a retention time so that the dataset can be
+ * read as it was after an earlier change. The versions are the ones of {@link ChangeEvent}s: version {@code v} is the
+ * dataset after its first {@code v} changes.
+ * <p>
+ * An entry remembers an entity as it was before a change, null if it did not exist. The entity at version {@code v} is
+ * the one remembered by its first change after {@code v}, or the current one if it has not changed since. The entries
+ * are kept in the order of the changes and in a chain per id, so dropping the oldest ones costs O(1) each.
+ * <p>
+ * The store of the entities after every batch of changes is kept too, so a page of the dataset at a version is read
+ * from it in insertion order at O(log n + k), like a page of the current dataset. The stores are persistent and share
+ * everything but the paths a batch has changed. A version inside a batch, which no reader has seen published, is
+ * rebuilt from the store before the batch and the changes of the batch up to the version.
+ * <p>
+ * The data source adds the entries under its write lock before it publishes the new state, and drops the expired ones
+ * under that lock too. Readers never lock: a reader takes the current state first and checks after reading that the
+ * version it asked for is still retained, an entry it may have missed is then older than that version.
+ */
+final class VersionHistory<T extends Model> {
+    private final long retentionMillis;
+    private final int maxVersions;
+    private final ConcurrentLinkedDeque<Entry<T>> entries = new ConcurrentLinkedDeque<>();
+    private final Map<Long, ConcurrentLinkedDeque<Entry<T>>> entriesById = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Batch<T>> batches = new ConcurrentSkipListMap<>();
+    private List<Entry<T>> pending = new ArrayList<>();
+    private int size;
+    private volatile long oldestVersion;
+    private volatile long oldestMillis = System.currentTimeMillis();
+
+    /**
+     * @param oldestVersion version of the dataset the history starts from
+     */
+    VersionHistory(long retentionMillis, int maxVersions, long oldestVersion) {
+        this.retentionMillis = retentionMillis;
+        this.maxVersions = maxVersions;
+        this.oldestVersion = oldestVersion;
+    }
+
+    /**
+     * @return oldest version of the dataset that can still be read
+     */
+    long oldestVersion() {
+        return this.oldestVersion;
+    }
+
+    /**
+     * Called by the single writer
+     *
+     * @param version version of the change
+     * @param previous entity as it was before the change, null if it did not exist
+     */
+    void add(long version, long committedAtMillis, long id, T previous) {
+        Entry<T> entry = new Entry<>(version, committedAtMillis, id, previous);
+        this.entriesById.computeIfAbsent(id, key -> new ConcurrentLinkedDeque<>()).addLast(entry);
+        this.entries.addLast(entry);
+        this.pending.add(entry);
+        this.size++;
+    }
+
+    /**
+     * Called by the single writer after the changes of a batch are added, and once for the version the history starts
+     * from
+     *
+     * @param version version of the last change of the batch
+     * @param values the entities after the batch
+     */
+    void addValues(long version, LongTrieStore<T> values) {
+        this.batches.put(version, new Batch<>(values, List.copyOf(this.pending)));
+        this.pending = new ArrayList<>();
+    }
+
+    /**
+     * Called by the single writer: drops the entries older than the retention time and the oldest ones above the
+     * maximum number of versions
+     */
+    void expire(long nowMillis) {
+        long expiredBefore = nowMillis - this.retentionMillis;
+        Entry<T> oldest;
+        while ((oldest = this.entries.peekFirst()) != null
+                && (oldest.committedAtMillis() < expiredBefore || this.size > this.maxVersions)) {
+            // published before the entry is dropped, a reader that still sees the old bound checks it again
+            this.oldestMillis = oldest.committedAtMillis();
+            this.oldestVersion = oldest.version();
+            this.entries.pollFirst();
+            this.size--;
+            ConcurrentLinkedDeque<Entry<T>> chain = this.entriesById.get(oldest.id());
+            chain.pollFirst();
+            if (chain.isEmpty()) {
+                this.entriesById.remove(oldest.id());
+            }
+        }
+        // the batch the oldest version is in still starts from the store before it
+        Long start = this.batches.floorKey(this.oldestVersion);
+        if (start != null) {
+            this.batches.headMap(start).clear();
+        }
+    }
+
+    /**
+     * @param lastVersion current version of the dataset
+     * @return the last version of the dataset committed at or before the time
+     */
+    long versionAt(Instant time, long lastVersion) throws VersionNotRetainedException {
+        long millis = time.toEpochMilli();
+        long version = lastVersion;
+        Iterator<Entry<T>> descending = this.entries.descendingIterator();
+        while (descending.hasNext()) {
+            Entry<T> entry = descending.next();
+            if (entry.version() > lastVersion) {
+                continue;
+            }
+            if (entry.committedAtMillis() <= millis) {
+                break;
+            }
+            version = entry.version() - 1;
+        }
+        if (millis < this.oldestMillis || version < this.oldestVersion) {
+            throw new VersionNotRetainedException(time.toString(), this.oldestVersion);
+        }
+        return version;
+    }
+
+    /**
+     * @param current the entity with the id in a state taken before the call, null if there is none
+     * @return the entity at the version, null if it did not exist then
+     */
+    T find(long id, long version, T current) throws VersionNotRetainedException {
+        T found = current;
+        ConcurrentLinkedDeque<Entry<T>> chain = this.entriesById.get(id);
+        if (chain != null) {
+            for (Entry<T> entry : chain) {
+                if (entry.version() > version) {
+                    found = entry.previous();
+                    break;
+                }
+            }
+        }
+        checkRetained(version);
+        return found;
+    }
+
+    /**
+     * @return the entities at the version in the insertion order of their store
+     */
+    LongTrieStore<T> valuesAt(long version) throws VersionNotRetainedException {
+        Map.Entry<Long, Batch<T>> before = this.batches.floorEntry(version);
+        if (before == null) {
+            throw new VersionNotRetainedException(String.valueOf(version), this.oldestVersion);
+        }
+        LongTrieStore<T> values = before.getValue().values();
+        if (before.getKey() < version) {
+            Batch<T> batch = this.batches.higherEntry(version).getValue();
+            for (Entry<T> change : batch.changes()) {
+                if (change.version() > version) {
+                    break;
+                }
+                T entity = find(change.id(), version, batch.values().get(change.id()));
+                values = entity == null ? values.remove(change.id()) : values.put(change.id(), entity);
+            }
+        }
+        checkRetained(version);
+        return values;
+    }
+
+    private void checkRetained(long version) throws VersionNotRetainedException {
+        if (version < this.oldestVersion) {
+            throw new VersionNotRetainedException(String.valueOf(version), this.oldestVersion);
+        }
+    }
+
+    /**
+     * @param version version of the change that replaced or deleted the entity
+     * @param previous the entity before the change, null if it did not exist
+     */
+    private record Entry<T>(long version, long committedAtMillis, long id, T previous) {}
+
+    /**
+     * @param values the entities after the batch
+     * @param changes the entries of the changes of the batch, in their order
+     */
+    private record Batch<T>(LongTrieStore<T> values, List<Entry<T>> changes) {}
+}
@@ -0,0 +1,49 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.model.Model;
+
+/**
+ * Version bookkeeping shared by the backends, see {@link Model}.
+ */
+final class Versions {
+    private Versions() {}
+
+    /**
+     * @param previous stored entity with the id of the saved one, null if the entity is new
+     * @return the entity to store: the saved one with the version following that of the previous entity
+     */
+    static <T extends Model> T next(T previous, T entity) {
+        return nextAfter(previous == null ? null : previous.getVersion(), entity);
+    }
+
+    /**
+     * @param previousVersion version of the stored entity with the id of the saved one, null if the entity is new
+     */
+    static <T extends Model> T nextAfter(Long previousVersion, T entity) {
+        long version = previousVersion == null ? 1 : previousVersion + 1;
+        return entity.getVersion() == version ? entity : entity.withVersion(version);
+    }
+
+    /**
+     * Checks the stored entity for {@link DataSource#compareAndSave(long, Model)}
+     */
+    static <T extends Model> void check(T stored, T entity, long expectedVersion)
+            throws EntityNotFoundException, EntityVersionConflictException {
+        checkVersion(stored == null ? null : stored.getVersion(), entity, expectedVersion);
+    }
+
+    /**
+     * @param storedVersion version of the stored entity, null if there is none
+     */
+    static <T extends Model> void checkVersion(Long storedVersion, T entity, long expectedVersion)
+            throws EntityNotFoundException, EntityVersionConflictException {
+        if (storedVersion == null) {
+            throw new EntityNotFoundException(entity.getId(), entity.getClass());
+        }
+        if (storedVersion != expectedVersion) {
+            throw new EntityVersionConflictException(entity.getId(), entity.getClass(), expectedVersion, storedVersion);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.mjc.school.datasource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.model.Model;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the mutations of one data source.
+ * <p>
+ * A record is {@code [int payload length][int CRC32 of the payload][payload]}, the payload is
+ * {@code [byte type][long id][entity JSON]} and the JSON part is empty for a deletion. A batch of mutations is one
+ * record {@code [byte type][long count]} followed by {@code [byte type][long id][int JSON length][entity JSON]} per
+ * mutation, so a batch is replayed entirely or not at all. A reservation of generated ids is a record without JSON
+ * whose id is the new high-water mark.
+ * <p>
+ * Replay stops at the first incomplete or damaged record, which is what a crash in the middle of an append leaves
+ * behind, and cuts the file there so new records do not follow garbage.
+ * <p>
+ * When a record reaches the disk depends on the {@link FsyncPolicy}. With {@link FsyncPolicy#BATCH} writers that
+ * wait for their records at the same time share one {@link FileChannel#force(boolean)} call: the first one to come
+ * flushes everything written so far, the others wait and usually find their record already covered.
+ * <p>
+ * {@link #rotate()} seals the current file as {@code <file>.<sequence>} and continues in a new one, so that the part of
+ * the log covered by a snapshot can be deleted without copying the rest. Sealed files are replayed before the current
+ * one. Positions returned by appends keep growing across rotations.
+ */
+@Slf4j
+final class WriteAheadLog<T extends Model> implements AutoCloseable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte BATCH = 3;
+    private static final byte RESERVE = 4;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    enum FsyncPolicy {
+        /** Every record is flushed before the mutation returns. */
+        ALWAYS,
+        /** A mutation returns once its record is flushed, concurrent mutations share flushes. */
+        BATCH,
+        /** Records are flushed in the background at a fixed interval, a crash may lose the last interval. */
+        PERIODIC
+    }
+
+    interface Replayer<T> {
+        void put(T entity);
+
+        void delete(long id);
+
+        /**
+         * @param highWaterMark first id that had not been reserved when the record was written
+         */
+        default void reserve(long highWaterMark) {
+        }
+    }
+
+    private final Path file;
+    private final Class<T> entityClass;
+    private final FsyncPolicy policy;
+    private final ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private long nextSegment;
+
+    private final Lock appendLock = new ReentrantLock();
+    private final Lock syncLock = new ReentrantLock();
+    private final Condition syncFinished = this.syncLock.newCondition();
+    private volatile long writtenPosition;
+    private long syncedPosition;
+    private boolean syncInProgress;
+
+    WriteAheadLog(Path file, Class<T> entityClass, FsyncPolicy policy, long fsyncIntervalMillis) {
+        this.file = file;
+        this.entityClass = entityClass;
+        this.policy = policy;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.channel = openChannel(file);
+            this.nextSegment = sealedSegments().stream().mapToLong(this::segmentSequence).max().orElse(0) + 1;
+        } catch (IOException e) {
+            throw new DataFileWriteException(file.toString(), e);
+        }
+
+        if (policy == FsyncPolicy.PERIODIC) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-flusher-" + file.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flusher.scheduleWithFixedDelay(
+                    this::flushInBackground, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS
+            );
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Feeds every complete record of the log to the replayer, in the order they were appended. Must be called once,
+     * before the first append.
+     */
+    void replay(Replayer<T> replayer) {
+        try {
+            for (Path segment : sealedSegments()) {
+                try (FileChannel sealed = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    replay(sealed, replayer);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataFileReadException(this.file.toString(), e);
+        }
+
+        long validPosition;
+        try {
+            validPosition = replay(this.channel, replayer);
+            if (validPosition < this.channel.size()) {
+                this.channel.truncate(validPosition);
+                this.channel.force(true);
+            }
+            this.channel.position(validPosition);
+        } catch (IOException e) {
+            throw new DataFileReadException(this.file.toString(), e);
+        }
+
+        this.writtenPosition = validPosition;
+        this.syncedPosition = validPosition;
+    }
+
+    /**
+     * Flushes the current file, seals it and starts a new one. Appends must not run concurrently with a rotation.
+     *
+     * @return sequence number of the sealed file, to be passed to {@link #deleteSealedSegments(long)}
+     */
+    long rotate() {
+        this.appendLock.lock();
+        this.syncLock.lock();
+        try {
+            while (this.syncInProgress) {
+                this.syncFinished.awaitUninterruptibly();
+            }
+            this.channel.force(false);
+            this.channel.close();
+            long sequence = this.nextSegment++;
+            Files.move(this.file, sealedSegment(sequence), StandardCopyOption.ATOMIC_MOVE);
+            this.channel = openChannel(this.file);
+            this.syncedPosition = this.writtenPosition;
+            return sequence;
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.file.toString(), e);
+        } finally {
+            this.syncLock.unlock();
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the sealed files up to the given sequence number, once their records are no longer needed.
+     */
+    void deleteSealedSegments(long upToSequence) {
+        try {
+            for (Path segment : sealedSegments()) {
+                if (segmentSequence(segment) <= upToSequence) {
+                    Files.delete(segment);
+                }
+            }
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.file.toString(), e);
+        }
+    }
+
+    /**
+     * @return position the log has to be flushed up to for the record to be durable, see {@link #awaitDurable(long)}
+     */
+    long appendPut(T entity) {
+        try {
+            byte[] json = this.mapper.writeValueAsBytes(entity);
+            return append(PUT, entity.getId(), json);
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.file.toString(), e);
+        }
+    }
+
+    long appendDelete(long id) {
+        return append(DELETE, id, new byte[0]);
+    }
+
+    /**
+     * Appends the high-water mark of the generated ids, see {@link IdAllocator}. The record is not awaited: an entity
+     * with a generated id is logged after the reservation of its id, so it is never durable without it.
+     */
+    long appendReserve(long highWaterMark) {
+        return append(RESERVE, highWaterMark, new byte[0]);
+    }
+
+    /**
+     * Appends the puts followed by the deletions as one record
+     */
+    long appendBatch(List<T> puts, Collection<Long> deletedIds) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (T entity : puts) {
+                byte[] json = this.mapper.writeValueAsBytes(entity);
+                out.writeByte(PUT);
+                out.writeLong(entity.getId());
+                out.writeInt(json.length);
+                out.write(json);
+            }
+            for (long id : deletedIds) {
+                out.writeByte(DELETE);
+                out.writeLong(id);
+                out.writeInt(0);
+            }
+            return append(BATCH, puts.size() + deletedIds.size(), bytes.toByteArray());
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.file.toString(), e);
+        }
+    }
+
+    /**
+     * Waits until the log is flushed up to the position returned by an append. Does not wait with
+     * {@link FsyncPolicy#PERIODIC}, the background flusher takes care of it.
+     */
+    void awaitDurable(long position) {
+        if (this.policy == FsyncPolicy.BATCH) {
+            sync(position);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.flusher != null) {
+            // not shutdownNow(), interrupting a thread inside FileChannel.force() closes the channel
+            this.flusher.shutdown();
+        }
+        sync(this.writtenPosition);
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.file.toString(), e);
+        }
+    }
+
+    private long append(byte type, long id, byte[] json) {
+        int payloadSize = 1 + Long.BYTES + json.length;
+        if (payloadSize > MAX_PAYLOAD_SIZE) {
+            throw new DataFileWriteException(
+                    this.file.toString(),
+                    new IOException("Record of " + payloadSize + " bytes exceeds the limit of " + MAX_PAYLOAD_SIZE)
+            );
+        }
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        record.putInt(payloadSize);
+        record.putInt(0);
+        record.put(type).putLong(id).put(json);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, payloadSize);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        record.flip();
+
+        this.appendLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                this.channel.write(record);
+            }
+            this.writtenPosition += record.limit();
+            if (this.policy == FsyncPolicy.ALWAYS) {
+                this.channel.force(false);
+            }
+            return this.writtenPosition;
+        } catch (IOException e) {
+            throw new DataFileWriteException(this.file.toString(), e);
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            sync(this.writtenPosition);
+        } catch (DataFileWriteException e) {
+            log.error("Periodic flush of the write-ahead log failed", e);
+        }
+    }
+
+    private void sync(long position) {
+        this.syncLock.lock();
+        try {
+            while (this.syncedPosition < position) {
+                if (this.syncInProgress) {
+                    this.syncFinished.awaitUninterruptibly();
+                    continue;
+                }
+
+                this.syncInProgress = true;
+                long target = this.writtenPosition;
+                this.syncLock.unlock();
+                try {
+                    this.channel.force(false);
+                } catch (IOException e) {
+                    throw new DataFileWriteException(this.file.toString(), e);
+                } finally {
+                    this.syncLock.lock();
+                    this.syncInProgress = false;
+                    this.syncFinished.signalAll();
+                }
+                this.syncedPosition = Math.max(this.syncedPosition, target);
+            }
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    private byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int payloadSize = in.readInt();
+            int checksum = in.readInt();
+            if (payloadSize < 1 + Long.BYTES || payloadSize > MAX_PAYLOAD_SIZE) {
+                return null;
+            }
+            byte[] payload = new byte[payloadSize];
+            in.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void apply(byte[] payload, Replayer<T> replayer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte type = buffer.get();
+        long id = buffer.getLong();
+        if (type == DELETE) {
+            replayer.delete(id);
+        } else if (type == PUT) {
+            replayer.put(this.mapper.readValue(payload, buffer.position(), buffer.remaining(), this.entityClass));
+        } else if (type == RESERVE) {
+            replayer.reserve(id);
+        } else if (type == BATCH) {
+            for (long i = 0; i < id; i++) {
+                byte entryType = buffer.get();
+                long entryId = buffer.getLong();
+                int length = buffer.getInt();
+                if (entryType == DELETE) {
+                    replayer.delete(entryId);
+                } else {
+                    replayer.put(this.mapper.readValue(payload, buffer.position(), length, this.entityClass));
+                }
+                buffer.position(buffer.position() + length);
+            }
+        } else {
+            throw new IOException("Unknown record type " + type + " in " + this.file);
+        }
+    }
+
+    private long replay(FileChannel source, Replayer<T> replayer) throws IOException {
+        long validPosition = 0;
+        source.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(source)));
+        while (true) {
+            byte[] payload = readRecord(in);
+            if (payload == null) {
+                return validPosition;
+            }
+            apply(payload, replayer);
+            validPosition += HEADER_SIZE + payload.length;
+        }
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path sealedSegment(long sequence) {
+        return this.file.resolveSibling(this.file.getFileName() + "." + sequence);
+    }
+
+    private long segmentSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(this.file.getFileName().toString().length() + 1));
+    }
+
+    /**
+     * @return sealed files of this log ordered by sequence number
+     */
+    private List<Path> sealedSegments() throws IOException {
+        String prefix = this.file.getFileName() + ".";
+        try (Stream<Path> files = Files.list(this.file.toAbsolutePath().getParent())) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix)
+                                && name.length() > prefix.length()
+                                && name.substring(prefix.length()).chars().allMatch(Character::isDigit);
+                    })
+                    .sorted(Comparator.comparingLong(this::segmentSequence))
+                    .toList();
+        }
+    }
+}
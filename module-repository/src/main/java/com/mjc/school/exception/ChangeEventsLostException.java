@@ -0,0 +1,10 @@
+package com.mjc.school.exception;
+
+public class ChangeEventsLostException extends CustomRepositoryRuntimeException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE =
+            "Change events after version %d are no longer buffered, the subscriber has to read the dataset again";
+
+    public ChangeEventsLostException(long lastVersion) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, lastVersion));
+    }
+}
@@ -0,0 +1,9 @@
+package com.mjc.school.exception;
+
+public class DataFileWriteException extends CustomRepositoryRuntimeException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE = "Error on write data file with name %s";
+
+    public DataFileWriteException(String filename, Throwable e) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, filename), e);
+    }
+}
@@ -0,0 +1,9 @@
+package com.mjc.school.exception;
+
+public class DataSourceConfigurationException extends CustomRepositoryRuntimeException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE = "Invalid value '%s' of data source property %s";
+
+    public DataSourceConfigurationException(String propertyName, String value) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, value, propertyName));
+    }
+}
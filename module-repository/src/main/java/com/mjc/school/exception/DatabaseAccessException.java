@@ -0,0 +1,9 @@
+package com.mjc.school.exception;
+
+public class DatabaseAccessException extends CustomRepositoryRuntimeException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE = "Error on %s in the database";
+
+    public DatabaseAccessException(String operation, Throwable e) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, operation), e);
+    }
+}
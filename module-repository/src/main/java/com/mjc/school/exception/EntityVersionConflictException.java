@@ -0,0 +1,23 @@
+package com.mjc.school.exception;
+
+import com.mjc.school.model.Model;
+import lombok.Getter;
+
+@Getter
+public class EntityVersionConflictException extends CustomRepositoryException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE =
+            "Entity with class %s by id %d has version %d instead of the expected version %d";
+
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    public EntityVersionConflictException(
+            Long entityId, Class<? extends Model> entityClass, long expectedVersion, long actualVersion
+    ) {
+        super(String.format(
+                EXCEPTION_MESSAGE_TEMPLATE, entityClass.getCanonicalName(), entityId, actualVersion, expectedVersion
+        ));
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+}
@@ -0,0 +1,16 @@
+package com.mjc.school.exception;
+
+import lombok.Getter;
+
+@Getter
+public class TransactionConflictException extends CustomRepositoryException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE =
+            "Entity by id %d of %s has been changed since the transaction read it";
+
+    private final long entityId;
+
+    public TransactionConflictException(long entityId, String dataSourceName) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, entityId, dataSourceName));
+        this.entityId = entityId;
+    }
+}
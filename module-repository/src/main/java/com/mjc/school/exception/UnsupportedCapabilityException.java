@@ -0,0 +1,16 @@
+package com.mjc.school.exception;
+
+import com.mjc.school.datasource.DataSource;
+import lombok.Getter;
+
+@Getter
+public class UnsupportedCapabilityException extends CustomRepositoryRuntimeException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE = "%s does not support %s";
+
+    private final DataSource.Capability capability;
+
+    public UnsupportedCapabilityException(String dataSource, DataSource.Capability capability) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, dataSource, capability.getDescription()));
+        this.capability = capability;
+    }
+}
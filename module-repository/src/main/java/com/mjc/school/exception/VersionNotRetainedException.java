@@ -0,0 +1,19 @@
+package com.mjc.school.exception;
+
+import lombok.Getter;
+
+@Getter
+public class VersionNotRetainedException extends CustomRepositoryException {
+    private static final String EXCEPTION_MESSAGE_TEMPLATE =
+            "Version %s of the dataset is no longer retained, the oldest retained version is %d";
+
+    private final long oldestVersion;
+
+    /**
+     * @param requested the requested version or time, as it is shown in the message
+     */
+    public VersionNotRetainedException(String requested, long oldestVersion) {
+        super(String.format(EXCEPTION_MESSAGE_TEMPLATE, requested, oldestVersion));
+        this.oldestVersion = oldestVersion;
+    }
+}
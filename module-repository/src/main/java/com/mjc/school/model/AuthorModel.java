@@ -4,36 +4,36 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
+import lombok.Builder;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 import java.util.Objects;
 
 @Getter
-@Setter
 @ToString
 public class AuthorModel extends Model {
     @NotEmpty(message = "Author's name is required")
     @Size(min = 3, message = "The author's name must be at least 3 characters")
     @Size(max = 15, message = "The author's name must be no more than 15 characters")
-    private String name;
-
-    public AuthorModel() {
+    private final String name;
 
+    public AuthorModel(String name) {
+        this(0L, name);
     }
 
-    public AuthorModel(String name) {
-        this.setId(0L);
-        this.name = name;
+    public AuthorModel(Long id, String name) {
+        this(id, name, null);
     }
 
     @JsonCreator()
+    @Builder(toBuilder = true)
     public AuthorModel(
-            @JsonProperty("id") Long id,
-            @JsonProperty("name") String name
+            @JsonProperty("id") @Builder.ObtainVia(method = "getId") Long id,
+            @JsonProperty("name") String name,
+            @JsonProperty("version") @Builder.ObtainVia(method = "getVersion") Long version
     ) {
-        this.setId(id);
+        super(id, version);
         this.name = name;
     }
 
@@ -57,7 +57,12 @@ public class AuthorModel extends Model {
     }
 
     @Override
-    public AuthorModel copy() {
-        return new AuthorModel(this.getId(), this.getName());
+    public AuthorModel withId(Long id) {
+        return this.toBuilder().id(id).build();
+    }
+
+    @Override
+    public AuthorModel withVersion(long version) {
+        return this.toBuilder().version(version).build();
     }
 }
@@ -3,21 +3,39 @@ package com.mjc.school.model;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
-import lombok.Setter;
 
+/**
+ * Entities are immutable, so one instance can be shared by a data source and all of its callers. A changed entity is
+ * a new instance, built with the {@code toBuilder()} of the entity class.
+ * <p>
+ * The version counts the saves of an entity and is maintained by the data source: an entity gets version 1 when it is
+ * added and the next version with every save, entities read from a data file without versions have version 0. The
+ * version is not part of the equality of entities.
+ */
 @Getter
-@Setter
 public abstract class Model {
-    private Long id;
-
-    protected Model() {}
+    private final Long id;
+    private final long version;
 
     @JsonCreator()
     protected Model(
             @JsonProperty("id") Long id
     ) {
+        this(id, null);
+    }
+
+    protected Model(Long id, Long version) {
         this.id = id;
+        this.version = version == null ? 0 : version;
     }
 
-    public abstract <T extends Model> T copy();
+    /**
+     * @return copy of the entity with the given id
+     */
+    public abstract <T extends Model> T withId(Long id);
+
+    /**
+     * @return copy of the entity with the given version
+     */
+    public abstract <T extends Model> T withVersion(long version);
 }
@@ -6,60 +6,68 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import lombok.Builder;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Getter
-@Setter
 @ToString
 public class NewsModel extends Model {
     @NotEmpty(message = "News title is required")
     @Size(min = 5, message = "The title of the news must be at least 5 characters")
     @Size(max = 30, message = "The title of the news must be no more than 30 characters")
-    private String title;
+    private final String title;
 
     @NotEmpty(message = "News content is required")
     @Size(min = 5, message = "The content of the news must be at least 5 characters")
     @Size(max = 255, message = "The content of the news must be no more than 255 characters")
-    private String content;
+    private final String content;
 
     @NotNull(message = "The date/time the data was created is required.")
-    private LocalDateTime createDate;
+    private final LocalDateTime createDate;
 
     @NotNull(message = "The date/time of the last data update is required")
-    private LocalDateTime lastUpdateDate;
+    private final LocalDateTime lastUpdateDate;
 
     @NotNull(message = "Author id is required")
-    private Long authorId;
+    private final Long authorId;
 
-    public NewsModel() { }
+    @Override
+    public NewsModel withId(Long id) {
+        return this.toBuilder().id(id).build();
+    }
 
     @Override
-    public NewsModel copy() {
-        return new NewsModel(
-                this.getId(),
-                this.getTitle(),
-                this.getContent(),
-                this.getCreateDate(),
-                this.getLastUpdateDate(),
-                this.getAuthorId()
-        );
+    public NewsModel withVersion(long version) {
+        return this.toBuilder().version(version).build();
+    }
+
+    public NewsModel(
+            Long id,
+            String title,
+            String content,
+            LocalDateTime createDate,
+            LocalDateTime lastUpdateDate,
+            Long authorId
+    ) {
+        this(id, title, content, createDate, lastUpdateDate, authorId, null);
     }
 
     @JsonCreator()
+    @Builder(toBuilder = true)
     public NewsModel(
-            @JsonProperty("id") Long id,
+            @JsonProperty("id") @Builder.ObtainVia(method = "getId") Long id,
             @JsonProperty("title") String title,
             @JsonProperty("content") String content,
             @JsonProperty("createDate") @JsonFormat(pattern = "yyyy/MM/dd HH:mm:ss") LocalDateTime createDate,
             @JsonProperty("lastUpdateDate") @JsonFormat(pattern = "yyyy/MM/dd HH:mm:ss") LocalDateTime lastUpdateDate,
-            @JsonProperty("authorId") Long authorId
+            @JsonProperty("authorId") Long authorId,
+            @JsonProperty("version") @Builder.ObtainVia(method = "getVersion") Long version
     ) {
-        this.setId(id);
+        super(id, version);
         this.title = title;
         this.content = content;
         this.createDate = createDate;
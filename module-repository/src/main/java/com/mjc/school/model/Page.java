@@ -0,0 +1,10 @@
+package com.mjc.school.model;
+
+import java.util.List;
+
+/**
+ * @param items elements of the requested page
+ * @param totalCount number of elements in the whole dataset at the moment the page was taken
+ */
+public record Page<T extends Model>(List<T> items, long totalCount) {
+}
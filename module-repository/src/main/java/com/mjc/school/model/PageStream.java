@@ -0,0 +1,12 @@
+package com.mjc.school.model;
+
+import java.util.stream.Stream;
+
+/**
+ * Same as {@link Page} with the elements read lazily, the stream can be consumed once
+ *
+ * @param items elements of the requested page
+ * @param totalCount number of elements in the whole dataset at the moment the page was taken
+ */
+public record PageStream<T extends Model>(Stream<T> items, long totalCount) {
+}
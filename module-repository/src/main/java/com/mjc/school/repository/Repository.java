@@ -1,17 +1,33 @@
 package com.mjc.school.repository;
 
+import com.mjc.school.datasource.DataSource;
+import com.mjc.school.datasource.Transaction;
 import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.exception.EntityNullReferenceException;
 import com.mjc.school.exception.EntityValidationException;
+import com.mjc.school.exception.EntityVersionConflictException;
 import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.exception.VersionNotRetainedException;
 import com.mjc.school.model.Model;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public abstract class Repository <T extends Model> {
@@ -27,18 +43,217 @@ public abstract class Repository <T extends Model> {
     public abstract T create(T entity) throws EntityNullReferenceException, EntityValidationException;
     public abstract T update(T entity) throws EntityNullReferenceException, EntityValidationException;
     public abstract Boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException;
+
+    /**
+     * Same as {@link #update(Model)}, but only if nobody has saved the entity since it was read with the expected
+     * version, see {@link com.mjc.school.datasource.DataSource#compareAndSave(long, Model)}
+     *
+     * @return the saved entity with its new version
+     */
+    public abstract T compareAndUpdate(long expectedVersion, T entity)
+            throws EntityNullReferenceException, EntityValidationException, KeyNullReferenceException,
+            EntityNotFoundException, EntityVersionConflictException;
+
+    /**
+     * Validates all the entities and saves them at once, if any of them is invalid none is saved
+     *
+     * @return the saved entities in the given order
+     */
+    public abstract List<T> createAll(List<T> entities) throws EntityNullReferenceException, EntityValidationException;
+
+    /**
+     * Deletes the entities at once, if any of them does not exist none is deleted
+     */
+    public abstract boolean deleteAllById(Collection<Long> ids)
+            throws KeyNullReferenceException, EntityNotFoundException;
+
     public abstract List<T> readAll();
 
     /**
      * @param offset number of elements to skip. If the value is zero, the elements will be taken from the first element
      * @param limit number of elements no more than the method should return. If the value of "limit" parameter is -1, all the elements of the dataset will be returned
-     * @return list of dataset elements
+     * @return page of dataset elements together with the total element count taken from the same state of the dataset
+     */
+    public abstract Page<T> readPage(long offset, long limit);
+
+    /**
+     * Same as {@link #readPage(long, long)} without a limit, the elements are read lazily while the stream is consumed
      */
-    public abstract List<T> readPage(long offset, long limit);
+    public abstract PageStream<T> streamPage(long offset);
+
+    /**
+     * Keyset paging in ascending id order, stable when entities are added or deleted between the pages
+     *
+     * @param lastId last id of the previous page, 0 for the first page
+     * @param limit maximum number of elements to return, -1 means all the following elements
+     */
+    public abstract List<T> readAfter(long lastId, long limit);
+
+    /**
+     * Same as {@link #readPage(long, long)} for the entities of one author, read from an index in time proportional to
+     * the size of the page
+     *
+     * @throws UnsupportedOperationException if the entities do not refer to an author
+     */
+    public Page<T> findByAuthorId(Long authorId, long offset, long limit) throws KeyNullReferenceException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Same as {@link #readPage(long, long)} for the entities whose timestamp property is within {@code [from, to)},
+     * ordered by that timestamp and read from an index in time proportional to the size of the page
+     *
+     * @param timestamp name of the timestamp property, e.g. "createDate" or "lastUpdateDate" of news
+     * @param from inclusive lower bound, null means no lower bound
+     * @param to exclusive upper bound, null means no upper bound
+     * @param descending whether the page is taken from the latest timestamp backwards
+     * @throws UnsupportedOperationException if the entities have no such indexed timestamp
+     */
+    public Page<T> readPageByTime(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Full-text search over the text fields of the entities, best matches first
+     *
+     * @param query words to look for, an entity matches if it contains any of them
+     * @param offset number of the best matches to skip
+     * @param limit maximum number of entities to return, -1 means no limit
+     * @return page of matching entities and the number of all the matching entities
+     * @throws UnsupportedOperationException if the entities are not searchable
+     */
+    public Page<T> search(String query, long offset, long limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Scans of the entities read a columnar copy of them, see {@link #readByTitleContaining(String, long, long)}
+     *
+     * @return number of entities per author, the authors without entities are left out
+     * @throws UnsupportedOperationException if the entities do not refer to an author or are not scanned by it
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if their data source does not scan columns
+     */
+    public Map<Long, Long> countByAuthorId() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param timestamp name of the timestamp property, e.g. "createDate" or "lastUpdateDate" of news
+     * @param from first day to count, null means no lower bound
+     * @param to day after the last day to count, null means no upper bound
+     * @return number of entities per day of the timestamp in ascending order, the days without entities are left out
+     * @throws UnsupportedOperationException if the entities are not scanned by such a timestamp
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if their data source does not scan columns
+     */
+    public SortedMap<LocalDate, Long> countByDay(String timestamp, LocalDate from, LocalDate to) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Case-insensitive scan of the titles, unlike {@link #search(String, long, long)} it finds any part of a word and
+     * does not rank the entities
+     *
+     * @param text part of the title to look for
+     * @param limit maximum number of entities to return, -1 means no limit
+     * @return page of the entities in the order of {@link #readAll()} and the number of all the matching entities
+     * @throws UnsupportedOperationException if the entities have no title or are not scanned by it
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if their data source does not scan columns
+     */
+    public Page<T> readByTitleContaining(String text, long offset, long limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the version of the dataset that was current at the time, to be passed to the reads as of a version
+     * @throws VersionNotRetainedException if the versions of that time are no longer kept
+     * @throws UnsupportedOperationException if the entities are not read as of a version
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if their data source keeps no history
+     */
+    public long versionAt(Instant time) throws VersionNotRetainedException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Same as {@link #readById(Long)} as of an earlier version of the dataset, see {@link #versionAt(Instant)}
+     *
+     * @throws IllegalArgumentException if the version is negative or has not been committed yet
+     * @throws UnsupportedOperationException if the entities are not read as of a version
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if their data source keeps no history
+     */
+    public T readById(Long id, long version)
+            throws KeyNullReferenceException, EntityNotFoundException, VersionNotRetainedException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Same as {@link #readById(Long, long)} for a page of the entities in the order of {@link #readAll()}
+     *
+     * @param limit maximum number of entities to return, -1 means no limit
+     */
+    public List<T> readAll(long offset, long limit, long version) throws VersionNotRetainedException {
+        throw new UnsupportedOperationException();
+    }
 
     public abstract boolean existsById(Long id) throws KeyNullReferenceException;
     public abstract long count();
 
+    /**
+     * @return whether the data source of the entities supports an optional feature, the reads and writes depending on
+     * a feature it does not support throw {@link com.mjc.school.exception.UnsupportedCapabilityException}
+     */
+    public abstract boolean supports(Capability capability);
+
+    /**
+     * Writes the entities to a backup file while they are still being changed, see
+     * {@link com.mjc.school.datasource.DataSource#backup(Path)}
+     *
+     * @return number of entities written
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if the data source of the entities cannot be
+     * backed up
+     */
+    public abstract long backup(Path file);
+
+    /**
+     * Replaces all the entities with the ones of a backup file written by {@link #backup(Path)}
+     *
+     * @return number of entities restored
+     * @throws com.mjc.school.exception.DataFileNotFoundException if there is no such file
+     * @throws com.mjc.school.exception.UnsupportedCapabilityException if the data source of the entities cannot be
+     * restored
+     */
+    public abstract long restore(Path file);
+
+    /**
+     * Same as {@link #existsById(Long)} as the transaction sees it, the commit of the transaction fails if the entity
+     * has been added or deleted since
+     */
+    public abstract boolean existsById(RepositoryTransaction transaction, Long id) throws KeyNullReferenceException;
+
+    /**
+     * Same as {@link #readById(Long)} as the transaction sees it, the commit of the transaction fails if the entity has
+     * been changed since
+     */
+    public abstract T readById(RepositoryTransaction transaction, Long id)
+            throws KeyNullReferenceException, EntityNotFoundException;
+
+    /**
+     * Validates the entity and saves it when the transaction commits
+     *
+     * @return the saved entity with its id once the transaction has been committed
+     */
+    public abstract Supplier<T> create(RepositoryTransaction transaction, T entity)
+            throws EntityNullReferenceException, EntityValidationException;
+
+    /**
+     * Same as {@link #create(RepositoryTransaction, Model)} for an entity with an id
+     */
+    public Supplier<T> update(RepositoryTransaction transaction, T entity)
+            throws EntityNullReferenceException, EntityValidationException {
+        return create(transaction, entity);
+    }
+
     protected void validateEntity(T entity) throws EntityValidationException {
         Set<ConstraintViolation<T>> violations = validator.validate(entity);
         if (!violations.isEmpty()) {
@@ -49,4 +264,64 @@ public abstract class Repository <T extends Model> {
             throw new EntityValidationException(messages);
         }
     }
+
+    /**
+     * Same as {@link #validateEntity(Model)} for all the entities, the message lists the violations of every invalid
+     * entity prefixed with its position in the list
+     */
+    protected void validateEntities(List<T> entities) throws EntityNullReferenceException, EntityValidationException {
+        if (entities == null || entities.stream().anyMatch(Objects::isNull)) {
+            throw new EntityNullReferenceException();
+        }
+
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++) {
+            for (ConstraintViolation<T> cv : validator.validate(entities.get(i))) {
+                messages.add("[" + i + "]." + cv.getPropertyPath() + ": " + cv.getMessage());
+            }
+        }
+        if (!messages.isEmpty()) {
+            throw new EntityValidationException(String.join(", ", messages));
+        }
+    }
+
+    /**
+     * @return the transaction of the data sources the repository reads and writes in
+     */
+    protected static Transaction dataSourceTransaction(RepositoryTransaction transaction) {
+        return transaction.transaction();
+    }
+
+    /**
+     * Optional features of the data source of a repository, see {@link #supports(Capability)}
+     */
+    public enum Capability {
+        /**
+         * {@link #versionAt(Instant)} and the reads as of a version
+         */
+        HISTORY(DataSource.Capability.HISTORY),
+        /**
+         * {@link #backup(Path)} and {@link #restore(Path)}
+         */
+        BACKUP(DataSource.Capability.BACKUP),
+        /**
+         * {@link #countByAuthorId()}, {@link #countByDay(String, LocalDate, LocalDate)} and
+         * {@link #readByTitleContaining(String, long, long)}
+         */
+        COLUMN_SCANS(DataSource.Capability.COLUMN_SCANS);
+
+        private final DataSource.Capability dataSourceCapability;
+
+        Capability(DataSource.Capability dataSourceCapability) {
+            this.dataSourceCapability = dataSourceCapability;
+        }
+
+        public DataSource.Capability getDataSourceCapability() {
+            return this.dataSourceCapability;
+        }
+
+        public String getDescription() {
+            return this.dataSourceCapability.getDescription();
+        }
+    }
 }
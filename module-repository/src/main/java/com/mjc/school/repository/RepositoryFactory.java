@@ -9,18 +9,41 @@ import com.mjc.school.model.NewsModel;
 import com.mjc.school.repository.impl.AuthorRepository;
 import com.mjc.school.repository.impl.NewsRepository;
 
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives one repository per data source, shared by all the services, so that state the repository keeps besides its
+ * data source, like the search index of the news, is kept once and sees every write made through the data source, a
+ * restore included
+ */
 public class RepositoryFactory {
+    private static final Map<DataSource<?>, Repository<?>> repositories = new ConcurrentHashMap<>();
 
     private RepositoryFactory() {}
 
     @SuppressWarnings("unchecked")
     public static <T extends Model> Repository<T> getRepository(Class<T> entityClass) {
+        DataSource<T> dataSource = DataSourceFactory.getDataSource(entityClass);
+        return (Repository<T>) repositories.computeIfAbsent(
+                dataSource, source -> createRepository(entityClass, dataSource)
+        );
+    }
+
+    /**
+     * @return directory of the online backups of the repositories, see {@link Repository#backup(Path)}
+     */
+    public static Path getBackupDirectory() {
+        return DataSourceFactory.getBackupDirectory();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Model> Repository<T> createRepository(Class<T> entityClass, DataSource<T> dataSource) {
         if (entityClass == AuthorModel.class) {
-            DataSource<AuthorModel> dataSource = DataSourceFactory.getDataSource(AuthorModel.class);
-            return (Repository<T>) new AuthorRepository(dataSource);
+            return (Repository<T>) new AuthorRepository((DataSource<AuthorModel>) dataSource);
         } else if (entityClass == NewsModel.class) {
-            DataSource<NewsModel> dataSource = DataSourceFactory.getDataSource(NewsModel.class);
-            return (Repository<T>) new NewsRepository(dataSource);
+            return (Repository<T>) new NewsRepository((DataSource<NewsModel>) dataSource);
         }
 
         throw new UnsupportedEntityClassException(entityClass);
@@ -0,0 +1,33 @@
+package com.mjc.school.repository;
+
+import com.mjc.school.datasource.Transaction;
+import com.mjc.school.exception.TransactionConflictException;
+
+/**
+ * Reads and writes of one or more repositories that are committed together, e.g. a check that an author exists and
+ * the save of a news of that author. The repositories run them in a {@link Transaction} over their data sources, see
+ * there for what a commit checks. A transaction is used by one thread and committed once.
+ */
+public final class RepositoryTransaction {
+    private final Transaction transaction;
+
+    private RepositoryTransaction(Transaction transaction) {
+        this.transaction = transaction;
+    }
+
+    public static RepositoryTransaction begin() {
+        return new RepositoryTransaction(Transaction.begin());
+    }
+
+    /**
+     * @throws TransactionConflictException if an entity the transaction has read has been changed since, nothing is
+     * written then
+     */
+    public void commit() throws TransactionConflictException {
+        this.transaction.commit();
+    }
+
+    Transaction transaction() {
+        return this.transaction;
+    }
+}
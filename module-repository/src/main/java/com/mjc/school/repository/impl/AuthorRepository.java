@@ -4,11 +4,18 @@ import com.mjc.school.datasource.DataSource;
 import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.exception.EntityNullReferenceException;
 import com.mjc.school.exception.EntityValidationException;
+import com.mjc.school.exception.EntityVersionConflictException;
 import com.mjc.school.exception.KeyNullReferenceException;
 import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
 import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryTransaction;
 
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class AuthorRepository extends Repository<AuthorModel> {
     private final DataSource<AuthorModel> dataSource;
@@ -41,6 +48,19 @@ public class AuthorRepository extends Repository<AuthorModel> {
         return this.create(entity);
     }
 
+    @Override
+    public AuthorModel compareAndUpdate(long expectedVersion, AuthorModel entity)
+            throws EntityNullReferenceException, EntityValidationException, KeyNullReferenceException,
+            EntityNotFoundException, EntityVersionConflictException {
+        if (entity == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        validateEntity(entity);
+
+        return this.dataSource.compareAndSave(expectedVersion, entity);
+    }
+
     @Override
     public Boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
         if (id == null) {
@@ -49,14 +69,36 @@ public class AuthorRepository extends Repository<AuthorModel> {
         return this.dataSource.delete(id);
     }
 
+    @Override
+    public List<AuthorModel> createAll(List<AuthorModel> entities)
+            throws EntityNullReferenceException, EntityValidationException {
+        validateEntities(entities);
+        return this.dataSource.saveAll(entities);
+    }
+
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        return this.dataSource.deleteAllById(ids);
+    }
+
     @Override
     public List<AuthorModel> readAll() {
         return this.dataSource.findAll();
     }
 
     @Override
-    public List<AuthorModel> readPage(long offset, long limit) {
-        return this.dataSource.findAll(offset, limit);
+    public Page<AuthorModel> readPage(long offset, long limit) {
+        return this.dataSource.findPage(offset, limit);
+    }
+
+    @Override
+    public PageStream<AuthorModel> streamPage(long offset) {
+        return this.dataSource.streamPage(offset);
+    }
+
+    @Override
+    public List<AuthorModel> readAfter(long lastId, long limit) {
+        return this.dataSource.findAfter(lastId, limit);
     }
 
     @Override
@@ -68,4 +110,43 @@ public class AuthorRepository extends Repository<AuthorModel> {
     public long count() {
         return this.dataSource.count();
     }
+
+    @Override
+    public boolean supports(Capability capability) {
+        return this.dataSource.capabilities().contains(capability.getDataSourceCapability());
+    }
+
+    @Override
+    public long backup(Path file) {
+        return this.dataSource.backup(file);
+    }
+
+    @Override
+    public long restore(Path file) {
+        return this.dataSource.restore(file);
+    }
+
+    @Override
+    public boolean existsById(RepositoryTransaction transaction, Long id) throws KeyNullReferenceException {
+        return dataSourceTransaction(transaction).exists(this.dataSource, id);
+    }
+
+    @Override
+    public AuthorModel readById(RepositoryTransaction transaction, Long id)
+            throws KeyNullReferenceException, EntityNotFoundException {
+        return dataSourceTransaction(transaction).find(this.dataSource, id)
+                .orElseThrow(() -> new EntityNotFoundException(id, AuthorModel.class));
+    }
+
+    @Override
+    public Supplier<AuthorModel> create(RepositoryTransaction transaction, AuthorModel entity)
+            throws EntityNullReferenceException, EntityValidationException {
+        if (entity == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        validateEntity(entity);
+
+        return dataSourceTransaction(transaction).save(this.dataSource, entity);
+    }
 }
@@ -4,14 +4,42 @@ import com.mjc.school.datasource.DataSource;
 import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.exception.EntityNullReferenceException;
 import com.mjc.school.exception.EntityValidationException;
+import com.mjc.school.exception.EntityVersionConflictException;
 import com.mjc.school.exception.KeyNullReferenceException;
+import com.mjc.school.exception.VersionNotRetainedException;
 import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
 import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryTransaction;
+import com.mjc.school.repository.search.InvertedIndex;
 
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class NewsRepository extends Repository<NewsModel> {
+    private static final int TITLE_WEIGHT = 2;
+    private static final int CONTENT_WEIGHT = 1;
+    private static final String AUTHOR_ID_COLUMN = "authorId";
+    private static final String TITLE_COLUMN = "title";
+
     private final DataSource<NewsModel> dataSource;
+    private final InvertedIndex searchIndex = new InvertedIndex(TITLE_WEIGHT, CONTENT_WEIGHT);
+    private final Set<Long> staleSearchIndexIds = ConcurrentHashMap.newKeySet();
+    private final Object searchIndexLock = new Object();
+    private volatile SearchIndexState searchIndexState = SearchIndexState.NOT_BUILT;
 
     public NewsRepository(DataSource<NewsModel> dataSource) {
         this.dataSource = dataSource;
@@ -33,7 +61,9 @@ public class NewsRepository extends Repository<NewsModel> {
 
         validateEntity(entity);
 
-        return this.dataSource.save(entity);
+        NewsModel saved = this.dataSource.save(entity);
+        markSearchIndexStale(saved.getId());
+        return saved;
     }
 
     @Override
@@ -41,12 +71,46 @@ public class NewsRepository extends Repository<NewsModel> {
         return this.create(entity);
     }
 
+    @Override
+    public NewsModel compareAndUpdate(long expectedVersion, NewsModel entity)
+            throws EntityNullReferenceException, EntityValidationException, KeyNullReferenceException,
+            EntityNotFoundException, EntityVersionConflictException {
+        if (entity == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        validateEntity(entity);
+
+        NewsModel saved = this.dataSource.compareAndSave(expectedVersion, entity);
+        markSearchIndexStale(saved.getId());
+        return saved;
+    }
+
     @Override
     public Boolean delete(Long id) throws KeyNullReferenceException, EntityNotFoundException {
         if (id == null) {
             throw new KeyNullReferenceException();
         }
-        return this.dataSource.delete(id);
+        boolean deleted = this.dataSource.delete(id);
+        markSearchIndexStale(id);
+        return deleted;
+    }
+
+    @Override
+    public List<NewsModel> createAll(List<NewsModel> entities)
+            throws EntityNullReferenceException, EntityValidationException {
+        validateEntities(entities);
+
+        List<NewsModel> saved = this.dataSource.saveAll(entities);
+        saved.forEach(news -> markSearchIndexStale(news.getId()));
+        return saved;
+    }
+
+    @Override
+    public boolean deleteAllById(Collection<Long> ids) throws KeyNullReferenceException, EntityNotFoundException {
+        boolean deleted = this.dataSource.deleteAllById(ids);
+        ids.forEach(this::markSearchIndexStale);
+        return deleted;
     }
 
     @Override
@@ -55,8 +119,142 @@ public class NewsRepository extends Repository<NewsModel> {
     }
 
     @Override
-    public List<NewsModel> readPage(long offset, long limit) {
-        return this.dataSource.findAll(offset, limit);
+    public Page<NewsModel> readPage(long offset, long limit) {
+        return this.dataSource.findPage(offset, limit);
+    }
+
+    @Override
+    public PageStream<NewsModel> streamPage(long offset) {
+        return this.dataSource.streamPage(offset);
+    }
+
+    @Override
+    public List<NewsModel> readAfter(long lastId, long limit) {
+        return this.dataSource.findAfter(lastId, limit);
+    }
+
+    @Override
+    public Page<NewsModel> findByAuthorId(Long authorId, long offset, long limit) throws KeyNullReferenceException {
+        if (authorId == null) {
+            throw new KeyNullReferenceException();
+        }
+        return this.dataSource.findPageBySecondaryKey(authorId, offset, limit);
+    }
+
+    @Override
+    public Page<NewsModel> readPageByTime(
+            String timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit
+    ) {
+        return this.dataSource.findPageByTimestamp(timestamp, from, to, descending, offset, limit);
+    }
+
+    @Override
+    public Map<Long, Long> countByAuthorId() {
+        return this.dataSource.countByKey(AUTHOR_ID_COLUMN);
+    }
+
+    @Override
+    public SortedMap<LocalDate, Long> countByDay(String timestamp, LocalDate from, LocalDate to) {
+        return this.dataSource.countByDay(timestamp, from, to);
+    }
+
+    @Override
+    public Page<NewsModel> readByTitleContaining(String text, long offset, long limit) {
+        return this.dataSource.findContaining(TITLE_COLUMN, text, offset, limit);
+    }
+
+    @Override
+    public long versionAt(Instant time) throws VersionNotRetainedException {
+        return this.dataSource.versionAt(time);
+    }
+
+    @Override
+    public NewsModel readById(Long id, long version)
+            throws KeyNullReferenceException, EntityNotFoundException, VersionNotRetainedException {
+        if (id == null) {
+            throw new KeyNullReferenceException();
+        }
+        return this.dataSource.findById(id, version);
+    }
+
+    @Override
+    public List<NewsModel> readAll(long offset, long limit, long version) throws VersionNotRetainedException {
+        return this.dataSource.findAll(offset, limit, version);
+    }
+
+    @Override
+    public Page<NewsModel> search(String query, long offset, long limit) {
+        buildSearchIndex();
+        InvertedIndex.SearchResult result = this.searchIndex.search(query, offset, limit, this::existsIfIndexed);
+        List<NewsModel> items = new ArrayList<>(result.ids().size());
+        long totalCount = result.totalCount();
+        for (Long id : result.ids()) {
+            Optional<NewsModel> news = findIfExists(id);
+            if (news.isPresent()) {
+                items.add(news.get());
+            } else {
+                totalCount--;
+            }
+        }
+        return new Page<>(items, totalCount);
+    }
+
+    /**
+     * The search index is built from the data source on the first search, so a repository that is never searched
+     * does not pay for it. Then the news written since the last search are indexed again.
+     * <p>
+     * Only searches take the lock, writers just mark the news they wrote as stale. The state is switched before the
+     * build reads the data source, so a write the build may miss sees it and marks its news too.
+     */
+    private void buildSearchIndex() {
+        if (this.searchIndexState == SearchIndexState.BUILT && this.staleSearchIndexIds.isEmpty()) {
+            return;
+        }
+        synchronized (this.searchIndexLock) {
+            if (this.searchIndexState == SearchIndexState.NOT_BUILT) {
+                this.searchIndexState = SearchIndexState.BUILDING;
+                this.dataSource.findAll().forEach(this::indexNews);
+                this.searchIndexState = SearchIndexState.BUILT;
+            }
+            for (Iterator<Long> ids = this.staleSearchIndexIds.iterator(); ids.hasNext(); ) {
+                long id = ids.next();
+                ids.remove();
+                findIfExists(id).ifPresentOrElse(this::indexNews, () -> this.searchIndex.remove(id));
+            }
+        }
+    }
+
+    /**
+     * Marks the news as stale in the search index, the next search indexes its current version. The mark is removed
+     * before the current version is read, so a write made after that read marks the news again.
+     */
+    private void markSearchIndexStale(long id) {
+        if (this.searchIndexState != SearchIndexState.NOT_BUILT) {
+            this.staleSearchIndexIds.add(id);
+        }
+    }
+
+    /**
+     * A news deleted after the search brought the index up to date is still in it
+     */
+    private boolean existsIfIndexed(long id) {
+        try {
+            return this.dataSource.existsById(id);
+        } catch (KeyNullReferenceException e) {
+            return false;
+        }
+    }
+
+    private Optional<NewsModel> findIfExists(long id) {
+        try {
+            return Optional.of(this.dataSource.findById(id));
+        } catch (EntityNotFoundException | KeyNullReferenceException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void indexNews(NewsModel news) {
+        this.searchIndex.put(news.getId(), news.getTitle(), news.getContent());
     }
 
     @Override
@@ -68,4 +266,60 @@ public class NewsRepository extends Repository<NewsModel> {
     public long count() {
         return this.dataSource.count();
     }
+
+    @Override
+    public boolean supports(Capability capability) {
+        return this.dataSource.capabilities().contains(capability.getDataSourceCapability());
+    }
+
+    @Override
+    public long backup(Path file) {
+        return this.dataSource.backup(file);
+    }
+
+    /**
+     * The search index is dropped and built again on the next search
+     */
+    @Override
+    public long restore(Path file) {
+        long restored = this.dataSource.restore(file);
+        synchronized (this.searchIndexLock) {
+            this.searchIndexState = SearchIndexState.NOT_BUILT;
+            this.staleSearchIndexIds.clear();
+            this.searchIndex.clear();
+        }
+        return restored;
+    }
+
+    @Override
+    public boolean existsById(RepositoryTransaction transaction, Long id) throws KeyNullReferenceException {
+        return dataSourceTransaction(transaction).exists(this.dataSource, id);
+    }
+
+    @Override
+    public NewsModel readById(RepositoryTransaction transaction, Long id)
+            throws KeyNullReferenceException, EntityNotFoundException {
+        return dataSourceTransaction(transaction).find(this.dataSource, id)
+                .orElseThrow(() -> new EntityNotFoundException(id, NewsModel.class));
+    }
+
+    @Override
+    public Supplier<NewsModel> create(RepositoryTransaction transaction, NewsModel entity)
+            throws EntityNullReferenceException, EntityValidationException {
+        if (entity == null) {
+            throw new EntityNullReferenceException();
+        }
+
+        validateEntity(entity);
+
+        Supplier<NewsModel> saved = dataSourceTransaction(transaction).save(this.dataSource, entity);
+        dataSourceTransaction(transaction).afterCommit(() -> markSearchIndexStale(saved.get().getId()));
+        return saved;
+    }
+
+    private enum SearchIndexState {
+        NOT_BUILT,
+        BUILDING,
+        BUILT
+    }
 }
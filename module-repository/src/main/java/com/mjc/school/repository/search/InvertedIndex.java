@@ -0,0 +1,306 @@
+package com.mjc.school.repository.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory full-text index of entities made of several text fields, e.g. the title and the content of news.
+ * <p>
+ * Every indexed entity gets a document number, the postings of a term list the numbers of the documents containing it
+ * in ascending order, see {@link PostingsList}. Updating an entity removes its document and adds a new one with the
+ * next number, so postings are only ever appended. Removed documents stay in the postings until they outnumber the live
+ * ones, then the postings are rebuilt from the terms each live document keeps.
+ * <p>
+ * Results are ranked by BM25. A term found in a field counts as many times as the weight of the field, so a match in a
+ * title can weigh more than one in the content. The terms of a query are alternatives: a document matches if it
+ * contains any of them and ranks higher the more of them it contains.
+ */
+public final class InvertedIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MIN_DOCUMENTS_TO_COMPACT = 1024;
+
+    private final int[] fieldWeights;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> termNumbers = new HashMap<>();
+    private final List<PostingsList> postings = new ArrayList<>();
+    private final Map<Long, Integer> documentsById = new HashMap<>();
+    private int[] liveDocumentCounts = new int[16];
+    private long[] ids = new long[16];
+    private int[] lengths = new int[16];
+    private int[][] documentTerms = new int[16][];
+    private final BitSet live = new BitSet();
+    private int documentCount;
+    private int liveCount;
+    private long liveLength;
+
+    /**
+     * @param fieldWeights weight of each field of an entity, in the order the fields are passed to
+     *                     {@link #put(long, String...)}
+     */
+    public InvertedIndex(int... fieldWeights) {
+        this.fieldWeights = fieldWeights.clone();
+    }
+
+    /**
+     * Indexes the fields of an entity, replacing its previous version if it was indexed
+     */
+    public void put(long id, String... fields) {
+        if (fields.length != this.fieldWeights.length) {
+            throw new IllegalArgumentException(
+                    "Expected " + this.fieldWeights.length + " fields, got " + fields.length
+            );
+        }
+
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        int length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            for (String term : Tokenizer.tokenize(fields[i])) {
+                frequencies.merge(term, this.fieldWeights[i], Integer::sum);
+                length += this.fieldWeights[i];
+            }
+        }
+
+        this.lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            int[] terms = new int[frequencies.size() * 2];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                terms[i++] = termNumber(entry.getKey());
+                terms[i++] = entry.getValue();
+            }
+            addDocument(id, terms, length);
+            compactIfNeeded();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        this.lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            compactIfNeeded();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all the entities
+     */
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            rebuild(List.of());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.liveCount;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param offset number of the best ranked ids to skip
+     * @param limit maximum number of ids to return, -1 means no limit
+     * @return ids of the matching entities, best ranked first and equally ranked ones by id, and the number of all the
+     * matching entities
+     */
+    public SearchResult search(String query, long offset, long limit) {
+        return search(query, offset, limit, id -> true);
+    }
+
+    /**
+     * Same as {@link #search(String, long, long)} for the matching entities the filter accepts. The filter is applied
+     * before the entities are counted and paged, e.g. to skip entities deleted since they were indexed.
+     */
+    public SearchResult search(String query, long offset, long limit, LongPredicate filter) {
+        List<String> terms = Tokenizer.tokenize(query).stream().distinct().toList();
+
+        this.lock.readLock().lock();
+        try {
+            double averageLength = this.liveCount == 0 ? 0 : (double) this.liveLength / this.liveCount;
+            double[] scores = new double[this.documentCount];
+            int[] matches = new int[this.documentCount];
+            int matchCount = 0;
+            for (String term : terms) {
+                Integer termNumber = this.termNumbers.get(term);
+                if (termNumber == null || this.liveDocumentCounts[termNumber] == 0) {
+                    continue;
+                }
+
+                int documentFrequency = this.liveDocumentCounts[termNumber];
+                double idf = Math.log(1 + (this.liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                PostingsList.Cursor cursor = this.postings.get(termNumber).cursor();
+                while (cursor.next()) {
+                    int document = cursor.document();
+                    if (!this.live.get(document)) {
+                        continue;
+                    }
+                    double frequency = cursor.frequency();
+                    double norm = K1 * (1 - B + B * this.lengths[document] / averageLength);
+                    if (scores[document] == 0) {
+                        matches[matchCount++] = document;
+                    }
+                    scores[document] += idf * frequency * (K1 + 1) / (frequency + norm);
+                }
+            }
+
+            int accepted = 0;
+            for (int i = 0; i < matchCount; i++) {
+                if (filter.test(this.ids[matches[i]])) {
+                    matches[accepted++] = matches[i];
+                }
+            }
+            return new SearchResult(rank(scores, matches, accepted, offset, limit), accepted);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> rank(double[] scores, int[] matches, int matchCount, long offset, long limit) {
+        long wanted = limit < 0 ? matchCount : Math.min(matchCount, offset + limit);
+        if (offset >= wanted) {
+            return List.of();
+        }
+
+        PriorityQueue<Integer> best = new PriorityQueue<>(
+                (int) wanted, (a, b) -> compareRank(b, a, scores)
+        );
+        for (int i = 0; i < matchCount; i++) {
+            best.add(matches[i]);
+            if (best.size() > wanted) {
+                best.poll();
+            }
+        }
+
+        Long[] ranked = new Long[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = this.ids[best.poll()];
+        }
+        return Arrays.asList(ranked).subList((int) offset, ranked.length);
+    }
+
+    /**
+     * @return a negative number if document {@code a} ranks before document {@code b}
+     */
+    private int compareRank(int a, int b, double[] scores) {
+        int byScore = Double.compare(scores[b], scores[a]);
+        return byScore != 0 ? byScore : Long.compare(this.ids[a], this.ids[b]);
+    }
+
+    private int termNumber(String term) {
+        Integer termNumber = this.termNumbers.get(term);
+        if (termNumber == null) {
+            termNumber = this.postings.size();
+            this.termNumbers.put(term, termNumber);
+            this.postings.add(new PostingsList());
+            if (termNumber == this.liveDocumentCounts.length) {
+                this.liveDocumentCounts = Arrays.copyOf(this.liveDocumentCounts, termNumber * 2);
+            }
+        }
+        return termNumber;
+    }
+
+    private void addDocument(long id, int[] terms, int length) {
+        int document = this.documentCount++;
+        if (document == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, document * 2);
+            this.lengths = Arrays.copyOf(this.lengths, document * 2);
+            this.documentTerms = Arrays.copyOf(this.documentTerms, document * 2);
+        }
+        this.ids[document] = id;
+        this.lengths[document] = length;
+        this.documentTerms[document] = terms;
+        for (int i = 0; i < terms.length; i += 2) {
+            this.postings.get(terms[i]).add(document, terms[i + 1]);
+            this.liveDocumentCounts[terms[i]]++;
+        }
+        this.live.set(document);
+        this.documentsById.put(id, document);
+        this.liveCount++;
+        this.liveLength += length;
+    }
+
+    private void removeDocument(long id) {
+        Integer document = this.documentsById.remove(id);
+        if (document == null) {
+            return;
+        }
+
+        int[] terms = this.documentTerms[document];
+        for (int i = 0; i < terms.length; i += 2) {
+            this.liveDocumentCounts[terms[i]]--;
+        }
+        this.documentTerms[document] = null;
+        this.live.clear(document);
+        this.liveCount--;
+        this.liveLength -= this.lengths[document];
+    }
+
+    private void compactIfNeeded() {
+        int removed = this.documentCount - this.liveCount;
+        if (removed >= MIN_DOCUMENTS_TO_COMPACT && removed > this.liveCount) {
+            List<Integer> liveDocuments = new ArrayList<>(this.liveCount);
+            this.live.stream().forEach(liveDocuments::add);
+            rebuild(liveDocuments);
+        }
+    }
+
+    /**
+     * Renumbers the given documents in their order and rebuilds the postings of the terms they contain
+     */
+    private void rebuild(List<Integer> liveDocuments) {
+        long[] oldIds = this.ids;
+        int[] oldLengths = this.lengths;
+        int[][] oldTerms = this.documentTerms;
+        Map<String, Integer> oldTermNumbers = new HashMap<>(this.termNumbers);
+        String[] termsByOldNumber = new String[this.postings.size()];
+        oldTermNumbers.forEach((term, number) -> termsByOldNumber[number] = term);
+
+        int capacity = Math.max(16, liveDocuments.size());
+        this.ids = new long[capacity];
+        this.lengths = new int[capacity];
+        this.documentTerms = new int[capacity][];
+        this.termNumbers.clear();
+        this.postings.clear();
+        this.liveDocumentCounts = new int[16];
+        this.documentsById.clear();
+        this.live.clear();
+        this.documentCount = 0;
+        this.liveCount = 0;
+        this.liveLength = 0;
+
+        for (int oldDocument : liveDocuments) {
+            int[] terms = oldTerms[oldDocument].clone();
+            for (int i = 0; i < terms.length; i += 2) {
+                terms[i] = termNumber(termsByOldNumber[terms[i]]);
+            }
+            addDocument(oldIds[oldDocument], terms, oldLengths[oldDocument]);
+        }
+    }
+
+    /**
+     * @param ids ids of the requested page of matching entities
+     * @param totalCount number of all the matching entities
+     */
+    public record SearchResult(List<Long> ids, long totalCount) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.mjc.school.repository.search;
+
+import java.util.Arrays;
+
+/**
+ * Documents containing one term, in ascending document number order. A posting is packed into one int, the gap to the
+ * previous document number in the upper 24 bits and the weighted term frequency in the lower 8, so a posting usually
+ * takes four bytes. A gap or a frequency that does not fit is written as a zero followed by the two of them.
+ */
+final class PostingsList {
+    private static final int FREQUENCY_BITS = 8;
+    private static final int MAX_PACKED_GAP = (1 << (Integer.SIZE - FREQUENCY_BITS)) - 1;
+    private static final int MAX_PACKED_FREQUENCY = (1 << FREQUENCY_BITS) - 1;
+    private static final int UNPACKED = 0;
+
+    private int[] postings = new int[4];
+    private int length;
+    private int lastDocument = -1;
+    private int documentCount;
+
+    /**
+     * @param document number greater than all the numbers already in the list
+     */
+    void add(int document, int frequency) {
+        int gap = document - this.lastDocument;
+        ensureCapacity(3);
+        if (gap <= MAX_PACKED_GAP && frequency <= MAX_PACKED_FREQUENCY) {
+            this.postings[this.length++] = gap << FREQUENCY_BITS | frequency;
+        } else {
+            this.postings[this.length++] = UNPACKED;
+            this.postings[this.length++] = gap;
+            this.postings[this.length++] = frequency;
+        }
+        this.lastDocument = document;
+        this.documentCount++;
+    }
+
+    /**
+     * Number of postings, including the ones of removed documents
+     */
+    int documentCount() {
+        return this.documentCount;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private void ensureCapacity(int extra) {
+        if (this.length + extra > this.postings.length) {
+            this.postings = Arrays.copyOf(this.postings, Math.max(this.postings.length * 2, this.length + extra));
+        }
+    }
+
+    /**
+     * Reads the postings as they were when the cursor was created.
+     */
+    final class Cursor {
+        private final int[] postings = PostingsList.this.postings;
+        private final int end = PostingsList.this.length;
+        private int position;
+        private int document = -1;
+        private int frequency;
+
+        boolean next() {
+            if (this.position >= this.end) {
+                return false;
+            }
+            int posting = this.postings[this.position++];
+            if (posting == UNPACKED) {
+                this.document += this.postings[this.position++];
+                this.frequency = this.postings[this.position++];
+            } else {
+                this.document += posting >>> FREQUENCY_BITS;
+                this.frequency = posting & MAX_PACKED_FREQUENCY;
+            }
+            return true;
+        }
+
+        int document() {
+            return this.document;
+        }
+
+        int frequency() {
+            return this.frequency;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.mjc.school.repository.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits a text into lower-cased terms: maximal runs of letters and digits. Terms longer than {@link #MAX_TERM_LENGTH}
+ * are cut to that length.
+ */
+final class Tokenizer {
+    static final int MAX_TERM_LENGTH = 64;
+
+    private Tokenizer() {}
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; ) {
+            int codePoint = i < length ? text.codePointAt(i) : ' ';
+            boolean termChar = i < length && Character.isLetterOrDigit(codePoint);
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+                terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+                start = -1;
+            }
+            i += i < length ? Character.charCount(codePoint) : 1;
+        }
+        return terms;
+    }
+}
@@ -78,40 +78,33 @@ class AuthorModelDataSourceTest {
     }
 
     @Test
-    @DisplayName("When changing the data of an entity issued by a dataSource, the entity data in the dataSource does not change")
+    @DisplayName("A changed copy of an entity issued by a dataSource does not change the entity in the dataSource until it is saved")
     void save_update_OnSavingAndFetchingNewInstanceOfEntityCreatedNotDependOfEachOther_true() throws CustomRepositoryException {
         Long idForCheck = findRandomId();
 
         AuthorModel firstFetchEntity = dataSource.findById(idForCheck);
-        AuthorModel secondFetchEntity_ForChange = dataSource.findById(idForCheck);
-
-        secondFetchEntity_ForChange.setName("Change author name");
+        AuthorModel changedCopy = firstFetchEntity.toBuilder().name("Change author name").build();
 
         AuthorModel actualEntity = dataSource.findById(idForCheck);
 
         assertThat(actualEntity)
-                .isNotSameAs(firstFetchEntity)
-                .isEqualTo(firstFetchEntity)
-
-                .isNotSameAs(secondFetchEntity_ForChange)
-                .isNotEqualTo(secondFetchEntity_ForChange);
+                .isSameAs(firstFetchEntity)
+                .isNotEqualTo(changedCopy);
     }
 
     @Test
     @DisplayName("After saving the changes to the entity in the dataSource, the data is returned changed when the request is repeated")
     void save_update_savedEntityIsEqualsToFetchedEntity_true() throws CustomRepositoryException {
         Long idForFetch = findRandomId();
-        AuthorModel expectedAuthorModel = dataSource.findById(idForFetch);
-
-        expectedAuthorModel.setName("Changed author name");
+        AuthorModel expectedAuthorModel = dataSource.findById(idForFetch).toBuilder()
+                .name("Changed author name")
+                .build();
 
         dataSource.save(expectedAuthorModel);
 
         AuthorModel actualAuthorModel = dataSource.findById(expectedAuthorModel.getId());
 
-        assertThat(actualAuthorModel)
-                .isNotSameAs(expectedAuthorModel)
-                .isEqualTo(expectedAuthorModel);
+        assertThat(actualAuthorModel).isEqualTo(expectedAuthorModel);
     }
 
     @Test
@@ -0,0 +1,141 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.DataFileNotFoundException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("DataSourceImpl online backup and restore")
+class BackupRestoreTest {
+    @TempDir
+    Path directory;
+
+    private DataSourceImpl<NewsModel> open(Path walDirectory) {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.WAL_DIR, walDirectory.toString());
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "0");
+        return new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(properties)
+        );
+    }
+
+    private static NewsModel news(String title) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(null, title, title + " content", date, date, 1L);
+    }
+
+    private static List<NewsModel> sorted(List<NewsModel> news) {
+        return news.stream().sorted(Comparator.comparing(Model::getId)).toList();
+    }
+
+    @Test
+    @DisplayName("A restore brings back the entities and versions of the backup, logs the changes and survives a restart")
+    void restore_afterChanges_stateOfBackup() throws CustomRepositoryException {
+        Path backupFile = this.directory.resolve("backup").resolve("news.backup");
+        List<NewsModel> backedUp;
+        long restoredVersion;
+        DataSourceImpl<NewsModel> news = open(this.directory);
+        try {
+            news.save(news.findById(1L).toBuilder().title("Saved before the backup").build());
+            backedUp = sorted(news.findAll());
+            assertThat(news.backup(backupFile)).isEqualTo(backedUp.size());
+
+            news.save(news.findById(1L).toBuilder().title("Saved after the backup").build());
+            news.delete(2L);
+            NewsModel added = news.save(news("Added after the backup"));
+            long versionBeforeRestore = news.changeVersion();
+            ChangeStream<NewsModel> changes = news.changesAfter(versionBeforeRestore);
+
+            assertThat(news.restore(backupFile)).isEqualTo(backedUp.size());
+
+            assertThat(sorted(news.findAll())).containsExactlyElementsOf(backedUp);
+            assertThat(news.findById(1L).getVersion()).isEqualTo(backedUp.get(0).getVersion());
+            assertThat(news.existsById(added.getId())).isFalse();
+            assertThat(news.findPageBySecondaryKey(1L, 0, -1).items())
+                    .allMatch(item -> item.getAuthorId() == 1L)
+                    .doesNotContain(added);
+            assertThat(changes.poll(10)).extracting(ChangeEvent::id)
+                    .containsExactlyInAnyOrder(added.getId(), 1L, 2L);
+            restoredVersion = news.changeVersion();
+            assertThat(restoredVersion).isEqualTo(versionBeforeRestore + 3);
+        } finally {
+            news.close();
+        }
+
+        DataSourceImpl<NewsModel> reopened = open(this.directory);
+        try {
+            assertThat(sorted(reopened.findAll())).containsExactlyElementsOf(backedUp);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A backup taken while entities are added in pairs holds whole pairs, a fresh data source restores it")
+    void backup_concurrentWrites_consistentVersion() throws Exception {
+        DataSourceImpl<NewsModel> news = open(this.directory.resolve("wal"));
+        DataSourceImpl<NewsModel> copy = open(this.directory.resolve("copy-wal"));
+        long initialCount = news.count();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                while (running.get()) {
+                    news.saveAll(List.of(news("First of a pair"), news("Second of a pair")));
+                }
+                return null;
+            });
+
+            List<Long> backupCounts = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Path file = this.directory.resolve("backup-" + i + ".backup");
+                long count = news.backup(file);
+                backupCounts.add(count);
+                assertThat((count - initialCount) % 2).isZero();
+                assertThat(copy.restore(file)).isEqualTo(count);
+                assertThat(copy.count()).isEqualTo(count);
+            }
+            running.set(false);
+            writer.get(30, TimeUnit.SECONDS);
+            assertThat(backupCounts).isSorted();
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+            news.close();
+            copy.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Restoring from a missing file fails and keeps the entities")
+    void restore_missingFile_notFound() {
+        DataSourceImpl<NewsModel> news = open(this.directory);
+        try {
+            long count = news.count();
+            assertThatThrownBy(() -> news.restore(this.directory.resolve("missing.backup")))
+                    .isInstanceOf(DataFileNotFoundException.class);
+            assertThat(news.count()).isEqualTo(count);
+        } finally {
+            news.close();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mjc.school.datasource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("BloomFilter")
+class BloomFilterTest {
+    @Test
+    @DisplayName("Every added id is reported as possibly contained")
+    void mightContain_addedIds_true() {
+        BloomFilter filter = new BloomFilter(10_000);
+        LongStream.rangeClosed(1, 10_000).forEach(filter::add);
+
+        assertThat(LongStream.rangeClosed(1, 10_000).allMatch(filter::mightContain)).isTrue();
+    }
+
+    @Test
+    @DisplayName("About one missing id in a hundred is a false positive")
+    void mightContain_missingIds_fewFalsePositives() {
+        BloomFilter filter = new BloomFilter(10_000);
+        LongStream.rangeClosed(1, 10_000).forEach(filter::add);
+
+        long falsePositives = LongStream.rangeClosed(10_001, 110_000).filter(filter::mightContain).count();
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    @DisplayName("An empty filter contains nothing")
+    void mightContain_emptyFilter_false() {
+        BloomFilter filter = new BloomFilter(0);
+
+        assertThat(filter.mightContain(1L)).isFalse();
+        assertThat(filter.mightContain(Long.MAX_VALUE)).isFalse();
+    }
+}
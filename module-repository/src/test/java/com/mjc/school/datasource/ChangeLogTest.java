@@ -0,0 +1,104 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.ChangeEventsLostException;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("ChangeLog")
+class ChangeLogTest {
+    private static NewsModel news(long id) {
+        LocalDateTime date = LocalDateTime.of(2024, 4, 5, 14, 12, 31);
+        return new NewsModel(id, "News " + id, "Content " + id, date, date, 1L);
+    }
+
+    private static List<NewsModel> news(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId).mapToObj(ChangeLogTest::news).toList();
+    }
+
+    @Test
+    @DisplayName("Changes are returned in version order, at most the requested number at a time")
+    void poll_returnsChangesInVersionOrder() {
+        ChangeLog<NewsModel> changes = new ChangeLog<>(8);
+        ChangeStream<NewsModel> stream = changes.streamAfter(0);
+        changes.publish(ChangeEvent.Type.SAVE, news(1, 3));
+        changes.publish(ChangeEvent.Type.DELETE, List.of(news(2)));
+
+        List<ChangeEvent<NewsModel>> first = stream.poll(3);
+        List<ChangeEvent<NewsModel>> second = stream.poll(10);
+
+        assertThat(first).extracting(ChangeEvent::version).containsExactly(1L, 2L, 3L);
+        assertThat(first).extracting(ChangeEvent::id).containsExactly(1L, 2L, 3L);
+        assertThat(second).containsExactly(new ChangeEvent<>(4L, ChangeEvent.Type.DELETE, 2L, news(2)));
+        assertThat(stream.poll(10)).isEmpty();
+        assertThat(stream.lastVersion()).isEqualTo(4L);
+        assertThat(stream.lag()).isZero();
+    }
+
+    @Test
+    @DisplayName("A stream opened after a buffered version resumes with the next change")
+    void streamAfter_bufferedVersion_resumesAfterIt() {
+        ChangeLog<NewsModel> changes = new ChangeLog<>(8);
+        changes.publish(ChangeEvent.Type.SAVE, news(1, 5));
+
+        ChangeStream<NewsModel> stream = changes.streamAfter(3);
+
+        assertThat(stream.lag()).isEqualTo(2L);
+        assertThat(stream.poll(10)).extracting(ChangeEvent::version).containsExactly(4L, 5L);
+    }
+
+    @Test
+    @DisplayName("A subscriber that falls behind by more than the capacity loses its position, the writer never waits")
+    void poll_overwrittenChanges_throwsException() {
+        ChangeLog<NewsModel> changes = new ChangeLog<>(6);
+        ChangeStream<NewsModel> stream = changes.streamAfter(0);
+        changes.publish(ChangeEvent.Type.SAVE, news(1, 9));
+
+        assertThat(changes.capacity()).isEqualTo(8);
+        assertThatThrownBy(() -> stream.poll(1)).isInstanceOf(ChangeEventsLostException.class);
+        assertThatThrownBy(() -> changes.streamAfter(0)).isInstanceOf(ChangeEventsLostException.class);
+        assertThat(changes.streamAfter(1).poll(10)).hasSize(8);
+    }
+
+    @Test
+    @DisplayName("A version that has not been published yet cannot be resumed from")
+    void streamAfter_futureVersion_throwsException() {
+        ChangeLog<NewsModel> changes = new ChangeLog<>(8);
+        changes.publish(ChangeEvent.Type.SAVE, news(1, 2));
+
+        assertThatThrownBy(() -> changes.streamAfter(3)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> changes.streamAfter(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("A subscriber reading while the writer publishes sees every change once, in order")
+    void poll_concurrentWriter_noGapsNoDuplicates() throws Exception {
+        ChangeLog<NewsModel> changes = new ChangeLog<>(1 << 16);
+        ChangeStream<NewsModel> stream = changes.streamAfter(0);
+        int changeCount = 20_000;
+
+        CompletableFuture<List<Long>> reader = CompletableFuture.supplyAsync(() -> {
+            List<Long> versions = new ArrayList<>(changeCount);
+            while (versions.size() < changeCount) {
+                stream.poll(100).forEach(event -> versions.add(event.version()));
+            }
+            return versions;
+        });
+        for (long id = 1; id <= changeCount; id++) {
+            changes.publish(ChangeEvent.Type.SAVE, List.of(news(id)));
+        }
+
+        assertThat(reader.get(30, TimeUnit.SECONDS))
+                .containsExactlyElementsOf(LongStream.rangeClosed(1, changeCount).boxed().toList());
+    }
+}
@@ -0,0 +1,128 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the column scans with the same aggregations over the entities of {@code findAll()}. Run with the
+ * environment variable {@code BENCHMARK=true}, the median times are printed.
+ */
+@DisplayName("Column scans against iterating findAll()")
+@EnabledIfEnvironmentVariable(named = "BENCHMARK", matches = "true")
+class ColumnScanBenchmarkTest {
+    private static final int NEWS_COUNT = 500_000;
+    private static final int WARM_UP_RUNS = 5;
+    private static final int MEASURED_RUNS = 15;
+
+    private DataSourceImpl<NewsModel> dataSource;
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Counts by author, a daily histogram and a title scan")
+    void columnScans_fasterThanFindAll() throws CustomRepositoryException {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "0");
+        this.dataSource = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), NewsIndexes.columns(),
+                new DataSourceProperties(properties)
+        );
+        List<NewsModel> news = new ArrayList<>(NEWS_COUNT);
+        LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < NEWS_COUNT; i++) {
+            LocalDateTime created = start.plusMinutes(i * 7L);
+            news.add(new NewsModel(
+                    null, "Title number " + i + (i % 100 == 0 ? " weather" : ""), "Content " + i, created, created,
+                    (long) (i % 1000)
+            ));
+        }
+        this.dataSource.saveAll(news);
+        LocalDate from = LocalDate.of(2021, 1, 1);
+        LocalDate to = LocalDate.of(2022, 1, 1);
+
+        compare("count by author",
+                () -> this.dataSource.countByKey(NewsIndexes.AUTHOR_ID),
+                () -> {
+                    Map<Long, Long> counts = new HashMap<>();
+                    for (NewsModel item : this.dataSource.findAll()) {
+                        if (item.getAuthorId() != null) {
+                            counts.merge(item.getAuthorId(), 1L, Long::sum);
+                        }
+                    }
+                    return counts;
+                });
+        compare("daily histogram",
+                () -> this.dataSource.countByDay(NewsIndexes.CREATE_DATE, from, to),
+                () -> {
+                    SortedMap<LocalDate, Long> counts = new TreeMap<>();
+                    for (NewsModel item : this.dataSource.findAll()) {
+                        if (item.getCreateDate() != null) {
+                            LocalDate day = item.getCreateDate().toLocalDate();
+                            if (!day.isBefore(from) && day.isBefore(to)) {
+                                counts.merge(day, 1L, Long::sum);
+                            }
+                        }
+                    }
+                    return counts;
+                });
+        compare("title scan",
+                () -> this.dataSource.findContaining(NewsIndexes.TITLE, "Weather", 0, -1).items(),
+                () -> {
+                    List<NewsModel> found = new ArrayList<>();
+                    for (NewsModel item : this.dataSource.findAll()) {
+                        if (item.getTitle() != null && item.getTitle().toLowerCase(Locale.ROOT).contains("weather")) {
+                            found.add(item);
+                        }
+                    }
+                    return found;
+                });
+    }
+
+    private static void compare(String name, Supplier<Object> columns, Supplier<Object> objects) {
+        assertThat(columns.get()).isEqualTo(objects.get());
+        long columnsNanos = medianNanos(columns);
+        long objectsNanos = medianNanos(objects);
+        System.out.printf(
+                "%-16s columns %8.2f ms   findAll %8.2f ms   speedup %5.1fx%n",
+                name, columnsNanos / 1e6, objectsNanos / 1e6, (double) objectsNanos / columnsNanos
+        );
+    }
+
+    private static long medianNanos(Supplier<Object> scan) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            scan.get();
+        }
+        long[] nanos = new long[MEASURED_RUNS];
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            scan.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASURED_RUNS / 2];
+    }
+}
@@ -0,0 +1,190 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityVersionConflictException;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("DataSource versions and compareAndSave")
+class CompareAndSaveTest {
+    @TempDir
+    Path directory;
+
+    private DataSource<NewsModel> dataSource;
+
+    enum Backend {
+        MEMORY, STRIPED, SEGMENT, JDBC, TIERED
+    }
+
+    private DataSource<NewsModel> open(Backend backend) {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.WAL_DIR, this.directory.resolve("wal").toString());
+        properties.setProperty(DataSourceProperties.SNAPSHOT_DIR, this.directory.resolve("snapshot").toString());
+        properties.setProperty(DataSourceProperties.SEGMENT_DIR, this.directory.resolve("segment").toString());
+        properties.setProperty(DataSourceProperties.SEGMENT_COMPACTION_INTERVAL_MS, "0");
+        properties.setProperty(DataSourceProperties.JDBC_URL, "jdbc:h2:file:" + this.directory.resolve("school"));
+        properties.setProperty(DataSourceProperties.TIERED_DIR, this.directory.resolve("tiered").toString());
+        properties.setProperty(DataSourceProperties.TIERED_IDLE_MS, "0");
+        DataSourceProperties dataSourceProperties = new DataSourceProperties(properties);
+        this.dataSource = switch (backend) {
+            case MEMORY -> new DataSourceImpl<>(
+                    "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), dataSourceProperties
+            );
+            case STRIPED -> new StripedDataSource<>(
+                    "news.json", NewsModel.class, NewsIndexes.definition(), dataSourceProperties
+            );
+            case SEGMENT -> new SegmentDataSource<>(
+                    "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), dataSourceProperties
+            );
+            case JDBC -> new JdbcDataSource<>(
+                    "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), dataSourceProperties
+            );
+            case TIERED -> new TieredDataSource<>(
+                    "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), dataSourceProperties
+            );
+        };
+        return this.dataSource;
+    }
+
+    private DataSource<NewsModel> reopen(Backend backend) {
+        close();
+        return open(backend);
+    }
+
+    private static NewsModel news(Long id, String title) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(id, title, title + " content", date, date, 1L);
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource instanceof DataSourceImpl<NewsModel> memory) {
+            memory.close();
+        } else if (this.dataSource instanceof SegmentDataSource<NewsModel> segments) {
+            segments.close();
+        } else if (this.dataSource instanceof JdbcDataSource<NewsModel> database) {
+            database.close();
+        } else if (this.dataSource instanceof TieredDataSource<NewsModel> tiered) {
+            tiered.close();
+        }
+        this.dataSource = null;
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    @DisplayName("Entities of the data file have version 0, a new entity gets version 1 and every save the next one")
+    void save_versionIncremented(Backend backend) throws CustomRepositoryException {
+        DataSource<NewsModel> news = open(backend);
+
+        NewsModel added = news.save(news(null, "Added title"));
+        NewsModel changed = news.save(added.toBuilder().title("Changed title").build());
+        List<NewsModel> batch = news.saveAll(List.of(news.findById(1L), news(null, "Batch title")));
+
+        assertThat(news.findById(2L).getVersion()).isZero();
+        assertThat(added.getVersion()).isEqualTo(1);
+        assertThat(changed.getVersion()).isEqualTo(2);
+        assertThat(news.findById(added.getId()).getVersion()).isEqualTo(2);
+        assertThat(batch).extracting(NewsModel::getVersion).containsExactly(1L, 1L);
+        assertThat(news.findById(1L).getVersion()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    @DisplayName("An entity is saved only if it still has the expected version")
+    void compareAndSave_staleVersion_throwsConflict(Backend backend) throws CustomRepositoryException {
+        DataSource<NewsModel> news = open(backend);
+        NewsModel read = news.findById(3L);
+
+        NewsModel saved = news.compareAndSave(read.getVersion(), read.toBuilder().title("First writer").build());
+
+        assertThat(saved.getVersion()).isEqualTo(read.getVersion() + 1);
+        assertThatThrownBy(() -> news.compareAndSave(read.getVersion(), read.toBuilder().title("Second writer").build()))
+                .isInstanceOfSatisfying(EntityVersionConflictException.class, e -> {
+                    assertThat(e.getExpectedVersion()).isEqualTo(read.getVersion());
+                    assertThat(e.getActualVersion()).isEqualTo(saved.getVersion());
+                });
+        assertThat(news.findById(3L).getTitle()).isEqualTo("First writer");
+        assertThat(news.findById(3L).getVersion()).isEqualTo(saved.getVersion());
+        assertThatThrownBy(() -> news.compareAndSave(0, news(100L, "Missing title")))
+                .isInstanceOf(EntityNotFoundException.class);
+        assertThat(news.existsById(100L)).isFalse();
+    }
+
+    @ParameterizedTest
+    @EnumSource(Backend.class)
+    @DisplayName("Concurrent read-modify-write loops lose no update")
+    void compareAndSave_concurrentWriters_noLostUpdates(Backend backend) throws Exception {
+        DataSource<NewsModel> news = open(backend);
+        int writers = 4;
+        int incrementsPerWriter = 25;
+        news.save(news(5L, "0"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < writers; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int done = 0; done < incrementsPerWriter; ) {
+                        NewsModel read = news.findById(5L);
+                        String next = String.valueOf(Integer.parseInt(read.getTitle()) + 1);
+                        try {
+                            news.compareAndSave(read.getVersion(), read.toBuilder().title(next).build());
+                            done++;
+                        } catch (EntityVersionConflictException e) {
+                            // another writer was first, read again
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        NewsModel result = news.findById(5L);
+        assertThat(result.getTitle()).isEqualTo(String.valueOf(writers * incrementsPerWriter));
+        assertThat(result.getVersion()).isEqualTo(writers * incrementsPerWriter + 1L);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Backend.class, names = {"MEMORY", "SEGMENT", "JDBC"})
+    @DisplayName("Versions are kept after a restart")
+    void reopen_versionsKept(Backend backend) throws CustomRepositoryException {
+        DataSource<NewsModel> news = open(backend);
+        NewsModel first = news.save(news.findById(1L).toBuilder().title("Snapshot title").build());
+        if (news instanceof DataSourceImpl<NewsModel> memory) {
+            memory.writeSnapshot();
+        }
+        NewsModel second = news.save(news.findById(2L).toBuilder().title("Logged title").build());
+        news.save(second.toBuilder().title("Logged again").build());
+
+        DataSource<NewsModel> reopened = reopen(backend);
+
+        assertThat(reopened.findById(1L).getVersion()).isEqualTo(first.getVersion());
+        assertThat(reopened.findById(2L).getVersion()).isEqualTo(second.getVersion() + 1);
+        assertThat(reopened.findAll(1, 1).get(0).getVersion()).isEqualTo(second.getVersion() + 1);
+        assertThatThrownBy(() -> reopened.compareAndSave(second.getVersion(), second))
+                .isInstanceOf(EntityVersionConflictException.class);
+    }
+}
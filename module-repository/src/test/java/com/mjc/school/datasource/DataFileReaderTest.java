@@ -0,0 +1,91 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.DataFileNotFoundException;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("DataFileReader")
+class DataFileReaderTest {
+    @TempDir
+    Path directory;
+
+    private static String newsJson(long id) {
+        return "{\"id\":" + id + ",\"title\":\"Title " + id + "\",\"content\":\"Content " + id + "\","
+                + "\"createDate\":\"2024/04/05 14:12:31\",\"lastUpdateDate\":\"2024/05/01 09:25:01\",\"authorId\":2}";
+    }
+
+    private static String ndjson(long count) {
+        return LongStream.rangeClosed(1, count).mapToObj(DataFileReaderTest::newsJson)
+                .collect(Collectors.joining("\n", "", "\n"));
+    }
+
+    private static List<Long> ids(long count) {
+        return LongStream.rangeClosed(1, count).boxed().toList();
+    }
+
+    private List<Long> readIds(Path file, int parallelism, int chunkSize) {
+        List<Long> ids = new ArrayList<>();
+        new DataFileReader<>(NewsModel.class, parallelism, chunkSize).read(file, news -> ids.add(news.getId()));
+        return ids;
+    }
+
+    @Test
+    @DisplayName("A JSON array and an NDJSON file give the same entities in file order")
+    void read_arrayAndNdjson_sameEntities() throws IOException {
+        Path array = Files.writeString(this.directory.resolve("news.json"),
+                LongStream.rangeClosed(1, 100).mapToObj(DataFileReaderTest::newsJson)
+                        .collect(Collectors.joining(",\n", "[\n", "\n]")));
+        Path ndjson = Files.writeString(this.directory.resolve("news.ndjson"), ndjson(100));
+
+        assertThat(readIds(array, 1, DataFileReader.DEFAULT_CHUNK_SIZE)).containsExactlyElementsOf(ids(100));
+        assertThat(readIds(ndjson, 1, DataFileReader.DEFAULT_CHUNK_SIZE)).containsExactlyElementsOf(ids(100));
+
+        List<NewsModel> news = new ArrayList<>();
+        new DataFileReader<>(NewsModel.class, 1, DataFileReader.DEFAULT_CHUNK_SIZE).read(ndjson, news::add);
+        assertThat(news.get(0).getCreateDate()).hasYear(2024).hasMonthValue(4).hasDayOfMonth(5).hasHour(14);
+    }
+
+    @Test
+    @DisplayName("A gzip compressed file is recognized by its content")
+    void read_gzipFile_decompressed() throws IOException {
+        Path file = this.directory.resolve("news.ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(ndjson(1_000).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(readIds(file, 4, DataFileReader.DEFAULT_CHUNK_SIZE)).containsExactlyElementsOf(ids(1_000));
+    }
+
+    @Test
+    @DisplayName("An NDJSON file parsed in chunks by several threads gives every entity once, in file order")
+    void read_ndjsonInParallelChunks_fileOrderKept() throws IOException {
+        Path file = Files.writeString(this.directory.resolve("news.ndjson"), ndjson(5_000));
+
+        for (int chunkSize : new int[]{150, 151, 1_000, 4_096}) {
+            assertThat(readIds(file, 4, chunkSize)).containsExactlyElementsOf(ids(5_000));
+        }
+    }
+
+    @Test
+    @DisplayName("Reading a missing file throws DataFileNotFoundException")
+    void read_missingFile_throwsException() {
+        assertThatThrownBy(() -> readIds(this.directory.resolve("missing.json"), 1, 1))
+                .isInstanceOf(DataFileNotFoundException.class);
+    }
+}
@@ -0,0 +1,133 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("EntityColumns")
+class EntityColumnsTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private DataSourceImpl<NewsModel> dataSource;
+
+    private static List<NewsModel> generatedNews(int count) {
+        String[] words = {"Weather", "Économie", "sport", "Rain", "ПОГОДА", "rainbow", ""};
+        List<NewsModel> news = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            String title = words[(int) (id % words.length)] + " " + words[(int) (id * 3 % words.length)];
+            LocalDateTime created = START.plusHours(id * 7).minusDays(200);
+            news.add(new NewsModel(
+                    id,
+                    id % 50 == 0 ? null : title,
+                    "Content " + id,
+                    id % 40 == 0 ? null : created,
+                    created,
+                    id % 30 == 0 ? null : id % 11
+            ));
+        }
+        return news;
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Counts by key and day equal the ones of iterating the entities, missing values are not counted")
+    void countByKeyAndDay_sameAsIteration() {
+        List<NewsModel> news = generatedNews(5_000);
+        EntityColumns<NewsModel> columns = NewsIndexes.columns().rebuild(news);
+
+        Map<Long, Long> expectedByAuthor = news.stream()
+                .filter(item -> item.getAuthorId() != null)
+                .collect(Collectors.groupingBy(NewsModel::getAuthorId, Collectors.counting()));
+        assertThat(columns.countByKey(NewsIndexes.AUTHOR_ID)).isEqualTo(expectedByAuthor);
+        List<NewsModel> spreadKeys = news.stream()
+                .map(item -> item.toBuilder().authorId(item.getId() % 3 * 10_000_000_000L - 5).build())
+                .toList();
+        assertThat(NewsIndexes.columns().rebuild(spreadKeys).countByKey(NewsIndexes.AUTHOR_ID))
+                .containsOnlyKeys(-5L, 9_999_999_995L, 19_999_999_995L)
+                .containsEntry(-5L, news.size() / 3L);
+
+        LocalDate from = START.toLocalDate().minusDays(100);
+        LocalDate to = START.toLocalDate().plusDays(300);
+        SortedMap<LocalDate, Long> expectedByDay = news.stream()
+                .map(NewsModel::getCreateDate)
+                .filter(Objects::nonNull)
+                .map(LocalDateTime::toLocalDate)
+                .filter(day -> !day.isBefore(from) && day.isBefore(to))
+                .collect(Collectors.groupingBy(day -> day, TreeMap::new, Collectors.counting()));
+        assertThat(columns.countByDay(NewsIndexes.CREATE_DATE, from, to)).containsExactlyEntriesOf(expectedByDay);
+        assertThat(columns.countByDay(NewsIndexes.CREATE_DATE, null, null).values().stream().mapToLong(Long::longValue)
+                .sum()).isEqualTo(news.stream().filter(item -> item.getCreateDate() != null).count());
+    }
+
+    @Test
+    @DisplayName("A title scan finds the same rows as a case-insensitive contains, never a match across two titles")
+    void rowsContaining_sameAsContains() {
+        List<NewsModel> news = generatedNews(2_000);
+        EntityColumns<NewsModel> columns = NewsIndexes.columns().rebuild(news);
+
+        for (String text : List.of("rain", "RAINBOW", "économie", "погода", "sport rain", "ortR", "t w", "x", "")) {
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < news.size(); row++) {
+                String title = news.get(row).getTitle();
+                if (title != null && title.toLowerCase(Locale.ROOT).contains(text.toLowerCase(Locale.ROOT))
+                        || title == null && text.isEmpty()) {
+                    expected.add(row);
+                }
+            }
+            assertThat(columns.rowsContaining(NewsIndexes.TITLE, text)).as(text)
+                    .containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    @Test
+    @DisplayName("The scans of a data source see its latest writes and fail for columns it does not have")
+    void dataSourceScans_seeWrites() throws CustomRepositoryException {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "0");
+        this.dataSource = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), NewsIndexes.columns(),
+                new DataSourceProperties(properties)
+        );
+        assertThat(this.dataSource.capabilities()).contains(DataSource.Capability.COLUMN_SCANS);
+        long authorNews = this.dataSource.countByKey(NewsIndexes.AUTHOR_ID).getOrDefault(1L, 0L);
+
+        NewsModel added = this.dataSource.save(new NewsModel(null, "Columnar Scans", "Content", START, START, 1L));
+
+        assertThat(this.dataSource.countByKey(NewsIndexes.AUTHOR_ID)).containsEntry(1L, authorNews + 1);
+        assertThat(this.dataSource.countByDay(NewsIndexes.CREATE_DATE, START.toLocalDate(), null))
+                .containsEntry(START.toLocalDate(), 1L);
+        Page<NewsModel> page = this.dataSource.findContaining(NewsIndexes.TITLE, "columnar", 0, 10);
+        assertThat(page.items()).extracting(Model::getId).containsExactly(added.getId());
+        assertThat(page.totalCount()).isEqualTo(1);
+
+        this.dataSource.delete(added.getId());
+        assertThat(this.dataSource.findContaining(NewsIndexes.TITLE, "columnar", 0, 10).totalCount()).isZero();
+        assertThatThrownBy(() -> this.dataSource.findContaining("content", "columnar", 0, 10))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+}
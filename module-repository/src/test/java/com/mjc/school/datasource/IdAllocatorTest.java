@@ -0,0 +1,84 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("IdAllocator")
+class IdAllocatorTest {
+    @Test
+    @DisplayName("Ids are consecutive and the next block is reserved the next block when it runs out")
+    void next_singleThread_consecutiveIdsAndOneReservationPerBlock() {
+        IdAllocator ids = new IdAllocator(4);
+        List<Long> reservations = new ArrayList<>();
+        ids.onReservation(reservations::add);
+        ids.observe(10L);
+
+        List<Long> generated = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            generated.add(ids.next());
+        }
+
+        assertThat(generated).containsExactly(11L, 12L, 13L, 14L, 15L, 16L);
+        assertThat(reservations).containsExactly(15L, 19L);
+        assertThat(ids.highWaterMark()).isEqualTo(19L);
+    }
+
+    @Test
+    @DisplayName("An observed id moves the next id past it, a smaller one leaves it unchanged")
+    void observe_movesNextIdForward() {
+        IdAllocator ids = new IdAllocator(8);
+        List<Long> reservations = new ArrayList<>();
+        ids.onReservation(reservations::add);
+        ids.observe(100L);
+        ids.observe(5L);
+
+        assertThat(ids.highWaterMark()).isEqualTo(101L);
+        assertThat(reservations).isEmpty();
+        assertThat(ids.next()).isEqualTo(101L);
+        assertThat(reservations).containsExactly(109L);
+    }
+
+    @Test
+    @DisplayName("Entities saved by concurrent threads get ids that increase in the order of their commits")
+    void save_concurrentThreads_idsFollowCommitOrder() throws Exception {
+        DataSourceImpl<NewsModel> dataSource = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(new Properties())
+        );
+        int threads = 8;
+        int savesPerThread = 500;
+        LocalDateTime now = LocalDateTime.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < savesPerThread; i++) {
+                        dataSource.save(new NewsModel(null, "Title", "Content", now, now, 1L));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<Long> ids = dataSource.findAll().stream().map(NewsModel::getId).toList();
+        assertThat(ids).hasSize(25 + threads * savesPerThread).isSorted().doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,203 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.EntityNullReferenceException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.PageStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("JdbcDataSource")
+class JdbcDataSourceTest {
+    @TempDir
+    Path directory;
+
+    private JdbcDataSource<NewsModel> dataSource;
+
+    private DataSourceProperties properties() {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.JDBC_URL, "jdbc:h2:file:" + this.directory.resolve("school"));
+        properties.setProperty(DataSourceProperties.JDBC_POOL_SIZE, "2");
+        return new DataSourceProperties(properties);
+    }
+
+    private JdbcDataSource<NewsModel> open() {
+        this.dataSource = new JdbcDataSource<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), properties()
+        );
+        return this.dataSource;
+    }
+
+    private JdbcDataSource<NewsModel> reopen() {
+        this.dataSource.close();
+        return open();
+    }
+
+    private static NewsModel news(Long id, String title, long authorId) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(id, title, title + " content", date, date, authorId);
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A new table is filled from the data file and read back in file order")
+    void open_emptyDatabase_filledFromDataFile() throws CustomRepositoryException {
+        JdbcDataSource<NewsModel> database = open();
+
+        assertThat(database.count()).isEqualTo(25);
+        assertThat(database.findAll()).extracting("id").containsExactlyElementsOf(
+                Stream.iterate(1L, id -> id + 1).limit(25).toList()
+        );
+        assertThat(database.findById(1L).getCreateDate()).isEqualTo(LocalDateTime.of(2024, 4, 5, 14, 12, 31));
+        assertThat(database.existsById(26L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Changes are kept after a restart, a generated id is not reused even if its entity was deleted")
+    void reopen_afterChanges_sameContentAndIdsNotReused() throws CustomRepositoryException {
+        JdbcDataSource<NewsModel> database = open();
+        database.save(database.findById(3L).toBuilder().title("Changed title").build());
+        database.delete(5L);
+        NewsModel added = database.save(news(null, "Added title", 1L));
+        List<NewsModel> expected = database.findAll();
+        database.delete(added.getId());
+
+        JdbcDataSource<NewsModel> reopened = reopen();
+
+        assertThat(added.getId()).isEqualTo(26L);
+        assertThat(reopened.findAll()).containsExactlyElementsOf(
+                expected.stream().filter(news -> !news.getId().equals(added.getId())).toList()
+        );
+        assertThat(reopened.findById(3L).getTitle()).isEqualTo("Changed title");
+        assertThat(reopened.save(news(0L, "Next title", 1L)).getId()).isGreaterThan(added.getId());
+    }
+
+    @Test
+    @DisplayName("Paged and indexed queries return the same entities as the memory backend")
+    void queries_sameResultsAsMemoryBackend() {
+        JdbcDataSource<NewsModel> database = open();
+        DataSourceImpl<NewsModel> memory = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(new Properties())
+        );
+        LocalDateTime from = LocalDateTime.of(2024, 4, 10, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 4, 20, 0, 0);
+
+        assertThat(database.findAll(3, 7)).containsExactlyElementsOf(memory.findAll(3, 7));
+        assertThat(database.findAll(20, -1)).containsExactlyElementsOf(memory.findAll(20, -1));
+        assertThat(database.findPage(5, 5)).isEqualTo(memory.findPage(5, 5));
+        assertThat(database.findAfter(10, 4)).containsExactlyElementsOf(memory.findAfter(10, 4));
+        assertThat(database.findPageBySecondaryKey(2L, 1, 3)).isEqualTo(memory.findPageBySecondaryKey(2L, 1, 3));
+        for (boolean descending : new boolean[]{false, true}) {
+            assertThat(database.findPageByTimestamp(NewsIndexes.CREATE_DATE, from, to, descending, 1, 3))
+                    .isEqualTo(memory.findPageByTimestamp(NewsIndexes.CREATE_DATE, from, to, descending, 1, 3));
+            assertThat(database.findPageByTimestamp(NewsIndexes.LAST_UPDATE_DATE, null, null, descending, 0, -1))
+                    .isEqualTo(memory.findPageByTimestamp(NewsIndexes.LAST_UPDATE_DATE, null, null, descending, 0, -1));
+        }
+        assertThatThrownBy(() -> database.findPageByTimestamp("title", null, null, false, 0, 1))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    @DisplayName("An entity moved to another secondary key is listed after the entities that had that key before")
+    void save_secondaryKeyChanged_listedLast() throws CustomRepositoryException {
+        JdbcDataSource<NewsModel> database = open();
+        NewsModel moved = database.findAll().stream().filter(news -> news.getAuthorId() != 2L).findFirst().get();
+        NewsModel unchanged = database.findPageBySecondaryKey(2L, 0, 1).items().get(0);
+
+        database.save(moved.toBuilder().authorId(2L).build());
+        database.save(unchanged.toBuilder().title("Same author").build());
+
+        List<NewsModel> byAuthor = database.findPageBySecondaryKey(2L, 0, -1).items();
+        assertThat(byAuthor.get(byAuthor.size() - 1).getId()).isEqualTo(moved.getId());
+        assertThat(byAuthor.get(0).getId()).isEqualTo(unchanged.getId());
+    }
+
+    @Test
+    @DisplayName("A batch is saved in one transaction with generated ids, a generated id taken by a caller is skipped")
+    void saveAll_generatedAndSuppliedIds() throws CustomRepositoryException {
+        JdbcDataSource<NewsModel> database = open();
+        database.save(news(26L, "Supplied title", 1L));
+
+        List<NewsModel> saved = database.saveAll(List.of(
+                news(null, "First title", 1L), database.findById(1L).toBuilder().title("Changed title").build()
+        ));
+
+        assertThat(saved.get(0).getId()).isEqualTo(27L);
+        assertThat(database.findById(27L).getTitle()).isEqualTo("First title");
+        assertThat(database.findById(1L).getTitle()).isEqualTo("Changed title");
+        assertThat(database.findById(26L).getTitle()).isEqualTo("Supplied title");
+        assertThatThrownBy(() -> database.saveAll(Arrays.asList(news(null, "Third title", 1L), null)))
+                .isInstanceOf(EntityNullReferenceException.class);
+        assertThat(database.count()).isEqualTo(27);
+    }
+
+    @Test
+    @DisplayName("A batch delete with a missing id deletes nothing")
+    void deleteAllById_missingId_nothingDeleted() throws CustomRepositoryException {
+        JdbcDataSource<NewsModel> database = open();
+
+        assertThatThrownBy(() -> database.deleteAllById(List.of(1L, 2L, 100L)))
+                .isInstanceOf(EntityNotFoundException.class);
+        assertThat(database.count()).isEqualTo(25);
+
+        assertThat(database.deleteAllById(List.of(1L, 2L, 1L))).isTrue();
+        assertThat(database.count()).isEqualTo(23);
+        assertThatThrownBy(() -> database.delete(1L)).isInstanceOf(EntityNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("A streamed page reads the entities in chunks and equals the page read as a list")
+    void streamPage_manyEntities_sameAsList() throws CustomRepositoryException {
+        JdbcDataSource<NewsModel> database = open();
+        List<NewsModel> added = new ArrayList<>();
+        IntStream.range(0, 1200).forEach(i -> added.add(news(null, "Bulk title " + i, 1L)));
+        database.saveAll(added);
+
+        PageStream<NewsModel> page = database.streamPage(10);
+
+        assertThat(page.totalCount()).isEqualTo(1225);
+        assertThat(page.items().toList()).containsExactlyElementsOf(database.findAll(10, -1));
+    }
+
+    @Test
+    @DisplayName("Authors, which have no indexed fields, are stored in their own table of the same database")
+    void open_entityWithoutIndexes_ownTable() throws CustomRepositoryException {
+        open();
+        JdbcDataSource<AuthorModel> authors = new JdbcDataSource<>(
+                "author.json", AuthorModel.class, new AuthorModelCodec(), EntityIndexes.none(), properties()
+        );
+        try {
+            AuthorModel added = authors.save(new AuthorModel("New author"));
+
+            assertThat(authors.findById(added.getId())).isEqualTo(added);
+            assertThat(authors.count()).isGreaterThan(1);
+            assertThatThrownBy(() -> authors.findPageBySecondaryKey(1L, 0, 1))
+                    .isInstanceOf(UnsupportedOperationException.class);
+        } finally {
+            authors.close();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.mjc.school.datasource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LongTrieStore")
+class LongTrieStoreTest {
+
+    @Test
+    @DisplayName("Values are returned in insertion order, re-putting an existing key keeps its position")
+    void put_existingKey_keepsInsertionPosition() {
+        LongTrieStore<String> store = LongTrieStore.<String>empty()
+                .put(3L, "three")
+                .put(1L, "one")
+                .put(2L, "two")
+                .put(1L, "one again");
+
+        assertThat(store.values()).containsExactly("three", "one again", "two");
+        assertThat(store.size()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("A removed key is not found anymore and a re-added key goes to the end")
+    void remove_thenPutAgain_keyMovesToTheEnd() {
+        LongTrieStore<String> store = LongTrieStore.<String>empty()
+                .put(1L, "one")
+                .put(2L, "two")
+                .put(3L, "three");
+
+        LongTrieStore<String> withoutFirst = store.remove(1L);
+
+        assertThat(withoutFirst.remove(1L)).isSameAs(withoutFirst);
+        assertThat(withoutFirst.containsKey(1L)).isFalse();
+        assertThat(withoutFirst.get(1L)).isNull();
+        assertThat(withoutFirst.put(1L, "one").values()).containsExactly("two", "three", "one");
+    }
+
+    @Test
+    @DisplayName("Removing without a rebuild leaves holes until the store is compacted, the order stays the same")
+    void removeLeavingHole_thenCompacted_sameEntriesWithoutHoles() {
+        LongTrieStore.Builder<Long> builder = LongTrieStore.builder();
+        for (long key = 1; key <= 200; key++) {
+            builder.put(key, key);
+        }
+        LongTrieStore<Long> store = builder.build();
+        for (long key = 1; key <= 200; key++) {
+            if (key % 10 != 0) {
+                store = store.removeLeavingHole(key);
+            }
+        }
+
+        LongTrieStore<Long> compacted = store.compacted();
+
+        assertThat(store.holes()).isEqualTo(180);
+        assertThat(compacted.holes()).isZero();
+        assertThat(compacted.values()).containsExactlyElementsOf(store.values()).hasSize(20);
+        assertThat(compacted.values(5, 3)).containsExactly(60L, 70L, 80L);
+        assertThat(compacted.compacted()).isSameAs(compacted);
+        assertThat(compacted.get(50L)).isEqualTo(50L);
+        assertThat(compacted.containsKey(51L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Updating a store leaves every previous version unchanged")
+    void put_remove_previousVersionsUnchanged() {
+        LongTrieStore<String> first = LongTrieStore.<String>empty().put(1L, "one").put(2L, "two");
+        LongTrieStore<String> second = first.put(2L, "changed").put(3L, "three");
+        LongTrieStore<String> third = second.remove(1L);
+
+        assertThat(first.values()).containsExactly("one", "two");
+        assertThat(first.containsKey(3L)).isFalse();
+        assertThat(second.values()).containsExactly("one", "changed", "three");
+        assertThat(second.get(1L)).isEqualTo("one");
+        assertThat(third.values()).containsExactly("changed", "three");
+        assertThat(third.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Offset and limit are applied to live entries only")
+    void values_withOffsetAndLimit_skipsRemovedEntries() {
+        LongTrieStore<Long> store = LongTrieStore.empty();
+        for (long id = 1; id <= 10; id++) {
+            store = store.put(id, id);
+        }
+        store = store.remove(2L).remove(5L);
+
+        assertThat(store.values(2, 3)).containsExactly(4L, 6L, 7L);
+        assertThat(store.values(6, -1)).containsExactly(9L, 10L);
+        assertThat(store.values(8, 1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("A stream reads the live entries of its version from the offset on, across several leaves")
+    void stream_fromOffset_sameAsValuesOfItsVersion() {
+        LongTrieStore<Long> store = LongTrieStore.empty();
+        for (long id = 1; id <= 200; id++) {
+            store = store.put(id, id);
+        }
+        for (long id = 3; id <= 200; id += 3) {
+            store = store.remove(id);
+        }
+
+        LongTrieStore<Long> version = store;
+        Stream<Long> stream = version.stream(40);
+        store = store.remove(100L).put(201L, 201L);
+
+        assertThat(stream.toList()).containsExactlyElementsOf(version.values(40, -1));
+        assertThat(store.stream(0).toList()).containsExactlyElementsOf(store.values());
+        assertThat(store.stream(store.size())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Negative and colliding keys are stored independently")
+    void put_collidingKeys_allFound() {
+        LongTrieStore<Long> store = LongTrieStore.empty();
+        long[] keys = {0L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 16L, 32L, 48L, 1L << 40};
+        for (long key : keys) {
+            store = store.put(key, key);
+        }
+
+        for (long key : keys) {
+            assertThat(store.get(key)).isEqualTo(key);
+        }
+        assertThat(store.size()).isEqualTo(keys.length);
+    }
+
+    @Test
+    @DisplayName("The builder keeps the first position of a repeated key and the last value")
+    void builder_repeatedKey_keepsFirstPositionAndLastValue() {
+        LongTrieStore<String> store = LongTrieStore.<String>builder()
+                .put(1L, "one")
+                .put(2L, "two")
+                .put(1L, "one again")
+                .build();
+
+        assertThat(store.values()).containsExactly("one again", "two");
+        assertThat(store.put(3L, "three").values()).containsExactly("one again", "two", "three");
+    }
+
+    @Test
+    @DisplayName("A random sequence of operations gives the same content and order as LinkedHashMap")
+    void randomOperations_behaveLikeLinkedHashMap() {
+        Random random = new Random(42);
+        LongTrieStore<Long> store = LongTrieStore.empty();
+        Map<Long, Long> expected = new LinkedHashMap<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                boolean wasPresent = expected.remove(key) != null;
+                LongTrieStore<Long> next = store.remove(key);
+                assertThat(next != store).isEqualTo(wasPresent);
+                store = next;
+            } else {
+                long value = random.nextLong();
+                expected.put(key, value);
+                store = store.put(key, value);
+            }
+        }
+
+        assertThat(store.size()).isEqualTo(expected.size());
+        assertThat(store.values()).containsExactlyElementsOf(new ArrayList<>(expected.values()));
+        for (long key = 0; key < 2_000; key++) {
+            assertThat(store.get(key)).isEqualTo(expected.get(key));
+        }
+
+        List<Long> expectedPage = new ArrayList<>(expected.values()).subList(100, 150);
+        assertThat(store.values(100, 50)).containsExactlyElementsOf(expectedPage);
+    }
+
+    @Test
+    @DisplayName("Pages taken at random offsets match the live entries after removals spread over many chunks")
+    void values_randomOffsetsAfterRemovals_matchExpectedPages() {
+        LongTrieStore.Builder<Long> builder = LongTrieStore.builder();
+        for (long id = 1; id <= 20_000; id++) {
+            builder.put(id, id);
+        }
+        LongTrieStore<Long> store = builder.build();
+
+        List<Long> expected = new ArrayList<>();
+        for (long id = 1; id <= 20_000; id++) {
+            if (id % 3 == 0 || (id > 5_000 && id < 7_000)) {
+                store = store.remove(id);
+            } else {
+                expected.add(id);
+            }
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            int offset = random.nextInt(expected.size() + 10);
+            int limit = random.nextInt(40);
+            List<Long> expectedPage = offset >= expected.size()
+                    ? List.of()
+                    : expected.subList(offset, Math.min(expected.size(), offset + limit));
+
+            assertThat(store.values(offset, limit)).containsExactlyElementsOf(expectedPage);
+        }
+        assertThat(store.values(expected.size() - 1L, -1)).containsExactly(expected.get(expected.size() - 1));
+    }
+}
@@ -3,11 +3,14 @@ package com.mjc.school.datasource;
 import com.mjc.school.exception.CustomRepositoryException;
 import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -71,35 +74,36 @@ class NewsModelDataSourceTest {
     @Test
     @DisplayName("When an entity is added, it is saved in the dataset")
     void add_checkExistsInDataSource() throws CustomRepositoryException {
-        NewsModel expectedEntity = new NewsModel();
-
-        expectedEntity.setTitle("New title");
-        expectedEntity.setContent("New content");
-        expectedEntity.setCreateDate(LocalDateTime.now());
-        expectedEntity.setLastUpdateDate(expectedEntity.getCreateDate());
-        expectedEntity.setAuthorId(1L);
+        LocalDateTime now = LocalDateTime.now();
+        NewsModel newEntity = NewsModel.builder()
+                .title("New title")
+                .content("New content")
+                .createDate(now)
+                .lastUpdateDate(now)
+                .authorId(1L)
+                .build();
 
         long expectedItemCount = dataSource.count() + 1;
 
-        NewsModel addedEntity = dataSource.save(expectedEntity);
+        NewsModel addedEntity = dataSource.save(newEntity);
 
         assertThat(dataSource.count()).isEqualTo(expectedItemCount);
         assertThat(addedEntity.getId()).isNotZero();
-
-        expectedEntity.setId(addedEntity.getId());
+        assertThat(newEntity.getId()).isNull();
 
         NewsModel fetchedEntity = dataSource.findById(addedEntity.getId());
-        assertThat(fetchedEntity).isNotSameAs(expectedEntity).isEqualTo(expectedEntity);
+        assertThat(fetchedEntity).isEqualTo(newEntity.withId(addedEntity.getId()));
     }
 
     @Test
     @DisplayName("When the data is changed, the changes are saved in the dataset")
     void save_update_savedEntityIsEqualsToFetchedEntity_true() throws CustomRepositoryException {
         long idToChange = findRandomId();
-        NewsModel expectedEntity = dataSource.findById(idToChange);
-        expectedEntity.setTitle("Changed title");
-        expectedEntity.setContent("Changed content");
-        expectedEntity.setAuthorId(999L);
+        NewsModel expectedEntity = dataSource.findById(idToChange).toBuilder()
+                .title("Changed title")
+                .content("Changed content")
+                .authorId(999L)
+                .build();
 
         long expectedCount = dataSource.count();
 
@@ -110,29 +114,79 @@ class NewsModelDataSourceTest {
 
         assertThat(actualCount).isEqualTo(expectedCount);
         assertThat(actualEntity)
-                .isNotSameAs(savedEntity)
                 .isEqualTo(savedEntity)
-
-                .isNotSameAs(expectedEntity)
                 .isEqualTo(expectedEntity);
     }
 
     @Test
-    @DisplayName("When changing the data of an entity issued by a dataSource, the entity data in the dataSource does not change")
+    @DisplayName("A changed copy of an entity issued by a dataSource does not change the entity in the dataSource until it is saved")
     void save_update_OnSavingAndFetchingNewInstanceOfEntityCreatedNotDependOfEachOther_true() throws CustomRepositoryException {
         Long idForCheck = findRandomId();
 
         NewsModel firstFetchEntity = dataSource.findById(idForCheck);
-        NewsModel secondFetchEntity_ForChange = dataSource.findById(idForCheck);
-        secondFetchEntity_ForChange.setTitle("Change title");
+        NewsModel changedCopy = firstFetchEntity.toBuilder().title("Change title").build();
         NewsModel actualEntity = dataSource.findById(idForCheck);
 
         assertThat(actualEntity)
-                .isNotSameAs(firstFetchEntity)
-                .isEqualTo(firstFetchEntity)
+                .isSameAs(firstFetchEntity)
+                .isNotEqualTo(changedCopy);
+        assertThat(firstFetchEntity.getTitle()).isNotEqualTo("Change title");
+    }
+
+    @Test
+    @DisplayName("A streamed page reads the version of the dataset it was taken from, later saves are not in it")
+    void streamPage_saveWhileStreaming_readsItsVersion() throws CustomRepositoryException {
+        List<NewsModel> expected = dataSource.findAll(3, -1);
+        PageStream<NewsModel> page = dataSource.streamPage(3);
+        LocalDateTime now = LocalDateTime.now();
+        NewsModel added = dataSource.save(new NewsModel(null, "Streamed title", "Streamed content", now, now, 1L));
+
+        assertThat(page.items().toList()).containsExactlyElementsOf(expected).doesNotContain(added);
+        assertThat(page.totalCount()).isEqualTo(expected.size() + 3);
+    }
+
+    @Test
+    @DisplayName("The news of an author are found by the author id and follow a change of the author")
+    void findPageBySecondaryKey_authorChanged_newsMovesToNewAuthor() throws CustomRepositoryException {
+        long idToChange = findRandomId();
+        NewsModel news = dataSource.findById(idToChange);
+        long newAuthorId = news.getAuthorId() + 1;
+        dataSource.save(news.toBuilder().authorId(newAuthorId).build());
+
+        for (long authorId : List.of(news.getAuthorId(), newAuthorId)) {
+            List<NewsModel> expected = dataSource.findAll().stream()
+                    .filter(item -> item.getAuthorId() == authorId)
+                    .toList();
+            Page<NewsModel> page = dataSource.findPageBySecondaryKey(authorId, 0, -1);
+            assertThat(page.items()).containsExactlyInAnyOrderElementsOf(expected);
+            assertThat(page.totalCount()).isEqualTo(expected.size());
+        }
+        assertThat(dataSource.findPageBySecondaryKey(newAuthorId, 0, -1).items()).last().isEqualTo(
+                dataSource.findById(idToChange)
+        );
+    }
 
-                .isNotSameAs(secondFetchEntity_ForChange)
-                .isNotEqualTo(secondFetchEntity_ForChange);
+    @Test
+    @DisplayName("The latest updated news are read from the index in descending order and follow an update")
+    void findPageByTimestamp_lastUpdateDateDescending_sameAsSortingAll() throws CustomRepositoryException {
+        long idToChange = findRandomId();
+        NewsModel news = dataSource.findById(idToChange);
+        dataSource.save(news.toBuilder().lastUpdateDate(LocalDateTime.of(2030, 1, 1, 0, 0)).build());
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        List<NewsModel> expected = dataSource.findAll().stream()
+                .filter(item -> item.getLastUpdateDate() != null && !item.getLastUpdateDate().isBefore(from))
+                .sorted(Comparator.comparing(NewsModel::getLastUpdateDate)
+                        .thenComparing(NewsModel::getId)
+                        .reversed())
+                .toList();
+        Page<NewsModel> page = dataSource.findPageByTimestamp(NewsIndexes.LAST_UPDATE_DATE, from, null, true, 0, 5);
+
+        assertThat(page.items()).containsExactlyElementsOf(expected.stream().limit(5).toList());
+        assertThat(page.items().get(0).getId()).isEqualTo(idToChange);
+        assertThat(page.totalCount()).isEqualTo(expected.size());
+        assertThatThrownBy(() -> dataSource.findPageByTimestamp("title", null, null, false, 0, -1))
+                .isInstanceOf(UnsupportedOperationException.class);
     }
 
     @Test
@@ -210,4 +264,32 @@ class NewsModelDataSourceTest {
         List<NewsModel> actualItems = dataSource.findAll(offset, 1);
         assertThat(actualItems).isEmpty();
     }
+
+    @Test
+    @DisplayName("findPage returns the same items as findAll with the same offset and limit, and the total item count")
+    void findPage_itemsAndTotalCount() {
+        Page<NewsModel> page = dataSource.findPage(2, 5);
+
+        assertThat(page.items()).containsExactlyElementsOf(dataSource.findAll(2, 5));
+        assertThat(page.totalCount()).isEqualTo(dataSource.count());
+    }
+
+    @Test
+    @DisplayName("Saves and deletes are published as changes with consecutive versions")
+    void changesAfter_savesAndDeletes_publishedInOrder() throws CustomRepositoryException {
+        assertThat(dataSource.capabilities()).contains(DataSource.Capability.CHANGES);
+        long version = dataSource.changeVersion();
+        ChangeStream<NewsModel> stream = dataSource.changesAfter(version);
+        LocalDateTime date = LocalDateTime.of(2024, 4, 5, 14, 12, 31);
+
+        NewsModel added = dataSource.save(new NewsModel(0L, "Changed title", "Changed content", date, date, 1L));
+        dataSource.delete(added.getId());
+
+        List<ChangeEvent<NewsModel>> events = stream.poll(10);
+        assertThat(events).extracting(ChangeEvent::version).containsExactly(version + 1, version + 2);
+        assertThat(events).extracting(ChangeEvent::type)
+                .containsExactly(ChangeEvent.Type.SAVE, ChangeEvent.Type.DELETE);
+        assertThat(events).extracting(ChangeEvent::entity).containsOnly(added);
+        assertThat(dataSource.changeVersion()).isEqualTo(version + 2);
+    }
 }
@@ -0,0 +1,46 @@
+package com.mjc.school.datasource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("SecondaryIndex")
+class SecondaryIndexTest {
+
+    @Test
+    @DisplayName("Ids are listed under their current key in the order they got it, older versions do not change")
+    void update_keyChanged_idMovesToTheEndOfTheNewKey() {
+        SecondaryIndex built = SecondaryIndex.builder()
+                .add(1L, 10L)
+                .add(2L, 20L)
+                .add(3L, 10L)
+                .add(4L, null)
+                .build();
+
+        SecondaryIndex changed = built
+                .update(1L, 10L, 20L)
+                .update(3L, 10L, 10L)
+                .update(5L, null, 10L);
+
+        assertThat(changed.ids(10L, 0, -1)).containsExactly(3L, 5L);
+        assertThat(changed.ids(20L, 0, -1)).containsExactly(2L, 1L);
+        assertThat(changed.ids(20L, 1, 5)).containsExactly(1L);
+        assertThat(built.ids(10L, 0, -1)).containsExactly(1L, 3L);
+        assertThat(built.count(20L)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Removing the last id of a key leaves the key empty")
+    void remove_lastIdOfKey_keyIsEmpty() {
+        SecondaryIndex index = SecondaryIndex.empty()
+                .update(1L, null, 10L)
+                .update(2L, null, 20L)
+                .remove(1L, 10L);
+
+        assertThat(index.ids(10L, 0, -1)).isEmpty();
+        assertThat(index.count(10L)).isZero();
+        assertThat(index.ids(20L, 0, -1)).containsExactly(2L);
+        assertThat(index.update(2L, 20L, 20L)).isSameAs(index);
+    }
+}
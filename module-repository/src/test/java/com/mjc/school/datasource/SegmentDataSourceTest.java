@@ -0,0 +1,172 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SegmentDataSource")
+class SegmentDataSourceTest {
+    @TempDir
+    Path directory;
+
+    private SegmentDataSource<NewsModel> dataSource;
+
+    private SegmentDataSource<NewsModel> open() {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.SEGMENT_DIR, this.directory.toString());
+        properties.setProperty(DataSourceProperties.SEGMENT_SIZE_MB, "1");
+        properties.setProperty(DataSourceProperties.SEGMENT_COMPACTION_INTERVAL_MS, "0");
+        this.dataSource = new SegmentDataSource<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(properties)
+        );
+        return this.dataSource;
+    }
+
+    private SegmentDataSource<NewsModel> reopen() {
+        this.dataSource.close();
+        return open();
+    }
+
+    private long segmentFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.count();
+        }
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A new segment store is seeded from the data file and reads it back in file order")
+    void open_emptyDirectory_seededFromDataFile() throws CustomRepositoryException {
+        SegmentDataSource<NewsModel> segments = open();
+
+        assertThat(segments.count()).isEqualTo(25);
+        assertThat(segments.findAll()).extracting("id").containsExactlyElementsOf(
+                Stream.iterate(1L, id -> id + 1).limit(25).toList()
+        );
+        assertThat(segments.findById(1L).getCreateDate()).isEqualTo(LocalDateTime.of(2024, 4, 5, 14, 12, 31));
+    }
+
+    @Test
+    @DisplayName("Saved and deleted entities are found the same way after a restart, the order is kept")
+    void reopen_afterChanges_sameContentAndOrder() throws CustomRepositoryException {
+        SegmentDataSource<NewsModel> segments = open();
+        segments.save(segments.findById(3L).toBuilder().title("Changed title").build());
+        segments.delete(5L);
+        NewsModel added = segments.save(new NewsModel(null, "Added title", "Added content", null, null, 1L));
+        List<NewsModel> expected = segments.findAll();
+
+        SegmentDataSource<NewsModel> reopened = reopen();
+
+        assertThat(reopened.findAll()).containsExactlyElementsOf(expected);
+        assertThat(reopened.findById(3L).getTitle()).isEqualTo("Changed title");
+        assertThatThrownBy(() -> reopened.findById(5L)).isInstanceOf(EntityNotFoundException.class);
+        assertThat(reopened.save(new NewsModel(null, "Next title", "Next content", null, null, 1L)).getId())
+                .isGreaterThan(added.getId());
+    }
+
+    @Test
+    @DisplayName("A batch save and a batch delete are found the same way after a restart")
+    void saveAllAndDeleteAllById_afterRestart_sameContentAndOrder() throws CustomRepositoryException {
+        SegmentDataSource<NewsModel> segments = open();
+        List<NewsModel> saved = segments.saveAll(List.of(
+                new NewsModel(null, "First batch", "Content", null, null, 1L),
+                new NewsModel(3L, "Changed third", "Content", null, null, 1L),
+                new NewsModel(null, "Second batch", "Content", null, null, 1L)
+        ));
+        assertThatThrownBy(() -> segments.deleteAllById(List.of(1L, Long.MAX_VALUE)))
+                .isInstanceOf(EntityNotFoundException.class);
+        segments.deleteAllById(List.of(1L, 2L));
+        List<NewsModel> expected = segments.findAll();
+
+        SegmentDataSource<NewsModel> reopened = reopen();
+
+        assertThat(reopened.findAll()).containsExactlyElementsOf(expected);
+        assertThat(expected).contains(saved.get(0), saved.get(2));
+        assertThat(reopened.findById(3L).getTitle()).isEqualTo("Changed third");
+        assertThat(reopened.existsById(1L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("The news of an author are found by the author id, also after a restart and a compaction")
+    void findPageBySecondaryKey_afterRestartAndCompaction_sameAsScan() throws CustomRepositoryException {
+        SegmentDataSource<NewsModel> segments = open();
+        segments.save(segments.findById(4L).toBuilder().authorId(2L).build());
+        segments.delete(1L);
+        List<NewsModel> expected = segments.findAll().stream()
+                .filter(news -> news.getAuthorId() == 2L)
+                .toList();
+
+        assertThat(segments.findPageBySecondaryKey(2L, 0, -1).items()).containsExactlyInAnyOrderElementsOf(expected);
+        SegmentDataSource<NewsModel> reopened = reopen();
+        reopened.compact();
+        Page<NewsModel> page = reopened.findPageBySecondaryKey(2L, 0, -1);
+        assertThat(page.items()).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(page.totalCount()).isEqualTo(expected.size());
+    }
+
+    @Test
+    @DisplayName("News created within a range are found in creation order, also after a restart")
+    void findPageByTimestamp_afterRestart_sameAsScan() throws CustomRepositoryException {
+        SegmentDataSource<NewsModel> segments = open();
+        segments.save(segments.findById(5L).toBuilder().createDate(LocalDateTime.of(2024, 4, 5, 0, 0)).build());
+        LocalDateTime from = LocalDateTime.of(2024, 4, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 5, 1, 0, 0);
+        List<NewsModel> expected = segments.findAll().stream()
+                .filter(news -> !news.getCreateDate().isBefore(from) && news.getCreateDate().isBefore(to))
+                .sorted(Comparator.comparing(NewsModel::getCreateDate).thenComparing(NewsModel::getId))
+                .toList();
+
+        assertThat(segments.findPageByTimestamp(NewsIndexes.CREATE_DATE, from, to, false, 0, -1).items())
+                .containsExactlyElementsOf(expected);
+        Page<NewsModel> page = reopen().findPageByTimestamp(NewsIndexes.CREATE_DATE, from, to, false, 0, -1);
+        assertThat(page.items()).containsExactlyElementsOf(expected);
+        assertThat(page.totalCount()).isEqualTo(expected.size());
+    }
+
+    @Test
+    @DisplayName("Compaction deletes segments full of dead records, content and order survive it and a restart")
+    void compact_deadSegments_rewrittenAndDeleted() throws CustomRepositoryException, IOException {
+        SegmentDataSource<NewsModel> segments = open();
+        for (int round = 0; round < 600; round++) {
+            for (long id = 1; id <= 25; id++) {
+                NewsModel news = segments.findById(id);
+                segments.save(news.toBuilder().content("Content changed in round " + round).build());
+            }
+        }
+        segments.delete(7L);
+        List<NewsModel> expected = segments.findAll();
+        long filesBefore = segmentFileCount();
+
+        segments.compact();
+
+        assertThat(filesBefore).isGreaterThan(1);
+        assertThat(segmentFileCount()).isLessThan(filesBefore);
+        assertThat(segments.findAll()).containsExactlyElementsOf(expected);
+        assertThat(reopen().findAll()).containsExactlyElementsOf(expected);
+        assertThatThrownBy(() -> this.dataSource.findById(7L)).isInstanceOf(EntityNotFoundException.class);
+    }
+}
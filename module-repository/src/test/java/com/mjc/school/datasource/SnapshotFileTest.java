@@ -0,0 +1,101 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.DataFileReadException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SnapshotFile")
+class SnapshotFileTest {
+    @TempDir
+    Path directory;
+
+    private DataSourceImpl<NewsModel> newsDataSource() {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.WAL_DIR, this.directory.toString());
+        properties.setProperty(DataSourceProperties.SNAPSHOT_DIR, this.directory.toString());
+        return new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), new DataSourceProperties(properties)
+        );
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("Entities spread over several blocks are read back equal and in the same order, nulls included")
+    void write_read_entitiesAreEqual() {
+        LocalDateTime date = LocalDateTime.of(2024, 4, 5, 14, 12, 31, 123_456_789);
+        List<NewsModel> expected = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            expected.add(new NewsModel(id, "Title " + id, "Содержание " + id, date.plusSeconds(id), date, id % 7));
+        }
+        expected.add(new NewsModel(10_001L, null, "", null, null, null));
+
+        Path file = this.directory.resolve("news.snapshot");
+        SnapshotFile.write(file, NewsModel.class, expected, new NewsModelCodec());
+
+        List<NewsModel> actual = new ArrayList<>();
+        assertThat(SnapshotFile.read(file, NewsModel.class, new NewsModelCodec(), actual::add)).isTrue();
+        assertThat(actual).containsExactlyElementsOf(expected);
+        assertThat(SnapshotFile.read(this.directory.resolve("missing"), NewsModel.class, new NewsModelCodec(), actual::add))
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("A damaged snapshot or a snapshot of another entity type is rejected")
+    void read_damagedOrForeignFile_throwsException() throws IOException {
+        Path file = this.directory.resolve("author.snapshot");
+        SnapshotFile.write(file, AuthorModel.class, List.of(new AuthorModel(1L, "Author")), new AuthorModelCodec());
+
+        assertThatThrownBy(() -> SnapshotFile.read(file, NewsModel.class, new NewsModelCodec(), news -> { }))
+                .isInstanceOf(DataFileReadException.class);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 20] ^= 1;
+        Files.write(file, bytes);
+        assertThatThrownBy(() -> SnapshotFile.read(file, AuthorModel.class, new AuthorModelCodec(), author -> { }))
+                .isInstanceOf(DataFileReadException.class);
+    }
+
+    @Test
+    @DisplayName("A data source restarts from its snapshot and the log written after it, covered log files are deleted")
+    void dataSource_restart_loadsSnapshotAndLaterChanges() throws CustomRepositoryException, IOException {
+        DataSourceImpl<NewsModel> dataSource = newsDataSource();
+        dataSource.delete(1L);
+        dataSource.writeSnapshot();
+        dataSource.delete(2L);
+        List<NewsModel> expected = dataSource.findAll();
+        dataSource.close();
+
+        assertThat(fileNames()).containsExactly("news.snapshot", "news.wal");
+
+        DataSourceImpl<NewsModel> restarted = newsDataSource();
+        try {
+            assertThat(restarted.findAll()).containsExactlyElementsOf(expected);
+            assertThatThrownBy(() -> restarted.findById(1L)).isInstanceOf(EntityNotFoundException.class);
+            assertThatThrownBy(() -> restarted.findById(2L)).isInstanceOf(EntityNotFoundException.class);
+        } finally {
+            restarted.close();
+        }
+    }
+}
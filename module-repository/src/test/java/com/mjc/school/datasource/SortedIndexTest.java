@@ -0,0 +1,89 @@
+package com.mjc.school.datasource;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("SortedIndex")
+class SortedIndexTest {
+
+    @Test
+    @DisplayName("A range is read in timestamp order in both directions, equal timestamps are ordered by id")
+    void ids_range_sortedByTimeThenId() {
+        SortedIndex index = SortedIndex.builder()
+                .add(30, 3L)
+                .add(10, 1L)
+                .add(20, 5L)
+                .add(20, 2L)
+                .add(40, 4L)
+                .build();
+
+        assertThat(index.ids(Long.MIN_VALUE, Long.MAX_VALUE, false, 0, -1)).containsExactly(1L, 2L, 5L, 3L, 4L);
+        assertThat(index.ids(20, 40, false, 0, -1)).containsExactly(2L, 5L, 3L);
+        assertThat(index.ids(20, 40, true, 0, -1)).containsExactly(3L, 5L, 2L);
+        assertThat(index.ids(20, 40, true, 1, 1)).containsExactly(5L);
+        assertThat(index.ids(20, 40, false, 3, 10)).isEmpty();
+        assertThat(index.count(20, 40)).isEqualTo(3);
+        assertThat(index.count(40, 20)).isZero();
+    }
+
+    @Test
+    @DisplayName("Random inserts and removes give the same pages as sorting all entries, older versions do not change")
+    void insertAndRemove_random_sameAsSortedList() {
+        Random random = new Random(7);
+        SortedIndex index = SortedIndex.empty();
+        List<long[]> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            long time = random.nextInt(200);
+            long id = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                index = index.remove(time, id);
+                expected.removeIf(entry -> entry[0] == time && entry[1] == id);
+            } else if (expected.stream().noneMatch(entry -> entry[0] == time && entry[1] == id)) {
+                index = index.insert(time, id);
+                expected.add(new long[]{time, id});
+            }
+        }
+        expected.sort(Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]));
+        SortedIndex snapshot = index;
+        index.insert(1000, 1L).remove(expected.get(0)[0], expected.get(0)[1]);
+
+        assertThat(snapshot.size()).isEqualTo(expected.size());
+        for (int i = 0; i < 50; i++) {
+            long from = random.nextInt(220) - 10;
+            long to = from + random.nextInt(100);
+            int offset = random.nextInt(10);
+            int limit = random.nextInt(30);
+            List<Long> ascending = expected.stream()
+                    .filter(entry -> entry[0] >= from && entry[0] < to)
+                    .map(entry -> entry[1])
+                    .toList();
+            List<Long> descending = new ArrayList<>(ascending);
+            Collections.reverse(descending);
+
+            assertThat(snapshot.ids(from, to, false, offset, limit))
+                    .containsExactlyElementsOf(ascending.stream().skip(offset).limit(limit).toList());
+            assertThat(snapshot.ids(from, to, true, offset, limit))
+                    .containsExactlyElementsOf(descending.stream().skip(offset).limit(limit).toList());
+            assertThat(snapshot.count(from, to)).isEqualTo(ascending.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Timestamps are keyed in their natural order")
+    void timeKey_orderedLikeTimestamps() {
+        LocalDateTime time = LocalDateTime.of(2024, 4, 5, 14, 12, 31);
+
+        assertThat(SortedIndex.timeKey(time)).isLessThan(SortedIndex.timeKey(time.plusNanos(1)));
+        assertThat(SortedIndex.timeKey(LocalDateTime.MIN)).isEqualTo(Long.MIN_VALUE);
+        assertThat(SortedIndex.timeKey(LocalDateTime.MAX)).isEqualTo(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,232 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.UnsupportedCapabilityException;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("StripedDataSource")
+class StripedDataSourceTest {
+    private static StripedDataSource<NewsModel> open(int stripes) {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.STRIPED_STRIPES, String.valueOf(stripes));
+        return new StripedDataSource<>("news.json", NewsModel.class, new DataSourceProperties(properties));
+    }
+
+    @Test
+    @DisplayName("The data file is spread over the stripes and read back in file order")
+    void open_dataFile_readInFileOrder() throws CustomRepositoryException {
+        StripedDataSource<NewsModel> dataSource = open(4);
+
+        assertThat(dataSource.count()).isEqualTo(25);
+        assertThat(dataSource.findAll()).extracting("id").containsExactlyElementsOf(
+                Stream.iterate(1L, id -> id + 1).limit(25).toList()
+        );
+        assertThat(dataSource.findPage(20, 10).items()).extracting("id").containsExactly(21L, 22L, 23L, 24L, 25L);
+        assertThat(dataSource.findById(25L).getTitle()).isNotBlank();
+    }
+
+    @Test
+    @DisplayName("Random saves and deletes leave the same content and order as an insertion-ordered map")
+    void saveAndDelete_random_sameAsLinkedHashMap() throws CustomRepositoryException {
+        StripedDataSource<NewsModel> dataSource = open(8);
+        Map<Long, NewsModel> expected = new LinkedHashMap<>();
+        dataSource.findAll().forEach(news -> expected.put(news.getId(), news));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            long id = 1 + random.nextInt(60);
+            if (random.nextInt(3) == 0) {
+                if (expected.remove(id) != null) {
+                    dataSource.delete(id);
+                } else {
+                    assertThatThrownBy(() -> dataSource.delete(id)).isInstanceOf(EntityNotFoundException.class);
+                }
+            } else {
+                NewsModel news = new NewsModel(id, "Title " + i, "Content " + i, null, null, 1L);
+                dataSource.save(news);
+                expected.put(id, news);
+            }
+        }
+
+        assertThat(dataSource.findAll()).containsExactlyElementsOf(expected.values());
+        assertThat(dataSource.count()).isEqualTo(expected.size());
+        assertThat(dataSource.findAll(5, 10)).containsExactlyElementsOf(
+                expected.values().stream().skip(5).limit(10).toList()
+        );
+    }
+
+    @Test
+    @DisplayName("Keyset pages neither repeat nor skip news when news are added and deleted between the pages")
+    void findAfter_writesBetweenPages_noDuplicatesOrGaps() throws CustomRepositoryException {
+        StripedDataSource<NewsModel> dataSource = open(4);
+        List<Long> idsBefore = dataSource.findAll().stream().map(NewsModel::getId).sorted().toList();
+        List<Long> seen = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        long lastId = 0;
+        List<NewsModel> page = dataSource.findAfter(lastId, 4);
+        while (!page.isEmpty()) {
+            page.forEach(news -> seen.add(news.getId()));
+            lastId = page.get(page.size() - 1).getId();
+            dataSource.save(page.get(0).toBuilder().id(null).build());
+            List<NewsModel> following = dataSource.findAfter(lastId, 1);
+            if (!following.isEmpty()) {
+                deleted.add(following.get(0).getId());
+                dataSource.delete(following.get(0).getId());
+            }
+            page = dataSource.findAfter(lastId, 4);
+        }
+
+        assertThat(seen).isSorted().doesNotHaveDuplicates();
+        assertThat(seen).containsAll(idsBefore.stream().filter(id -> !deleted.contains(id)).toList());
+        assertThat(seen).doesNotContainAnyElementsOf(deleted);
+    }
+
+    @Test
+    @DisplayName("A batch gets consecutive ids in its order, a batch delete with an unknown id deletes nothing")
+    void saveAllAndDeleteAllById_batch_allOrNothing() throws CustomRepositoryException {
+        StripedDataSource<NewsModel> dataSource = open(4);
+        List<NewsModel> batch = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            batch.add(new NewsModel(null, "Batch " + i, "Content " + i, null, null, 1L));
+        }
+
+        List<NewsModel> saved = dataSource.saveAll(batch);
+
+        assertThat(saved).extracting("title").containsExactlyElementsOf(batch.stream().map(NewsModel::getTitle).toList());
+        assertThat(saved).extracting("id").containsExactlyElementsOf(
+                Stream.iterate(saved.get(0).getId(), id -> id + 1).limit(10).toList()
+        );
+        assertThat(dataSource.findAll(25, -1)).containsExactlyElementsOf(saved);
+
+        List<Long> ids = List.of(saved.get(0).getId(), saved.get(1).getId(), Long.MAX_VALUE);
+        assertThatThrownBy(() -> dataSource.deleteAllById(ids)).isInstanceOf(EntityNotFoundException.class);
+        assertThat(dataSource.count()).isEqualTo(35);
+
+        dataSource.deleteAllById(List.of(saved.get(0).getId(), saved.get(1).getId(), saved.get(0).getId()));
+        assertThat(dataSource.count()).isEqualTo(33);
+        assertThat(dataSource.existsById(saved.get(0).getId())).isFalse();
+        assertThat(dataSource.findAfter(saved.get(0).getId(), 1)).containsExactly(saved.get(2));
+    }
+
+    @Test
+    @DisplayName("Concurrent writers to different ids lose no update and get unique generated ids")
+    void save_concurrentWriters_noLostUpdates() throws Exception {
+        StripedDataSource<NewsModel> dataSource = open(16);
+        int writers = 8;
+        int rounds = 200;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        try {
+            for (int writer = 0; writer < writers; writer++) {
+                long id = writer + 1;
+                futures.add(executor.submit(() -> {
+                    List<Long> generatedIds = new ArrayList<>();
+                    for (int round = 0; round < rounds; round++) {
+                        NewsModel news = dataSource.findById(id);
+                        dataSource.save(news.toBuilder().title("Round " + round).build());
+                        generatedIds.add(dataSource.save(new NewsModel(null, "New", "New", null, null, 1L)).getId());
+                    }
+                    return generatedIds;
+                }));
+            }
+            List<Long> generatedIds = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                generatedIds.addAll(future.get());
+            }
+
+            assertThat(generatedIds).hasSize(writers * rounds).doesNotHaveDuplicates();
+            assertThat(dataSource.count()).isEqualTo(25 + writers * rounds);
+            for (long id = 1; id <= writers; id++) {
+                assertThat(dataSource.findById(id).getTitle()).isEqualTo("Round " + (rounds - 1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Concurrent updates of an indexed timestamp leave every news in the index once, at its last value")
+    void save_concurrentTimestampUpdates_indexConsistent() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.STRIPED_STRIPES, "16");
+        StripedDataSource<NewsModel> dataSource = new StripedDataSource<>(
+                "news.json", NewsModel.class, NewsIndexes.definition(), new DataSourceProperties(properties)
+        );
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        int writers = 8;
+        int rounds = 300;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int writer = 0; writer < writers; writer++) {
+                long firstId = writer * 3L + 1;
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < rounds; round++) {
+                        long id = firstId + round % 3;
+                        NewsModel news = dataSource.findById(id);
+                        dataSource.save(news.toBuilder().lastUpdateDate(start.plusMinutes(round * 100L + id)).build());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Page<NewsModel> page = dataSource.findPageByTimestamp(NewsIndexes.LAST_UPDATE_DATE, null, null, false, 0, -1);
+        assertThat(page.items()).extracting(NewsModel::getId).doesNotHaveDuplicates().hasSize(25);
+        assertThat(page.totalCount()).isEqualTo(25);
+        assertThat(page.items()).extracting(NewsModel::getLastUpdateDate).isSorted();
+        Page<NewsModel> updated = dataSource.findPageByTimestamp(
+                NewsIndexes.LAST_UPDATE_DATE, start, start.plusDays(60), false, 0, -1
+        );
+        assertThat(updated.items()).extracting(NewsModel::getId)
+                .containsExactlyInAnyOrderElementsOf(Stream.iterate(1L, id -> id + 1).limit(writers * 3L).toList());
+    }
+
+    @Test
+    @DisplayName("The optional features it lacks are not among its capabilities and fail with a defined exception")
+    void capabilities_unsupported_definedException() {
+        StripedDataSource<NewsModel> dataSource = open(2);
+
+        assertThat(dataSource.capabilities()).doesNotContain(DataSource.Capability.CHANGES);
+        assertThatThrownBy(() -> dataSource.changesAfter(0))
+                .isInstanceOf(UnsupportedCapabilityException.class)
+                .extracting("capability").isEqualTo(DataSource.Capability.CHANGES);
+        assertThat(dataSource.capabilities()).doesNotContain(DataSource.Capability.TOMBSTONES);
+        assertThatThrownBy(() -> dataSource.findTombstone(1L))
+                .isInstanceOf(UnsupportedCapabilityException.class)
+                .extracting("capability").isEqualTo(DataSource.Capability.TOMBSTONES);
+        assertThat(dataSource.capabilities()).doesNotContain(DataSource.Capability.COLUMN_SCANS);
+        assertThatThrownBy(() -> dataSource.countByKey(NewsIndexes.AUTHOR_ID))
+                .isInstanceOf(UnsupportedCapabilityException.class)
+                .extracting("capability").isEqualTo(DataSource.Capability.COLUMN_SCANS);
+        assertThatThrownBy(dataSource::tierStatistics)
+                .isInstanceOf(UnsupportedCapabilityException.class)
+                .extracting("capability").isEqualTo(DataSource.Capability.TIERS);
+    }
+}
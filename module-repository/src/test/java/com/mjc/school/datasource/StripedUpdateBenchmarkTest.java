@@ -0,0 +1,87 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Random updates of news that change their last update date, i.e. an indexed timestamp, by 1 to 32 threads. Run with
+ * the environment variable {@code BENCHMARK=true}, the updates per second are printed.
+ */
+@DisplayName("Concurrent updates of the striped data source")
+@EnabledIfEnvironmentVariable(named = "BENCHMARK", matches = "true")
+class StripedUpdateBenchmarkTest {
+    private static final int NEWS_COUNT = 20_000;
+    private static final int STRIPES = 64;
+    private static final long WARM_UP_MILLIS = 500;
+    private static final long MEASURED_MILLIS = 2_000;
+
+    @Test
+    @DisplayName("Updates per second by the number of threads")
+    void updates_1to32Threads() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.STRIPED_STRIPES, String.valueOf(STRIPES));
+        StripedDataSource<NewsModel> dataSource = new StripedDataSource<>(
+                "news.json", NewsModel.class, NewsIndexes.definition(), new DataSourceProperties(properties)
+        );
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<NewsModel> news = new ArrayList<>(NEWS_COUNT);
+        for (int i = 0; i < NEWS_COUNT; i++) {
+            news.add(new NewsModel(null, "Title " + i, "Content " + i, start, start, (long) (i % 100)));
+        }
+        List<Long> ids = dataSource.saveAll(news).stream().map(NewsModel::getId).toList();
+
+        for (int threads = 1; threads <= 32; threads *= 2) {
+            updatesPerSecond(dataSource, ids, threads, WARM_UP_MILLIS);
+            double perSecond = updatesPerSecond(dataSource, ids, threads, MEASURED_MILLIS);
+            System.out.printf("%2d threads %12.0f updates/s%n", threads, perSecond);
+        }
+        assertThat(dataSource.count()).isEqualTo(NEWS_COUNT + 25);
+    }
+
+    private static double updatesPerSecond(
+            StripedDataSource<NewsModel> dataSource, List<Long> ids, int threads, long millis
+    ) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> writers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                writers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long updates = 0;
+                    while (running.get()) {
+                        long id = ids.get(random.nextInt(ids.size()));
+                        NewsModel current = dataSource.findById(id);
+                        dataSource.save(current.toBuilder().lastUpdateDate(LocalDateTime.now()).build());
+                        updates++;
+                    }
+                    return updates;
+                }));
+            }
+            long startNanos = System.nanoTime();
+            Thread.sleep(millis);
+            running.set(false);
+            long updates = 0;
+            for (Future<Long> writer : writers) {
+                updates += writer.get();
+            }
+            return updates / ((System.nanoTime() - startNanos) / 1e9);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("TieredDataSource")
+class TieredDataSourceTest {
+    @TempDir
+    Path directory;
+
+    private TieredDataSource<NewsModel> dataSource;
+
+    /**
+     * Opens a data source without a background sweeper, entities are only demoted by {@link TieredDataSource#sweep()}
+     */
+    private TieredDataSource<NewsModel> open(long idleMillis, int hotMaxEntries) {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.TIERED_DIR, this.directory.toString());
+        properties.setProperty(DataSourceProperties.TIERED_IDLE_MS, String.valueOf(idleMillis));
+        properties.setProperty(DataSourceProperties.TIERED_HOT_MAX_ENTRIES, String.valueOf(hotMaxEntries));
+        properties.setProperty(DataSourceProperties.TIERED_DEMOTION_INTERVAL_MS, "0");
+        this.dataSource = new TieredDataSource<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(properties)
+        );
+        return this.dataSource;
+    }
+
+    private static NewsModel news(Long id, String title, long authorId) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(id, title, title + " content", date, date, authorId);
+    }
+
+    private long runFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".run")).count();
+        }
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("The data file is loaded into the cold tier, a read promotes the entity to the heap")
+    void findById_coldEntity_promoted() throws CustomRepositoryException {
+        TieredDataSource<NewsModel> tiered = open(60_000, 100);
+
+        NewsModel first = tiered.findById(3L);
+        NewsModel second = tiered.findById(3L);
+
+        assertThat(second).isSameAs(first);
+        assertThat(tiered.capabilities()).contains(DataSource.Capability.TIERS);
+        TierStatistics statistics = tiered.tierStatistics();
+        assertThat(statistics.coldRuns()).isEqualTo(1);
+        assertThat(statistics.coldRecords()).isEqualTo(25);
+        assertThat(statistics.hotEntries()).isEqualTo(1);
+        assertThat(statistics.promotions()).isEqualTo(1);
+        assertThat(statistics.coldHits()).isEqualTo(1);
+        assertThat(statistics.hotHits()).isEqualTo(1);
+        assertThat(statistics.hotHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Idle entities are demoted, changed ones are written to a new run and read back from it")
+    void sweep_idleEntities_demotedAndReadBack() throws CustomRepositoryException, IOException {
+        TieredDataSource<NewsModel> tiered = open(0, 100);
+        NewsModel changed = tiered.save(tiered.findById(2L).toBuilder().title("Changed title").build());
+        NewsModel added = tiered.save(news(null, "Added title", 1L));
+        tiered.findById(4L);
+
+        tiered.sweep();
+
+        TierStatistics statistics = tiered.tierStatistics();
+        assertThat(statistics.hotEntries()).isZero();
+        assertThat(statistics.demotions()).isEqualTo(3);
+        assertThat(statistics.coldRuns()).isEqualTo(2);
+        assertThat(statistics.coldRecords()).isEqualTo(27);
+        assertThat(runFileCount()).isEqualTo(2);
+        assertThat(tiered.findById(2L)).isEqualTo(changed);
+        assertThat(tiered.findById(2L).getVersion()).isEqualTo(1);
+        assertThat(tiered.findById(added.getId())).isEqualTo(added);
+        assertThat(tiered.count()).isEqualTo(26);
+    }
+
+    @Test
+    @DisplayName("Above the heap limit the least recently used entities are demoted first")
+    void sweep_overLimit_leastRecentlyUsedDemoted() throws CustomRepositoryException {
+        TieredDataSource<NewsModel> tiered = open(60_000, 2);
+        for (long id = 1; id <= 5; id++) {
+            tiered.findById(id);
+        }
+        tiered.findById(1L);
+
+        tiered.sweep();
+
+        assertThat(tiered.tierStatistics().hotEntries()).isEqualTo(2);
+        long hotHitsBefore = tiered.tierStatistics().hotHits();
+        tiered.findById(1L);
+        tiered.findById(5L);
+        assertThat(tiered.tierStatistics().hotHits()).isEqualTo(hotHitsBefore + 2);
+    }
+
+    @Test
+    @DisplayName("A missing id is answered from the heap index, runs without the id are skipped by their Bloom filter")
+    void existsById_missingId_filesNotRead() throws CustomRepositoryException {
+        TieredDataSource<NewsModel> tiered = open(0, 100);
+        tiered.save(news(100L, "Added title", 1L));
+        tiered.sweep();
+
+        assertThat(tiered.existsById(200L)).isFalse();
+        assertThatThrownBy(() -> tiered.findById(200L)).isInstanceOf(EntityNotFoundException.class);
+        assertThat(tiered.tierStatistics().coldHits()).isZero();
+
+        tiered.findById(100L);
+        tiered.findById(1L);
+        assertThat(tiered.tierStatistics().bloomSkips()).isGreaterThanOrEqualTo(1);
+        assertThat(tiered.tierStatistics().coldHits()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deleted entities stay deleted after demotion, too many runs are merged without them")
+    void sweep_manyRuns_mergedWithoutDeletedEntities() throws CustomRepositoryException, IOException {
+        TieredDataSource<NewsModel> tiered = open(0, 100);
+        for (int i = 0; i < 10; i++) {
+            tiered.save(tiered.findById(1L).toBuilder().title("Title " + i).build());
+            tiered.sweep();
+        }
+        tiered.delete(2L);
+        tiered.deleteAllById(List.of(3L, 4L));
+        tiered.sweep();
+
+        assertThat(tiered.tierStatistics().coldRuns()).isLessThanOrEqualTo(8);
+        assertThat(runFileCount()).isEqualTo(tiered.tierStatistics().coldRuns());
+        assertThat(tiered.findById(1L).getTitle()).isEqualTo("Title 9");
+        assertThat(tiered.findById(1L).getVersion()).isEqualTo(10);
+        assertThat(tiered.existsById(2L)).isFalse();
+        assertThat(tiered.findAll()).extracting(NewsModel::getId).doesNotContain(2L, 3L, 4L).hasSize(22);
+
+        List<Long> remaining = tiered.findAll().stream().map(NewsModel::getId).toList();
+        tiered.deleteAllById(remaining);
+        for (int i = 0; i < 9; i++) {
+            tiered.save(news(200L + i, "Added title", 1L));
+            tiered.sweep();
+        }
+        tiered.deleteAllById(IntStream.range(0, 9).mapToObj(i -> 200L + i).toList());
+        tiered.sweep();
+        assertThat(tiered.count()).isZero();
+        assertThat(tiered.tierStatistics().coldRecords()).isLessThanOrEqualTo(9);
+    }
+
+    @Test
+    @DisplayName("Paged and indexed queries over both tiers return the same entities as the memory backend")
+    void queries_sameResultsAsMemoryBackend() throws CustomRepositoryException {
+        TieredDataSource<NewsModel> tiered = open(0, 100);
+        DataSourceImpl<NewsModel> memory = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(new Properties())
+        );
+        List<NewsModel> changes = new ArrayList<>();
+        for (long id = 1; id <= 25; id += 3) {
+            changes.add(memory.findById(id).toBuilder().title("Changed " + id).authorId(2L).build());
+        }
+        tiered.saveAll(changes);
+        memory.saveAll(changes);
+        tiered.sweep();
+        tiered.findById(7L);
+        LocalDateTime from = LocalDateTime.of(2024, 4, 10, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 4, 20, 0, 0);
+
+        assertThat(tiered.findAll()).containsExactlyElementsOf(memory.findAll());
+        assertThat(tiered.findAll(3, 7)).containsExactlyElementsOf(memory.findAll(3, 7));
+        assertThat(tiered.findPage(5, 5)).isEqualTo(memory.findPage(5, 5));
+        assertThat(tiered.streamPage(20).items().toList()).containsExactlyElementsOf(memory.findAll(20, -1));
+        assertThat(tiered.findAfter(10, 4)).containsExactlyElementsOf(memory.findAfter(10, 4));
+        assertThat(tiered.findPageBySecondaryKey(2L, 1, 3)).isEqualTo(memory.findPageBySecondaryKey(2L, 1, 3));
+        for (boolean descending : new boolean[]{false, true}) {
+            assertThat(tiered.findPageByTimestamp(NewsIndexes.CREATE_DATE, from, to, descending, 1, 3))
+                    .isEqualTo(memory.findPageByTimestamp(NewsIndexes.CREATE_DATE, from, to, descending, 1, 3));
+        }
+        assertThat(tiered.tierStatistics().hotEntries()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("The run files are deleted at startup and when the data source is closed")
+    void close_runFilesDeleted() throws CustomRepositoryException, IOException {
+        TieredDataSource<NewsModel> tiered = open(0, 100);
+        tiered.save(news(null, "Added title", 1L));
+        tiered.sweep();
+        assertThat(runFileCount()).isEqualTo(2);
+
+        tiered.close();
+        assertThat(runFileCount()).isZero();
+
+        Files.writeString(this.directory.resolve("news-000007.run"), "left over");
+        TieredDataSource<NewsModel> reopened = open(0, 100);
+        assertThat(runFileCount()).isEqualTo(1);
+        assertThat(reopened.count()).isEqualTo(25);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("DataSourceImpl tombstones and compaction")
+class TombstoneCompactionTest {
+    @TempDir
+    Path directory;
+
+    private DataSourceImpl<NewsModel> dataSource;
+
+    /**
+     * Opens a data source whose compactor does not run in the test, {@link DataSourceImpl#compact()} is called instead
+     */
+    private DataSourceImpl<NewsModel> open(long retentionMillis) {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.WAL_DIR, this.directory.toString());
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "3600000");
+        properties.setProperty(DataSourceProperties.TOMBSTONE_RETENTION_MS, String.valueOf(retentionMillis));
+        this.dataSource = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(properties)
+        );
+        return this.dataSource;
+    }
+
+    private static NewsModel news(Long id, String title) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(id, title, title + " content", date, date, 1L);
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A deletion leaves a tombstone with the next version, an entity saved again continues from it")
+    void delete_tombstoneKept_versionContinued() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(600_000);
+        NewsModel changed = news.save(news.findById(3L).toBuilder().title("Changed title").build());
+        long before = System.currentTimeMillis();
+
+        news.delete(3L);
+
+        Tombstone tombstone = news.findTombstone(3L).orElseThrow();
+        assertThat(tombstone.id()).isEqualTo(3L);
+        assertThat(tombstone.version()).isEqualTo(changed.getVersion() + 1);
+        assertThat(tombstone.deletedAtMillis()).isGreaterThanOrEqualTo(before);
+        assertThat(news.findTombstone(4L)).isEmpty();
+
+        NewsModel recreated = news.save(news(3L, "Recreated title"));
+        assertThat(recreated.getVersion()).isEqualTo(tombstone.version() + 1);
+        assertThat(news.findTombstone(3L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Tombstones older than the retention time are reclaimed by the compactor, newer ones are kept")
+    void compact_expiredTombstones_reclaimed() throws Exception {
+        DataSourceImpl<NewsModel> news = open(200);
+        news.deleteAllById(List.of(1L, 2L));
+        Thread.sleep(300);
+        news.delete(5L);
+
+        news.compact();
+
+        assertThat(news.findTombstone(1L)).isEmpty();
+        assertThat(news.findTombstone(2L)).isEmpty();
+        assertThat(news.findTombstone(5L)).isPresent();
+        assertThat(news.save(news(1L, "Recreated title")).getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Compaction rebuilds a store left sparse by deletions without changing what readers see")
+    void compact_sparseStore_sameContent() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(600_000);
+        List<NewsModel> added = news.saveAll(
+                LongStream.range(0, 500).mapToObj(i -> news(null, "Bulk title " + i)).toList()
+        );
+        PageStream<NewsModel> before = news.streamPage(0);
+        List<NewsModel> expectedBefore = news.findAll();
+        news.deleteAllById(added.stream().map(NewsModel::getId).filter(id -> id % 7 != 0).toList());
+        List<NewsModel> expected = news.findAll();
+        Page<NewsModel> page = news.findPage(10, 5);
+
+        news.compact();
+
+        assertThat(news.findAll()).containsExactlyElementsOf(expected);
+        assertThat(news.findPage(10, 5)).isEqualTo(page);
+        assertThat(news.findPageBySecondaryKey(1L, 0, -1).items()).allMatch(expected::contains);
+        assertThat(before.items().toList()).containsExactlyElementsOf(expectedBefore);
+        assertThat(news.findTombstone(added.get(0).getId())).isPresent();
+    }
+
+    @Test
+    @DisplayName("Tombstones of the deletions in the write-ahead log are restored at startup")
+    void reopen_deletionsReplayed_tombstonesRestored() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(600_000);
+        news.save(news.findById(4L).toBuilder().title("Changed title").build());
+        news.delete(4L);
+        news.close();
+
+        DataSourceImpl<NewsModel> reopened = open(600_000);
+
+        assertThat(reopened.findTombstone(4L).map(Tombstone::version)).contains(2L);
+        assertThat(reopened.existsById(4L)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Without a retention time no tombstones are kept")
+    void delete_noRetention_noTombstone() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(0);
+
+        news.delete(6L);
+
+        assertThat(news.findTombstone(6L)).isEmpty();
+        assertThat(news.save(news(6L, "Recreated title")).getVersion()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,182 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.TransactionConflictException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Transactions over the author and news data sources")
+class TransactionTest {
+    @TempDir
+    Path directory;
+
+    private DataSourceImpl<AuthorModel> authorBackend;
+    private DataSourceImpl<NewsModel> newsBackend;
+    private DataSource<AuthorModel> authors;
+    private DataSource<NewsModel> news;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.WAL_DIR, this.directory.toString());
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "0");
+        DataSourceProperties dataSourceProperties = new DataSourceProperties(properties);
+        this.authorBackend = new DataSourceImpl<>(
+                "author.json", AuthorModel.class, new AuthorModelCodec(), dataSourceProperties
+        );
+        this.newsBackend = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(), dataSourceProperties
+        );
+        this.authors = new TransactionalDataSource<>(this.authorBackend);
+        this.news = new TransactionalDataSource<>(this.newsBackend);
+    }
+
+    @AfterEach
+    void close() {
+        this.authorBackend.close();
+        this.newsBackend.close();
+    }
+
+    private static NewsModel news(long authorId) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(null, "Transaction title", "Transaction content", date, date, authorId);
+    }
+
+    @Test
+    @DisplayName("The writes to both data sources are applied on commit, the actions after the commit see the ids")
+    void commit_writesOfBothSources_applied() throws CustomRepositoryException {
+        long newsCount = this.news.count();
+        List<Long> committedIds = new ArrayList<>();
+
+        Transaction transaction = Transaction.begin();
+        assertThat(transaction.exists(this.authors, 1L)).isTrue();
+        Supplier<NewsModel> created = transaction.save(this.news, news(1L));
+        Supplier<AuthorModel> renamed = transaction.save(this.authors, new AuthorModel(1L, "Renamed author"));
+        assertThat(transaction.delete(this.news, 2L)).isTrue();
+        transaction.afterCommit(() -> committedIds.add(created.get().getId()));
+
+        assertThatThrownBy(created::get).isInstanceOf(IllegalStateException.class);
+        assertThat(this.news.count()).isEqualTo(newsCount);
+
+        transaction.commit();
+
+        assertThat(this.news.findById(created.get().getId()).getAuthorId()).isEqualTo(1L);
+        assertThat(this.authors.findById(1L).getName()).isEqualTo("Renamed author");
+        assertThat(renamed.get().getVersion()).isEqualTo(this.authors.findById(1L).getVersion());
+        assertThat(this.news.existsById(2L)).isFalse();
+        assertThat(this.news.count()).isEqualTo(newsCount);
+        assertThat(committedIds).containsExactly(created.get().getId());
+        assertThatThrownBy(() -> transaction.exists(this.authors, 1L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("A news is not saved if its author is deleted between the check and the commit")
+    void commit_authorDeletedInBetween_conflictAndNothingSaved() throws CustomRepositoryException {
+        long newsCount = this.news.count();
+
+        Transaction transaction = Transaction.begin();
+        assertThat(transaction.exists(this.authors, 1L)).isTrue();
+        transaction.save(this.news, news(1L));
+
+        this.authors.delete(1L);
+
+        assertThatThrownBy(transaction::commit)
+                .isInstanceOf(TransactionConflictException.class)
+                .extracting("entityId").isEqualTo(1L);
+        assertThat(this.news.count()).isEqualTo(newsCount);
+    }
+
+    @Test
+    @DisplayName("An author deleted and saved again with its old version between the check and the commit is a conflict")
+    void commit_authorDeletedAndSavedAgain_conflict() throws CustomRepositoryException {
+        this.authors.save(new AuthorModel(1L, "Saved before"));
+        Transaction transaction = Transaction.begin();
+        AuthorModel author = transaction.find(this.authors, 1L).orElseThrow();
+        transaction.save(this.news, news(1L));
+
+        this.authors.delete(1L);
+        AuthorModel savedAgain = this.authors.save(new AuthorModel(1L, "Saved again"));
+        assertThat(savedAgain.getVersion()).isEqualTo(author.getVersion());
+
+        assertThatThrownBy(transaction::commit)
+                .isInstanceOf(TransactionConflictException.class)
+                .extracting("entityId").isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Reads are repeatable and see the transaction's own writes")
+    void find_changedOutside_firstReadKept() throws CustomRepositoryException {
+        Transaction transaction = Transaction.begin();
+        String name = transaction.find(this.authors, 2L).orElseThrow().getName();
+
+        this.authors.save(new AuthorModel(2L, "Changed outside"));
+
+        assertThat(transaction.find(this.authors, 2L).orElseThrow().getName()).isEqualTo(name);
+        transaction.save(this.authors, new AuthorModel(2L, "Changed inside"));
+        assertThat(transaction.find(this.authors, 2L).orElseThrow().getName()).isEqualTo("Changed inside");
+        transaction.delete(this.authors, 2L);
+        assertThat(transaction.exists(this.authors, 2L)).isFalse();
+        assertThat(transaction.find(this.authors, 999L)).isEmpty();
+
+        assertThatThrownBy(transaction::commit).isInstanceOf(TransactionConflictException.class);
+        assertThat(this.authors.findById(2L).getName()).isEqualTo("Changed outside");
+    }
+
+    @Test
+    @DisplayName("Concurrent read-modify-write transactions retried on conflict lose no update")
+    void commit_concurrentIncrements_noLostUpdate() throws Exception {
+        this.authors.save(new AuthorModel(3L, "0"));
+        int threads = 4;
+        int increments = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < increments; i++) {
+                        while (true) {
+                            Transaction transaction = Transaction.begin();
+                            AuthorModel counter = transaction.find(this.authors, 3L).orElseThrow();
+                            int value = Integer.parseInt(counter.getName());
+                            transaction.save(this.authors, new AuthorModel(3L, String.valueOf(value + 1)));
+                            try {
+                                transaction.commit();
+                                break;
+                            } catch (TransactionConflictException e) {
+                                // read the counter again
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(this.authors.findById(3L).getName()).isEqualTo(String.valueOf(threads * increments));
+    }
+}
@@ -0,0 +1,145 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.exception.UnsupportedCapabilityException;
+import com.mjc.school.exception.VersionNotRetainedException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.Model;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("DataSourceImpl reads as of an earlier version")
+class VersionHistoryTest {
+    private DataSourceImpl<NewsModel> dataSource;
+
+    private DataSourceImpl<NewsModel> open(long retentionMillis, int maxVersions) {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "0");
+        properties.setProperty(
+                String.format(DataSourceProperties.HISTORY_RETENTION_TEMPLATE, "news"), String.valueOf(retentionMillis)
+        );
+        properties.setProperty(DataSourceProperties.HISTORY_MAX_VERSIONS, String.valueOf(maxVersions));
+        this.dataSource = new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), NewsIndexes.definition(),
+                new DataSourceProperties(properties)
+        );
+        return this.dataSource;
+    }
+
+    private static NewsModel news(Long id, String title) {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return new NewsModel(id, title, title + " content", date, date, 1L);
+    }
+
+    @AfterEach
+    void close() {
+        if (this.dataSource != null) {
+            this.dataSource.close();
+        }
+    }
+
+    @Test
+    @DisplayName("An entity is read as it was at the version, before its update, deletion or creation")
+    void findById_earlierVersion_entityAsItWas() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(3_600_000, 1000);
+        NewsModel original = news.findById(1L);
+        long loaded = news.changeVersion();
+
+        news.save(original.toBuilder().title("Changed title").build());
+        long updated = news.changeVersion();
+        news.delete(1L);
+        NewsModel added = news.save(news(null, "Added title"));
+
+        assertThat(news.findById(1L, loaded).getTitle()).isEqualTo(original.getTitle());
+        assertThat(news.findById(1L, updated).getTitle()).isEqualTo("Changed title");
+        assertThatThrownBy(() -> news.findById(1L, news.changeVersion())).isInstanceOf(EntityNotFoundException.class);
+        assertThatThrownBy(() -> news.findById(added.getId(), updated)).isInstanceOf(EntityNotFoundException.class);
+        assertThat(news.findById(added.getId(), news.changeVersion())).isEqualTo(added);
+        assertThatThrownBy(() -> news.findById(1L, news.changeVersion() + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("A page as of a version holds the entities of that version in insertion order")
+    void findAll_earlierVersion_datasetAsItWas() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(3_600_000, 1000);
+        List<NewsModel> before = news.findAll();
+        long loaded = news.changeVersion();
+
+        List<NewsModel> added = news.saveAll(List.of(news(null, "First added"), news(null, "Second added")));
+        news.deleteAllById(List.of(2L, 3L));
+        news.save(news.findById(4L).toBuilder().title("Changed title").build());
+
+        assertThat(news.findAll(0, -1, loaded)).containsExactlyElementsOf(before);
+        assertThat(news.findAll(1, 2, loaded)).containsExactlyElementsOf(before.subList(1, 3));
+        assertThat(news.findAll(before.size() - 1, -1, loaded + 1))
+                .containsExactly(before.get(before.size() - 1), added.get(0));
+        assertThat(news.findAll(0, -1, loaded + 3).stream().map(Model::getId).toList())
+                .doesNotContain(2L)
+                .contains(3L);
+        assertThat(news.findAll(0, -1, news.changeVersion())).containsExactlyElementsOf(news.findAll());
+    }
+
+    @Test
+    @DisplayName("A time is resolved to the last version committed at or before it")
+    void versionAt_time_lastVersionBefore() throws Exception {
+        DataSourceImpl<NewsModel> news = open(3_600_000, 1000);
+        Instant start = Instant.now();
+        assertThat(news.versionAt(start)).isZero();
+
+        news.save(news.findById(1L).toBuilder().title("First change").build());
+        Thread.sleep(20);
+        Instant between = Instant.now();
+        Thread.sleep(20);
+        news.save(news.findById(1L).toBuilder().title("Second change").build());
+
+        assertThat(news.versionAt(between)).isEqualTo(1L);
+        assertThat(news.findById(1L, news.versionAt(between)).getTitle()).isEqualTo("First change");
+        assertThat(news.versionAt(Instant.now())).isEqualTo(2L);
+        assertThatThrownBy(() -> news.versionAt(start.minusSeconds(60)))
+                .isInstanceOf(VersionNotRetainedException.class);
+    }
+
+    @Test
+    @DisplayName("The oldest versions are dropped above the maximum, reading them fails")
+    void findById_droppedVersion_notRetained() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> news = open(3_600_000, 2);
+        for (int i = 1; i <= 4; i++) {
+            news.save(news.findById(1L).toBuilder().title("Change " + i).build());
+        }
+
+        assertThat(news.findById(1L, 2).getTitle()).isEqualTo("Change 2");
+        assertThatThrownBy(() -> news.findById(1L, 1))
+                .isInstanceOf(VersionNotRetainedException.class)
+                .extracting("oldestVersion").isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("A data source without a history does not support reads as of a version")
+    void findById_noHistory_unsupported() {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.COMPACTION_INTERVAL_MS, "0");
+        DataSourceImpl<AuthorModel> authors = new DataSourceImpl<>(
+                "author.json", AuthorModel.class, new AuthorModelCodec(), new DataSourceProperties(properties)
+        );
+        try {
+            assertThat(authors.capabilities()).doesNotContain(DataSource.Capability.HISTORY);
+            assertThatThrownBy(() -> authors.findById(1L, 0)).isInstanceOf(UnsupportedCapabilityException.class);
+            assertThatThrownBy(() -> authors.versionAt(Instant.now()))
+                    .isInstanceOf(UnsupportedCapabilityException.class);
+        } finally {
+            authors.close();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.mjc.school.datasource;
+
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
+import com.mjc.school.model.NewsModel;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("WriteAheadLog")
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    private static NewsModel news(long id, String title) {
+        LocalDateTime date = LocalDateTime.of(2024, 4, 5, 14, 12, 31);
+        return new NewsModel(id, title, title + " content", date, date.plusDays(1), 2L);
+    }
+
+    private static List<String> replay(WriteAheadLog<NewsModel> log) {
+        List<String> operations = new ArrayList<>();
+        log.replay(new WriteAheadLog.Replayer<>() {
+            @Override
+            public void put(NewsModel entity) {
+                operations.add("put " + entity.getId() + " " + entity.getTitle());
+            }
+
+            @Override
+            public void delete(long id) {
+                operations.add("delete " + id);
+            }
+        });
+        return operations;
+    }
+
+    private DataSourceImpl<NewsModel> newsDataSource() {
+        Properties properties = new Properties();
+        properties.setProperty(DataSourceProperties.WAL_DIR, this.directory.toString());
+        return new DataSourceImpl<>(
+                "news.json", NewsModel.class, new NewsModelCodec(), new DataSourceProperties(properties)
+        );
+    }
+
+    @Test
+    @DisplayName("Records are replayed in the order they were appended, entities keep all their fields")
+    void replay_returnsAppendedRecordsInOrder() {
+        Path file = this.directory.resolve("news.wal");
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.ALWAYS, 0)) {
+            assertThat(replay(log)).isEmpty();
+            log.appendPut(news(1L, "First"));
+            log.appendDelete(1L);
+            log.appendPut(news(2L, "Second"));
+        }
+
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.ALWAYS, 0)) {
+            List<NewsModel> entities = new ArrayList<>();
+            log.replay(new WriteAheadLog.Replayer<>() {
+                @Override
+                public void put(NewsModel entity) {
+                    entities.add(entity);
+                }
+
+                @Override
+                public void delete(long id) {
+                }
+            });
+            assertThat(entities).containsExactly(news(1L, "First"), news(2L, "Second"));
+        }
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the log is dropped and the next append follows the last complete one")
+    void replay_tornTail_isCutOff() throws IOException {
+        Path file = this.directory.resolve("news.wal");
+        long completeSize;
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            replay(log);
+            completeSize = log.appendPut(news(1L, "First"));
+            log.appendPut(news(2L, "Second"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(completeSize + 5);
+        }
+
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            assertThat(replay(log)).containsExactly("put 1 First");
+            log.appendDelete(1L);
+        }
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            assertThat(replay(log)).containsExactly("put 1 First", "delete 1");
+        }
+    }
+
+    @Test
+    @DisplayName("A batch is replayed in the order of its mutations, a torn batch is dropped as a whole")
+    void replay_batch_isAllOrNothing() throws IOException {
+        Path file = this.directory.resolve("news.wal");
+        long completeSize;
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            replay(log);
+            completeSize = log.appendBatch(List.of(news(1L, "First"), news(2L, "Second")), List.of(3L));
+            log.appendBatch(List.of(news(4L, "Fourth"), news(5L, "Fifth")), List.of());
+        }
+
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            assertThat(replay(log)).containsExactly(
+                    "put 1 First", "put 2 Second", "delete 3", "put 4 Fourth", "put 5 Fifth"
+            );
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(completeSize + 40);
+        }
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            assertThat(replay(log)).containsExactly("put 1 First", "put 2 Second", "delete 3");
+        }
+    }
+
+    @Test
+    @DisplayName("Records of concurrent batch writers are all durable once their writers return")
+    void awaitDurable_concurrentWriters_allRecordsReplayed() throws Exception {
+        Path file = this.directory.resolve("news.wal");
+        int writers = 8;
+        int recordsPerWriter = 50;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            replay(log);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                long firstId = (long) writer * recordsPerWriter;
+                futures.add(executor.submit(() -> {
+                    for (long id = firstId; id < firstId + recordsPerWriter; id++) {
+                        log.awaitDurable(log.appendPut(news(id, "Title " + id)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (WriteAheadLog<NewsModel> log = new WriteAheadLog<>(file, NewsModel.class, WriteAheadLog.FsyncPolicy.BATCH, 0)) {
+            assertThat(replay(log)).hasSize(writers * recordsPerWriter).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    @DisplayName("Changes of a durable data source survive a restart, the next generated id continues after them")
+    void dataSource_restart_replaysLogOnTopOfDataFile() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> dataSource = newsDataSource();
+        NewsModel added = dataSource.save(news(0L, "Added"));
+        dataSource.save(dataSource.findById(1L).toBuilder().title("Changed").build());
+        dataSource.delete(2L);
+        long expectedCount = dataSource.count();
+        dataSource.close();
+
+        DataSourceImpl<NewsModel> restarted = newsDataSource();
+        try {
+            assertThat(restarted.count()).isEqualTo(expectedCount);
+            assertThat(restarted.findById(added.getId())).isEqualTo(added);
+            assertThat(restarted.findById(1L).getTitle()).isEqualTo("Changed");
+            assertThatThrownBy(() -> restarted.findById(2L)).isInstanceOf(EntityNotFoundException.class);
+            assertThat(restarted.save(news(0L, "Next")).getId()).isGreaterThan(added.getId());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A batch save and a batch delete of a durable data source survive a restart")
+    void dataSource_restart_replaysBatches() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> dataSource = newsDataSource();
+        List<NewsModel> added = dataSource.saveAll(List.of(news(0L, "First added"), news(0L, "Second added")));
+        dataSource.deleteAllById(List.of(1L, 2L));
+        long expectedCount = dataSource.count();
+        dataSource.close();
+
+        DataSourceImpl<NewsModel> restarted = newsDataSource();
+        try {
+            assertThat(restarted.count()).isEqualTo(expectedCount);
+            assertThat(restarted.findById(added.get(0).getId())).isEqualTo(added.get(0));
+            assertThat(restarted.findById(added.get(1).getId())).isEqualTo(added.get(1));
+            assertThat(restarted.existsById(1L)).isFalse();
+            assertThat(restarted.existsById(2L)).isFalse();
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A generated id is not reused after a restart, even if its entity was deleted")
+    void dataSource_restart_generatedIdsNotReused() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> dataSource = newsDataSource();
+        NewsModel added = dataSource.save(news(0L, "Added"));
+        dataSource.delete(added.getId());
+        dataSource.close();
+
+        DataSourceImpl<NewsModel> restarted = newsDataSource();
+        try {
+            assertThat(restarted.save(news(0L, "Next")).getId()).isGreaterThan(added.getId());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    @DisplayName("A generated id already taken by a caller-supplied id is skipped")
+    void dataSource_generatedIdTaken_nextIdUsed() throws CustomRepositoryException {
+        DataSourceImpl<NewsModel> dataSource = newsDataSource();
+        try {
+            long generated = dataSource.save(news(0L, "Generated")).getId();
+            dataSource.save(news(generated + 1, "Supplied"));
+
+            NewsModel next = dataSource.save(news(0L, "Next"));
+
+            assertThat(next.getId()).isGreaterThan(generated + 1);
+            assertThat(dataSource.findById(generated + 1).getTitle()).isEqualTo("Supplied");
+        } finally {
+            dataSource.close();
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.mjc.school.repository.impl;
 
 import com.mjc.school.datasource.DataSource;
 import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.exception.EntityNullReferenceException;
 import com.mjc.school.exception.EntityValidationException;
 import com.mjc.school.exception.KeyNullReferenceException;
 import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
 import com.mjc.school.repository.Repository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,6 +18,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -75,6 +78,82 @@ class NewsModelRepositoryTest {
         Mockito.verify(dataSource, Mockito.times(1)).delete(newsModelForDelete.getId());
     }
 
+    @Test
+    @DisplayName("The search index is built on the first search and follows later updates and deletes")
+    void search_afterUpdateAndDelete_indexFollowsDataSource() throws CustomRepositoryException {
+        LocalDateTime now = LocalDateTime.of(2024, 4, 12, 9, 57, 1);
+        NewsModel weather = new NewsModel(1L, "Weather today", "Sunny and warm", now, now, 1L);
+        NewsModel sports = new NewsModel(2L, "Football results", "The home team won", now, now, 1L);
+        NewsModel rain = new NewsModel(3L, "Rain tomorrow", "Weather turns cold", now, now, 2L);
+        Mockito.when(dataSource.findAll()).thenReturn(List.of(weather, sports, rain));
+        Mockito.when(dataSource.findById(1L)).thenReturn(weather);
+        Mockito.when(dataSource.findById(3L)).thenReturn(rain);
+        Mockito.when(dataSource.existsById(Mockito.anyLong())).thenReturn(true);
+
+        Page<NewsModel> page = repository.search("weather", 0, -1);
+
+        assertThat(page.items()).containsExactly(weather, rain);
+        assertThat(page.totalCount()).isEqualTo(2);
+
+        NewsModel changedSports = sports.toBuilder().content("Weather stopped the match").build();
+        Mockito.when(dataSource.save(changedSports)).thenReturn(changedSports);
+        Mockito.when(dataSource.findById(2L)).thenReturn(changedSports);
+        repository.update(changedSports);
+        Mockito.when(dataSource.delete(1L)).thenReturn(true);
+        Mockito.when(dataSource.findById(1L)).thenThrow(new EntityNotFoundException(1L, NewsModel.class));
+        repository.delete(1L);
+
+        assertThat(repository.search("WEATHER match", 0, 1).items()).containsExactly(changedSports);
+        assertThat(repository.search("weather", 0, -1).totalCount()).isEqualTo(2);
+        Mockito.verify(dataSource, Mockito.times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("A news deleted from the data source but still in the search index is neither returned nor counted")
+    void search_newsMissingFromDataSource_notCounted() throws CustomRepositoryException {
+        LocalDateTime now = LocalDateTime.of(2024, 4, 12, 9, 57, 1);
+        NewsModel weather = new NewsModel(1L, "Weather today", "Sunny and warm", now, now, 1L);
+        NewsModel rain = new NewsModel(2L, "Rain tomorrow", "Weather turns cold", now, now, 2L);
+        NewsModel storm = new NewsModel(3L, "Storm warning", "Weather alert", now, now, 2L);
+        Mockito.when(dataSource.findAll()).thenReturn(List.of(weather, rain, storm));
+        Mockito.when(dataSource.existsById(1L)).thenReturn(true);
+        Mockito.when(dataSource.existsById(2L)).thenReturn(false);
+        Mockito.when(dataSource.existsById(3L)).thenReturn(true);
+        Mockito.when(dataSource.findById(3L)).thenReturn(storm);
+
+        Page<NewsModel> page = repository.search("weather", 1, 1);
+
+        assertThat(page.items()).containsExactly(storm);
+        assertThat(page.totalCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("A news saved while the search index is built does not wait for the build and is indexed after it")
+    void search_saveDuringBuild_indexedAfterBuild() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2024, 4, 12, 9, 57, 1);
+        NewsModel sports = new NewsModel(1L, "Football results", "The home team won", now, now, 1L);
+        NewsModel changedSports = sports.toBuilder().content("Weather stopped the match").build();
+        Mockito.when(dataSource.save(changedSports)).thenReturn(changedSports);
+        Mockito.when(dataSource.findById(1L)).thenReturn(changedSports);
+        Thread writer = new Thread(() -> {
+            try {
+                repository.update(changedSports);
+            } catch (CustomRepositoryException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Mockito.when(dataSource.existsById(1L)).thenReturn(true);
+        Mockito.when(dataSource.findAll()).thenAnswer(invocation -> {
+            writer.start();
+            writer.join();
+            return List.of(sports);
+        });
+
+        repository.search("weather", 0, -1);
+
+        assertThat(repository.search("weather", 0, -1).items()).containsExactly(changedSports);
+    }
+
     @Test
     @DisplayName("When trying to create a Null object, an EntityNullReferenceException exception will be thrown")
     void create_entityNullReference_throwsEntityNullReferenceException() {
@@ -126,4 +205,19 @@ class NewsModelRepositoryTest {
         );
         assertThatThrownBy(() -> repository.update(newsModel)).isInstanceOf(EntityValidationException.class);
     }
+
+    @Test
+    @DisplayName("If one entity of a batch is invalid, nothing is saved and the message points at that entity")
+    void createAll_oneEntityNotValidated_nothingSaved() {
+        LocalDateTime date = LocalDateTime.of(2024, 4, 5, 14, 12, 31);
+        List<NewsModel> batch = List.of(
+                new NewsModel(0L, "Valid title", "Valid content", date, date, 1L),
+                new NewsModel(0L, "12", "Valid content", date, date, 1L)
+        );
+
+        assertThatThrownBy(() -> repository.createAll(batch))
+                .isInstanceOf(EntityValidationException.class)
+                .hasMessageContaining("[1].title");
+        Mockito.verifyNoInteractions(dataSource);
+    }
 }
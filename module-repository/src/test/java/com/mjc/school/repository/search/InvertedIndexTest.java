@@ -0,0 +1,111 @@
+package com.mjc.school.repository.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("InvertedIndex")
+class InvertedIndexTest {
+
+    @Test
+    @DisplayName("Terms are case-insensitive runs of letters and digits")
+    void tokenize_punctuationAndCase_splitAndLowerCased() {
+        assertThat(Tokenizer.tokenize("Hello, World! COVID-19 Ünïcode_text"))
+                .containsExactly("hello", "world", "covid", "19", "ünïcode", "text");
+        assertThat(Tokenizer.tokenize(null)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Results are ranked by BM25, a title match weighs more than a content match")
+    void search_titleAndContent_rankedByWeightedFrequency() {
+        InvertedIndex index = new InvertedIndex(2, 1);
+        index.put(1L, "Local news", "The weather is fine");
+        index.put(2L, "Weather report", "Sunny all day");
+        index.put(3L, "Sports", "Football results");
+        index.put(4L, "Weather warning", "Storm and weather alerts");
+
+        InvertedIndex.SearchResult result = index.search("weather", 0, -1);
+
+        assertThat(result.ids()).containsExactly(4L, 2L, 1L);
+        assertThat(result.totalCount()).isEqualTo(3);
+        assertThat(index.search("weather storm", 0, 1).ids()).containsExactly(4L);
+        assertThat(index.search("weather", 1, 1).ids()).containsExactly(2L);
+        assertThat(index.search("weather", 5, 1).ids()).isEmpty();
+        assertThat(index.search("unknown ...", 0, -1).totalCount()).isZero();
+        assertThatThrownBy(() -> index.put(5L, "Only title")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Updates and removals are searchable at once and survive the compaction of removed documents")
+    void putAndRemove_manyUpdates_sameMatchesAsScan() {
+        InvertedIndex index = new InvertedIndex(1);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(11);
+        List<String> words = List.of("alpha", "beta", "gamma", "delta", "omega");
+        for (int i = 0; i < 5000; i++) {
+            long id = random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                String text = words.get(random.nextInt(words.size())) + " " + words.get(random.nextInt(words.size()));
+                index.put(id, text);
+                expected.put(id, text);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (String word : words) {
+            List<Long> matching = expected.entrySet().stream()
+                    .filter(entry -> entry.getValue().contains(word))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            InvertedIndex.SearchResult result = index.search(word, 0, -1);
+            assertThat(result.ids()).containsExactlyInAnyOrderElementsOf(matching);
+            assertThat(result.totalCount()).isEqualTo(matching.size());
+        }
+
+        index.clear();
+        assertThat(index.search("alpha", 0, -1).ids()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Postings whose gap or frequency does not fit into one int are read back unchanged")
+    void postings_largeGapAndFrequency_readBackUnchanged() {
+        PostingsList postings = new PostingsList();
+        int[][] added = {{0, 1}, {1, 255}, {2, 256}, {1 << 24, 3}, {(1 << 24) + 1, 7}, {Integer.MAX_VALUE, 1 << 20}};
+        for (int[] posting : added) {
+            postings.add(posting[0], posting[1]);
+        }
+
+        PostingsList.Cursor cursor = postings.cursor();
+        for (int[] posting : added) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.document()).isEqualTo(posting[0]);
+            assertThat(cursor.frequency()).isEqualTo(posting[1]);
+        }
+        assertThat(cursor.next()).isFalse();
+        assertThat(postings.documentCount()).isEqualTo(added.length);
+    }
+
+    @Test
+    @DisplayName("Matches rejected by the filter are neither returned nor counted")
+    void search_filter_appliedBeforePaging() {
+        InvertedIndex index = new InvertedIndex(1);
+        index.put(1L, "weather weather weather");
+        index.put(2L, "weather weather");
+        index.put(3L, "weather");
+
+        InvertedIndex.SearchResult result = index.search("weather", 0, 1, id -> id != 1L);
+
+        assertThat(result.ids()).containsExactly(2L);
+        assertThat(result.totalCount()).isEqualTo(2);
+    }
+}
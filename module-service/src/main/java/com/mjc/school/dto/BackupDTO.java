@@ -0,0 +1,17 @@
+package com.mjc.school.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Backup of the news and authors, {@code name} identifies it for a restore
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BackupDTO {
+    private final String name;
+    private final long newsCount;
+    private final long authorCount;
+}
@@ -0,0 +1,19 @@
+package com.mjc.school.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Page of a keyset paging, {@code nextAfterId} is the id to read the next page after, null if this is the last page
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private final List<T> items;
+    private final long totalItemCount;
+    private final Long nextAfterId;
+}
@@ -1,6 +1,7 @@
 package com.mjc.school.dto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
@@ -11,7 +12,6 @@ import java.util.Objects;
 @Getter
 @Setter
 @ToString
-@AllArgsConstructor
 @NoArgsConstructor
 public class NewsDTO {
     @JsonProperty("id")
@@ -38,6 +38,23 @@ public class NewsDTO {
     @JsonProperty("author")
     private AuthorDTO author;
 
+    /**
+     * Version of the news the DTO was read from, sent as the entity tag of the news rather than in the body
+     */
+    @JsonIgnore
+    private long version;
+
+    public NewsDTO(
+            Long id, String title, String content, String createDate, String lastUpdateDate, AuthorDTO author
+    ) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.createDate = createDate;
+        this.lastUpdateDate = lastUpdateDate;
+        this.author = author;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(id, title, content, createDate, lastUpdateDate);
@@ -0,0 +1,16 @@
+package com.mjc.school.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Timestamps of news by which a page of news can be ordered and filtered
+ */
+@Getter
+@AllArgsConstructor
+public enum NewsTimestamp {
+    CREATE_DATE("createDate"),
+    LAST_UPDATE_DATE("lastUpdateDate");
+
+    private final String propertyName;
+}
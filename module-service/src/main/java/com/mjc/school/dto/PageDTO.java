@@ -0,0 +1,15 @@
+package com.mjc.school.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class PageDTO<T> {
+    private final List<T> items;
+    private final long totalItemCount;
+}
@@ -0,0 +1,18 @@
+package com.mjc.school.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.stream.Stream;
+
+/**
+ * Page whose items are produced lazily while the stream is consumed, the stream can be consumed once
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StreamPageDTO<T> {
+    private final Stream<T> items;
+    private final long totalItemCount;
+}
@@ -0,0 +1,9 @@
+package com.mjc.school.exception;
+
+public class BackupFailedServiceException extends CustomServiceException {
+    private static final String MESSAGE_TEMPLATE = "The %s of the backup with name %s failed: %s";
+
+    public BackupFailedServiceException(String operation, String name, Throwable throwable) {
+        super(String.format(MESSAGE_TEMPLATE, operation, name, throwable.getMessage()), throwable);
+    }
+}
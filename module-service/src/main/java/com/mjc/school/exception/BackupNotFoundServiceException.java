@@ -0,0 +1,9 @@
+package com.mjc.school.exception;
+
+public class BackupNotFoundServiceException extends CustomServiceException {
+    private static final String MESSAGE_TEMPLATE = "Not found backup with name %s";
+
+    public BackupNotFoundServiceException(String name) {
+        super(String.format(MESSAGE_TEMPLATE, name));
+    }
+}
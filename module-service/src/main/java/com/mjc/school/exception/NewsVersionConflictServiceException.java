@@ -0,0 +1,10 @@
+package com.mjc.school.exception;
+
+public class NewsVersionConflictServiceException extends CustomServiceException {
+    private static final String MESSAGE_TEMPLATE =
+            "News with id %d has been changed since version %d, read it again and repeat the update";
+
+    public NewsVersionConflictServiceException(long id, long expectedVersion) {
+        super(String.format(MESSAGE_TEMPLATE, id, expectedVersion));
+    }
+}
@@ -0,0 +1,12 @@
+package com.mjc.school.exception;
+
+public class NotSupportedServiceException extends CustomServiceException {
+    private static final String MESSAGE_TEMPLATE = "The data source does not support %s";
+
+    /**
+     * @param feature the optional feature of the data source, e.g. "backups"
+     */
+    public NotSupportedServiceException(String feature) {
+        super(String.format(MESSAGE_TEMPLATE, feature));
+    }
+}
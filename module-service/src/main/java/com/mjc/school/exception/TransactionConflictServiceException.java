@@ -0,0 +1,10 @@
+package com.mjc.school.exception;
+
+public class TransactionConflictServiceException extends CustomServiceException {
+    private static final String MESSAGE_TEMPLATE =
+            "The data the news depends on kept changing during %d attempts to save it, repeat the request";
+
+    public TransactionConflictServiceException(int attempts) {
+        super(String.format(MESSAGE_TEMPLATE, attempts));
+    }
+}
@@ -0,0 +1,7 @@
+package com.mjc.school.exception;
+
+public class VersionNotRetainedServiceException extends CustomServiceException {
+    public VersionNotRetainedServiceException(String message) {
+        super(message);
+    }
+}
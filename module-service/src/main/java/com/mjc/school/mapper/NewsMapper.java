@@ -16,20 +16,18 @@ public class NewsMapper {
         DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
         Converter<LocalDateTime, String> localDateTimeToStringConverter = ctx -> ctx.getSource() == null ? null : ctx.getSource().format(dateTimeFormatter);
-        Converter<String, LocalDateTime> stringToLocalDateTimeConverter = ctx -> ctx.getSource() == null ? null : LocalDateTime.from(dateTimeFormatter.parse(ctx.getSource()));
 
         modelMapper.addConverter(localDateTimeToStringConverter);
-        modelMapper.addConverter(stringToLocalDateTimeConverter);
-
-        modelMapper.typeMap(EditNewsRequestDTO.class, NewsModel.class).addMappings(mapper -> mapper.skip(NewsModel::setId));
-        modelMapper.typeMap(EditNewsRequestDTO.class, NewsModel.class).addMappings(mapper -> mapper.skip(NewsModel::setCreateDate));
-        modelMapper.typeMap(EditNewsRequestDTO.class, NewsModel.class).addMappings(mapper -> mapper.skip(NewsModel::setLastUpdateDate));
     }
 
     private NewsMapper() {}
 
     public static NewsModel fromEditNewsRequestDTO(EditNewsRequestDTO dto) {
-        return dto == null ? null : modelMapper.map(dto, NewsModel.class);
+        return dto == null ? null : NewsModel.builder()
+                .title(dto.getTitle())
+                .content(dto.getContent())
+                .authorId(dto.getAuthorId())
+                .build();
     }
 
     public static NewsDTO toNewsDTO(NewsModel newsModel) {
@@ -3,11 +3,18 @@ package com.mjc.school.service;
 import com.mjc.school.dto.AuthorDTO;
 import com.mjc.school.exception.AuthorNotFoundServiceException;
 import com.mjc.school.exception.NullAuthorIdServiceException;
+import com.mjc.school.repository.RepositoryTransaction;
 
 import java.util.Map;
 
 public interface AuthorService {
     boolean existsById(Long id) throws AuthorNotFoundServiceException;
+
+    /**
+     * Same as {@link #existsById(Long)} within the transaction, its commit fails if the author is added or deleted
+     * in between
+     */
+    boolean existsById(RepositoryTransaction transaction, Long id) throws AuthorNotFoundServiceException;
     AuthorDTO readById(Long id) throws NullAuthorIdServiceException, AuthorNotFoundServiceException;
     Map<Long, AuthorDTO> readMap();
 }
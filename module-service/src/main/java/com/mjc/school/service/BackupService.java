@@ -0,0 +1,29 @@
+package com.mjc.school.service;
+
+import com.mjc.school.dto.BackupDTO;
+import com.mjc.school.exception.BackupFailedServiceException;
+import com.mjc.school.exception.BackupNotFoundServiceException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.NotSupportedServiceException;
+
+/**
+ * Online backups of the news and authors. A backup is taken while the news and authors keep changing: each of them is
+ * written as one version of its data source, but the two versions are not taken at the same moment.
+ */
+public interface BackupService {
+    /**
+     * @param name name of the backup of letters, digits, '-' and '_', null to name it after the current time. A backup
+     *             with the same name is replaced.
+     * @throws NotSupportedServiceException if the data source of the news or of the authors cannot be backed up
+     */
+    BackupDTO backup(String name)
+            throws DTOValidationServiceException, BackupFailedServiceException, NotSupportedServiceException;
+
+    /**
+     * Replaces all the news and authors with the ones of the backup, the authors first
+     *
+     * @throws NotSupportedServiceException if the data source of the news or of the authors cannot be restored
+     */
+    BackupDTO restore(String name) throws DTOValidationServiceException, BackupNotFoundServiceException,
+            BackupFailedServiceException, NotSupportedServiceException;
+}
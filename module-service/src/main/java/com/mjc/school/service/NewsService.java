@@ -1,23 +1,111 @@
 package com.mjc.school.service;
 
+import com.mjc.school.dto.CursorPageDTO;
 import com.mjc.school.dto.EditNewsRequestDTO;
 import com.mjc.school.dto.NewsDTO;
+import com.mjc.school.dto.NewsTimestamp;
+import com.mjc.school.dto.PageDTO;
+import com.mjc.school.dto.StreamPageDTO;
 import com.mjc.school.exception.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface NewsService {
-    NewsDTO create(EditNewsRequestDTO newsDTO) throws DTOValidationServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, NewsNotFoundServiceException, NullNewsIdServiceException;
-    NewsDTO update(EditNewsRequestDTO newsDTO) throws DTOValidationServiceException, NullNewsIdServiceException, NewsNotFoundServiceException, NullAuthorIdServiceException, AuthorNotFoundServiceException;
+    /**
+     * The check that the author exists and the save of the news are one transaction, the news is not saved if the
+     * author is deleted in between
+     */
+    NewsDTO create(EditNewsRequestDTO newsDTO) throws DTOValidationServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, NewsNotFoundServiceException, NullNewsIdServiceException, TransactionConflictServiceException;
+
+    /**
+     * Creates all the news at once: every item is validated and its author checked before any of them is saved, an
+     * invalid item fails the whole batch. The check of the authors and the save of the news are one transaction, like
+     * in {@link #create(EditNewsRequestDTO)}. The news get consecutive ids in the given order.
+     *
+     * @return the created news in the given order
+     */
+    List<NewsDTO> createAll(List<EditNewsRequestDTO> newsDTOList) throws DTOValidationServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, TransactionConflictServiceException;
+    NewsDTO update(EditNewsRequestDTO newsDTO) throws DTOValidationServiceException, NullNewsIdServiceException, NewsNotFoundServiceException, NullAuthorIdServiceException, AuthorNotFoundServiceException, NewsVersionConflictServiceException, TransactionConflictServiceException;
+
+    /**
+     * Same as {@link #update(EditNewsRequestDTO)}, but only if the news still has the expected version, i.e. it has not
+     * been changed since the caller read it. The version of a news is {@link NewsDTO#getVersion()}.
+     *
+     * @param expectedVersion version the news was read with, null to update whatever the current version is
+     * @throws NewsVersionConflictServiceException if the news has another version than the expected one
+     * @throws TransactionConflictServiceException if other writers kept changing the news or its author
+     */
+    NewsDTO update(EditNewsRequestDTO newsDTO, Long expectedVersion) throws DTOValidationServiceException, NullNewsIdServiceException, NewsNotFoundServiceException, NullAuthorIdServiceException, AuthorNotFoundServiceException, NewsVersionConflictServiceException, TransactionConflictServiceException;
     NewsDTO readById(Long id) throws NullNewsIdServiceException, NewsNotFoundServiceException, NullAuthorIdServiceException, AuthorNotFoundServiceException;
     List<NewsDTO> readAll() throws AuthorNotFoundServiceException;
 
+    /**
+     * The versions of the news catalog are kept for a configured time, a catalog read as of one version stays the
+     * same however the news change afterwards
+     *
+     * @return the version of the news catalog that was current at the time
+     * @throws VersionNotRetainedServiceException if the versions of that time are no longer kept
+     * @throws NotSupportedServiceException if the data source of the news keeps no history
+     */
+    long versionAt(LocalDateTime time) throws VersionNotRetainedServiceException, NotSupportedServiceException;
+
+    /**
+     * Same as {@link #readById(Long)} as of a version of the news catalog, see {@link #versionAt(LocalDateTime)}. The
+     * author is the current one.
+     */
+    NewsDTO readById(Long id, long version) throws NullNewsIdServiceException, NewsNotFoundServiceException, NullAuthorIdServiceException, AuthorNotFoundServiceException, DTOValidationServiceException, VersionNotRetainedServiceException, NotSupportedServiceException;
+
+    /**
+     * Same as {@link #readById(Long, long)} for a page of the news in the order of {@link #readAll()}
+     *
+     * @param limit maximum number of news to return, -1 means all the news
+     */
+    List<NewsDTO> readAll(long offset, long limit, long version) throws AuthorNotFoundServiceException, DTOValidationServiceException, VersionNotRetainedServiceException, NotSupportedServiceException;
+
     /**
      * @param offset number of news to skip. If the value is zero, the news items will be taken from the first one
      * @param limit number of news no more than the method should return. If the value of "limit" parameter is -1, all the news items of the dataset will be returned
-     * @return list of news
+     * @return page of news and the total number of news, both taken from the same state of the dataset
+     */
+    PageDTO<NewsDTO> readPage(long offset, long limit) throws AuthorNotFoundServiceException;
+
+    /**
+     * Same as {@link #readPage(long, long)} without a limit, each news is read and mapped only when the stream reaches
+     * it, so the whole list is never held in memory. The authors are read once before the stream is returned, a news
+     * whose author is missing fails the stream with an {@link IllegalStateException}. That failure comes after the
+     * stream is returned, so it cannot be reported the way {@link #readPage(long, long)} reports a missing author.
+     */
+    StreamPageDTO<NewsDTO> streamPage(long offset) throws AuthorNotFoundServiceException;
+
+    /**
+     * Keyset paging of news in ascending id order. A page costs O(limit) wherever it is, and news added or deleted
+     * between two requests neither repeat nor skip the news of the following pages.
+     *
+     * @param lastId {@link CursorPageDTO#getNextAfterId()} of the previous page, 0 for the first page
+     * @param limit maximum number of news to return, -1 means all the following news
+     */
+    CursorPageDTO<NewsDTO> readPageAfter(long lastId, long limit) throws AuthorNotFoundServiceException;
+
+    /**
+     * Same as {@link #readPage(long, long)} for the news of one author. An author without news, including an unknown
+     * one, gives an empty page.
+     */
+    PageDTO<NewsDTO> findByAuthorId(Long authorId, long offset, long limit) throws NullAuthorIdServiceException, AuthorNotFoundServiceException;
+
+    /**
+     * Same as {@link #readPage(long, long)} for the news whose timestamp is within {@code [from, to)}, ordered by that
+     * timestamp. Null bounds are open.
+     *
+     * @param descending whether the page is taken from the latest news backwards
+     */
+    PageDTO<NewsDTO> readPageByTime(NewsTimestamp timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit) throws AuthorNotFoundServiceException;
+
+    /**
+     * Full-text search over the title and the content of news, best matches first. A news matches if it contains any
+     * of the words of the query, a query without words matches nothing.
      */
-    List<NewsDTO> readPage(long offset, long limit) throws AuthorNotFoundServiceException;
+    PageDTO<NewsDTO> search(String query, long offset, long limit) throws AuthorNotFoundServiceException;
     Boolean deleteById(Long id) throws NullNewsIdServiceException, NewsNotFoundServiceException;
     long count();
 }
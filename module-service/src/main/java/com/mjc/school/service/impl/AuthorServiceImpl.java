@@ -8,6 +8,7 @@ import com.mjc.school.exception.NullAuthorIdServiceException;
 import com.mjc.school.mapper.AuthorMapper;
 import com.mjc.school.model.AuthorModel;
 import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryTransaction;
 import com.mjc.school.service.AuthorService;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
@@ -39,6 +40,15 @@ public class AuthorServiceImpl implements AuthorService {
         }
     }
 
+    @Override
+    public boolean existsById(RepositoryTransaction transaction, Long id) throws AuthorNotFoundServiceException {
+        try {
+            return this.authorRepository.existsById(transaction, id);
+        } catch (KeyNullReferenceException e) {
+            throw new AuthorNotFoundServiceException(id);
+        }
+    }
+
     @Override
     public AuthorDTO readById(Long id) throws NullAuthorIdServiceException, AuthorNotFoundServiceException {
         AuthorModel authorModel;
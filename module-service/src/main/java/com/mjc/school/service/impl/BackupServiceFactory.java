@@ -0,0 +1,18 @@
+package com.mjc.school.service.impl;
+
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.repository.RepositoryFactory;
+import com.mjc.school.service.BackupService;
+
+public class BackupServiceFactory {
+    private BackupServiceFactory() {}
+
+    public static BackupService backupService() {
+        return new BackupServiceImpl(
+                RepositoryFactory.getRepository(NewsModel.class),
+                RepositoryFactory.getRepository(AuthorModel.class),
+                RepositoryFactory.getBackupDirectory()
+        );
+    }
+}
@@ -0,0 +1,98 @@
+package com.mjc.school.service.impl;
+
+import com.mjc.school.dto.BackupDTO;
+import com.mjc.school.exception.BackupFailedServiceException;
+import com.mjc.school.exception.BackupNotFoundServiceException;
+import com.mjc.school.exception.CustomRepositoryRuntimeException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.NotSupportedServiceException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.repository.Repository;
+import com.mjc.school.service.BackupService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Pattern;
+
+/**
+ * A backup is a directory named after it holding one file per data source
+ */
+public class BackupServiceImpl implements BackupService {
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final DateTimeFormatter DEFAULT_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final String NEWS_FILE_NAME = "news.backup";
+    private static final String AUTHOR_FILE_NAME = "author.backup";
+
+    private final Repository<NewsModel> newsRepository;
+    private final Repository<AuthorModel> authorRepository;
+    private final Path directory;
+
+    public BackupServiceImpl(
+            Repository<NewsModel> newsRepository, Repository<AuthorModel> authorRepository, Path directory
+    ) {
+        this.newsRepository = newsRepository;
+        this.authorRepository = authorRepository;
+        this.directory = directory;
+    }
+
+    /**
+     * The news are written first: a news added after them may refer to an author added after them too, but not the
+     * other way round, so the authors of the news written are in the backup unless they were deleted in between
+     */
+    @Override
+    public BackupDTO backup(String name)
+            throws DTOValidationServiceException, BackupFailedServiceException, NotSupportedServiceException {
+        String backupName = name == null ? LocalDateTime.now().format(DEFAULT_NAME_FORMAT) : validName(name);
+        requireBackups();
+        Path backupDirectory = this.directory.resolve(backupName);
+        try {
+            long newsCount = this.newsRepository.backup(backupDirectory.resolve(NEWS_FILE_NAME));
+            long authorCount = this.authorRepository.backup(backupDirectory.resolve(AUTHOR_FILE_NAME));
+            return new BackupDTO(backupName, newsCount, authorCount);
+        } catch (CustomRepositoryRuntimeException e) {
+            throw new BackupFailedServiceException("backup", backupName, e);
+        }
+    }
+
+    @Override
+    public BackupDTO restore(String name) throws DTOValidationServiceException, BackupNotFoundServiceException,
+            BackupFailedServiceException, NotSupportedServiceException {
+        String backupName = validName(name);
+        requireBackups();
+        Path newsFile = this.directory.resolve(backupName).resolve(NEWS_FILE_NAME);
+        Path authorFile = this.directory.resolve(backupName).resolve(AUTHOR_FILE_NAME);
+        if (!Files.exists(newsFile) || !Files.exists(authorFile)) {
+            throw new BackupNotFoundServiceException(backupName);
+        }
+        try {
+            long authorCount = this.authorRepository.restore(authorFile);
+            long newsCount = this.newsRepository.restore(newsFile);
+            return new BackupDTO(backupName, newsCount, authorCount);
+        } catch (CustomRepositoryRuntimeException e) {
+            throw new BackupFailedServiceException("restore", backupName, e);
+        }
+    }
+
+    /**
+     * Both data sources are checked before either is written, so a backend without backups does not leave a backup or
+     * a restore half done
+     */
+    private void requireBackups() throws NotSupportedServiceException {
+        if (!this.newsRepository.supports(Repository.Capability.BACKUP)
+                || !this.authorRepository.supports(Repository.Capability.BACKUP)) {
+            throw new NotSupportedServiceException(Repository.Capability.BACKUP.getDescription());
+        }
+    }
+
+    private static String validName(String name) throws DTOValidationServiceException {
+        if (name == null || !NAME_PATTERN.matcher(name).matches()) {
+            throw new DTOValidationServiceException(
+                    "name: must be 1 to 64 letters, digits, '-' or '_', but was " + name
+            );
+        }
+        return name;
+    }
+}
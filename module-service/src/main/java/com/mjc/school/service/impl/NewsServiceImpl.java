@@ -1,12 +1,19 @@
 package com.mjc.school.service.impl;
 
 import com.mjc.school.dto.AuthorDTO;
+import com.mjc.school.dto.CursorPageDTO;
 import com.mjc.school.dto.EditNewsRequestDTO;
 import com.mjc.school.dto.NewsDTO;
+import com.mjc.school.dto.NewsTimestamp;
+import com.mjc.school.dto.PageDTO;
+import com.mjc.school.dto.StreamPageDTO;
 import com.mjc.school.exception.*;
 import com.mjc.school.mapper.NewsMapper;
 import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
 import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryTransaction;
 import com.mjc.school.service.AuthorService;
 import com.mjc.school.service.NewsService;
 import jakarta.validation.ConstraintViolation;
@@ -15,13 +22,20 @@ import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class NewsServiceImpl implements NewsService {
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int MAX_UPDATE_ATTEMPTS = 8;
+
     private final Repository<NewsModel> newsRepository;
     private final AuthorService authorService;
     private static final Validator validator;
@@ -40,33 +54,147 @@ class NewsServiceImpl implements NewsService {
         this.authorService = authorService;
     }
 
+    /**
+     * A conflicting change of the author makes the creation check the author again, up to
+     * {@value #MAX_UPDATE_ATTEMPTS} times
+     */
     @Override
     public NewsDTO create(
             EditNewsRequestDTO newsDTO
-    ) throws DTOValidationServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, NewsNotFoundServiceException, NullNewsIdServiceException {
+    ) throws DTOValidationServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, NewsNotFoundServiceException, NullNewsIdServiceException, TransactionConflictServiceException {
         validateDTO(newsDTO);
 
-        if (!authorService.existsById(newsDTO.getAuthorId())) {
-            throw new AuthorNotFoundServiceException(newsDTO.getAuthorId());
-        }
+        LocalDateTime now = LocalDateTime.now();
+        NewsModel newsModel = NewsMapper.fromEditNewsRequestDTO(newsDTO).toBuilder()
+                .createDate(now)
+                .lastUpdateDate(now)
+                .build();
 
-        NewsModel newsModel = NewsMapper.fromEditNewsRequestDTO(newsDTO);
-        newsModel.setCreateDate(LocalDateTime.now());
-        newsModel.setLastUpdateDate(newsModel.getCreateDate());
+        for (int attempt = 1; ; attempt++) {
+            RepositoryTransaction transaction = RepositoryTransaction.begin();
+            if (!authorService.existsById(transaction, newsDTO.getAuthorId())) {
+                throw new AuthorNotFoundServiceException(newsDTO.getAuthorId());
+            }
 
-        try {
-            newsModel = newsRepository.create(newsModel);
-        } catch (EntityValidationException | EntityNullReferenceException e) {
-            throw new DTOValidationServiceException(e.getMessage());
+            Supplier<NewsModel> created;
+            try {
+                created = newsRepository.create(transaction, newsModel);
+            } catch (EntityValidationException | EntityNullReferenceException e) {
+                throw new DTOValidationServiceException(e.getMessage());
+            }
+
+            try {
+                transaction.commit();
+                newsModel = created.get();
+                break;
+            } catch (TransactionConflictException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw new TransactionConflictServiceException(attempt);
+                }
+            }
         }
 
         return readById(newsModel.getId());
     }
 
+    /**
+     * Same as {@link #create(EditNewsRequestDTO)} for all the news in one transaction: the authors are checked again
+     * when another writer changes one of them
+     */
+    @Override
+    public List<NewsDTO> createAll(List<EditNewsRequestDTO> newsDTOList) throws DTOValidationServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, TransactionConflictServiceException {
+        if (newsDTOList == null) {
+            throw new DTOValidationServiceException("Passed a null list as the news to add");
+        }
+        if (newsDTOList.isEmpty() || newsDTOList.size() > MAX_BATCH_SIZE) {
+            throw new DTOValidationServiceException(
+                    String.format("Expected 1 to %d news to add, got %d", MAX_BATCH_SIZE, newsDTOList.size())
+            );
+        }
+
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < newsDTOList.size(); i++) {
+            try {
+                validateDTO(newsDTOList.get(i));
+            } catch (DTOValidationServiceException e) {
+                messages.add("[" + i + "]: " + e.getMessage());
+            }
+        }
+        if (!messages.isEmpty()) {
+            throw new DTOValidationServiceException(String.join("; ", messages));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<NewsModel> newsModels = new ArrayList<>(newsDTOList.size());
+        for (EditNewsRequestDTO newsDTO : newsDTOList) {
+            newsModels.add(
+                    NewsMapper.fromEditNewsRequestDTO(newsDTO).toBuilder()
+                            .createDate(now)
+                            .lastUpdateDate(now)
+                            .build()
+            );
+        }
+
+        Set<Long> authorIds = newsModels.stream().map(NewsModel::getAuthorId).collect(Collectors.toSet());
+        for (int attempt = 1; ; attempt++) {
+            RepositoryTransaction transaction = RepositoryTransaction.begin();
+            for (Long authorId : authorIds) {
+                if (!authorService.existsById(transaction, authorId)) {
+                    throw new AuthorNotFoundServiceException(authorId);
+                }
+            }
+
+            List<Supplier<NewsModel>> saved = new ArrayList<>(newsModels.size());
+            try {
+                for (NewsModel newsModel : newsModels) {
+                    saved.add(newsRepository.create(transaction, newsModel));
+                }
+            } catch (EntityValidationException | EntityNullReferenceException e) {
+                throw new DTOValidationServiceException(e.getMessage());
+            }
+
+            try {
+                transaction.commit();
+                newsModels = saved.stream().map(Supplier::get).toList();
+                break;
+            } catch (TransactionConflictException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw new TransactionConflictServiceException(attempt);
+                }
+            }
+        }
+
+        Map<Long, AuthorDTO> authors = new HashMap<>();
+        for (Long authorId : authorIds) {
+            authors.put(authorId, this.authorService.readById(authorId));
+        }
+        List<NewsDTO> created = new ArrayList<>(newsModels.size());
+        for (NewsModel newsModel : newsModels) {
+            NewsDTO newsDTO = NewsMapper.toNewsDTO(newsModel);
+            newsDTO.setAuthor(authors.get(newsModel.getAuthorId()));
+            created.add(newsDTO);
+        }
+        return created;
+    }
+
     @Override
     public NewsDTO update(
             EditNewsRequestDTO newsDTO
-    ) throws DTOValidationServiceException, NullNewsIdServiceException, NewsNotFoundServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException {
+    ) throws DTOValidationServiceException, NullNewsIdServiceException, NewsNotFoundServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, NewsVersionConflictServiceException, TransactionConflictServiceException {
+        return update(newsDTO, null);
+    }
+
+    /**
+     * The news is read, its author checked and the news saved in one transaction, like in
+     * {@link #create(EditNewsRequestDTO)}. A conflicting change of the news or of the author by another writer makes
+     * the update read the news again and apply the request to it, up to {@value #MAX_UPDATE_ATTEMPTS} times, after
+     * that the update fails as a conflict of the request with other writers. With an expected version the news read
+     * again has to still have it.
+     */
+    @Override
+    public NewsDTO update(
+            EditNewsRequestDTO newsDTO, Long expectedVersion
+    ) throws DTOValidationServiceException, NullNewsIdServiceException, NewsNotFoundServiceException, AuthorNotFoundServiceException, NullAuthorIdServiceException, NewsVersionConflictServiceException, TransactionConflictServiceException {
         if (newsDTO.getId() == null || newsDTO.getId() <= 0) {
             throw new DTOValidationServiceException(String.format("Incorrect news id value %d", newsDTO.getId()));
         }
@@ -74,32 +202,54 @@ class NewsServiceImpl implements NewsService {
         validateDTO(newsDTO);
 
         NewsModel newsModel;
-        try {
-            newsModel = newsRepository.readById(newsDTO.getId());
-        } catch (KeyNullReferenceException e) {
-            throw new NullNewsIdServiceException();
-        } catch (EntityNotFoundException e) {
-            throw new NewsNotFoundServiceException(newsDTO.getId());
-        }
+        for (int attempt = 1; ; attempt++) {
+            RepositoryTransaction transaction = RepositoryTransaction.begin();
+            newsModel = readForUpdate(transaction, newsDTO.getId());
+            if (expectedVersion != null && newsModel.getVersion() != expectedVersion) {
+                throw new NewsVersionConflictServiceException(newsDTO.getId(), expectedVersion);
+            }
+            if (!authorService.existsById(transaction, newsDTO.getAuthorId())) {
+                throw new AuthorNotFoundServiceException(newsDTO.getAuthorId());
+            }
 
-        if (!authorService.existsById(newsDTO.getAuthorId())) {
-            throw new AuthorNotFoundServiceException(newsDTO.getAuthorId());
+            NewsModel changedModel = newsModel.toBuilder()
+                    .title(newsDTO.getTitle())
+                    .content(newsDTO.getContent())
+                    .authorId(newsDTO.getAuthorId())
+                    .lastUpdateDate(LocalDateTime.now())
+                    .build();
+            Supplier<NewsModel> updated;
+            try {
+                updated = newsRepository.update(transaction, changedModel);
+            } catch (EntityNullReferenceException e) {
+                throw new NullNewsIdServiceException();
+            } catch (EntityValidationException e) {
+                throw new DTOValidationServiceException(e.getMessage());
+            }
+
+            try {
+                transaction.commit();
+                newsModel = updated.get();
+                break;
+            } catch (TransactionConflictException e) {
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw new TransactionConflictServiceException(attempt);
+                }
+            }
         }
 
-        newsModel.setTitle(newsDTO.getTitle());
-        newsModel.setContent(newsDTO.getContent());
-        newsModel.setAuthorId(newsDTO.getAuthorId());
-        newsModel.setLastUpdateDate(LocalDateTime.now());
+        return readById(newsModel.getId());
+    }
 
+    private NewsModel readForUpdate(RepositoryTransaction transaction, Long id)
+            throws NullNewsIdServiceException, NewsNotFoundServiceException {
         try {
-            newsModel = newsRepository.update(newsModel);
-        } catch (EntityNullReferenceException e) {
+            return newsRepository.readById(transaction, id);
+        } catch (KeyNullReferenceException e) {
             throw new NullNewsIdServiceException();
-        } catch (EntityValidationException e) {
-            throw new DTOValidationServiceException(e.getMessage());
+        } catch (EntityNotFoundException e) {
+            throw new NewsNotFoundServiceException(id);
         }
-
-        return readById(newsModel.getId());
     }
 
     @Override
@@ -123,20 +273,138 @@ class NewsServiceImpl implements NewsService {
 
     @Override
     public List<NewsDTO> readAll() throws AuthorNotFoundServiceException {
-        return this.readPage(0, -1);
+        return toNewsDTOList(this.newsRepository.readAll());
     }
 
     @Override
-    public List<NewsDTO> readPage(long offset, long limit) throws AuthorNotFoundServiceException {
+    public long versionAt(LocalDateTime time) throws VersionNotRetainedServiceException, NotSupportedServiceException {
+        requireCapability(Repository.Capability.HISTORY);
+        try {
+            return this.newsRepository.versionAt(time.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (VersionNotRetainedException e) {
+            throw new VersionNotRetainedServiceException(e.getMessage());
+        }
+    }
+
+    @Override
+    public NewsDTO readById(Long id, long version) throws NullNewsIdServiceException, NewsNotFoundServiceException, NullAuthorIdServiceException, AuthorNotFoundServiceException, DTOValidationServiceException, VersionNotRetainedServiceException, NotSupportedServiceException {
+        requireCapability(Repository.Capability.HISTORY);
+        NewsModel newsModel;
+        try {
+            newsModel = this.newsRepository.readById(id, version);
+        } catch (KeyNullReferenceException e) {
+            throw new NullNewsIdServiceException();
+        } catch (EntityNotFoundException e) {
+            throw new NewsNotFoundServiceException(id);
+        } catch (VersionNotRetainedException e) {
+            throw new VersionNotRetainedServiceException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new DTOValidationServiceException(e.getMessage());
+        }
+
+        NewsDTO newsDTO = NewsMapper.toNewsDTO(newsModel);
+        newsDTO.setAuthor(this.authorService.readById(newsModel.getAuthorId()));
+        return newsDTO;
+    }
+
+    @Override
+    public List<NewsDTO> readAll(long offset, long limit, long version) throws AuthorNotFoundServiceException, DTOValidationServiceException, VersionNotRetainedServiceException, NotSupportedServiceException {
+        requireCapability(Repository.Capability.HISTORY);
+        try {
+            return toNewsDTOList(this.newsRepository.readAll(offset, limit, version));
+        } catch (VersionNotRetainedException e) {
+            throw new VersionNotRetainedServiceException(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new DTOValidationServiceException(e.getMessage());
+        }
+    }
+
+    @Override
+    public PageDTO<NewsDTO> readPage(long offset, long limit) throws AuthorNotFoundServiceException {
+        Page<NewsModel> page = this.newsRepository.readPage(offset, limit);
+        return new PageDTO<>(toNewsDTOList(page.items()), page.totalCount());
+    }
+
+    @Override
+    public StreamPageDTO<NewsDTO> streamPage(long offset) throws AuthorNotFoundServiceException {
         Map<Long, AuthorDTO> authors = this.authorService.readMap();
+        PageStream<NewsModel> page = this.newsRepository.streamPage(offset);
+        Stream<NewsDTO> items = page.items().map(newsModel -> {
+            AuthorDTO authorDTO = authors.get(newsModel.getAuthorId());
+            if (authorDTO == null) {
+                throw new IllegalStateException(
+                        String.format("Author %d of news %d not found", newsModel.getAuthorId(), newsModel.getId())
+                );
+            }
+            NewsDTO newsDTO = NewsMapper.toNewsDTO(newsModel);
+            newsDTO.setAuthor(authorDTO);
+            return newsDTO;
+        });
+        return new StreamPageDTO<>(items, page.totalCount());
+    }
 
-        List<NewsModel> newsModels;
-        if (offset == 0 && limit == -1) {
-            newsModels = this.newsRepository.readAll();
-        } else {
-            newsModels = this.newsRepository.readPage(offset, limit);
+    @Override
+    public CursorPageDTO<NewsDTO> readPageAfter(long lastId, long limit) throws AuthorNotFoundServiceException {
+        if (limit < 0) {
+            List<NewsModel> newsModels = this.newsRepository.readAfter(lastId, -1);
+            return new CursorPageDTO<>(toNewsDTOList(newsModels), this.newsRepository.count(), null);
         }
 
+        List<NewsModel> newsModels = this.newsRepository.readAfter(lastId, limit + 1);
+        Long nextAfterId = null;
+        if (newsModels.size() > limit) {
+            newsModels = newsModels.subList(0, (int) limit);
+            nextAfterId = newsModels.isEmpty() ? lastId : newsModels.get(newsModels.size() - 1).getId();
+        }
+        return new CursorPageDTO<>(toNewsDTOList(newsModels), this.newsRepository.count(), nextAfterId);
+    }
+
+    @Override
+    public PageDTO<NewsDTO> findByAuthorId(Long authorId, long offset, long limit) throws NullAuthorIdServiceException, AuthorNotFoundServiceException {
+        Page<NewsModel> page;
+        try {
+            page = this.newsRepository.findByAuthorId(authorId, offset, limit);
+        } catch (KeyNullReferenceException e) {
+            throw new NullAuthorIdServiceException();
+        }
+
+        if (page.items().isEmpty()) {
+            return new PageDTO<>(List.of(), page.totalCount());
+        }
+
+        AuthorDTO authorDTO = this.authorService.readById(authorId);
+        List<NewsDTO> newsDTOList = new ArrayList<>();
+        for (NewsModel newsModelItem : page.items()) {
+            NewsDTO newsDTO = NewsMapper.toNewsDTO(newsModelItem);
+            newsDTO.setAuthor(authorDTO);
+            newsDTOList.add(newsDTO);
+        }
+        return new PageDTO<>(newsDTOList, page.totalCount());
+    }
+
+    @Override
+    public PageDTO<NewsDTO> readPageByTime(NewsTimestamp timestamp, LocalDateTime from, LocalDateTime to, boolean descending, long offset, long limit) throws AuthorNotFoundServiceException {
+        Page<NewsModel> page = this.newsRepository.readPageByTime(
+                timestamp.getPropertyName(), from, to, descending, offset, limit
+        );
+        return new PageDTO<>(toNewsDTOList(page.items()), page.totalCount());
+    }
+
+    @Override
+    public PageDTO<NewsDTO> search(String query, long offset, long limit) throws AuthorNotFoundServiceException {
+        Page<NewsModel> page = this.newsRepository.search(query, offset, limit);
+        return new PageDTO<>(toNewsDTOList(page.items()), page.totalCount());
+    }
+
+    private void requireCapability(Repository.Capability capability) throws NotSupportedServiceException {
+        if (!this.newsRepository.supports(capability)) {
+            throw new NotSupportedServiceException(capability.getDescription());
+        }
+    }
+
+    private List<NewsDTO> toNewsDTOList(List<NewsModel> newsModels) throws AuthorNotFoundServiceException {
+        Map<Long, AuthorDTO> authors = this.authorService.readMap();
+
         List<NewsDTO> newsDTOList = new ArrayList<>();
         for (NewsModel newsModelItem : newsModels) {
             AuthorDTO authorDTO = authors.get(newsModelItem.getAuthorId());
@@ -0,0 +1,112 @@
+package com.mjc.school.service.impl;
+
+import com.mjc.school.dto.BackupDTO;
+import com.mjc.school.exception.BackupFailedServiceException;
+import com.mjc.school.exception.BackupNotFoundServiceException;
+import com.mjc.school.exception.CustomServiceException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.DataFileWriteException;
+import com.mjc.school.exception.NotSupportedServiceException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.repository.Repository;
+import com.mjc.school.service.BackupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+class BackupServiceTest {
+    @TempDir
+    Path directory;
+
+    @Mock
+    private Repository<NewsModel> newsRepository;
+
+    @Mock
+    private Repository<AuthorModel> authorRepository;
+
+    private BackupService backupService;
+
+    @BeforeEach
+    void setUp() {
+        backupService = new BackupServiceImpl(newsRepository, authorRepository, directory);
+    }
+
+    private void supportBackups(boolean authors) {
+        Mockito.when(newsRepository.supports(Repository.Capability.BACKUP)).thenReturn(true);
+        Mockito.when(authorRepository.supports(Repository.Capability.BACKUP)).thenReturn(authors);
+    }
+
+    @Test
+    @DisplayName("A backup writes the news and then the authors into a directory named after it")
+    void backup_named_filesInItsDirectory() throws CustomServiceException {
+        supportBackups(true);
+        Mockito.when(newsRepository.backup(directory.resolve("nightly").resolve("news.backup"))).thenReturn(20L);
+        Mockito.when(authorRepository.backup(directory.resolve("nightly").resolve("author.backup"))).thenReturn(5L);
+
+        BackupDTO backup = backupService.backup("nightly");
+
+        assertThat(backup).usingRecursiveComparison().isEqualTo(new BackupDTO("nightly", 20, 5));
+        InOrder order = Mockito.inOrder(newsRepository, authorRepository);
+        order.verify(newsRepository).backup(any(Path.class));
+        order.verify(authorRepository).backup(any(Path.class));
+    }
+
+    @Test
+    @DisplayName("A name that is not a plain file name is rejected, a failed write is reported")
+    void backup_invalidNameOrFailure_reported() {
+        assertThatThrownBy(() -> backupService.backup("../outside"))
+                .isInstanceOf(DTOValidationServiceException.class);
+        Mockito.verifyNoInteractions(newsRepository, authorRepository);
+
+        supportBackups(true);
+        Mockito.when(newsRepository.backup(any(Path.class))).thenThrow(new DataFileWriteException("news.backup", null));
+        assertThatThrownBy(() -> backupService.backup(null)).isInstanceOf(BackupFailedServiceException.class);
+    }
+
+    @Test
+    @DisplayName("A restore replaces the authors before the news, a backup without both files is not found")
+    void restore_authorsFirst_orNotFound() throws CustomServiceException, IOException {
+        supportBackups(true);
+        Path backupDirectory = Files.createDirectories(directory.resolve("nightly"));
+        Files.createFile(backupDirectory.resolve("news.backup"));
+        assertThatThrownBy(() -> backupService.restore("nightly")).isInstanceOf(BackupNotFoundServiceException.class);
+
+        Files.createFile(backupDirectory.resolve("author.backup"));
+        Mockito.when(authorRepository.restore(backupDirectory.resolve("author.backup"))).thenReturn(5L);
+        Mockito.when(newsRepository.restore(backupDirectory.resolve("news.backup"))).thenReturn(20L);
+
+        assertThat(backupService.restore("nightly")).usingRecursiveComparison()
+                .isEqualTo(new BackupDTO("nightly", 20, 5));
+        InOrder order = Mockito.inOrder(authorRepository, newsRepository);
+        order.verify(authorRepository).restore(any(Path.class));
+        order.verify(newsRepository).restore(any(Path.class));
+    }
+
+    @Test
+    @DisplayName("A data source that cannot be backed up is found out before anything is written or replaced")
+    void backupAndRestore_notSupported_nothingWritten() {
+        supportBackups(false);
+
+        assertThatThrownBy(() -> backupService.backup("nightly")).isInstanceOf(NotSupportedServiceException.class);
+        assertThatThrownBy(() -> backupService.restore("nightly")).isInstanceOf(NotSupportedServiceException.class);
+        Mockito.verify(newsRepository, Mockito.never()).backup(any(Path.class));
+        Mockito.verify(newsRepository, Mockito.never()).restore(any(Path.class));
+        Mockito.verify(authorRepository, Mockito.never()).restore(any(Path.class));
+    }
+}
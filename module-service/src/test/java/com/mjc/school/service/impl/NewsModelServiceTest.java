@@ -1,12 +1,21 @@
 package com.mjc.school.service.impl;
 
 import com.mjc.school.dto.AuthorDTO;
+import com.mjc.school.dto.CursorPageDTO;
 import com.mjc.school.dto.NewsDTO;
+import com.mjc.school.dto.NewsTimestamp;
+import com.mjc.school.dto.PageDTO;
+import com.mjc.school.dto.StreamPageDTO;
 import com.mjc.school.exception.CustomRepositoryException;
 import com.mjc.school.exception.CustomServiceException;
 import com.mjc.school.exception.EntityNotFoundException;
 import com.mjc.school.exception.NewsNotFoundServiceException;
+import com.mjc.school.exception.NotSupportedServiceException;
+import com.mjc.school.exception.VersionNotRetainedException;
+import com.mjc.school.exception.VersionNotRetainedServiceException;
 import com.mjc.school.model.NewsModel;
+import com.mjc.school.model.Page;
+import com.mjc.school.model.PageStream;
 import com.mjc.school.repository.Repository;
 import com.mjc.school.service.AuthorService;
 import com.mjc.school.service.NewsService;
@@ -20,6 +29,10 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -39,6 +52,38 @@ class NewsModelServiceTest {
         newsService = new NewsServiceImpl(newsRepository, authorService);
     }
 
+    @Test
+    @DisplayName("A news read as of a version is mapped with its current author, a dropped version is reported")
+    void readById_asOfVersion_mappedOrNotRetained() throws CustomServiceException, CustomRepositoryException {
+        AuthorDTO authorDTO = new AuthorDTO(1L, "Author 1 name");
+        NewsModel newsModel = new NewsModel(
+                1L, "Old title", "Old content", LocalDateTime.of(2024, 4, 14, 17, 10, 12), null, 1L
+        );
+        Mockito.doReturn(true).when(newsRepository).supports(Repository.Capability.HISTORY);
+        Mockito.doReturn(authorDTO).when(authorService).readById(1L);
+        Mockito.doReturn(newsModel).when(newsRepository).readById(1L, 5L);
+        Mockito.doThrow(new VersionNotRetainedException("2", 3L)).when(newsRepository).readById(1L, 2L);
+
+        NewsDTO newsDTO = newsService.readById(1L, 5L);
+
+        assertThat(newsDTO.getTitle()).isEqualTo("Old title");
+        assertThat(newsDTO.getAuthor()).isEqualTo(authorDTO);
+        assertThatThrownBy(() -> newsService.readById(1L, 2L))
+                .isInstanceOf(VersionNotRetainedServiceException.class);
+    }
+
+    @Test
+    @DisplayName("Reads as of a version are refused up front when the data source keeps no history")
+    void readAsOfVersion_noHistory_notSupported() throws CustomRepositoryException {
+        Mockito.doReturn(false).when(newsRepository).supports(Repository.Capability.HISTORY);
+
+        assertThatThrownBy(() -> newsService.versionAt(LocalDateTime.now()))
+                .isInstanceOf(NotSupportedServiceException.class);
+        assertThatThrownBy(() -> newsService.readAll(0, -1, 1L))
+                .isInstanceOf(NotSupportedServiceException.class);
+        Mockito.verify(newsRepository, Mockito.never()).readAll(Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong());
+    }
+
     @Test
     @DisplayName("Checking the response to a single news request")
     void readById_exists_true() throws CustomServiceException, CustomRepositoryException {
@@ -78,6 +123,109 @@ class NewsModelServiceTest {
         assertThatThrownBy(() -> newsService.readById(1L)).isInstanceOf(NewsNotFoundServiceException.class);
     }
 
+    @Test
+    @DisplayName("The news of an author are read from the repository index, the author is read once for the whole page")
+    void findByAuthorId_newsExist_authorReadOnce() throws CustomServiceException, CustomRepositoryException {
+        AuthorDTO authorDTO = new AuthorDTO(3L, "Author 3 name");
+        List<NewsModel> newsModels = List.of(
+                new NewsModel(1L, "News 1 title", "News 1 content", null, null, 3L),
+                new NewsModel(4L, "News 4 title", "News 4 content", null, null, 3L)
+        );
+        Mockito.doReturn(new Page<>(newsModels, 5L)).when(newsRepository).findByAuthorId(3L, 0, 2);
+        Mockito.doReturn(authorDTO).when(authorService).readById(3L);
+
+        PageDTO<NewsDTO> page = newsService.findByAuthorId(3L, 0, 2);
+
+        assertThat(page.getTotalItemCount()).isEqualTo(5L);
+        assertThat(page.getItems()).extracting(NewsDTO::getId).containsExactly(1L, 4L);
+        assertThat(page.getItems()).extracting(NewsDTO::getAuthor).containsOnly(authorDTO);
+        Mockito.verify(authorService, Mockito.times(1)).readById(3L);
+        Mockito.verify(authorService, Mockito.never()).readMap();
+    }
+
+    @Test
+    @DisplayName("A page of news by time is read from the repository index by the property name of the timestamp")
+    void readPageByTime_lastUpdateDate_propertyNamePassedToRepository() throws CustomServiceException {
+        LocalDateTime from = LocalDateTime.of(2024, 4, 1, 0, 0);
+        List<NewsModel> newsModels = List.of(
+                new NewsModel(2L, "News 2 title", "News 2 content", null, from.plusDays(2), 1L),
+                new NewsModel(7L, "News 7 title", "News 7 content", null, from.plusDays(1), 2L)
+        );
+        Mockito.doReturn(new Page<>(newsModels, 9L))
+                .when(newsRepository).readPageByTime("lastUpdateDate", from, null, true, 0, 2);
+        Mockito.doReturn(Map.of(1L, new AuthorDTO(1L, "Author 1"), 2L, new AuthorDTO(2L, "Author 2")))
+                .when(authorService).readMap();
+
+        PageDTO<NewsDTO> page = newsService.readPageByTime(NewsTimestamp.LAST_UPDATE_DATE, from, null, true, 0, 2);
+
+        assertThat(page.getTotalItemCount()).isEqualTo(9L);
+        assertThat(page.getItems()).extracting(NewsDTO::getId).containsExactly(2L, 7L);
+        assertThat(page.getItems()).extracting(news -> news.getAuthor().getId()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Search results keep the ranking of the repository and get their authors")
+    void search_matches_rankingKept() throws CustomServiceException {
+        List<NewsModel> newsModels = List.of(
+                new NewsModel(9L, "Rain again", "Rain all week", null, null, 2L),
+                new NewsModel(3L, "Weather", "Some rain", null, null, 1L)
+        );
+        Mockito.doReturn(new Page<>(newsModels, 2L)).when(newsRepository).search("rain", 0, -1);
+        Mockito.doReturn(Map.of(1L, new AuthorDTO(1L, "Author 1"), 2L, new AuthorDTO(2L, "Author 2")))
+                .when(authorService).readMap();
+
+        PageDTO<NewsDTO> page = newsService.search("rain", 0, -1);
+
+        assertThat(page.getTotalItemCount()).isEqualTo(2L);
+        assertThat(page.getItems()).extracting(NewsDTO::getId).containsExactly(9L, 3L);
+        assertThat(page.getItems()).extracting(news -> news.getAuthor().getId()).containsExactly(2L, 1L);
+    }
+
+    @Test
+    @DisplayName("A keyset page reads one news more than requested to tell whether a next page exists")
+    void readPageAfter_moreNewsFollow_nextAfterIdIsLastIdOfPage() throws CustomServiceException {
+        List<NewsModel> newsModels = List.of(
+                new NewsModel(4L, "News 4 title", "News 4 content", null, null, 1L),
+                new NewsModel(6L, "News 6 title", "News 6 content", null, null, 1L),
+                new NewsModel(9L, "News 9 title", "News 9 content", null, null, 1L)
+        );
+        Mockito.doReturn(newsModels).when(newsRepository).readAfter(3L, 3);
+        Mockito.doReturn(newsModels.subList(2, 3)).when(newsRepository).readAfter(6L, 3);
+        Mockito.doReturn(12L).when(newsRepository).count();
+        Mockito.doReturn(Map.of(1L, new AuthorDTO(1L, "Author 1"))).when(authorService).readMap();
+
+        CursorPageDTO<NewsDTO> page = newsService.readPageAfter(3L, 2);
+        CursorPageDTO<NewsDTO> lastPage = newsService.readPageAfter(6L, 2);
+
+        assertThat(page.getItems()).extracting(NewsDTO::getId).containsExactly(4L, 6L);
+        assertThat(page.getNextAfterId()).isEqualTo(6L);
+        assertThat(page.getTotalItemCount()).isEqualTo(12L);
+        assertThat(lastPage.getItems()).extracting(NewsDTO::getId).containsExactly(9L);
+        assertThat(lastPage.getNextAfterId()).isNull();
+    }
+
+    @Test
+    @DisplayName("A streamed page maps each news only when the stream reaches it")
+    void streamPage_newsMappedLazily() throws CustomServiceException {
+        List<NewsModel> newsModels = List.of(
+                new NewsModel(4L, "News 4 title", "News 4 content", null, null, 1L),
+                new NewsModel(6L, "News 6 title", "News 6 content", null, null, 2L)
+        );
+        AtomicInteger read = new AtomicInteger();
+        Mockito.doReturn(new PageStream<>(newsModels.stream().peek(news -> read.incrementAndGet()), 5L))
+                .when(newsRepository).streamPage(3L);
+        Mockito.doReturn(Map.of(1L, new AuthorDTO(1L, "Author 1"))).when(authorService).readMap();
+
+        StreamPageDTO<NewsDTO> page = newsService.streamPage(3L);
+        assertThat(read).hasValue(0);
+        assertThat(page.getTotalItemCount()).isEqualTo(5L);
+
+        Iterator<NewsDTO> items = page.getItems().iterator();
+        assertThat(items.next().getAuthor().getName()).isEqualTo("Author 1");
+        assertThat(read).hasValue(1);
+        assertThatThrownBy(items::next).isInstanceOf(IllegalStateException.class);
+    }
+
     @Test
     @DisplayName("The correct ID was sent. Execution without errors")
     void deleteById_exists() throws CustomRepositoryException, CustomServiceException {
@@ -2,12 +2,14 @@ package com.mjc.school.service.impl;
 
 import com.mjc.school.dto.AuthorDTO;
 import com.mjc.school.dto.EditNewsRequestDTO;
+import com.mjc.school.dto.NewsDTO;
 import com.mjc.school.exception.AuthorNotFoundServiceException;
 import com.mjc.school.exception.CustomRepositoryException;
 import com.mjc.school.exception.CustomServiceException;
 import com.mjc.school.exception.DTOValidationServiceException;
 import com.mjc.school.model.NewsModel;
 import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryTransaction;
 import com.mjc.school.service.AuthorService;
 import com.mjc.school.service.NewsService;
 import org.junit.jupiter.api.BeforeEach;
@@ -22,6 +24,9 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThatNoException;
@@ -51,7 +56,8 @@ class NewsServiceAddNewsModelTest {
                 "News content",
                 2L
         );
-        Mockito.when(authorService.existsById(2L)).thenReturn(false);
+        Mockito.when(authorService.existsById(Mockito.any(RepositoryTransaction.class), Mockito.eq(2L)))
+                .thenReturn(false);
         assertThatThrownBy(() -> newsService.create(requestDTO)).isInstanceOf(AuthorNotFoundServiceException.class);
     }
     @Test
@@ -76,10 +82,13 @@ class NewsServiceAddNewsModelTest {
                 1L, "Author name"
         );
 
-        Mockito.when(authorService.existsById(requestDTO.getAuthorId())).thenReturn(true);
+        Mockito.when(authorService.existsById(
+                Mockito.any(RepositoryTransaction.class), Mockito.eq(requestDTO.getAuthorId())
+        )).thenReturn(true);
         Mockito.when(authorService.readById(authorDTO.getId())).thenReturn(authorDTO);
 
-        Mockito.when(newsRepository.create(Mockito.any(NewsModel.class))).thenReturn(addedNewsModel);
+        Mockito.when(newsRepository.create(Mockito.any(RepositoryTransaction.class), Mockito.any(NewsModel.class)))
+                .thenReturn(() -> addedNewsModel);
         Mockito.when(newsRepository.readById(addedNewsModel.getId())).thenReturn(addedNewsModel);
 
         LocalDateTime createdAtFrom = LocalDateTime.now();
@@ -87,7 +96,7 @@ class NewsServiceAddNewsModelTest {
         LocalDateTime createdAtTo= LocalDateTime.now();
 
         ArgumentCaptor<NewsModel> argumentCaptor = ArgumentCaptor.forClass(NewsModel.class);
-        Mockito.verify(newsRepository).create(argumentCaptor.capture());
+        Mockito.verify(newsRepository).create(Mockito.any(RepositoryTransaction.class), argumentCaptor.capture());
 
         NewsModel newsModelToSave = argumentCaptor.getValue();
 
@@ -139,4 +148,57 @@ class NewsServiceAddNewsModelTest {
         );
         assertThatThrownBy(() -> newsService.create(requestDTO)).isInstanceOf(AuthorNotFoundServiceException.class);
     }
+
+    @Test
+    @DisplayName("A batch of news is validated, saved in one transaction and returned with its authors")
+    void createAll_correctData_savedAtOnce() throws CustomServiceException, CustomRepositoryException {
+        List<EditNewsRequestDTO> requestDTOList = List.of(
+                new EditNewsRequestDTO("First title", "First content", 1L),
+                new EditNewsRequestDTO("Second title", "Second content", 2L)
+        );
+        Mockito.when(authorService.existsById(Mockito.any(RepositoryTransaction.class), Mockito.anyLong()))
+                .thenReturn(true);
+        Mockito.when(authorService.readById(1L)).thenReturn(new AuthorDTO(1L, "First author"));
+        Mockito.when(authorService.readById(2L)).thenReturn(new AuthorDTO(2L, "Second author"));
+        AtomicLong nextId = new AtomicLong(10L);
+        Mockito.when(newsRepository.create(Mockito.any(RepositoryTransaction.class), Mockito.any(NewsModel.class)))
+                .thenAnswer(invocation -> {
+                    NewsModel saved = invocation.<NewsModel>getArgument(1).withId(nextId.getAndIncrement());
+                    return (Supplier<NewsModel>) () -> saved;
+                });
+
+        List<NewsDTO> created = newsService.createAll(requestDTOList);
+
+        ArgumentCaptor<NewsModel> argumentCaptor = ArgumentCaptor.forClass(NewsModel.class);
+        Mockito.verify(newsRepository, Mockito.times(2))
+                .create(Mockito.any(RepositoryTransaction.class), argumentCaptor.capture());
+        assertThat(argumentCaptor.getAllValues().get(0).getCreateDate()).isNotNull();
+        assertThat(created.stream().map(NewsDTO::getId).toList()).isEqualTo(List.of(10L, 11L));
+        assertThat(created.get(1).getAuthor().getName()).isEqualTo("Second author");
+    }
+
+    @Test
+    @DisplayName("An invalid item or an unknown author fails the whole batch before anything is saved")
+    void createAll_oneIncorrectItem_nothingSaved() throws CustomServiceException {
+        List<EditNewsRequestDTO> invalidBatch = List.of(
+                new EditNewsRequestDTO("First title", "First content", 1L),
+                new EditNewsRequestDTO("12", "Second content", 1L)
+        );
+        assertThatThrownBy(() -> newsService.createAll(invalidBatch))
+                .isInstanceOf(DTOValidationServiceException.class)
+                .hasMessageContaining("[1]");
+
+        Mockito.when(authorService.existsById(Mockito.any(RepositoryTransaction.class), Mockito.anyLong()))
+                .thenAnswer(invocation -> invocation.<Long>getArgument(1) == 1L);
+        List<EditNewsRequestDTO> unknownAuthorBatch = List.of(
+                new EditNewsRequestDTO("First title", "First content", 1L),
+                new EditNewsRequestDTO("Second title", "Second content", 2L)
+        );
+        assertThatThrownBy(() -> newsService.createAll(unknownAuthorBatch))
+                .isInstanceOf(AuthorNotFoundServiceException.class);
+
+        assertThatThrownBy(() -> newsService.createAll(List.of()))
+                .isInstanceOf(DTOValidationServiceException.class);
+        Mockito.verifyNoInteractions(newsRepository);
+    }
 }
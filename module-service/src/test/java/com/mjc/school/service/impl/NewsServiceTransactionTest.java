@@ -0,0 +1,169 @@
+package com.mjc.school.service.impl;
+
+import com.mjc.school.dto.AuthorDTO;
+import com.mjc.school.dto.EditNewsRequestDTO;
+import com.mjc.school.exception.AuthorNotFoundServiceException;
+import com.mjc.school.exception.CustomRepositoryException;
+import com.mjc.school.exception.CustomServiceException;
+import com.mjc.school.exception.NullAuthorIdServiceException;
+import com.mjc.school.exception.TransactionConflictServiceException;
+import com.mjc.school.model.AuthorModel;
+import com.mjc.school.model.NewsModel;
+import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryFactory;
+import com.mjc.school.repository.RepositoryTransaction;
+import com.mjc.school.service.AuthorService;
+import com.mjc.school.service.NewsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Writes of other writers made between the checks of a news service transaction and its commit, over the in-memory
+ * data sources
+ */
+@DisplayName("News service transactions")
+class NewsServiceTransactionTest {
+    private final Repository<NewsModel> newsRepository = RepositoryFactory.getRepository(NewsModel.class);
+    private final Repository<AuthorModel> authorRepository = RepositoryFactory.getRepository(AuthorModel.class);
+    private final AtomicInteger authorChecks = new AtomicInteger();
+    private Runnable afterAuthorCheck;
+    private NewsService newsService;
+
+    @BeforeEach
+    void setUp() {
+        AuthorService authorService = new AuthorServiceImpl(this.authorRepository);
+        this.newsService = new NewsServiceImpl(this.newsRepository, new AuthorService() {
+            @Override
+            public boolean existsById(Long id) throws AuthorNotFoundServiceException {
+                return authorService.existsById(id);
+            }
+
+            @Override
+            public boolean existsById(RepositoryTransaction transaction, Long id)
+                    throws AuthorNotFoundServiceException {
+                boolean exists = authorService.existsById(transaction, id);
+                authorChecks.incrementAndGet();
+                afterAuthorCheck.run();
+                return exists;
+            }
+
+            @Override
+            public AuthorDTO readById(Long id) throws NullAuthorIdServiceException, AuthorNotFoundServiceException {
+                return authorService.readById(id);
+            }
+
+            @Override
+            public Map<Long, AuthorDTO> readMap() {
+                return authorService.readMap();
+            }
+        });
+    }
+
+    private AuthorModel author(String name) throws CustomRepositoryException {
+        return this.authorRepository.create(new AuthorModel(name));
+    }
+
+    private NewsModel news(long authorId) throws CustomRepositoryException {
+        LocalDateTime date = LocalDateTime.of(2024, 6, 1, 10, 0);
+        return this.newsRepository.create(new NewsModel(null, "Start title", "Start content", date, date, authorId));
+    }
+
+    private static EditNewsRequestDTO request(Long id, long authorId) {
+        EditNewsRequestDTO requestDTO = new EditNewsRequestDTO("Changed title", "Changed content", authorId);
+        requestDTO.setId(id);
+        return requestDTO;
+    }
+
+    private void deleteOnce(long authorId) {
+        this.afterAuthorCheck = () -> {
+            try {
+                if (this.authorRepository.existsById(authorId)) {
+                    this.authorRepository.delete(authorId);
+                }
+            } catch (CustomRepositoryException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("A news is not updated if its new author is deleted between the check and the commit")
+    void update_authorDeletedInBetween_notUpdated() throws CustomRepositoryException {
+        NewsModel news = news(author("First author").getId());
+        long newAuthorId = author("Second author").getId();
+        deleteOnce(newAuthorId);
+
+        assertThatThrownBy(() -> this.newsService.update(request(news.getId(), newAuthorId)))
+                .isInstanceOf(AuthorNotFoundServiceException.class);
+
+        assertThat(this.authorChecks).hasValue(2);
+        assertThat(this.newsRepository.readById(news.getId())).isEqualTo(news);
+    }
+
+    @Test
+    @DisplayName("A batch of news is not saved if one of its authors is deleted between the check and the commit")
+    void createAll_authorDeletedInBetween_nothingSaved() throws CustomRepositoryException {
+        long firstAuthorId = author("First author").getId();
+        long secondAuthorId = author("Second author").getId();
+        deleteOnce(secondAuthorId);
+        long newsCount = this.newsRepository.count();
+
+        assertThatThrownBy(() -> this.newsService.createAll(List.of(
+                request(null, firstAuthorId), request(null, secondAuthorId)
+        ))).isInstanceOf(AuthorNotFoundServiceException.class);
+
+        assertThat(this.newsRepository.count()).isEqualTo(newsCount);
+    }
+
+    @Test
+    @DisplayName("A news changed by another writer in the meantime is read again and the request applied to it")
+    void update_newsChangedInBetween_retriedOnNewVersion() throws CustomRepositoryException, CustomServiceException {
+        long authorId = author("First author").getId();
+        NewsModel news = news(authorId);
+        this.afterAuthorCheck = () -> {
+            if (this.authorChecks.get() == 1) {
+                changeContent(news.getId(), "Other content");
+            }
+        };
+
+        this.newsService.update(request(news.getId(), authorId));
+
+        NewsModel updated = this.newsRepository.readById(news.getId());
+        assertThat(this.authorChecks).hasValue(2);
+        assertThat(updated.getTitle()).isEqualTo("Changed title");
+        assertThat(updated.getVersion()).isEqualTo(news.getVersion() + 2);
+    }
+
+    @Test
+    @DisplayName("An update that keeps losing to other writers fails as a conflict")
+    void update_newsAlwaysChangedInBetween_throwsTransactionConflictServiceException()
+            throws CustomRepositoryException {
+        long authorId = author("First author").getId();
+        NewsModel news = news(authorId);
+        this.afterAuthorCheck = () -> changeContent(news.getId(), "Content " + this.authorChecks.get());
+
+        assertThatThrownBy(() -> this.newsService.update(request(news.getId(), authorId)))
+                .isInstanceOf(TransactionConflictServiceException.class);
+
+        assertThat(this.authorChecks).hasValue(8);
+        assertThat(this.newsRepository.readById(news.getId()).getTitle()).isEqualTo("Start title");
+    }
+
+    private void changeContent(long id, String content) {
+        try {
+            NewsModel current = this.newsRepository.readById(id);
+            this.newsRepository.update(current.toBuilder().content(content).build());
+        } catch (CustomRepositoryException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.mjc.school.dto.EditNewsRequestDTO;
 import com.mjc.school.exception.*;
 import com.mjc.school.model.NewsModel;
 import com.mjc.school.repository.Repository;
+import com.mjc.school.repository.RepositoryTransaction;
 import com.mjc.school.service.AuthorService;
 import com.mjc.school.service.NewsService;
 import org.junit.jupiter.api.BeforeEach;
@@ -68,9 +69,14 @@ class NewsServiceUpdateNewsModelTest {
                 requestDTO.getAuthorId()
         );
 
-        Mockito.when(authorService.existsById(requestDTO.getAuthorId())).thenReturn(true);
-        Mockito.when(newsRepository.readById(newsIdToChange)).thenReturn(newsModelBeforeChange);
-        Mockito.when(newsRepository.update(Mockito.any(NewsModel.class))).thenReturn(newsModelAfterChange);
+        Mockito.when(authorService.existsById(
+                Mockito.any(RepositoryTransaction.class), Mockito.eq(requestDTO.getAuthorId())
+        )).thenReturn(true);
+        Mockito.when(newsRepository.readById(Mockito.any(RepositoryTransaction.class), Mockito.eq(newsIdToChange)))
+                .thenReturn(newsModelBeforeChange);
+        Mockito.when(newsRepository.update(Mockito.any(RepositoryTransaction.class), Mockito.any(NewsModel.class)))
+                .thenReturn(() -> newsModelAfterChange);
+        Mockito.when(newsRepository.readById(newsIdToChange)).thenReturn(newsModelAfterChange);
 
         ArgumentCaptor<NewsModel> argumentCaptor = ArgumentCaptor.forClass(NewsModel.class);
 
@@ -78,13 +84,14 @@ class NewsServiceUpdateNewsModelTest {
         newsService.update(requestDTO);
         LocalDateTime updateDateTimeTo = LocalDateTime.now();
 
-        Mockito.verify(newsRepository).update(argumentCaptor.capture());
+        Mockito.verify(newsRepository).update(Mockito.any(RepositoryTransaction.class), argumentCaptor.capture());
 
         NewsModel actualNewsModelToSave = argumentCaptor.getValue();
 
         assertThat(actualNewsModelToSave.getLastUpdateDate()).isBetween(updateDateTimeFrom, updateDateTimeTo);
-        newsModelAfterChange.setLastUpdateDate(actualNewsModelToSave.getLastUpdateDate());
-        assertThat(actualNewsModelToSave).isEqualTo(newsModelAfterChange);
+        assertThat(actualNewsModelToSave).isEqualTo(
+                newsModelAfterChange.toBuilder().lastUpdateDate(actualNewsModelToSave.getLastUpdateDate()).build()
+        );
     }
 
     @Test
@@ -118,9 +125,14 @@ class NewsServiceUpdateNewsModelTest {
                 requestDTO.getAuthorId()
         );
 
-        Mockito.when(authorService.existsById(requestDTO.getAuthorId())).thenReturn(true);
-        Mockito.when(newsRepository.readById(newsIdForChange)).thenReturn(newsModelBeforeChange);
-        Mockito.when(newsRepository.update(Mockito.any(NewsModel.class))).thenReturn(newsModelAfterChange);
+        Mockito.when(authorService.existsById(
+                Mockito.any(RepositoryTransaction.class), Mockito.eq(requestDTO.getAuthorId())
+        )).thenReturn(true);
+        Mockito.when(newsRepository.readById(Mockito.any(RepositoryTransaction.class), Mockito.eq(newsIdForChange)))
+                .thenReturn(newsModelBeforeChange);
+        Mockito.when(newsRepository.update(Mockito.any(RepositoryTransaction.class), Mockito.any(NewsModel.class)))
+                .thenReturn(() -> newsModelAfterChange);
+        Mockito.when(newsRepository.readById(newsIdForChange)).thenReturn(newsModelAfterChange);
 
         assertThatNoException().isThrownBy(() -> newsService.update(requestDTO));
 
@@ -167,7 +179,9 @@ class NewsServiceUpdateNewsModelTest {
                 2L
         );
         requestDTO.setId(newsIdForUpdate);
-        Mockito.when(authorService.existsById(requestDTO.getAuthorId())).thenReturn(false);
+        Mockito.when(authorService.existsById(
+                Mockito.any(RepositoryTransaction.class), Mockito.eq(requestDTO.getAuthorId())
+        )).thenReturn(false);
         assertThatThrownBy(() -> newsService.update(requestDTO)).isInstanceOf(AuthorNotFoundServiceException.class);
     }
 
@@ -181,7 +195,28 @@ class NewsServiceUpdateNewsModelTest {
                 2L
         );
         requestDTO.setId(newsIdForUpdate);
-        Mockito.when(newsRepository.readById(newsIdForUpdate)).thenThrow(EntityNotFoundException.class);
+        Mockito.when(newsRepository.readById(Mockito.any(RepositoryTransaction.class), Mockito.eq(newsIdForUpdate)))
+                .thenThrow(EntityNotFoundException.class);
         assertThatThrownBy(() -> newsService.update(requestDTO)).isInstanceOf(NewsNotFoundServiceException.class);
     }
+
+    @Test
+    @DisplayName("An update with an expected version the news no longer has fails without a retry")
+    void update_staleVersion_throwsNewsVersionConflictServiceException() throws CustomRepositoryException, CustomServiceException {
+        Long newsIdForUpdate = 1L;
+        EditNewsRequestDTO requestDTO = new EditNewsRequestDTO("News title", "News content", 2L);
+        requestDTO.setId(newsIdForUpdate);
+        NewsModel readNews = new NewsModel(
+                newsIdForUpdate, "Start title", "Start content", LocalDateTime.of(2024, 4, 16, 14, 33, 3), null, 3L
+        ).withVersion(5);
+        Mockito.when(newsRepository.readById(Mockito.any(RepositoryTransaction.class), Mockito.eq(newsIdForUpdate)))
+                .thenReturn(readNews);
+
+        assertThatThrownBy(() -> newsService.update(requestDTO, 4L))
+                .isInstanceOf(NewsVersionConflictServiceException.class);
+        Mockito.verify(newsRepository, Mockito.times(1))
+                .readById(Mockito.any(RepositoryTransaction.class), Mockito.eq(newsIdForUpdate));
+        Mockito.verify(newsRepository, Mockito.never())
+                .update(Mockito.any(RepositoryTransaction.class), Mockito.any(NewsModel.class));
+    }
 }
@@ -19,7 +19,17 @@ public enum RESULT_CODE {
     ILLEGAL_OFFSET_VALUE(9, SC_BAD_REQUEST),
     ILLEGAL_DATA_FORMAT(10, SC_BAD_REQUEST),
     NO_DATA_IN_REQUEST(11, SC_BAD_REQUEST),
-    NOT_UTF_ENCODING(12, SC_BAD_REQUEST);
+    NOT_UTF_ENCODING(12, SC_BAD_REQUEST),
+    ILLEGAL_SORT_VALUE(13, SC_BAD_REQUEST),
+    ILLEGAL_DATE_VALUE(14, SC_BAD_REQUEST),
+    ILLEGAL_SEARCH_QUERY(15, SC_BAD_REQUEST),
+    ILLEGAL_CURSOR_VALUE(16, SC_BAD_REQUEST),
+    VERSION_CONFLICT(17, SC_PRECONDITION_FAILED),
+    ILLEGAL_VERSION_VALUE(18, SC_BAD_REQUEST),
+    TRANSACTION_CONFLICT(19, SC_CONFLICT),
+    BACKUP_NOT_FOUND(20, SC_NOT_FOUND),
+    BACKUP_FAILED(21, SC_INTERNAL_SERVER_ERROR),
+    NOT_SUPPORTED(22, SC_NOT_IMPLEMENTED);
 
     private final int errorCode;
     private final int httpStatus;
@@ -0,0 +1,23 @@
+package com.mjc.school.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.mjc.school.constant.RESULT_CODE;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonPropertyOrder({"errorCode", "errorMessage", "data"})
+public class AddNewsListResponseDTO extends BaseResponseDTO {
+    @JsonProperty("data")
+    private List<NewsDTO> data;
+    public AddNewsListResponseDTO(List<NewsDTO> data) {
+        super(RESULT_CODE.SUCCESS.getErrorCode());
+        this.data = data;
+    }
+}
@@ -0,0 +1,21 @@
+package com.mjc.school.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.mjc.school.constant.RESULT_CODE;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonPropertyOrder({"errorCode", "errorMessage", "data"})
+public class BackupResponseDTO extends BaseResponseDTO {
+    @JsonProperty("data")
+    private BackupDTO data;
+    public BackupResponseDTO(BackupDTO data) {
+        super(RESULT_CODE.SUCCESS.getErrorCode());
+        this.data = data;
+    }
+}
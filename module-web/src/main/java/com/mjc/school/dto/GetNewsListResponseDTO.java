@@ -1,5 +1,6 @@
 package com.mjc.school.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.*;
@@ -11,7 +12,7 @@ import java.util.List;
 @ToString
 @AllArgsConstructor
 @NoArgsConstructor
-@JsonPropertyOrder({"errorCode", "errorMessage", "items", "start", "size", "totalItemCount"})
+@JsonPropertyOrder({"errorCode", "errorMessage", "items", "start", "size", "totalItemCount", "nextCursor"})
 public class GetNewsListResponseDTO extends BaseResponseDTO {
     @JsonProperty("items")
     private List<NewsDTO> items;
@@ -24,4 +25,15 @@ public class GetNewsListResponseDTO extends BaseResponseDTO {
 
     @JsonProperty("totalItemCount")
     private long totalItemCount;
+
+    /**
+     * Cursor of the next page of a keyset paging, absent on the last page and on offset pages
+     */
+    @JsonProperty("nextCursor")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    public GetNewsListResponseDTO(List<NewsDTO> items, long start, long size, long totalItemCount) {
+        this(items, start, size, totalItemCount, null);
+    }
 }
@@ -0,0 +1,18 @@
+package com.mjc.school.exception;
+
+import com.mjc.school.constant.RESULT_CODE;
+
+import static jakarta.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+public class IllegalAuthorIdValueWebException extends CustomWebException {
+    private static final int HTTP_STATUS = SC_BAD_REQUEST;
+    private static final String MESSAGE_TEMPLATE = "The author id value is invalid %s";
+
+    public IllegalAuthorIdValueWebException(String idValue) {
+        super(
+                RESULT_CODE.ILLEGAL_ID_VALUE,
+                String.format(MESSAGE_TEMPLATE, idValue),
+                HTTP_STATUS
+        );
+    }
+}
@@ -0,0 +1,18 @@
+package com.mjc.school.exception;
+
+import com.mjc.school.constant.RESULT_CODE;
+
+import static jakarta.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+public class IllegalDateValueWebException extends CustomWebException {
+    private static final int HTTP_STATUS = SC_BAD_REQUEST;
+    private static final String MESSAGE_TEMPLATE = "The date value is invalid %s";
+
+    public IllegalDateValueWebException(String value) {
+        super(
+                RESULT_CODE.ILLEGAL_DATE_VALUE,
+                String.format(MESSAGE_TEMPLATE, value),
+                HTTP_STATUS
+        );
+    }
+}
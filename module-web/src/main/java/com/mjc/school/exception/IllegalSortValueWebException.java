@@ -0,0 +1,18 @@
+package com.mjc.school.exception;
+
+import com.mjc.school.constant.RESULT_CODE;
+
+import static jakarta.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+public class IllegalSortValueWebException extends CustomWebException {
+    private static final int HTTP_STATUS = SC_BAD_REQUEST;
+    private static final String MESSAGE_TEMPLATE = "The sort value is invalid %s";
+
+    public IllegalSortValueWebException(String value) {
+        super(
+                RESULT_CODE.ILLEGAL_SORT_VALUE,
+                String.format(MESSAGE_TEMPLATE, value),
+                HTTP_STATUS
+        );
+    }
+}
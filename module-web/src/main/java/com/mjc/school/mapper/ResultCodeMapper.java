@@ -15,11 +15,22 @@ public class ResultCodeMapper {
         errorCodes.put(DTOValidationServiceException.class, RESULT_CODE.DATA_VALIDATION);
         errorCodes.put(NullAuthorIdServiceException.class, RESULT_CODE.DATA_VALIDATION);
         errorCodes.put(NullNewsIdServiceException.class, RESULT_CODE.ILLEGAL_ID_VALUE);
+        errorCodes.put(NewsVersionConflictServiceException.class, RESULT_CODE.VERSION_CONFLICT);
+        errorCodes.put(TransactionConflictServiceException.class, RESULT_CODE.TRANSACTION_CONFLICT);
+        errorCodes.put(BackupNotFoundServiceException.class, RESULT_CODE.BACKUP_NOT_FOUND);
+        errorCodes.put(BackupFailedServiceException.class, RESULT_CODE.BACKUP_FAILED);
+        errorCodes.put(NotSupportedServiceException.class, RESULT_CODE.NOT_SUPPORTED);
         errorCodes.put(CustomServiceException.class, RESULT_CODE.UNEXPECTED_ERROR);
         errorCodes.put(CustomWebRuntimeException.class, RESULT_CODE.UNEXPECTED_ERROR);
         errorCodes.put(IllegalLimitValueWebException.class, RESULT_CODE.ILLEGAL_LIMIT_VALUE);
         errorCodes.put(IllegalOffsetValueWebException.class, RESULT_CODE.ILLEGAL_OFFSET_VALUE);
         errorCodes.put(IllegalNewsIdValueWebException.class, RESULT_CODE.ILLEGAL_ID_VALUE);
+        errorCodes.put(IllegalAuthorIdValueWebException.class, RESULT_CODE.ILLEGAL_ID_VALUE);
+        errorCodes.put(IllegalSortValueWebException.class, RESULT_CODE.ILLEGAL_SORT_VALUE);
+        errorCodes.put(IllegalDateValueWebException.class, RESULT_CODE.ILLEGAL_DATE_VALUE);
+        errorCodes.put(IllegalSearchQueryWebException.class, RESULT_CODE.ILLEGAL_SEARCH_QUERY);
+        errorCodes.put(IllegalCursorValueWebException.class, RESULT_CODE.ILLEGAL_CURSOR_VALUE);
+        errorCodes.put(IllegalVersionValueWebException.class, RESULT_CODE.ILLEGAL_VERSION_VALUE);
         errorCodes.put(IllegalDataFormatWebException.class, RESULT_CODE.ILLEGAL_DATA_FORMAT);
         errorCodes.put(NoDataInRequestWebException.class, RESULT_CODE.NO_DATA_IN_REQUEST);
         errorCodes.put(NotUTFEncodingWebException.class, RESULT_CODE.NOT_UTF_ENCODING);
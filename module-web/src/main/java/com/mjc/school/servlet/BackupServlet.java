@@ -0,0 +1,52 @@
+package com.mjc.school.servlet;
+
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.BackupResponseDTO;
+import com.mjc.school.dto.BaseResponseDTO;
+import com.mjc.school.exception.BackupFailedServiceException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.NotSupportedServiceException;
+import com.mjc.school.mapper.ResultCodeMapper;
+import com.mjc.school.service.BackupService;
+import com.mjc.school.util.HttpServletResponseUtils;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Takes an online backup of the news and authors, named by the "name" parameter or after the current time
+ */
+@WebServlet("/admin/backup")
+@Slf4j
+public class BackupServlet extends HttpServlet {
+    private final transient BackupService backupService;
+
+    public BackupServlet(BackupService backupService) {
+        this.backupService = backupService;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+        BaseResponseDTO responseBody;
+        RESULT_CODE resultCode;
+        try {
+            responseBody = new BackupResponseDTO(this.backupService.backup(req.getParameter("name")));
+            resultCode = RESULT_CODE.ADD_SUCCESS;
+        } catch (DTOValidationServiceException | NotSupportedServiceException e) {
+            resultCode = ResultCodeMapper.getResultCode(e.getClass());
+            responseBody = new BaseResponseDTO(resultCode, e);
+        } catch (BackupFailedServiceException e) {
+            log.error("Error when taking a backup", e);
+            resultCode = ResultCodeMapper.getResultCode(e.getClass());
+            responseBody = new BaseResponseDTO(resultCode, e);
+        } catch (RuntimeException e) {
+            log.error("Error when processing a request to take a backup", e);
+            resultCode = RESULT_CODE.UNEXPECTED_ERROR;
+            responseBody = new BaseResponseDTO(resultCode.getErrorCode(), resultCode.getDefaultMessage());
+        }
+
+        HttpServletResponseUtils.writePayloadIntoResponseBody(resp, responseBody, resultCode.getHttpStatus());
+    }
+}
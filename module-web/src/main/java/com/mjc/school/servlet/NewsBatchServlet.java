@@ -0,0 +1,55 @@
+package com.mjc.school.servlet;
+
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.*;
+import com.mjc.school.exception.*;
+import com.mjc.school.mapper.ResultCodeMapper;
+import com.mjc.school.service.NewsService;
+import com.mjc.school.util.HttpServletRequestUtils;
+import com.mjc.school.util.HttpServletResponseUtils;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Adds a JSON array of news in one request, all of them or none
+ */
+@WebServlet("/news/batch")
+@Slf4j
+public class NewsBatchServlet extends HttpServlet {
+    private final transient NewsService newsService;
+
+    public NewsBatchServlet(NewsService newsService) {
+        this.newsService = newsService;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+        BaseResponseDTO responseBody;
+        RESULT_CODE resultCode;
+        try {
+            List<EditNewsRequestDTO> newsDTOList =
+                    HttpServletRequestUtils.readListFromRequestBody(req, EditNewsRequestDTO.class);
+            List<NewsDTO> createdNewsDTOList = newsService.createAll(newsDTOList);
+
+            resultCode = RESULT_CODE.ADD_SUCCESS;
+            responseBody = new AddNewsListResponseDTO(createdNewsDTOList);
+        } catch (IllegalDataFormatWebException | NoDataInRequestWebException | NotUTFEncodingWebException |
+                 DTOValidationServiceException | CustomWebRuntimeException | AuthorNotFoundServiceException |
+                 NullAuthorIdServiceException | TransactionConflictServiceException e
+        ) {
+            resultCode = ResultCodeMapper.getResultCode(e.getClass());
+            responseBody = new BaseResponseDTO(resultCode, e);
+        } catch (RuntimeException e) {
+            log.error("Error processing a request to add a batch of news", e);
+            resultCode = RESULT_CODE.UNEXPECTED_ERROR;
+            responseBody = new BaseResponseDTO(resultCode.getErrorCode(), resultCode.getDefaultMessage());
+        }
+
+        HttpServletResponseUtils.writePayloadIntoResponseBody(resp, responseBody, resultCode.getHttpStatus());
+    }
+}
@@ -5,6 +5,7 @@ import com.mjc.school.dto.*;
 import com.mjc.school.exception.*;
 import com.mjc.school.mapper.ResultCodeMapper;
 import com.mjc.school.service.NewsService;
+import com.mjc.school.util.EntityTagCodec;
 import com.mjc.school.util.HttpServletRequestUtils;
 import com.mjc.school.util.HttpServletResponseUtils;
 import jakarta.servlet.annotation.WebServlet;
@@ -13,9 +14,13 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Optional;
+
 @WebServlet("/news/*")
 @Slf4j
 public class NewsItemServlet extends HttpServlet {
+    private static final String ETAG_HEADER = "ETag";
+
     private final transient NewsService newsService;
 
     public NewsItemServlet(NewsService newsService) {
@@ -29,14 +34,20 @@ public class NewsItemServlet extends HttpServlet {
         RESULT_CODE resultCode;
         try {
             newsId = HttpServletRequestUtils.getIdFromPath(req);
+            Optional<Long> expectedVersion = HttpServletRequestUtils.getExpectedVersionFromRequest(req);
             EditNewsRequestDTO newsDTO = HttpServletRequestUtils.readObjectFromRequestBody(req, EditNewsRequestDTO.class);
             newsDTO.setId(newsId);
-            NewsDTO editedNewsDTO = newsService.update(newsDTO);
+            NewsDTO editedNewsDTO = expectedVersion.isPresent()
+                    ? newsService.update(newsDTO, expectedVersion.get())
+                    : newsService.update(newsDTO);
+            resp.setHeader(ETAG_HEADER, EntityTagCodec.encode(editedNewsDTO.getVersion()));
             responseBody = new UpdateNewsResponseDTO(editedNewsDTO);
             resultCode = RESULT_CODE.SUCCESS;
         } catch (IllegalNewsIdValueWebException | NotUTFEncodingWebException | NoDataInRequestWebException |
                  IllegalDataFormatWebException | DTOValidationServiceException | NullNewsIdServiceException |
-                 NewsNotFoundServiceException | NullAuthorIdServiceException | AuthorNotFoundServiceException e)
+                 NewsNotFoundServiceException | NullAuthorIdServiceException | AuthorNotFoundServiceException |
+                 IllegalVersionValueWebException | NewsVersionConflictServiceException |
+                 TransactionConflictServiceException e)
         {
             resultCode = ResultCodeMapper.getResultCode(e.getClass());
             responseBody = new BaseResponseDTO(resultCode, e);
@@ -60,6 +71,7 @@ public class NewsItemServlet extends HttpServlet {
         try {
             newsId = HttpServletRequestUtils.getIdFromPath(req);
             NewsDTO newsDTO = newsService.readById(newsId);
+            resp.setHeader(ETAG_HEADER, EntityTagCodec.encode(newsDTO.getVersion()));
             responseBody = new GetNewsItemResponseDTO(newsDTO);
             resultCode = RESULT_CODE.SUCCESS;
         } catch (NullAuthorIdServiceException | AuthorNotFoundServiceException e) {
@@ -0,0 +1,54 @@
+package com.mjc.school.servlet;
+
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.*;
+import com.mjc.school.exception.*;
+import com.mjc.school.mapper.ResultCodeMapper;
+import com.mjc.school.service.NewsService;
+import com.mjc.school.util.HttpServletRequestUtils;
+import com.mjc.school.util.HttpServletResponseUtils;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+@WebServlet("/news/search")
+@Slf4j
+public class NewsSearchServlet extends HttpServlet {
+    private final transient NewsService newsService;
+
+    public NewsSearchServlet(NewsService newsService) {
+        this.newsService = newsService;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+        BaseResponseDTO responseBody;
+        RESULT_CODE resultCode;
+        try {
+            String query = HttpServletRequestUtils.getSearchQueryFromRequest(req);
+            int limit = HttpServletRequestUtils.getLimitValueFromRequest(req);
+            int offset = HttpServletRequestUtils.getOffsetValueFromRequest(req);
+            PageDTO<NewsDTO> page = this.newsService.search(query, offset, limit);
+            List<NewsDTO> news = page.getItems();
+            responseBody = new GetNewsListResponseDTO(news, offset + 1L, news.size(), page.getTotalItemCount());
+            resultCode = RESULT_CODE.SUCCESS;
+        } catch (AuthorNotFoundServiceException e) {
+            log.error("An exception was thrown that should not have been thrown", e);
+            resultCode = RESULT_CODE.UNEXPECTED_ERROR;
+            responseBody = new BaseResponseDTO(resultCode.getErrorCode(), resultCode.getDefaultMessage());
+        } catch (IllegalSearchQueryWebException | IllegalLimitValueWebException | IllegalOffsetValueWebException e) {
+            resultCode = ResultCodeMapper.getResultCode(e.getClass());
+            responseBody = new BaseResponseDTO(resultCode, e);
+        } catch (RuntimeException e) {
+            log.error("Error when processing a request to search news", e);
+            resultCode = RESULT_CODE.UNEXPECTED_ERROR;
+            responseBody = new BaseResponseDTO(resultCode.getErrorCode(), resultCode.getDefaultMessage());
+        }
+
+        HttpServletResponseUtils.writePayloadIntoResponseBody(resp, responseBody, resultCode.getHttpStatus());
+    }
+}
@@ -5,8 +5,10 @@ import com.mjc.school.dto.*;
 import com.mjc.school.exception.*;
 import com.mjc.school.mapper.ResultCodeMapper;
 import com.mjc.school.service.NewsService;
+import com.mjc.school.util.CursorCodec;
 import com.mjc.school.util.HttpServletRequestUtils;
 import com.mjc.school.util.HttpServletResponseUtils;
+import com.mjc.school.util.NewsTimeQuery;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -16,6 +18,7 @@ import lombok.extern.slf4j.Slf4j;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
+import java.util.Optional;
 
 @WebServlet("/news")
 @Slf4j
@@ -33,11 +36,47 @@ public class NewsServlet extends HttpServlet {
         try {
             int limit = HttpServletRequestUtils.getLimitValueFromRequest(req);
             int offset = HttpServletRequestUtils.getOffsetValueFromRequest(req);
-            List<NewsDTO> news = this.newsService.readPage(offset, limit);
-            long totalCount = this.newsService.count();
-            responseBody = new GetNewsListResponseDTO(news, offset + 1L, news.size(), totalCount);
+            Optional<Long> authorId = HttpServletRequestUtils.getAuthorIdFromRequest(req);
+            Optional<NewsTimeQuery> timeQuery = HttpServletRequestUtils.getTimeQueryFromRequest(req);
+            if (authorId.isPresent() && timeQuery.isPresent()) {
+                throw new IllegalSortValueWebException("sort and date ranges are not supported together with authorId");
+            }
+
+            Optional<Long> lastId = HttpServletRequestUtils.getCursorFromRequest(req);
+            if (lastId.isPresent() && (authorId.isPresent() || timeQuery.isPresent() || req.getParameter("offset") != null)) {
+                throw new IllegalCursorValueWebException("cursor is not supported together with offset, authorId, sort or date ranges");
+            }
+
+            if (lastId.isPresent()) {
+                CursorPageDTO<NewsDTO> page = this.newsService.readPageAfter(lastId.get(), limit);
+                List<NewsDTO> news = page.getItems();
+                String nextCursor = page.getNextAfterId() == null ? null : CursorCodec.encode(page.getNextAfterId());
+                // the position of a keyset page is not known, only the cursor
+                responseBody = new GetNewsListResponseDTO(news, 0, news.size(), page.getTotalItemCount(), nextCursor);
+            } else {
+                PageDTO<NewsDTO> page;
+                if (authorId.isPresent()) {
+                    page = this.newsService.findByAuthorId(authorId.get(), offset, limit);
+                } else if (timeQuery.isPresent()) {
+                    NewsTimeQuery query = timeQuery.get();
+                    page = this.newsService.readPageByTime(
+                            query.timestamp(), query.from(), query.to(), query.descending(), offset, limit
+                    );
+                } else if (limit < 0 && HttpServletRequestUtils.isStreamRequested(req)) {
+                    // the status is sent before the news are read, a failure while streaming cuts the response off
+                    StreamPageDTO<NewsDTO> streamPage = this.newsService.streamPage(offset);
+                    HttpServletResponseUtils.writeItemsIntoResponseBody(
+                            resp, streamPage.getItems(), offset + 1L, streamPage.getTotalItemCount()
+                    );
+                    return;
+                } else {
+                    page = this.newsService.readPage(offset, limit);
+                }
+                List<NewsDTO> news = page.getItems();
+                responseBody = new GetNewsListResponseDTO(news, offset + 1L, news.size(), page.getTotalItemCount());
+            }
             resultCode = RESULT_CODE.SUCCESS;
-        } catch (AuthorNotFoundServiceException e) {
+        } catch (AuthorNotFoundServiceException | NullAuthorIdServiceException e) {
             log.error("An exception was thrown that should not have been thrown", e);
             resultCode = RESULT_CODE.UNEXPECTED_ERROR;
             responseBody =
@@ -45,7 +84,8 @@ public class NewsServlet extends HttpServlet {
                             resultCode.getErrorCode(),
                             resultCode.getDefaultMessage()
                     );
-        } catch (IllegalLimitValueWebException | IllegalOffsetValueWebException e) {
+        } catch (IllegalLimitValueWebException | IllegalOffsetValueWebException | IllegalAuthorIdValueWebException |
+                 IllegalSortValueWebException | IllegalDateValueWebException | IllegalCursorValueWebException e) {
             resultCode = ResultCodeMapper.getResultCode(e.getClass());
             responseBody = new BaseResponseDTO(resultCode, e);
         } catch (RuntimeException e) {
@@ -96,7 +136,7 @@ public class NewsServlet extends HttpServlet {
                     );
         } catch (IllegalDataFormatWebException | NoDataInRequestWebException | NotUTFEncodingWebException |
                  DTOValidationServiceException | NullAuthorIdServiceException | CustomWebRuntimeException |
-                 AuthorNotFoundServiceException e
+                 AuthorNotFoundServiceException | TransactionConflictServiceException e
         ) {
             resultCode = ResultCodeMapper.getResultCode(e.getClass());
             responseBody = new BaseResponseDTO(resultCode, e);
@@ -0,0 +1,53 @@
+package com.mjc.school.servlet;
+
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.BackupResponseDTO;
+import com.mjc.school.dto.BaseResponseDTO;
+import com.mjc.school.exception.BackupFailedServiceException;
+import com.mjc.school.exception.BackupNotFoundServiceException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.NotSupportedServiceException;
+import com.mjc.school.mapper.ResultCodeMapper;
+import com.mjc.school.service.BackupService;
+import com.mjc.school.util.HttpServletResponseUtils;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replaces the news and authors with the ones of the backup named by the "name" parameter
+ */
+@WebServlet("/admin/restore")
+@Slf4j
+public class RestoreServlet extends HttpServlet {
+    private final transient BackupService backupService;
+
+    public RestoreServlet(BackupService backupService) {
+        this.backupService = backupService;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) {
+        BaseResponseDTO responseBody;
+        RESULT_CODE resultCode;
+        try {
+            responseBody = new BackupResponseDTO(this.backupService.restore(req.getParameter("name")));
+            resultCode = RESULT_CODE.SUCCESS;
+        } catch (DTOValidationServiceException | BackupNotFoundServiceException | NotSupportedServiceException e) {
+            resultCode = ResultCodeMapper.getResultCode(e.getClass());
+            responseBody = new BaseResponseDTO(resultCode, e);
+        } catch (BackupFailedServiceException e) {
+            log.error("Error when restoring a backup", e);
+            resultCode = ResultCodeMapper.getResultCode(e.getClass());
+            responseBody = new BaseResponseDTO(resultCode, e);
+        } catch (RuntimeException e) {
+            log.error("Error when processing a request to restore a backup", e);
+            resultCode = RESULT_CODE.UNEXPECTED_ERROR;
+            responseBody = new BaseResponseDTO(resultCode.getErrorCode(), resultCode.getDefaultMessage());
+        }
+
+        HttpServletResponseUtils.writePayloadIntoResponseBody(resp, responseBody, resultCode.getHttpStatus());
+    }
+}
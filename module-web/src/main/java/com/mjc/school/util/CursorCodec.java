@@ -0,0 +1,46 @@
+package com.mjc.school.util;
+
+import com.mjc.school.exception.IllegalCursorValueWebException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Converts the last id of a page to the opaque cursor returned to clients and back. Clients must not build cursors
+ * themselves, so the format can change without changing the API.
+ */
+public class CursorCodec {
+    private static final String PREFIX = "id:";
+
+    private CursorCodec() {}
+
+    public static String encode(long lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor cursor returned with the previous page, an empty string stands for the first page
+     * @return last id of the previous page, 0 for the first page
+     */
+    public static long decode(String cursor) throws IllegalCursorValueWebException {
+        if (cursor.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!value.startsWith(PREFIX)) {
+                throw new IllegalCursorValueWebException(cursor);
+            }
+            long lastId = Long.parseLong(value.substring(PREFIX.length()));
+            if (lastId < 0) {
+                throw new IllegalCursorValueWebException(cursor);
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalCursorValueWebException(cursor);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.mjc.school.util;
+
+import com.mjc.school.exception.IllegalVersionValueWebException;
+
+import java.util.Optional;
+
+/**
+ * Converts the version of a news to the strong entity tag sent in the "ETag" header and the "If-Match" header back to
+ * the version. Only a single tag or "*" is accepted in "If-Match".
+ */
+public class EntityTagCodec {
+    private EntityTagCodec() {}
+
+    public static String encode(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * @param ifMatch value of the "If-Match" header, null if the request has none
+     * @return expected version of the news, empty if any version is accepted
+     */
+    public static Optional<Long> decode(String ifMatch) throws IllegalVersionValueWebException {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return Optional.empty();
+        }
+
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalVersionValueWebException(ifMatch);
+        }
+        try {
+            long version = Long.parseLong(tag.substring(1, tag.length() - 1));
+            if (version < 0) {
+                throw new IllegalVersionValueWebException(ifMatch);
+            }
+            return Optional.of(version);
+        } catch (NumberFormatException e) {
+            throw new IllegalVersionValueWebException(ifMatch);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.mjc.school.util;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mjc.school.dto.NewsTimestamp;
 import com.mjc.school.exception.*;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -10,6 +11,11 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -21,6 +27,31 @@ public class HttpServletRequestUtils {
     public static <T> T readObjectFromRequestBody(
             HttpServletRequest request, Class<T> clazz
     ) throws NotUTFEncodingWebException, NoDataInRequestWebException, IllegalDataFormatWebException {
+        String body = readRequestBody(request);
+        try {
+            return mapper.readValue(body, clazz);
+        } catch (JsonProcessingException e) {
+            throw new IllegalDataFormatWebException(body);
+        }
+    }
+
+    /**
+     * Same as {@link #readObjectFromRequestBody(HttpServletRequest, Class)} for a body holding a JSON array
+     */
+    public static <T> List<T> readListFromRequestBody(
+            HttpServletRequest request, Class<T> clazz
+    ) throws NotUTFEncodingWebException, NoDataInRequestWebException, IllegalDataFormatWebException {
+        String body = readRequestBody(request);
+        try {
+            return mapper.readValue(body, mapper.getTypeFactory().constructCollectionType(List.class, clazz));
+        } catch (JsonProcessingException e) {
+            throw new IllegalDataFormatWebException(body);
+        }
+    }
+
+    private static String readRequestBody(
+            HttpServletRequest request
+    ) throws NotUTFEncodingWebException, NoDataInRequestWebException {
         try {
             request.setCharacterEncoding("UTF-8");
         } catch (UnsupportedEncodingException e) {
@@ -41,12 +72,7 @@ public class HttpServletRequestUtils {
         if (builder.isEmpty()) {
             throw new NoDataInRequestWebException();
         }
-
-        try {
-            return mapper.readValue(builder.toString(), clazz);
-        } catch (JsonProcessingException e) {
-            throw new IllegalDataFormatWebException(builder.toString());
-        }
+        return builder.toString();
     }
 
     public static int getLimitValueFromRequest(HttpServletRequest req) throws IllegalLimitValueWebException {
@@ -70,6 +96,14 @@ public class HttpServletRequestUtils {
         }
     }
 
+    /**
+     * @return whether the "stream" parameter asks for the list to be streamed, see
+     * {@link HttpServletResponseUtils#writeItemsIntoResponseBody}
+     */
+    public static boolean isStreamRequested(HttpServletRequest req) {
+        return Boolean.parseBoolean(req.getParameter("stream"));
+    }
+
     public static int getOffsetValueFromRequest(HttpServletRequest req) throws IllegalOffsetValueWebException {
         String valueAsString = Optional.ofNullable(req.getParameter("offset")).orElse("0");
 
@@ -87,6 +121,127 @@ public class HttpServletRequestUtils {
         return valueAsInt;
     }
 
+    /**
+     * @return value of the "authorId" parameter, empty if the request has no such parameter
+     */
+    public static Optional<Long> getAuthorIdFromRequest(HttpServletRequest req) throws IllegalAuthorIdValueWebException {
+        String valueAsString = req.getParameter("authorId");
+        if (valueAsString == null) {
+            return Optional.empty();
+        }
+
+        long valueAsLong;
+        try {
+            valueAsLong = Long.parseLong(valueAsString);
+        } catch (NumberFormatException e) {
+            throw new IllegalAuthorIdValueWebException(valueAsString);
+        }
+
+        if (valueAsLong <= 0) {
+            throw new IllegalAuthorIdValueWebException(valueAsString);
+        }
+
+        return Optional.of(valueAsLong);
+    }
+
+    /**
+     * Reads the "sort" parameter, e.g. {@code lastUpdateDate,desc}, and the date ranges {@code createdFrom},
+     * {@code createdTo}, {@code updatedFrom} and {@code updatedTo} given as ISO local date-times or dates. A range
+     * implies ordering by its timestamp, ascending unless the sort says otherwise.
+     *
+     * @return order and range of the request, empty if the request has none of these parameters
+     */
+    public static Optional<NewsTimeQuery> getTimeQueryFromRequest(
+            HttpServletRequest req
+    ) throws IllegalSortValueWebException, IllegalDateValueWebException {
+        LocalDateTime createdFrom = getDateFromRequest(req, "createdFrom");
+        LocalDateTime createdTo = getDateFromRequest(req, "createdTo");
+        LocalDateTime updatedFrom = getDateFromRequest(req, "updatedFrom");
+        LocalDateTime updatedTo = getDateFromRequest(req, "updatedTo");
+        boolean createdRange = createdFrom != null || createdTo != null;
+        boolean updatedRange = updatedFrom != null || updatedTo != null;
+        if (createdRange && updatedRange) {
+            throw new IllegalDateValueWebException("createdFrom/createdTo together with updatedFrom/updatedTo");
+        }
+
+        String sort = req.getParameter("sort");
+        if (sort == null && !createdRange && !updatedRange) {
+            return Optional.empty();
+        }
+
+        NewsTimestamp timestamp = createdRange ? NewsTimestamp.CREATE_DATE : NewsTimestamp.LAST_UPDATE_DATE;
+        boolean descending = false;
+        if (sort != null) {
+            String[] parts = sort.split(",", -1);
+            NewsTimestamp sortTimestamp = Arrays.stream(NewsTimestamp.values())
+                    .filter(item -> item.getPropertyName().equals(parts[0].trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalSortValueWebException(sort));
+            if (parts.length > 2 || (createdRange || updatedRange) && sortTimestamp != timestamp) {
+                throw new IllegalSortValueWebException(sort);
+            }
+            if (parts.length == 2) {
+                String direction = parts[1].trim();
+                if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+                    throw new IllegalSortValueWebException(sort);
+                }
+                descending = direction.equalsIgnoreCase("desc");
+            }
+            timestamp = sortTimestamp;
+        }
+
+        return Optional.of(
+                createdRange
+                        ? new NewsTimeQuery(timestamp, createdFrom, createdTo, descending)
+                        : new NewsTimeQuery(timestamp, updatedFrom, updatedTo, descending)
+        );
+    }
+
+    private static LocalDateTime getDateFromRequest(
+            HttpServletRequest req, String parameterName
+    ) throws IllegalDateValueWebException {
+        String valueAsString = req.getParameter(parameterName);
+        if (valueAsString == null) {
+            return null;
+        }
+
+        try {
+            return valueAsString.contains("T")
+                    ? LocalDateTime.parse(valueAsString)
+                    : LocalDate.parse(valueAsString).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalDateValueWebException(parameterName + "=" + valueAsString);
+        }
+    }
+
+    /**
+     * @return last id encoded in the "cursor" parameter, 0 if it is empty, empty if the request has no such parameter
+     */
+    public static Optional<Long> getCursorFromRequest(HttpServletRequest req) throws IllegalCursorValueWebException {
+        String cursor = req.getParameter("cursor");
+        return cursor == null ? Optional.empty() : Optional.of(CursorCodec.decode(cursor));
+    }
+
+    /**
+     * @return version of the news expected by the "If-Match" header, empty if the request has no such header or it is
+     * "*"
+     */
+    public static Optional<Long> getExpectedVersionFromRequest(HttpServletRequest req)
+            throws IllegalVersionValueWebException {
+        return EntityTagCodec.decode(req.getHeader("If-Match"));
+    }
+
+    /**
+     * @return value of the "q" parameter
+     */
+    public static String getSearchQueryFromRequest(HttpServletRequest req) throws IllegalSearchQueryWebException {
+        String query = req.getParameter("q");
+        if (query == null || query.isBlank()) {
+            throw new IllegalSearchQueryWebException(String.valueOf(query));
+        }
+        return query;
+    }
+
     public static long getIdFromPath(HttpServletRequest req) throws IllegalNewsIdValueWebException {
         String idAsString = req.getPathInfo().replace("/", "");
         if (idAsString.isEmpty()) {
@@ -1,11 +1,16 @@
 package com.mjc.school.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.GetNewsListResponseDTO;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 @Slf4j
 public class HttpServletResponseUtils {
@@ -30,4 +35,39 @@ public class HttpServletResponseUtils {
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
+
+    /**
+     * Writes a successful list response with the fields of {@link GetNewsListResponseDTO}, serializing the items one by
+     * one as the stream produces them, so the list is never held in memory. The status is sent before the items, an
+     * item that fails while being produced cuts the response off.
+     *
+     * @param start value of the "start" field, the number of the first item
+     */
+    public static <T> void writeItemsIntoResponseBody(
+            HttpServletResponse response, Stream<T> items, long start, long totalItemCount
+    ) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+
+        try (PrintWriter writer = response.getWriter();
+             JsonGenerator generator = mapper.getFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("errorCode", RESULT_CODE.SUCCESS.getErrorCode());
+            generator.writeArrayFieldStart("items");
+            long size = 0;
+            for (Iterator<T> iterator = items.iterator(); iterator.hasNext(); size++) {
+                generator.writeObject(iterator.next());
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("start", start);
+            generator.writeNumberField("size", size);
+            generator.writeNumberField("totalItemCount", totalItemCount);
+            generator.writeEndObject();
+        } catch (Exception e) {
+            log.error("Error when writing the items of the response, the response is cut off", e);
+        } finally {
+            items.close();
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package com.mjc.school.util;
+
+import com.mjc.school.dto.NewsTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Order and range of a request for a list of news by one of their timestamps
+ *
+ * @param from inclusive lower bound, null if the request has none
+ * @param to exclusive upper bound, null if the request has none
+ */
+public record NewsTimeQuery(NewsTimestamp timestamp, LocalDateTime from, LocalDateTime to, boolean descending) {
+}
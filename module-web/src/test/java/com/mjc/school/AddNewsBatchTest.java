@@ -0,0 +1,120 @@
+package com.mjc.school;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.AddNewsListResponseDTO;
+import com.mjc.school.dto.AuthorDTO;
+import com.mjc.school.dto.EditNewsRequestDTO;
+import com.mjc.school.dto.NewsDTO;
+import com.mjc.school.exception.CustomServiceException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.IllegalDataFormatWebException;
+import com.mjc.school.mapper.ResultCodeMapper;
+import com.mjc.school.service.NewsService;
+import com.mjc.school.servlet.NewsBatchServlet;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.*;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AddNewsBatchTest {
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private NewsService newsService;
+
+    private ByteArrayOutputStream responseBodyStream;
+    private final ObjectMapper mapper = new JsonMapper().findAndRegisterModules();
+
+    @BeforeEach
+    void setup() throws IOException {
+        newsService = Mockito.mock(NewsService.class);
+        request = Mockito.mock(HttpServletRequest.class);
+        response = Mockito.mock(HttpServletResponse.class);
+
+        Mockito.when(request.getMethod()).thenReturn("POST");
+
+        responseBodyStream = new ByteArrayOutputStream();
+        PrintWriter writer = new PrintWriter(responseBodyStream);
+        Mockito.when(response.getWriter()).thenReturn(writer);
+    }
+
+    @Test
+    @DisplayName("Adding a batch of news. Successful, all the news are passed to the service at once")
+    @SuppressWarnings("unchecked")
+    void createNewsBatchTest() throws IOException, ServletException, CustomServiceException {
+        String requestBody =
+                "[" +
+                        "{\"title\": \"First title\", \"content\": \"First content\", \"authorId\": 12}, " +
+                        "{\"title\": \"Second title\", \"content\": \"Second content\", \"authorId\": 13}" +
+                "]";
+        Mockito.when(request.getReader()).thenReturn(new BufferedReader(new StringReader(requestBody)));
+
+        List<EditNewsRequestDTO> expectedRequestDTOList = List.of(
+                new EditNewsRequestDTO("First title", "First content", 12L),
+                new EditNewsRequestDTO("Second title", "Second content", 13L)
+        );
+        List<NewsDTO> createdNews = List.of(
+                new NewsDTO(1L, "First title", "First content", "", "", new AuthorDTO(12L, "")),
+                new NewsDTO(2L, "Second title", "Second content", "", "", new AuthorDTO(13L, ""))
+        );
+        Mockito.when(newsService.createAll(Mockito.anyList())).thenReturn(createdNews);
+
+        new NewsBatchServlet(newsService).service(request, response);
+
+        ArgumentCaptor<List<EditNewsRequestDTO>> captor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(newsService).createAll(captor.capture());
+        assertThat(captor.getValue()).isEqualTo(expectedRequestDTOList);
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_CREATED);
+
+        AddNewsListResponseDTO responseBody =
+                mapper.readValue(responseBodyStream.toByteArray(), AddNewsListResponseDTO.class);
+        assertThat(responseBody.getErrorCode()).isZero();
+        assertThat(responseBody.getData())
+                .extracting(NewsDTO::getId)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Adding a batch of news. A single object instead of an array is an illegal data format")
+    void objectInsteadOfArray() throws IOException, ServletException {
+        String requestBody = "{\"title\": \"First title\", \"content\": \"First content\", \"authorId\": 12}";
+        Mockito.when(request.getReader()).thenReturn(new BufferedReader(new StringReader(requestBody)));
+
+        new NewsBatchServlet(newsService).service(request, response);
+
+        RESULT_CODE expectedResultCode = ResultCodeMapper.getResultCode(IllegalDataFormatWebException.class);
+        Mockito.verify(response).setStatus(expectedResultCode.getHttpStatus());
+        AddNewsListResponseDTO responseBody =
+                mapper.readValue(responseBodyStream.toByteArray(), AddNewsListResponseDTO.class);
+        assertThat(responseBody.getErrorCode()).isEqualTo(expectedResultCode.getErrorCode());
+        Mockito.verifyNoInteractions(newsService);
+    }
+
+    @Test
+    @DisplayName("Adding a batch of news. An invalid item fails the whole batch")
+    void invalidItem() throws IOException, ServletException, CustomServiceException {
+        String requestBody = "[{\"title\": \"\", \"content\": \"First content\", \"authorId\": 12}]";
+        Mockito.when(request.getReader()).thenReturn(new BufferedReader(new StringReader(requestBody)));
+        Mockito.when(newsService.createAll(Mockito.anyList()))
+                .thenThrow(new DTOValidationServiceException("[0]: title: must not be blank"));
+
+        new NewsBatchServlet(newsService).service(request, response);
+
+        RESULT_CODE expectedResultCode = ResultCodeMapper.getResultCode(DTOValidationServiceException.class);
+        Mockito.verify(response).setStatus(expectedResultCode.getHttpStatus());
+        AddNewsListResponseDTO responseBody =
+                mapper.readValue(responseBodyStream.toByteArray(), AddNewsListResponseDTO.class);
+        assertThat(responseBody.getErrorCode()).isEqualTo(expectedResultCode.getErrorCode());
+        assertThat(responseBody.getErrorMessage()).contains("[0]");
+    }
+}
@@ -0,0 +1,105 @@
+package com.mjc.school;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mjc.school.constant.RESULT_CODE;
+import com.mjc.school.dto.BackupDTO;
+import com.mjc.school.exception.BackupNotFoundServiceException;
+import com.mjc.school.exception.CustomServiceException;
+import com.mjc.school.exception.DTOValidationServiceException;
+import com.mjc.school.exception.NotSupportedServiceException;
+import com.mjc.school.service.BackupService;
+import com.mjc.school.servlet.BackupServlet;
+import com.mjc.school.servlet.RestoreServlet;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class BackupAndRestoreTest {
+    private BackupService backupService;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    private final ObjectMapper mapper = new JsonMapper().findAndRegisterModules();
+    private ByteArrayOutputStream responseBodyStream;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        backupService = Mockito.mock(BackupService.class);
+        request = Mockito.mock(HttpServletRequest.class);
+        response = Mockito.mock(HttpServletResponse.class);
+
+        Mockito.when(request.getMethod()).thenReturn("POST");
+
+        responseBodyStream = new ByteArrayOutputStream();
+        PrintWriter printWriter = new PrintWriter(responseBodyStream);
+        Mockito.when(response.getWriter()).thenReturn(printWriter);
+    }
+
+    @Test
+    @DisplayName("Taking a backup. The name is passed to the service, the counts of the backup are returned")
+    void backup() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(request.getParameter("name")).thenReturn("nightly");
+        Mockito.when(backupService.backup("nightly")).thenReturn(new BackupDTO("nightly", 20, 5));
+
+        new BackupServlet(backupService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_CREATED);
+        JsonNode responseBody = mapper.readTree(responseBodyStream.toByteArray());
+        assertThat(responseBody.get("errorCode").asInt()).isEqualTo(RESULT_CODE.SUCCESS.getErrorCode());
+        assertThat(responseBody.get("data").get("name").asText()).isEqualTo("nightly");
+        assertThat(responseBody.get("data").get("newsCount").asLong()).isEqualTo(20L);
+        assertThat(responseBody.get("data").get("authorCount").asLong()).isEqualTo(5L);
+    }
+
+    @Test
+    @DisplayName("Invalid backup name. Checking that HttpStatus and errorCode match the values of a validation error")
+    void backup_invalidName() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(request.getParameter("name")).thenReturn("../etc");
+        Mockito.when(backupService.backup("../etc")).thenThrow(new DTOValidationServiceException("name"));
+
+        new BackupServlet(backupService).service(request, response);
+
+        Mockito.verify(response).setStatus(RESULT_CODE.DATA_VALIDATION.getHttpStatus());
+        JsonNode responseBody = mapper.readTree(responseBodyStream.toByteArray());
+        assertThat(responseBody.get("errorCode").asInt()).isEqualTo(RESULT_CODE.DATA_VALIDATION.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("Restoring a missing backup. Checking that HttpStatus and errorCode match the values of BACKUP_NOT_FOUND")
+    void restore_notFound() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(request.getParameter("name")).thenReturn("missing");
+        Mockito.when(backupService.restore("missing")).thenThrow(new BackupNotFoundServiceException("missing"));
+
+        new RestoreServlet(backupService).service(request, response);
+
+        Mockito.verify(response).setStatus(RESULT_CODE.BACKUP_NOT_FOUND.getHttpStatus());
+        JsonNode responseBody = mapper.readTree(responseBodyStream.toByteArray());
+        assertThat(responseBody.get("errorCode").asInt()).isEqualTo(RESULT_CODE.BACKUP_NOT_FOUND.getErrorCode());
+        assertThat(responseBody.get("errorMessage").asText()).contains("missing");
+    }
+
+    @Test
+    @DisplayName("Taking a backup of a data source without backups. Checking that HttpStatus and errorCode match NOT_SUPPORTED")
+    void backup_notSupported() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(backupService.backup(null)).thenThrow(new NotSupportedServiceException("backups"));
+
+        new BackupServlet(backupService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_IMPLEMENTED);
+        JsonNode responseBody = mapper.readTree(responseBodyStream.toByteArray());
+        assertThat(responseBody.get("errorCode").asInt()).isEqualTo(RESULT_CODE.NOT_SUPPORTED.getErrorCode());
+        assertThat(responseBody.get("errorMessage").asText()).contains("backups");
+    }
+}
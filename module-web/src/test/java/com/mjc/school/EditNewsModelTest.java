@@ -246,4 +246,75 @@ class EditNewsModelTest {
 
         assertThat(actualResponseBody.getErrorCode()).isEqualTo(expectedException.getResultCode().getErrorCode());
     }
+
+    @Test
+    @DisplayName("News editing. The version of the If-Match header is passed to the service, the new version is returned as the ETag")
+    void newsEditing_ifMatch_updatedWithExpectedVersion() throws IOException, ServletException, CustomServiceException {
+        long idForUpdate = 123L;
+
+        StringReader stringReader = new StringReader("{\"title\": \"News title\", \"content\": \"News content\", \"authorId\": 12}");
+        Mockito.when(request.getReader()).thenReturn(new BufferedReader(stringReader));
+        Mockito.when(request.getPathInfo()).thenReturn(String.valueOf(idForUpdate));
+        Mockito.when(request.getHeader("If-Match")).thenReturn("\"4\"");
+        NewsDTO newsDTO = new NewsDTO(idForUpdate, "News title", "News content", new AuthorDTO(12L, ""));
+        newsDTO.setVersion(5);
+        Mockito.when(newsService.update(Mockito.any(), Mockito.eq(4L))).thenReturn(newsDTO);
+
+        new NewsItemServlet(newsService).service(request, response);
+
+        Mockito.verify(newsService).update(Mockito.any(), Mockito.eq(4L));
+        Mockito.verify(response).setHeader("ETag", "\"5\"");
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    @DisplayName("News editing. The news has been changed since the version of the If-Match header")
+    void newsEditing_versionConflict() throws IOException, ServletException, CustomServiceException {
+        long idForUpdate = 123L;
+
+        StringReader stringReader = new StringReader("{\"title\": \"News title\", \"content\": \"News content\", \"authorId\": 12}");
+        Mockito.when(request.getReader()).thenReturn(new BufferedReader(stringReader));
+        Mockito.when(request.getPathInfo()).thenReturn(String.valueOf(idForUpdate));
+        Mockito.when(request.getHeader("If-Match")).thenReturn("\"4\"");
+        NewsVersionConflictServiceException conflictException = new NewsVersionConflictServiceException(idForUpdate, 4);
+        Mockito.when(newsService.update(Mockito.any(), Mockito.eq(4L))).thenThrow(conflictException);
+
+        new NewsItemServlet(newsService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+        BaseResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), BaseResponseDTO.class);
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(RESULT_CODE.VERSION_CONFLICT.getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(conflictException.getMessage());
+    }
+
+    @Test
+    @DisplayName("News editing. An update without If-Match that keeps losing to other writers is a conflict, not 412")
+    void newsEditing_withoutIfMatch_retriesExhausted_conflict() throws IOException, ServletException, CustomServiceException {
+        StringReader stringReader = new StringReader("{\"title\": \"News title\", \"content\": \"News content\", \"authorId\": 12}");
+        Mockito.when(request.getReader()).thenReturn(new BufferedReader(stringReader));
+        Mockito.when(request.getPathInfo()).thenReturn("123");
+        TransactionConflictServiceException conflictException = new TransactionConflictServiceException(8);
+        Mockito.when(newsService.update(Mockito.any())).thenThrow(conflictException);
+
+        new NewsItemServlet(newsService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_CONFLICT);
+        BaseResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), BaseResponseDTO.class);
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(RESULT_CODE.TRANSACTION_CONFLICT.getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(conflictException.getMessage());
+    }
+
+    @Test
+    @DisplayName("News editing. An If-Match header that is not a single entity tag is rejected before the news is read")
+    void newsEditing_illegalIfMatch() throws IOException, ServletException, CustomServiceException {
+        Mockito.when(request.getPathInfo()).thenReturn("123");
+        Mockito.when(request.getHeader("If-Match")).thenReturn("\"4\", \"5\"");
+
+        new NewsItemServlet(newsService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        Mockito.verifyNoInteractions(newsService);
+        BaseResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), BaseResponseDTO.class);
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(RESULT_CODE.ILLEGAL_VERSION_VALUE.getErrorCode());
+    }
 }
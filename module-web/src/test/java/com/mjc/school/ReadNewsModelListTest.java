@@ -2,14 +2,25 @@ package com.mjc.school;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mjc.school.constant.RESULT_CODE;
 import com.mjc.school.dto.AuthorDTO;
+import com.mjc.school.dto.CursorPageDTO;
 import com.mjc.school.dto.GetNewsListResponseDTO;
 import com.mjc.school.dto.NewsDTO;
+import com.mjc.school.dto.NewsTimestamp;
+import com.mjc.school.dto.PageDTO;
+import com.mjc.school.dto.StreamPageDTO;
+import com.mjc.school.exception.AuthorNotFoundServiceException;
 import com.mjc.school.exception.CustomServiceException;
+import com.mjc.school.exception.IllegalAuthorIdValueWebException;
+import com.mjc.school.exception.IllegalCursorValueWebException;
+import com.mjc.school.exception.IllegalDateValueWebException;
 import com.mjc.school.exception.IllegalLimitValueWebException;
 import com.mjc.school.exception.IllegalOffsetValueWebException;
+import com.mjc.school.exception.IllegalSortValueWebException;
 import com.mjc.school.service.NewsService;
 import com.mjc.school.servlet.NewsServlet;
+import com.mjc.school.util.CursorCodec;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -21,6 +32,7 @@ import org.mockito.Mockito;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -74,18 +86,21 @@ class ReadNewsModelListTest {
         PrintWriter printWriter = new PrintWriter(responseBodyStream);
         Mockito.when(response.getWriter()).thenReturn(printWriter);
 
-        Mockito.when(newsService.readPage(Mockito.anyLong(), Mockito.anyLong())).thenReturn(news);
-        Mockito.when(newsService.count()).thenReturn(10L);
+        Mockito.when(newsService.readPage(Mockito.anyLong(), Mockito.anyLong())).thenReturn(new PageDTO<>(news, 10L));
+        Mockito.when(newsService.streamPage(Mockito.anyLong()))
+                .thenAnswer(invocation -> new StreamPageDTO<>(news.stream(), 10L));
     }
 
     @Test
     @DisplayName("Getting a complete list of news. Exceptions will not be thrown")
-    void getAll() throws IOException, ServletException {
+    void getAll() throws IOException, ServletException, CustomServiceException {
         Mockito.when(request.getParameter("limit")).thenReturn(null);
         Mockito.when(request.getParameter("offset")).thenReturn(null);
 
         new NewsServlet(newsService).service(request, response);
 
+        Mockito.verify(newsService).readPage(0, -1);
+        Mockito.verify(newsService, Mockito.never()).streamPage(Mockito.anyLong());
         Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
         Mockito.verify(response).setCharacterEncoding("UTF-8");
         Mockito.verify(response).setContentType("application/json");
@@ -96,6 +111,38 @@ class ReadNewsModelListTest {
         assertThat(actualResponseBody).usingRecursiveComparison().isEqualTo(expectedResponseBody);
     }
 
+    @Test
+    @DisplayName("Getting all the news from an offset with stream=true. The news are streamed instead of read as a list")
+    void getAll_withOffset_streamed() throws IOException, ServletException, CustomServiceException {
+        Mockito.when(request.getParameter("offset")).thenReturn("2");
+        Mockito.when(request.getParameter("stream")).thenReturn("true");
+        Mockito.when(newsService.streamPage(2L))
+                .thenAnswer(invocation -> new StreamPageDTO<>(news.subList(2, 3).stream(), 3L));
+
+        new NewsServlet(newsService).service(request, response);
+
+        Mockito.verify(newsService).streamPage(2L);
+        Mockito.verify(newsService, Mockito.never()).readPage(Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        GetNewsListResponseDTO expectedResponseBody = new GetNewsListResponseDTO(news.subList(2, 3), 3, 1, 3L);
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+        assertThat(actualResponseBody).usingRecursiveComparison().isEqualTo(expectedResponseBody);
+    }
+
+    @Test
+    @DisplayName("Getting all the news when the author of one is missing. The error is reported before anything is sent")
+    void getAll_authorMissing_unexpectedError() throws IOException, ServletException, CustomServiceException {
+        Mockito.when(newsService.readPage(0, -1)).thenThrow(new AuthorNotFoundServiceException(44L));
+
+        new NewsServlet(newsService).service(request, response);
+
+        Mockito.verify(response).setStatus(RESULT_CODE.UNEXPECTED_ERROR.getHttpStatus());
+        Mockito.verify(response, Mockito.never()).setStatus(HttpServletResponse.SC_OK);
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(RESULT_CODE.UNEXPECTED_ERROR.getErrorCode());
+    }
+
     @Test
     @DisplayName("Getting a list of news. limit and offset are passed to the service")
     void testLimitAndOffset() throws ServletException, IOException, CustomServiceException {
@@ -104,8 +151,6 @@ class ReadNewsModelListTest {
         Mockito.when(request.getParameter("limit")).thenReturn(String.valueOf(limit));
         Mockito.when(request.getParameter("offset")).thenReturn(String.valueOf(offset));
 
-        Mockito.when(newsService.count()).thenReturn(10L);
-
         new NewsServlet(newsService).service(request, response);
 
         Mockito.verify(newsService).readPage(offset, limit);
@@ -116,6 +161,131 @@ class ReadNewsModelListTest {
         assertThat(actualResponseBody.getSize()).isEqualTo(limit);
     }
 
+    @Test
+    @DisplayName("Getting a list of news of one author. authorId, limit and offset are passed to the service")
+    void testAuthorId() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(request.getParameter("limit")).thenReturn("2");
+        Mockito.when(request.getParameter("offset")).thenReturn("1");
+        Mockito.when(request.getParameter("authorId")).thenReturn("22");
+        Mockito.when(newsService.findByAuthorId(22L, 1, 2)).thenReturn(new PageDTO<>(news.subList(1, 2), 1L));
+
+        new NewsServlet(newsService).service(request, response);
+
+        Mockito.verify(newsService).findByAuthorId(22L, 1, 2);
+        Mockito.verify(newsService, Mockito.never()).readPage(Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        assertThat(actualResponseBody).usingRecursiveComparison().isEqualTo(
+                new GetNewsListResponseDTO(news.subList(1, 2), 2, 1, 1L)
+        );
+    }
+
+    @Test
+    @DisplayName("Getting the latest news in a range of creation dates. The sort and the range are passed to the service")
+    void testSortAndCreatedRange() throws ServletException, IOException, CustomServiceException {
+        LocalDateTime from = LocalDateTime.of(2024, 4, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 4, 5, 12, 30);
+        Mockito.when(request.getParameter("sort")).thenReturn("createDate,desc");
+        Mockito.when(request.getParameter("createdFrom")).thenReturn("2024-04-01");
+        Mockito.when(request.getParameter("createdTo")).thenReturn("2024-04-05T12:30:00");
+        Mockito.when(newsService.readPageByTime(NewsTimestamp.CREATE_DATE, from, to, true, 0, -1))
+                .thenReturn(new PageDTO<>(news, 3L));
+
+        new NewsServlet(newsService).service(request, response);
+
+        Mockito.verify(newsService).readPageByTime(NewsTimestamp.CREATE_DATE, from, to, true, 0, -1);
+        Mockito.verify(newsService, Mockito.never()).readPage(Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    @DisplayName("Sorting by one timestamp with a range of the other. Checking that HttpStatus and errorCode match the values from the IllegalSortValueWebException")
+    void sortOnOtherTimestampThanRange() throws ServletException, IOException {
+        Mockito.when(request.getParameter("sort")).thenReturn("lastUpdateDate,desc");
+        Mockito.when(request.getParameter("createdFrom")).thenReturn("2024-04-01");
+
+        new NewsServlet(newsService).service(request, response);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        IllegalSortValueWebException expectedException = new IllegalSortValueWebException("lastUpdateDate,desc");
+
+        Mockito.verify(response).setStatus(expectedException.getHttpStatus());
+
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(expectedException.getResultCode().getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(expectedException.getMessage());
+    }
+
+    @Test
+    @DisplayName("Invalid date value. Checking that HttpStatus and errorCode match the values from the IllegalDateValueWebException")
+    void incorrectDateValue() throws ServletException, IOException {
+        Mockito.when(request.getParameter("updatedFrom")).thenReturn("yesterday");
+
+        new NewsServlet(newsService).service(request, response);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        IllegalDateValueWebException expectedException = new IllegalDateValueWebException("updatedFrom=yesterday");
+
+        Mockito.verify(response).setStatus(expectedException.getHttpStatus());
+
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(expectedException.getResultCode().getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(expectedException.getMessage());
+    }
+
+    @Test
+    @DisplayName("Keyset paging. The cursor of the response leads to the next page")
+    void testCursor() throws ServletException, IOException, CustomServiceException, IllegalCursorValueWebException {
+        Mockito.when(request.getParameter("limit")).thenReturn("2");
+        Mockito.when(request.getParameter("cursor")).thenReturn("");
+        Mockito.when(newsService.readPageAfter(0L, 2)).thenReturn(new CursorPageDTO<>(news.subList(0, 2), 3L, 2L));
+
+        new NewsServlet(newsService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+        assertThat(actualResponseBody.getItems()).isEqualTo(news.subList(0, 2));
+        assertThat(actualResponseBody.getNextCursor()).isNotBlank();
+        assertThat(CursorCodec.decode(actualResponseBody.getNextCursor())).isEqualTo(2L);
+        Mockito.verify(newsService, Mockito.never()).readPage(Mockito.anyLong(), Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Invalid cursor value. Checking that HttpStatus and errorCode match the values from the IllegalCursorValueWebException")
+    void incorrectCursorValue() throws ServletException, IOException {
+        Mockito.when(request.getParameter("cursor")).thenReturn("not-a-cursor");
+
+        new NewsServlet(newsService).service(request, response);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        IllegalCursorValueWebException expectedException = new IllegalCursorValueWebException("not-a-cursor");
+
+        Mockito.verify(response).setStatus(expectedException.getHttpStatus());
+
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(expectedException.getResultCode().getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(expectedException.getMessage());
+    }
+
+    @Test
+    @DisplayName("Invalid authorId value. Checking that HttpStatus and errorCode match the values from the IllegalAuthorIdValueWebException")
+    void incorrectAuthorIdValue() throws ServletException, IOException {
+        Mockito.when(request.getParameter("authorId")).thenReturn("abc");
+
+        new NewsServlet(newsService).service(request, response);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        IllegalAuthorIdValueWebException expectedException = new IllegalAuthorIdValueWebException("abc");
+
+        Mockito.verify(response).setStatus(expectedException.getHttpStatus());
+
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(expectedException.getResultCode().getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(expectedException.getMessage());
+    }
+
     @Test
     @DisplayName("Invalid limit value. Checking that HttpStatus and errorCode match the values from the IllegalLimitValueException")
     void incorrectLimitValue() throws ServletException, IOException {
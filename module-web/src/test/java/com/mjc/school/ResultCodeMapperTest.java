@@ -18,6 +18,12 @@ class ResultCodeMapperTest {
                 IllegalLimitValueWebException.class,
                 IllegalNewsIdValueWebException.class,
                 IllegalOffsetValueWebException.class,
+                IllegalAuthorIdValueWebException.class,
+                IllegalSortValueWebException.class,
+                IllegalDateValueWebException.class,
+                IllegalSearchQueryWebException.class,
+                IllegalCursorValueWebException.class,
+                IllegalVersionValueWebException.class,
                 NoDataInRequestWebException.class,
                 NotUTFEncodingWebException.class,
                 AuthorNotFoundServiceException.class,
@@ -25,7 +31,11 @@ class ResultCodeMapperTest {
                 DTOValidationServiceException.class,
                 NewsNotFoundServiceException.class,
                 NullAuthorIdServiceException.class,
-                NullNewsIdServiceException.class
+                NullNewsIdServiceException.class,
+                NewsVersionConflictServiceException.class,
+                BackupNotFoundServiceException.class,
+                BackupFailedServiceException.class,
+                NotSupportedServiceException.class
         );
     }
 
@@ -0,0 +1,96 @@
+package com.mjc.school;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.mjc.school.dto.AuthorDTO;
+import com.mjc.school.dto.GetNewsListResponseDTO;
+import com.mjc.school.dto.NewsDTO;
+import com.mjc.school.dto.PageDTO;
+import com.mjc.school.exception.CustomServiceException;
+import com.mjc.school.exception.IllegalSearchQueryWebException;
+import com.mjc.school.service.NewsService;
+import com.mjc.school.servlet.NewsSearchServlet;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class SearchNewsModelTest {
+    private NewsService newsService;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    private final ObjectMapper mapper = new JsonMapper().findAndRegisterModules();
+    private ByteArrayOutputStream responseBodyStream;
+    private final List<NewsDTO> news = List.of(
+            new NewsDTO(
+                    7L,
+                    "Weather news",
+                    "Rain tomorrow",
+                    new AuthorDTO(
+                            11L,
+                            "Author 1 name"
+                    )
+            )
+    );
+
+    @BeforeEach
+    void setUp() throws IOException {
+        newsService = Mockito.mock(NewsService.class);
+        request = Mockito.mock(HttpServletRequest.class);
+        response = Mockito.mock(HttpServletResponse.class);
+
+        Mockito.when(request.getMethod()).thenReturn("GET");
+
+        responseBodyStream = new ByteArrayOutputStream();
+        PrintWriter printWriter = new PrintWriter(responseBodyStream);
+        Mockito.when(response.getWriter()).thenReturn(printWriter);
+    }
+
+    @Test
+    @DisplayName("Searching news. The query, limit and offset are passed to the service, the page is returned like a list of news")
+    void search() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(request.getParameter("q")).thenReturn("rain");
+        Mockito.when(request.getParameter("limit")).thenReturn("1");
+        Mockito.when(request.getParameter("offset")).thenReturn("2");
+        Mockito.when(newsService.search("rain", 2, 1)).thenReturn(new PageDTO<>(news, 3L));
+
+        new NewsSearchServlet(newsService).service(request, response);
+
+        Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        assertThat(actualResponseBody).usingRecursiveComparison().isEqualTo(
+                new GetNewsListResponseDTO(news, 3, 1, 3L)
+        );
+    }
+
+    @Test
+    @DisplayName("Blank search query. Checking that HttpStatus and errorCode match the values from the IllegalSearchQueryWebException")
+    void blankQuery() throws ServletException, IOException, CustomServiceException {
+        Mockito.when(request.getParameter("q")).thenReturn(" ");
+
+        new NewsSearchServlet(newsService).service(request, response);
+
+        GetNewsListResponseDTO actualResponseBody = mapper.readValue(responseBodyStream.toByteArray(), GetNewsListResponseDTO.class);
+
+        IllegalSearchQueryWebException expectedException = new IllegalSearchQueryWebException(" ");
+
+        Mockito.verify(response).setStatus(expectedException.getHttpStatus());
+        Mockito.verify(newsService, Mockito.never()).search(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong());
+
+        assertThat(actualResponseBody.getErrorCode()).isEqualTo(expectedException.getResultCode().getErrorCode());
+        assertThat(actualResponseBody.getErrorMessage()).isEqualTo(expectedException.getMessage());
+    }
+}